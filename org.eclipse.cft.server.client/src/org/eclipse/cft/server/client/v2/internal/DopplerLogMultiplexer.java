@@ -0,0 +1,484 @@
+/*******************************************************************************
+ * Copyright (c) 2017 Pivotal Software, Inc. and others
+ *
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * and Apache License v2.0 which accompanies this distribution.
+ *
+ * The Eclipse Public License is available at
+ *
+ * http://www.eclipse.org/legal/epl-v10.html
+ *
+ * and the Apache License v2.0 is available at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * You may elect to redistribute this code under either of these licenses.
+ *
+ *  Contributors:
+ *     Pivotal Software, Inc. - initial API and implementation
+ ********************************************************************************/
+package org.eclipse.cft.server.client.v2.internal;
+
+import java.util.Comparator;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.TimeUnit;
+
+import org.cloudfoundry.doppler.DopplerClient;
+import org.cloudfoundry.doppler.Envelope;
+import org.cloudfoundry.doppler.EventType;
+import org.cloudfoundry.doppler.LogMessage;
+import org.cloudfoundry.doppler.RecentLogsRequest;
+import org.cloudfoundry.doppler.StreamRequest;
+import org.eclipse.cft.server.client.v2.internal.V2Client.V2LogListener;
+import org.eclipse.cft.server.core.internal.CloudServerEvent;
+import org.eclipse.cft.server.core.internal.CloudServerListener;
+import org.eclipse.cft.server.core.internal.ServerEventHandler;
+import org.eclipse.cft.server.core.internal.application.ModuleChangeEvent;
+import org.eclipse.cft.server.core.internal.client.ClientRequestExecutor;
+import org.eclipse.cft.server.core.internal.client.CloudFoundryApplicationModule;
+import org.eclipse.cft.server.core.internal.log.CFStreamingLogToken;
+import org.eclipse.core.runtime.CoreException;
+
+import reactor.core.Cancellation;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+
+/**
+ * Shares Doppler log streams among all log listeners of a server. Listeners
+ * of the same application are served by a single stream, which is kept open
+ * across client logins, and messages are routed to the listeners of an
+ * application by application ID.
+ * <p/>
+ * If a stream fails or is closed by Doppler, it is reconnected with an
+ * increasing delay. On reconnect, recent logs that were emitted while
+ * disconnected are replayed before the stream resumes, so that listeners do
+ * not miss messages.
+ * <p/>
+ * The ID of an application is resolved again when the application is deleted
+ * or deployed, so that a stream follows an application that was recreated
+ * under the same name. The multiplexer of a server is disposed, closing its
+ * streams, when the server is disconnected or deleted.
+ * <p/>
+ * Note that the Doppler firehose is not used, as it requires admin
+ * privileges that regular users do not have.
+ */
+public class DopplerLogMultiplexer {
+
+	private static final long INITIAL_RECONNECT_DELAY = 1000;
+
+	private static final long MAX_RECONNECT_DELAY = 30 * 1000;
+
+	private static final Comparator<LogMessage> LOG_TIMESTAMP_COMPARATOR = (log1, log2) -> Long
+			.compare(getTimestamp(log1), getTimestamp(log2));
+
+	/**
+	 * Maximum number of streams of a server connecting at the same time
+	 */
+	private static final int MAX_PARALLEL_CONNECTS = 2;
+
+	private static final Map<String, DopplerLogMultiplexer> multiplexers = new ConcurrentHashMap<>();
+
+	private static final CloudServerListener serverListener = event -> {
+		if (event.getServer() == null) {
+			return;
+		}
+		String serverId = event.getServer().getServerId();
+		switch (event.getType()) {
+		case CloudServerEvent.EVENT_SERVER_DISCONNECTED:
+		case CloudServerEvent.EVENT_SERVER_DELETED:
+			dispose(serverId);
+			break;
+		case CloudServerEvent.EVENT_APP_DELETED:
+		case CloudServerEvent.EVENT_APP_DEPLOYMENT_CHANGED:
+			DopplerLogMultiplexer multiplexer = serverId != null ? multiplexers.get(serverId) : null;
+			String appName = getAppName(event);
+			if (multiplexer != null && appName != null) {
+				multiplexer.applicationChanged(appName);
+			}
+			break;
+		default:
+			break;
+		}
+	};
+
+	/**
+	 * Streams by application name
+	 */
+	private final Map<String, ApplicationLogStream> streams = new ConcurrentHashMap<>();
+
+	/**
+	 * Connects streams off the shared scheduler, as resolving application
+	 * IDs and Doppler clients may block
+	 */
+	private final ExecutorService connectExecutor = ClientRequestExecutor.newBoundedExecutor(MAX_PARALLEL_CONNECTS);
+
+	private volatile DopplerConnection connection;
+
+	/**
+	 *
+	 * @param serverId id of the server, including the user and space
+	 * @return multiplexer shared by all clients of the given server
+	 */
+	public static DopplerLogMultiplexer forServer(String serverId) {
+		DopplerLogMultiplexer multiplexer = multiplexers.get(serverId);
+		if (multiplexer == null) {
+			synchronized (multiplexers) {
+				multiplexer = multiplexers.get(serverId);
+				if (multiplexer == null) {
+					multiplexer = new DopplerLogMultiplexer();
+					if (multiplexers.isEmpty()) {
+						ServerEventHandler.getDefault().addServerListener(serverListener);
+					}
+					multiplexers.put(serverId, multiplexer);
+				}
+			}
+		}
+		return multiplexer;
+	}
+
+	/**
+	 * Closes the streams of the given server, if any, and drops its
+	 * multiplexer, which releases the client of the server.
+	 * @param serverId
+	 */
+	protected static void dispose(String serverId) {
+		if (serverId == null) {
+			return;
+		}
+		DopplerLogMultiplexer multiplexer;
+		synchronized (multiplexers) {
+			multiplexer = multiplexers.remove(serverId);
+			if (multiplexer != null && multiplexers.isEmpty()) {
+				ServerEventHandler.getDefault().removeServerListener(serverListener);
+			}
+		}
+		if (multiplexer != null) {
+			multiplexer.dispose();
+		}
+	}
+
+	protected void dispose() {
+		connectExecutor.shutdownNow();
+		synchronized (streams) {
+			for (ApplicationLogStream stream : streams.values()) {
+				stream.close();
+			}
+			streams.clear();
+		}
+		connection = null;
+	}
+
+	/**
+	 * Resolves again the ID of the given application, and reconnects its
+	 * stream if the application was recreated with a new ID
+	 * @param appName
+	 */
+	protected void applicationChanged(String appName) {
+		ApplicationLogStream stream = streams.get(appName);
+		if (stream != null) {
+			stream.resolveAppId();
+		}
+	}
+
+	/**
+	 * Adds a listener for the logs of the given application, opening a
+	 * stream for the application if it has no other listeners.
+	 * @param appName
+	 * @param listener
+	 * @param connection connection used to open streams. Replaces the
+	 * connection used to reconnect existing streams.
+	 * @return token that removes the listener when cancelled
+	 */
+	public CFStreamingLogToken subscribe(String appName, V2LogListener listener, DopplerConnection connection) {
+		this.connection = connection;
+
+		ApplicationLogStream stream;
+		synchronized (streams) {
+			stream = streams.get(appName);
+			if (stream == null) {
+				stream = new ApplicationLogStream(appName);
+				streams.put(appName, stream);
+			}
+			stream.listeners.add(listener);
+		}
+		stream.connect();
+
+		final ApplicationLogStream subscribed = stream;
+		return new CFStreamingLogToken() {
+
+			@Override
+			public void cancel() {
+				unsubscribe(subscribed, listener);
+			}
+		};
+	}
+
+	protected void unsubscribe(ApplicationLogStream stream, V2LogListener listener) {
+		synchronized (streams) {
+			stream.listeners.remove(listener);
+			if (!stream.listeners.isEmpty()) {
+				return;
+			}
+			streams.remove(stream.appName);
+		}
+		stream.close();
+	}
+
+	/**
+	 *
+	 * @return number of open application log streams
+	 */
+	public int getStreamCount() {
+		return streams.size();
+	}
+
+	private static long getTimestamp(LogMessage log) {
+		return log.getTimestamp() != null ? log.getTimestamp() : 0;
+	}
+
+	private static String getAppName(CloudServerEvent event) {
+		if (event instanceof ModuleChangeEvent && ((ModuleChangeEvent) event).getModule() != null) {
+			CloudFoundryApplicationModule appModule = event.getServer()
+					.getExistingCloudModule(((ModuleChangeEvent) event).getModule());
+			return appModule != null ? appModule.getDeployedApplicationName()
+					: ((ModuleChangeEvent) event).getModule().getName();
+		}
+		return null;
+	}
+
+	protected void connectLater(ApplicationLogStream stream) {
+		try {
+			connectExecutor.execute(stream::connect);
+		}
+		catch (RejectedExecutionException e) {
+			// Disposed
+		}
+	}
+
+	/**
+	 * Provides the Doppler client and application IDs of the current client
+	 * of the server.
+	 */
+	public interface DopplerConnection {
+
+		DopplerClient getDopplerClient() throws CoreException;
+
+		Mono<String> getApplicationId(String appName) throws CoreException;
+
+	}
+
+	/**
+	 * Single Doppler stream for one application, shared by all listeners of
+	 * the application.
+	 */
+	protected class ApplicationLogStream {
+
+		private final String appName;
+
+		private final List<V2LogListener> listeners = new CopyOnWriteArrayList<>();
+
+		private String appId;
+
+		private Cancellation cancellation;
+
+		/**
+		 * Incremented each time the stream disconnects, so that callbacks of
+		 * earlier connection attempts are ignored
+		 */
+		private int generation;
+
+		private boolean closed;
+
+		/**
+		 * Timestamp of the last message received, used to resume after a
+		 * reconnect
+		 */
+		private volatile long lastTimestamp;
+
+		private int failures;
+
+		private boolean errorReported;
+
+		ApplicationLogStream(String appName) {
+			this.appName = appName;
+		}
+
+		synchronized void connect() {
+			if (closed || cancellation != null) {
+				return;
+			}
+			final int attempt = generation;
+
+			try {
+				DopplerConnection currentConnection = connection;
+				DopplerClient dopplerClient = currentConnection.getDopplerClient();
+				Mono<String> id = appId != null ? Mono.just(appId)
+						: currentConnection.getApplicationId(appName);
+				Flux<LogMessage> logs = id.flatMap(resolvedId -> {
+					setAppId(resolvedId);
+					return getLogs(dopplerClient, resolvedId);
+				});
+				Cancellation subscribed = logs.subscribe(this::onMessage, error -> onError(attempt, error),
+						() -> onComplete(attempt));
+				if (attempt == generation) {
+					cancellation = subscribed;
+				}
+				else {
+					// Failed while subscribing, and a reconnect is already
+					// scheduled
+					subscribed.dispose();
+				}
+			}
+			catch (CoreException e) {
+				onError(attempt, e);
+			}
+		}
+
+		protected Flux<LogMessage> getLogs(DopplerClient dopplerClient, String id) {
+			Flux<LogMessage> stream = asLogMessages(
+					dopplerClient.stream(StreamRequest.builder().applicationId(id).build()));
+			long resumeFrom = lastTimestamp;
+			if (resumeFrom <= 0) {
+				return stream;
+			}
+			// Replay messages emitted while disconnected
+			Flux<LogMessage> missed = asLogMessages(
+					dopplerClient.recentLogs(RecentLogsRequest.builder().applicationId(id).build()))
+							.filter(log -> getTimestamp(log) > resumeFrom).sort(LOG_TIMESTAMP_COMPARATOR);
+			return Flux.concat(missed, stream);
+		}
+
+		protected Flux<LogMessage> asLogMessages(Flux<Envelope> envelopes) {
+			return envelopes.filter(envelope -> EventType.LOG_MESSAGE == envelope.getEventType())
+					.map(Envelope::getLogMessage);
+		}
+
+		synchronized void setAppId(String appId) {
+			this.appId = appId;
+		}
+
+		synchronized String getAppId() {
+			return appId;
+		}
+
+		void resolveAppId() {
+			final int attempt;
+			final String cachedId;
+			synchronized (this) {
+				if (closed || appId == null) {
+					// Resolved on the next connect
+					return;
+				}
+				attempt = generation;
+				cachedId = appId;
+			}
+			Mono<String> id;
+			try {
+				id = connection.getApplicationId(appName);
+			}
+			catch (CoreException e) {
+				forgetAppId(cachedId);
+				return;
+			}
+			id.subscribe(resolvedId -> {
+				if (!resolvedId.equals(cachedId)) {
+					reconnect(attempt);
+				}
+			}, error -> forgetAppId(cachedId));
+		}
+
+		/*
+		 * The application no longer exists, so resolve its ID again when it
+		 * is deployed or the stream reconnects
+		 */
+		synchronized void forgetAppId(String id) {
+			if (id.equals(appId)) {
+				appId = null;
+			}
+		}
+
+		/*
+		 * Reconnects right away to the application that is now deployed
+		 * under the name of the stream
+		 */
+		synchronized void reconnect(int attempt) {
+			if (closed || attempt != generation) {
+				return;
+			}
+			generation++;
+			appId = null;
+			if (cancellation != null) {
+				cancellation.dispose();
+				cancellation = null;
+			}
+			failures = 0;
+			errorReported = false;
+			connectLater(this);
+		}
+
+		void onMessage(LogMessage log) {
+			if (getTimestamp(log) > lastTimestamp) {
+				lastTimestamp = getTimestamp(log);
+			}
+			synchronized (this) {
+				failures = 0;
+				errorReported = false;
+			}
+			for (V2LogListener listener : listeners) {
+				listener.onMessage(log);
+			}
+		}
+
+		void onError(int attempt, Throwable error) {
+			boolean report;
+			synchronized (this) {
+				if (closed || attempt != generation) {
+					return;
+				}
+				// Report once per disconnect, rather than on every failed
+				// reconnect
+				report = !errorReported;
+				errorReported = true;
+			}
+			if (report) {
+				for (V2LogListener listener : listeners) {
+					listener.onError(error);
+				}
+			}
+			scheduleReconnect(attempt);
+		}
+
+		void onComplete(int attempt) {
+			// Doppler closed the stream, for example after an idle timeout
+			scheduleReconnect(attempt);
+		}
+
+		protected synchronized void scheduleReconnect(int attempt) {
+			if (closed || attempt != generation) {
+				return;
+			}
+			generation++;
+			if (cancellation != null) {
+				cancellation.dispose();
+				cancellation = null;
+			}
+			long delay = Math.min(MAX_RECONNECT_DELAY, INITIAL_RECONNECT_DELAY << Math.min(failures, 5));
+			failures++;
+			ClientRequestExecutor.getScheduler().schedule(() -> connectLater(this), delay, TimeUnit.MILLISECONDS);
+		}
+
+		synchronized void close() {
+			closed = true;
+			if (cancellation != null) {
+				cancellation.dispose();
+				cancellation = null;
+			}
+		}
+	}
+}
@@ -20,24 +20,66 @@
  ********************************************************************************/
 package org.eclipse.cft.server.client.v2.internal;
 
+import java.io.File;
 import java.net.URI;
+import java.text.SimpleDateFormat;
 import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Collections;
 import java.util.Date;
+import java.util.HashMap;
 import java.util.List;
+import java.util.Map;
 import java.util.Optional;
+import java.util.UUID;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
 
 import org.cloudfoundry.client.CloudFoundryClient;
 import org.cloudfoundry.client.lib.HttpProxyConfiguration;
+import org.cloudfoundry.client.lib.domain.ApplicationStats;
+import org.cloudfoundry.client.lib.domain.CloudApplication;
+import org.cloudfoundry.client.lib.domain.CloudApplication.AppState;
+import org.cloudfoundry.client.lib.domain.CloudDomain;
+import org.cloudfoundry.client.lib.domain.CloudEntity.Meta;
+import org.cloudfoundry.client.lib.domain.CloudRoute;
+import org.cloudfoundry.client.lib.domain.InstanceStats;
+import org.cloudfoundry.client.lib.domain.InstancesInfo;
+import org.cloudfoundry.client.lib.domain.Staging;
+import org.cloudfoundry.client.v2.applications.ApplicationInstanceInfo;
+import org.cloudfoundry.client.v2.applications.ApplicationInstancesRequest;
+import org.cloudfoundry.client.v2.applications.ApplicationInstancesResponse;
+import org.cloudfoundry.client.v2.applications.ApplicationStatisticsRequest;
+import org.cloudfoundry.client.v2.applications.ApplicationStatisticsResponse;
+import org.cloudfoundry.client.v2.applications.InstanceStatistics;
+import org.cloudfoundry.client.v2.applications.Statistics;
+import org.cloudfoundry.client.v2.applications.UpdateApplicationRequest;
+import org.cloudfoundry.client.v2.applications.Usage;
+import org.cloudfoundry.doppler.DopplerClient;
 import org.cloudfoundry.doppler.LogMessage;
+import org.cloudfoundry.doppler.MessageType;
 import org.cloudfoundry.operations.CloudFoundryOperations;
 import org.cloudfoundry.operations.DefaultCloudFoundryOperations;
+import org.cloudfoundry.operations.applications.ApplicationDetail;
+import org.cloudfoundry.operations.applications.ApplicationSummary;
+import org.cloudfoundry.operations.applications.GetApplicationRequest;
 import org.cloudfoundry.operations.applications.LogsRequest;
+import org.cloudfoundry.operations.applications.PushApplicationRequest;
+import org.cloudfoundry.operations.routes.Level;
+import org.cloudfoundry.operations.routes.ListRoutesRequest;
+import org.cloudfoundry.operations.routes.Route;
+import org.cloudfoundry.operations.services.ServiceInstance;
 import org.cloudfoundry.reactor.DefaultConnectionContext;
 import org.cloudfoundry.reactor.ProxyConfiguration;
 import org.cloudfoundry.reactor.client.ReactorCloudFoundryClient;
 import org.cloudfoundry.reactor.doppler.ReactorDopplerClient;
 import org.cloudfoundry.reactor.tokenprovider.PasswordGrantTokenProvider;
 import org.cloudfoundry.reactor.uaa.ReactorUaaClient;
+import org.cloudfoundry.util.ExceptionUtils;
+import org.eclipse.cft.server.client.v2.internal.DopplerLogMultiplexer.DopplerConnection;
+import org.eclipse.cft.server.core.CFServiceInstance;
 import org.eclipse.cft.server.core.internal.CloudErrorUtil;
 import org.eclipse.cft.server.core.internal.CloudFoundryServer;
 import org.eclipse.cft.server.core.internal.client.CFClient;
@@ -53,15 +95,49 @@ import org.eclipse.core.runtime.CoreException;
 
 import reactor.core.Cancellation;
 import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+import reactor.core.publisher.MonoProcessor;
 
 public class V2Client implements CFClient {
 
 	public static final String HTTP_KEEP_ALIVE_SYSTEM_PROPERTY = "http.keepAlive"; //$NON-NLS-1$
+	private static final Duration RECENT_LOGS_TIMEOUT = Duration.ofSeconds(60);
+	/*
+	 * Error code of stats requests for applications without running instances
+	 */
+	private static final int APP_STOPPED_STATS_ERROR = 200003;
+	/*
+	 * Error code of instances requests for stopped applications
+	 */
+	private static final int APP_STOPPED_INSTANCES_ERROR = 220001;
 	private CFCloudCredentials credentials;
 	private CloudFoundryServer cloudServer;
 	private CloudFoundrySpace space;
 	private CloudFoundryClient v2Client = null;
 	private CloudFoundryOperations v2Operations = null;
+	private DopplerClient dopplerClient = null;
+
+	/*
+	 * Application details being fetched, so that concurrent requests for the
+	 * same application, for example its state and its stats, share a single
+	 * request
+	 */
+	private final Map<String, MonoProcessor<ApplicationDetail>> pendingDetails = new ConcurrentHashMap<>();
+
+	private final DopplerConnection dopplerConnection = new DopplerConnection() {
+
+		@Override
+		public DopplerClient getDopplerClient() throws CoreException {
+			getV2Operations();
+			return dopplerClient;
+		}
+
+		@Override
+		public Mono<String> getApplicationId(String appName) throws CoreException {
+			return getV2Operations().applications().get(GetApplicationRequest.builder().name(appName).build())
+					.map(ApplicationDetail::getId);
+		}
+	};
 
 	public V2Client(CloudFoundryServer cloudServer, CFCloudCredentials credentials, CloudFoundrySpace space) {
 
@@ -77,9 +153,12 @@ public class V2Client implements CFClient {
 
 	@Override
 	public String login() throws CoreException {
-		// clear exist client
+		// clear exist client. Open log streams are not affected, as they are
+		// managed by the log multiplexer of the server
 		this.v2Client = null;
 		this.v2Operations = null;
+		this.dopplerClient = null;
+		this.pendingDetails.clear();
 		getV2Operations();
 		return null;
 	}
@@ -91,13 +170,281 @@ public class V2Client implements CFClient {
 
 	@Override
 	public List<CloudLog> getRecentLogs(String appName) throws CoreException {
-		throw CloudErrorUtil.toCoreException("Get recent logs not supported for v2 client."); //$NON-NLS-1$
+		try {
+			// Doppler does not support fetching logs since a given time, so
+			// the caller filters out logs it already has
+			List<CloudLog> logs = getV2Operations().applications()
+					.logs(LogsRequest.builder().name(appName).recent(true).build()).map(V2Client::asCloudLog)
+					.collectList().block(RECENT_LOGS_TIMEOUT);
+			return logs != null ? logs : new ArrayList<>();
+		}
+		catch (CoreException e) {
+			throw e;
+		}
+		catch (Throwable e) {
+			throw CloudErrorUtil.toCoreException(e);
+		}
+	}
+
+	@Override
+	public Future<List<CloudApplication>> getApplications() throws CoreException {
+		return toFuture(getV2Operations().applications().list().map(V2Client::asCloudApplication).collectList());
+	}
+
+	@Override
+	public Future<CloudApplication> getApplication(String appName) throws CoreException {
+		return toFuture(getApplicationDetail(appName).map(V2Client::asCloudApplication));
+	}
+
+	@Override
+	public Future<ApplicationStats> getApplicationStats(String appName) throws CoreException {
+		// The instance details of the operations API do not have the index of
+		// each instance, so request the statistics, keyed by instance index,
+		// from the client API. The lookup of the application is shared with
+		// concurrent requests for the same application.
+		CloudFoundryClient client = getV2Client();
+		return toFuture(getApplicationDetail(appName).then(detail -> client.applicationsV2()
+				.statistics(ApplicationStatisticsRequest.builder().applicationId(detail.getId()).build())
+				.map(V2Client::asApplicationStats)
+				.otherwise(ExceptionUtils.statusCode(APP_STOPPED_STATS_ERROR),
+						error -> Mono.just(new ApplicationStats(Collections.<InstanceStats> emptyList())))));
+	}
+
+	@Override
+	public Future<InstancesInfo> getInstancesInfo(String appName) throws CoreException {
+		// As with stats, the instances are keyed by index in the client API
+		CloudFoundryClient client = getV2Client();
+		return toFuture(getApplicationDetail(appName).then(detail -> client.applicationsV2()
+				.instances(ApplicationInstancesRequest.builder().applicationId(detail.getId()).build())
+				.map(V2Client::asInstancesInfo)
+				.otherwise(ExceptionUtils.statusCode(APP_STOPPED_INSTANCES_ERROR), error -> Mono.empty())));
+	}
+
+	@Override
+	public Future<List<CFServiceInstance>> getServices() throws CoreException {
+		return toFuture(getV2Operations().services().listInstances().map(V2Client::asServiceInstance).collectList());
+	}
+
+	@Override
+	public Future<List<CloudRoute>> getRoutes(String domainName) throws CoreException {
+		return toFuture(getV2Operations().routes().list(ListRoutesRequest.builder().level(Level.SPACE).build())
+				.filter(route -> domainName == null || domainName.equals(route.getDomain()))
+				.map(V2Client::asCloudRoute).collectList());
+	}
+
+	@Override
+	public Future<Void> uploadApplication(String appName, File archive) throws CoreException {
+		// Push without route or start only creates the application if
+		// needed, and uploads its bits. Existing routes are kept.
+		return toFuture(getV2Operations().applications().push(PushApplicationRequest.builder().name(appName)
+				.application(archive.toPath()).noRoute(true).noStart(true).build()));
+	}
+
+	@Override
+	public Future<Void> restartApplication(String appName) throws CoreException {
+		// The restart of the operations API only completes once the
+		// application is running. Only request the state changes, so that the
+		// start is tracked by polling like the v1 restart.
+		CloudFoundryClient client = getV2Client();
+		return toFuture(getApplicationDetail(appName)
+				.otherwiseIfEmpty(ExceptionUtils.illegalArgument("Application %s does not exist", appName)) //$NON-NLS-1$
+				.then(detail -> client.applicationsV2()
+						.update(UpdateApplicationRequest.builder().applicationId(detail.getId())
+								.state(AppState.STOPPED.name()).build())
+						.then(client.applicationsV2().update(UpdateApplicationRequest.builder()
+								.applicationId(detail.getId()).state(AppState.STARTED.name()).build())))
+				.then());
+	}
+
+	/**
+	 * 
+	 * @param appName
+	 * @return details of the application, or empty if the application does not
+	 * exist. The request is shared with concurrent callers for the same
+	 * application.
+	 * @throws CoreException
+	 */
+	protected Mono<ApplicationDetail> getApplicationDetail(String appName) throws CoreException {
+		MonoProcessor<ApplicationDetail> pending = pendingDetails.get(appName);
+		if (pending != null) {
+			return pending;
+		}
+		MonoProcessor<ApplicationDetail> request = MonoProcessor.create();
+		pending = pendingDetails.putIfAbsent(appName, request);
+		if (pending != null) {
+			return pending;
+		}
+		try {
+			getV2Operations().applications().get(GetApplicationRequest.builder().name(appName).build())
+					.otherwise(V2Client::isApplicationNotFound, error -> Mono.empty())
+					.doAfterTerminate((detail, error) -> pendingDetails.remove(appName, request)).subscribe(request);
+		}
+		catch (CoreException e) {
+			pendingDetails.remove(appName, request);
+			throw e;
+		}
+		return request;
+	}
+
+	private static boolean isApplicationNotFound(Throwable error) {
+		// The operations API reports missing applications as illegal
+		// arguments rather than 404 errors
+		return error instanceof IllegalArgumentException && error.getMessage() != null
+				&& error.getMessage().contains("does not exist"); //$NON-NLS-1$
+	}
+
+	/**
+	 * Completes the returned future with the value of the given request, or
+	 * with null if the request completes without value. Cancelling the future
+	 * cancels the request.
+	 */
+	protected static <T> Future<T> toFuture(Mono<T> mono) {
+		CompletableFuture<T> future = new CompletableFuture<>();
+		Cancellation cancellation = mono.subscribe(future::complete, future::completeExceptionally,
+				() -> future.complete(null));
+		future.whenComplete((value, error) -> {
+			if (future.isCancelled()) {
+				cancellation.dispose();
+			}
+		});
+		return future;
+	}
+
+	protected static CloudApplication asCloudApplication(ApplicationSummary summary) {
+		CloudApplication app = new CloudApplication(asMeta(summary.getId()), summary.getName());
+		app.setState(asAppState(summary.getRequestedState()));
+		app.setInstances(asInt(summary.getInstances()));
+		app.setRunningInstances(asInt(summary.getRunningInstances()));
+		app.setMemory(asInt(summary.getMemoryLimit()));
+		app.setDiskQuota(asInt(summary.getDiskQuota()));
+		app.setUris(summary.getUrls());
+		return app;
+	}
+
+	protected static CloudApplication asCloudApplication(ApplicationDetail detail) {
+		CloudApplication app = new CloudApplication(asMeta(detail.getId()), detail.getName());
+		app.setState(asAppState(detail.getRequestedState()));
+		app.setInstances(asInt(detail.getInstances()));
+		app.setRunningInstances(asInt(detail.getRunningInstances()));
+		app.setMemory(asInt(detail.getMemoryLimit()));
+		app.setDiskQuota(asInt(detail.getDiskQuota()));
+		app.setUris(detail.getUrls());
+		app.setStaging(new Staging(null, detail.getBuildpack(), detail.getStack()));
+		return app;
+	}
+
+	protected static ApplicationStats asApplicationStats(ApplicationStatisticsResponse response) {
+		List<InstanceStats> records = new ArrayList<>();
+		Map<String, InstanceStatistics> instances = response.getInstances();
+		if (instances != null) {
+			for (Map.Entry<String, InstanceStatistics> entry : instances.entrySet()) {
+				InstanceStatistics instance = entry.getValue();
+				Map<String, Object> attributes = new HashMap<>();
+				attributes.put("state", instance.getState()); //$NON-NLS-1$
+				if (instance.getStatistics() != null) {
+					attributes.put("stats", asStats(instance.getStatistics())); //$NON-NLS-1$
+				}
+				// Entries are keyed by the index of the instance
+				records.add(new InstanceStats(entry.getKey(), attributes));
+			}
+		}
+		return new ApplicationStats(records);
+	}
+
+	private static Map<String, Object> asStats(Statistics statistics) {
+		Map<String, Object> usage = new HashMap<>();
+		Usage instanceUsage = statistics.getUsage();
+		String time = instanceUsage != null ? instanceUsage.getTime() : null;
+		if (time == null) {
+			// Same format as the usage time of v1 stats
+			time = new SimpleDateFormat("yyyy-MM-dd HH:mm:ss ZZZZZ").format(new Date()); //$NON-NLS-1$
+		}
+		usage.put("time", time); //$NON-NLS-1$
+		if (instanceUsage != null) {
+			usage.put("cpu", instanceUsage.getCpu()); //$NON-NLS-1$
+			usage.put("mem", instanceUsage.getMemory()); //$NON-NLS-1$
+			usage.put("disk", instanceUsage.getDisk()); //$NON-NLS-1$
+		}
+
+		Map<String, Object> stats = new HashMap<>();
+		stats.put("name", statistics.getName()); //$NON-NLS-1$
+		stats.put("uris", statistics.getUris()); //$NON-NLS-1$
+		stats.put("host", statistics.getHost()); //$NON-NLS-1$
+		stats.put("port", statistics.getPort()); //$NON-NLS-1$
+		stats.put("mem_quota", statistics.getMemoryQuota()); //$NON-NLS-1$
+		stats.put("disk_quota", statistics.getDiskQuota()); //$NON-NLS-1$
+		stats.put("fds_quota", statistics.getFdsQuota()); //$NON-NLS-1$
+		if (statistics.getUptime() != null) {
+			stats.put("uptime", statistics.getUptime().doubleValue()); //$NON-NLS-1$
+		}
+		stats.put("usage", usage); //$NON-NLS-1$
+		return stats;
+	}
+
+	protected static InstancesInfo asInstancesInfo(ApplicationInstancesResponse response) {
+		List<Map<String, Object>> infos = new ArrayList<>();
+		Map<String, ApplicationInstanceInfo> instances = response.getInstances();
+		if (instances != null) {
+			for (Map.Entry<String, ApplicationInstanceInfo> entry : instances.entrySet()) {
+				ApplicationInstanceInfo instance = entry.getValue();
+				Map<String, Object> info = new HashMap<>();
+				info.put("index", Integer.valueOf(entry.getKey())); //$NON-NLS-1$
+				info.put("state", instance.getState()); //$NON-NLS-1$
+				// Start time in seconds, as in v1, which requires a value
+				info.put("since", instance.getSince() != null ? instance.getSince().longValue() : 0L); //$NON-NLS-1$
+				infos.add(info);
+			}
+		}
+		return new InstancesInfo(infos);
+	}
+
+	protected static CFServiceInstance asServiceInstance(ServiceInstance service) {
+		CFServiceInstance instance = new CFServiceInstance(service.getName());
+		instance.setService(service.getService());
+		instance.setPlan(service.getPlan());
+		return instance;
+	}
+
+	protected static CloudRoute asCloudRoute(Route route) {
+		CloudDomain domain = new CloudDomain(Meta.defaultMeta(), route.getDomain(), null);
+		List<String> apps = route.getApplications();
+		return new CloudRoute(asMeta(route.getId()), route.getHost(), domain, apps != null ? apps.size() : 0);
+	}
+
+	private static Meta asMeta(String id) {
+		try {
+			return id != null ? new Meta(UUID.fromString(id), null, null) : Meta.defaultMeta();
+		}
+		catch (IllegalArgumentException e) {
+			return Meta.defaultMeta();
+		}
+	}
+
+	private static AppState asAppState(String requestedState) {
+		if (requestedState != null) {
+			try {
+				return AppState.valueOf(requestedState.toUpperCase());
+			}
+			catch (IllegalArgumentException e) {
+				// Fall through
+			}
+		}
+		return AppState.UPDATING;
+	}
+
+	private static int asInt(Integer value) {
+		return value != null ? value : 0;
 	}
 
 	private CFStreamingLogToken internalStreamLogs(String appName, CFApplicationLogListener listener,
 			boolean recentLogs) throws CoreException {
-		CloudFoundryOperations operations = getV2Operations();
 		V2LogListener v2Listener = asV2LogListener(listener);
+		if (!recentLogs) {
+			// Share streams with other consoles of the same server
+			return DopplerLogMultiplexer.forServer(cloudServer.getServerId()).subscribe(appName, v2Listener,
+					dopplerConnection);
+		}
+		CloudFoundryOperations operations = getV2Operations();
 		Flux<LogMessage> stream = operations.applications()
 				.logs(LogsRequest.builder().name(appName).recent(recentLogs).build());
 		final Cancellation cancellation = stream.subscribe(v2Listener::onMessage, v2Listener::onError);
@@ -135,6 +482,11 @@ public class V2Client implements CFClient {
 		return null;
 	}
 
+	protected CloudFoundryClient getV2Client() throws CoreException {
+		getV2Operations();
+		return this.v2Client;
+	}
+
 	protected CloudFoundryOperations getV2Operations() throws CoreException {
 
 		if (this.v2Operations == null) {
@@ -154,7 +506,7 @@ public class V2Client implements CFClient {
 				ReactorUaaClient uaaClient = ReactorUaaClient.builder().connectionContext(connection)
 						.tokenProvider(tokenProvider).build();
 
-				ReactorDopplerClient dopplerClient = ReactorDopplerClient.builder().connectionContext(connection)
+				this.dopplerClient = ReactorDopplerClient.builder().connectionContext(connection)
 						.tokenProvider(tokenProvider).build();
 
 				this.v2Client = ReactorCloudFoundryClient.builder().connectionContext(connection)
@@ -188,11 +540,7 @@ public class V2Client implements CFClient {
 
 			@Override
 			public void onMessage(LogMessage log) {
-
-				CloudLog cloudLog = new CloudLog(log.getApplicationId(), AppLogUtil.format(log.getMessage()),
-						new Date(log.getTimestamp()), LogContentType.APPLICATION_LOG_STD_OUT, log.getSourceInstance(),
-						log.getSourceType());
-				listener.onMessage(cloudLog);
+				listener.onMessage(asCloudLog(log));
 			}
 
 			@Override
@@ -207,6 +555,16 @@ public class V2Client implements CFClient {
 		};
 	}
 
+	protected static CloudLog asCloudLog(LogMessage log) {
+		// Doppler timestamps are in nanoseconds
+		Date timestamp = log.getTimestamp() != null ? new Date(TimeUnit.NANOSECONDS.toMillis(log.getTimestamp()))
+				: null;
+		return new CloudLog(log.getApplicationId(), AppLogUtil.format(log.getMessage()), timestamp,
+				MessageType.ERR == log.getMessageType() ? LogContentType.APPLICATION_LOG_STS_ERROR
+						: LogContentType.APPLICATION_LOG_STD_OUT,
+				log.getSourceInstance(), log.getSourceType());
+	}
+
 	public interface V2LogListener {
 
 		void onMessage(LogMessage log);
@@ -20,10 +20,7 @@
  ********************************************************************************/
 package org.eclipse.cft.server.core.internal;
 
-import org.cloudfoundry.client.lib.domain.ApplicationStats;
-import org.cloudfoundry.client.lib.domain.CloudApplication;
 import org.eclipse.cft.server.core.internal.client.CloudFoundryApplicationModule;
-import org.eclipse.cft.server.core.internal.client.CloudFoundryServerBehaviour;
 import org.eclipse.core.runtime.CoreException;
 import org.eclipse.core.runtime.IProgressMonitor;
 import org.eclipse.core.runtime.OperationCanceledException;
@@ -40,6 +37,11 @@ import org.eclipse.wst.server.core.IServer;
  * tracker is to resolve up-to-date running state of the application in Cloud
  * Foundry by direct tracking of the application, but not perform any updates on
  * the {@link IServer}
+ * <p/>
+ * The application state is polled by the {@link ApplicationStartPoller} of
+ * the server, which is shared by all applications starting on the server and
+ * polls less often while the application log stream reports the progress of
+ * the start.
  *
  */
 public class ApplicationInstanceRunningTracker {
@@ -53,12 +55,23 @@ public class ApplicationInstanceRunningTracker {
 
 	private final long timeout;
 
+	private IStagingListener stagingListener;
+
 	public ApplicationInstanceRunningTracker(CloudFoundryApplicationModule appModule, CloudFoundryServer cloudServer) {
 		this.cloudServer = cloudServer;
 		this.appModule = appModule;
 		this.timeout = TIMEOUT;
 	}
 
+	/**
+	 * Sets the listener notified, at most once per tracking, when the
+	 * application is staged and its instances start
+	 * @param stagingListener listener, or null
+	 */
+	public void setStagingListener(IStagingListener stagingListener) {
+		this.stagingListener = stagingListener;
+	}
+
 	/**
 	 * 
 	 * @param monitor
@@ -74,51 +87,57 @@ public class ApplicationInstanceRunningTracker {
 
 		long totalTime = currentTime + timeout;
 
-		CloudFoundryServerBehaviour behaviour = cloudServer.getBehaviour();
 		String appName = appModule.getDeployedApplicationName();
 
 		printlnToConsole(NLS.bind(Messages.ApplicationInstanceStartingTracker_STARTING_TRACKING, appName), appModule);
 
 		int state = IServer.STATE_UNKNOWN;
+		boolean staged = false;
+
+		ApplicationStartPoller.Tracking tracking = ApplicationStartPoller.forServer(cloudServer).track(appName);
+		try {
+			while (state != IServer.STATE_STARTED && state != IServer.STATE_STOPPED && currentTime < totalTime) {
+
+				// NOTE: app state is NOT the same as the INSTANCE state.
+				// Instance state indicates if app is actually running or not.
+				// App state indicates the desired state of the app. So an app
+				// in STOPPED state will not have instances running. If
+				// app is STARTED, instances may still not be running if the
+				// app instances are still starting, are flapping, or have
+				// crashed.
+
+				if (monitor != null && monitor.isCanceled()) {
+					String error = NLS.bind(Messages.ApplicationInstanceStartingTracker_APPLICATION_CHECK_CANCELED,
+							appName);
+					printlnToConsole(error, appModule);
+
+					throw new OperationCanceledException(error);
+				}
 
-		while (state != IServer.STATE_STARTED && state != IServer.STATE_STOPPED && currentTime < totalTime) {
-
-			// NOTE: app state is NOT the same as the INSTANCE state. Instance
-			// state indicates if app is actually running or not.
-			// App state indicates the desired state of the app. So an app in
-			// STOPPED state will not have instances running. If
-			// app is STARTED, instances may still not be running if the app
-			// instances are still starting, are flapping, or have crashed.
-
-			if (monitor != null && monitor.isCanceled()) {
-				String error = NLS.bind(Messages.ApplicationInstanceStartingTracker_APPLICATION_CHECK_CANCELED,
-						appName);
-				printlnToConsole(error, appModule);
-
-				throw new OperationCanceledException(error);
-			}
-
-			CloudApplication cloudApp = behaviour.getCloudApplication(appName, monitor);
-			ApplicationStats applicationStats = behaviour.getApplicationStats(appName, monitor);
+				// Wait at most WAIT_TIME at a time, to check for cancellation
+				state = tracking.awaitState(Math.min(WAIT_TIME, totalTime - currentTime));
 
-			if (cloudApp == null) {
-				// app may no longer exist
-				String error = NLS.bind(Messages.ApplicationInstanceStartingTracker_APPLICATION_NOT_EXISTS, appName);
-				printlnToConsole(error, appModule);
-				throw CloudErrorUtil.toCoreException(error);
-			}
-			else {
-				state = CloudFoundryApplicationModule.getCloudState(cloudApp, applicationStats);
-				try {
-					Thread.sleep(WAIT_TIME);
+				if (!staged && (state == IServer.STATE_STARTED || tracking.isStaged())) {
+					staged = true;
+					if (stagingListener != null) {
+						stagingListener.stagingCompleted();
+					}
 				}
-				catch (InterruptedException e) {
 
+				if (tracking.isApplicationMissing()) {
+					// app may no longer exist
+					String error = NLS.bind(Messages.ApplicationInstanceStartingTracker_APPLICATION_NOT_EXISTS,
+							appName);
+					printlnToConsole(error, appModule);
+					throw CloudErrorUtil.toCoreException(error);
 				}
 
 				currentTime = System.currentTimeMillis();
 			}
 		}
+		finally {
+			tracking.stop();
+		}
 
 		String runningStateMessage = state == IServer.STATE_STARTED
 				? NLS.bind(Messages.ApplicationInstanceStartingTracker_APPLICATION_IS_RUNNING, appName)
@@ -133,4 +152,14 @@ public class ApplicationInstanceRunningTracker {
 		CloudFoundryPlugin.getCallback().printToConsole(cloudServer, appModule, message, false, false);
 	}
 
+	/**
+	 * Notified from the tracking thread when the tracked application is
+	 * staged
+	 */
+	public interface IStagingListener {
+
+		public void stagingCompleted();
+
+	}
+
 }
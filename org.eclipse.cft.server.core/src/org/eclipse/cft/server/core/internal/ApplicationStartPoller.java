@@ -0,0 +1,676 @@
+/*******************************************************************************
+ * Copyright (c) 2017 Pivotal Software, Inc. and others
+ *
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * and Apache License v2.0 which accompanies this distribution.
+ *
+ * The Eclipse Public License is available at
+ *
+ * http://www.eclipse.org/legal/epl-v10.html
+ *
+ * and the Apache License v2.0 is available at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * You may elect to redistribute this code under either of these licenses.
+ *
+ *  Contributors:
+ *     Pivotal Software, Inc. - initial API and implementation
+ ********************************************************************************/
+package org.eclipse.cft.server.core.internal;
+
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Future;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+
+import org.cloudfoundry.client.lib.domain.ApplicationStats;
+import org.cloudfoundry.client.lib.domain.CloudApplication;
+import org.eclipse.cft.server.core.internal.client.CFClient;
+import org.eclipse.cft.server.core.internal.client.ClientRequestExecutor;
+import org.eclipse.cft.server.core.internal.client.CloudFoundryApplicationModule;
+import org.eclipse.cft.server.core.internal.client.CloudFoundryServerBehaviour;
+import org.eclipse.cft.server.core.internal.log.CFApplicationLogListener;
+import org.eclipse.cft.server.core.internal.log.CloudLog;
+import org.eclipse.core.runtime.CoreException;
+import org.eclipse.core.runtime.NullProgressMonitor;
+import org.eclipse.osgi.util.NLS;
+import org.eclipse.wst.server.core.IServer;
+
+/**
+ * Tracks the state of the applications that are starting on a Cloud Foundry
+ * server. One poller is shared by all the applications starting on the same
+ * server, so that the number of requests does not grow with the number of
+ * trackers.
+ * <p/>
+ * A short periodic task on the shared scheduler checks which applications are
+ * due for a poll, and polls each of them separately on background threads of
+ * the server, so that a slow application does not delay the polls of other
+ * applications or servers. A poll that takes longer than
+ * {@link #POLL_TIMEOUT} is cancelled and reported as failed.
+ * <p/>
+ * Polling is adaptive. Each application is polled right away, and then less
+ * often as long as its state does not change, up to {@link #MAX_INTERVAL}.
+ * While the log stream of the application reports its progress, polling backs
+ * off further, up to {@link #MAX_INTERVAL_WITH_LOGS}, and log messages that
+ * signal a state change (see {@link ApplicationStartSignal}) trigger a poll
+ * right away instead. A staging failure reported by the logs ends tracking
+ * once a poll confirms it.
+ * <p/>
+ * The poller of a server is disposed when the server is disconnected or
+ * deleted.
+ */
+public class ApplicationStartPoller {
+
+	public static final long MIN_INTERVAL = 1000;
+
+	public static final long MAX_INTERVAL = 5000;
+
+	public static final long MAX_INTERVAL_WITH_LOGS = 10000;
+
+	/**
+	 * How long the log stream of an application is considered to report its
+	 * progress after the last log message was received
+	 */
+	public static final long LOG_ACTIVITY_PERIOD = 30000;
+
+	private static final long POLL_TICK = 200;
+
+	private static final double INTERVAL_MULTIPLIER = 1.5;
+
+	/**
+	 * Maximum time of a poll, after which the poll is cancelled. Also bounds
+	 * how long a poll waits for the responses of non-blocking requests.
+	 */
+	public static final long POLL_TIMEOUT = MAX_INTERVAL_WITH_LOGS;
+
+	/**
+	 * Maximum number of applications of a server polled at the same time
+	 */
+	private static final int MAX_PARALLEL_POLLS = 4;
+
+	private static final Map<String, ApplicationStartPoller> pollers = new ConcurrentHashMap<String, ApplicationStartPoller>();
+
+	private static final CloudServerListener serverListener = new CloudServerListener() {
+		public void serverChanged(CloudServerEvent event) {
+			if ((event.getType() == CloudServerEvent.EVENT_SERVER_DISCONNECTED
+					|| event.getType() == CloudServerEvent.EVENT_SERVER_DELETED) && event.getServer() != null) {
+				dispose(event.getServer().getServerId());
+			}
+		}
+	};
+
+	private final Map<String, TrackedApplication> applications = new ConcurrentHashMap<String, TrackedApplication>();
+
+	private final ExecutorService pollExecutor = ClientRequestExecutor.newBoundedExecutor(MAX_PARALLEL_POLLS);
+
+	private volatile CloudFoundryServer cloudServer;
+
+	private ScheduledFuture<?> pollTask;
+
+	private boolean disposed;
+
+	protected ApplicationStartPoller(CloudFoundryServer cloudServer) {
+		this.cloudServer = cloudServer;
+	}
+
+	/**
+	 * 
+	 * @param cloudServer
+	 * @return poller shared by all applications starting on the given server
+	 */
+	public static ApplicationStartPoller forServer(CloudFoundryServer cloudServer) {
+		String serverId = cloudServer.getServerId();
+		if (serverId == null) {
+			return new ApplicationStartPoller(cloudServer);
+		}
+		ApplicationStartPoller poller = pollers.get(serverId);
+		if (poller == null) {
+			synchronized (pollers) {
+				poller = pollers.get(serverId);
+				if (poller == null) {
+					poller = new ApplicationStartPoller(cloudServer);
+					if (pollers.isEmpty()) {
+						ServerEventHandler.getDefault().addServerListener(serverListener);
+					}
+					pollers.put(serverId, poller);
+				}
+			}
+		}
+		// Poll through the most recent server instance
+		poller.cloudServer = cloudServer;
+		return poller;
+	}
+
+	/**
+	 * Stops the poller of the given server, if any. Trackings of the poller
+	 * no longer receive new states.
+	 * @param serverId
+	 */
+	protected static void dispose(String serverId) {
+		if (serverId == null) {
+			return;
+		}
+		ApplicationStartPoller poller;
+		synchronized (pollers) {
+			poller = pollers.remove(serverId);
+			if (poller != null && pollers.isEmpty()) {
+				ServerEventHandler.getDefault().removeServerListener(serverListener);
+			}
+		}
+		if (poller != null) {
+			poller.dispose();
+		}
+	}
+
+	protected synchronized void dispose() {
+		disposed = true;
+		if (pollTask != null) {
+			pollTask.cancel(false);
+			pollTask = null;
+		}
+		pollExecutor.shutdownNow();
+		for (TrackedApplication application : applications.values()) {
+			application.cancelPoll();
+		}
+	}
+
+	/**
+	 * Starts polling the state of the given application until the returned
+	 * tracking is stopped.
+	 * @param appName
+	 * @return non-null tracking. Must be stopped once no longer needed.
+	 */
+	public Tracking track(String appName) {
+		return register(appName, true);
+	}
+
+	/**
+	 * Watches the log messages of the given application, without polling its
+	 * state, until the returned tracking is stopped.
+	 * @param appName
+	 * @return non-null tracking. Must be stopped once no longer needed.
+	 */
+	public Tracking watch(String appName) {
+		return register(appName, false);
+	}
+
+	/**
+	 * 
+	 * @param appName
+	 * @param listener
+	 * @return listener that notifies this poller of the log messages of the
+	 * given application before passing them to the given listener
+	 */
+	public CFApplicationLogListener getLogListener(final String appName, final CFApplicationLogListener listener) {
+		return new CFApplicationLogListener() {
+
+			public void onMessage(CloudLog log) {
+				logReceived(appName, log);
+				listener.onMessage(log);
+			}
+
+			public void onComplete() {
+				listener.onComplete();
+			}
+
+			public void onError(Throwable exception) {
+				listener.onError(exception);
+			}
+		};
+	}
+
+	public void logReceived(String appName, CloudLog log) {
+		TrackedApplication application = appName != null ? applications.get(appName) : null;
+		if (application != null) {
+			application.logReceived(ApplicationStartSignal.getSignal(log), System.currentTimeMillis());
+		}
+	}
+
+	protected synchronized Tracking register(String appName, boolean polling) {
+		TrackedApplication application = applications.get(appName);
+		if (application == null) {
+			application = new TrackedApplication(appName);
+			applications.put(appName, application);
+		}
+		Tracking tracking = new Tracking(application, polling);
+		if (polling && pollTask == null && !disposed) {
+			pollTask = ClientRequestExecutor.getScheduler().scheduleWithFixedDelay(new Runnable() {
+				public void run() {
+					poll();
+				}
+			}, 0, POLL_TICK, TimeUnit.MILLISECONDS);
+		}
+		return tracking;
+	}
+
+	protected synchronized void unregister(TrackedApplication application, boolean polling) {
+		if (application.removeTracking(polling)) {
+			applications.remove(application.name);
+		}
+		if (pollTask != null) {
+			for (TrackedApplication remaining : applications.values()) {
+				if (remaining.isPolled()) {
+					return;
+				}
+			}
+			pollTask.cancel(false);
+			pollTask = null;
+		}
+	}
+
+	/**
+	 * Starts the polls that are due, and cancels the polls that take too
+	 * long. Does not block.
+	 */
+	protected void poll() {
+		for (final TrackedApplication application : applications.values()) {
+			long now = System.currentTimeMillis();
+			if (application.isPollTimedOut(now)) {
+				application.pollTimedOut(CloudErrorUtil
+						.toCoreException(NLS.bind(Messages.ApplicationStartPoller_POLL_TIMEOUT, application.name)));
+			}
+			else if (application.isPollDue(now)) {
+				final long pollId = application.startPoll(now);
+				try {
+					application.setPollTask(pollId, pollExecutor.submit(new Runnable() {
+						public void run() {
+							poll(application, pollId);
+						}
+					}));
+				}
+				catch (RejectedExecutionException e) {
+					// Poller was disposed
+					application.polled(pollId, IServer.STATE_UNKNOWN, false, CloudErrorUtil.toCoreException(e));
+				}
+			}
+		}
+	}
+
+	protected void poll(TrackedApplication application, long pollId) {
+		CloudFoundryServerBehaviour behaviour = cloudServer.getBehaviour();
+		NullProgressMonitor monitor = new NullProgressMonitor();
+		try {
+			CloudApplication cloudApp;
+			ApplicationStats applicationStats = null;
+			CFClient client = behaviour.getCFClient(monitor);
+			if (client != null) {
+				// Send both requests at once rather than one after the other
+				Future<CloudApplication> appRequest = client.getApplication(application.name);
+				Future<ApplicationStats> statsRequest = client.getApplicationStats(application.name);
+				cloudApp = await(appRequest);
+				applicationStats = await(statsRequest);
+			}
+			else {
+				cloudApp = behaviour.getCloudApplication(application.name, monitor);
+				if (cloudApp != null) {
+					applicationStats = behaviour.getApplicationStats(application.name, monitor);
+				}
+			}
+			if (applicationStats != null && applicationStats.getRecords() != null
+					&& !applicationStats.getRecords().isEmpty()) {
+				// Instances are only reported once the application is staged
+				application.staged();
+			}
+			if (cloudApp == null) {
+				application.polled(pollId, IServer.STATE_UNKNOWN, true, null);
+			}
+			else {
+				application.polled(pollId, CloudFoundryApplicationModule.getCloudState(cloudApp, applicationStats),
+						false, null);
+			}
+		}
+		catch (CoreException e) {
+			application.polled(pollId, IServer.STATE_UNKNOWN, false, e);
+		}
+		catch (RuntimeException e) {
+			// Make sure the trackers of the application do not keep waiting
+			application.polled(pollId, IServer.STATE_UNKNOWN, false, CloudErrorUtil.toCoreException(e));
+		}
+	}
+
+	protected static <T> T await(Future<T> request) throws CoreException {
+		try {
+			return request.get(POLL_TIMEOUT, TimeUnit.MILLISECONDS);
+		}
+		catch (ExecutionException e) {
+			throw CloudErrorUtil.toCoreException(e.getCause());
+		}
+		catch (TimeoutException e) {
+			request.cancel(true);
+			throw CloudErrorUtil.toCoreException(e);
+		}
+		catch (InterruptedException e) {
+			request.cancel(true);
+			Thread.currentThread().interrupt();
+			throw CloudErrorUtil.toCoreException(e);
+		}
+	}
+
+	/**
+	 * State of an application shared by all the trackings of the application
+	 */
+	protected static class TrackedApplication {
+
+		private final String name;
+
+		private int trackings;
+
+		private int pollingTrackings;
+
+		private int state = IServer.STATE_UNKNOWN;
+
+		private boolean missing;
+
+		/**
+		 * Logs reported a staging failure, which the next poll confirms
+		 */
+		private boolean stagingFailureSignalled;
+
+		private boolean stagingFailed;
+
+		/**
+		 * Staging completed, as instances were reported or started
+		 */
+		private boolean staged;
+
+		private CoreException error;
+
+		private long pollId;
+
+		private boolean pollRunning;
+
+		private long pollStart;
+
+		private Future<?> pollTask;
+
+		private long polls;
+
+		private long logs;
+
+		private long lastLog;
+
+		private long interval = MIN_INTERVAL;
+
+		private long nextPoll;
+
+		TrackedApplication(String name) {
+			this.name = name;
+		}
+
+		synchronized void addTracking(boolean polling) {
+			trackings++;
+			if (polling) {
+				pollingTrackings++;
+				// A new start is being tracked, so check the state right
+				// away
+				interval = MIN_INTERVAL;
+				nextPoll = 0;
+				stagingFailureSignalled = false;
+				stagingFailed = false;
+				staged = false;
+				// Results of the previous start must not be reported for
+				// this one, including those of a poll that started before it
+				state = IServer.STATE_UNKNOWN;
+				missing = false;
+				error = null;
+				if (pollRunning) {
+					cancelPoll();
+					pollRunning = false;
+				}
+			}
+		}
+
+		synchronized void staged() {
+			staged = true;
+		}
+
+		/**
+		 * 
+		 * @return true if the application has no trackings left
+		 */
+		synchronized boolean removeTracking(boolean polling) {
+			trackings--;
+			if (polling) {
+				pollingTrackings--;
+			}
+			return trackings <= 0;
+		}
+
+		synchronized boolean isPolled() {
+			return pollingTrackings > 0;
+		}
+
+		synchronized boolean isPollDue(long now) {
+			return pollingTrackings > 0 && !stagingFailed && !pollRunning && now >= nextPoll;
+		}
+
+		synchronized boolean isPollTimedOut(long now) {
+			return pollRunning && now - pollStart > POLL_TIMEOUT;
+		}
+
+		/**
+		 * 
+		 * @param now
+		 * @return identifier of the new poll
+		 */
+		synchronized long startPoll(long now) {
+			pollRunning = true;
+			pollStart = now;
+			return ++pollId;
+		}
+
+		synchronized void setPollTask(long id, Future<?> task) {
+			if (id == pollId && pollRunning) {
+				pollTask = task;
+			}
+		}
+
+		synchronized void cancelPoll() {
+			if (pollTask != null) {
+				pollTask.cancel(true);
+				pollTask = null;
+			}
+		}
+
+		synchronized void pollTimedOut(CoreException timeoutError) {
+			cancelPoll();
+			polled(pollId, IServer.STATE_UNKNOWN, false, timeoutError);
+		}
+
+		/**
+		 * Records the result of a poll. Results of polls that are no longer
+		 * current, for example because they timed out, are ignored.
+		 */
+		synchronized void polled(long id, int newState, boolean newMissing, CoreException newError) {
+			if (id != pollId || !pollRunning) {
+				return;
+			}
+			pollRunning = false;
+			pollTask = null;
+			if (stagingFailureSignalled) {
+				if (newState == IServer.STATE_STOPPED || CloudErrorUtil.isStagingFailedError(newError)) {
+					stagingFailed = true;
+					stagingFailureSignalled = false;
+				}
+				else if (newState == IServer.STATE_STARTED) {
+					// The log message did not end the start
+					stagingFailureSignalled = false;
+				}
+			}
+			long now = System.currentTimeMillis();
+			if (newState == state && newError == null) {
+				long maxInterval = now - lastLog < LOG_ACTIVITY_PERIOD ? MAX_INTERVAL_WITH_LOGS : MAX_INTERVAL;
+				interval = Math.min((long) (interval * INTERVAL_MULTIPLIER), maxInterval);
+			}
+			else {
+				interval = MIN_INTERVAL;
+			}
+			// Signals received during the poll may have asked for an earlier
+			// poll
+			nextPoll = Math.max(nextPoll, now + interval);
+			state = newState;
+			missing = newMissing;
+			error = newError;
+			if (newState == IServer.STATE_STARTED) {
+				staged = true;
+			}
+			polls++;
+			notifyAll();
+		}
+
+		synchronized void logReceived(ApplicationStartSignal signal, long now) {
+			lastLog = now;
+			logs++;
+			if (signal == ApplicationStartSignal.STAGING_FAILED) {
+				// Log messages only match text, so confirm the failure with a
+				// poll before ending the start
+				stagingFailureSignalled = true;
+				interval = MIN_INTERVAL;
+				nextPoll = now;
+			}
+			else if (signal == ApplicationStartSignal.STAGING_COMPLETE
+					|| signal == ApplicationStartSignal.INSTANCE_STARTING) {
+				// Instances are about to start, so check them more often
+				staged = true;
+				interval = MIN_INTERVAL;
+				nextPoll = Math.min(nextPoll, now + MIN_INTERVAL);
+			}
+			else if (signal != null && signal.isStateChange()) {
+				interval = MIN_INTERVAL;
+				nextPoll = now;
+			}
+			notifyAll();
+		}
+
+		/**
+		 * Must be called while holding the lock of this application
+		 * @param deadline
+		 * @return false if the deadline has passed or the waiting thread was
+		 * interrupted
+		 */
+		boolean waitUntil(long deadline) {
+			long wait = deadline - System.currentTimeMillis();
+			if (wait <= 0) {
+				return false;
+			}
+			try {
+				wait(wait);
+				return true;
+			}
+			catch (InterruptedException e) {
+				Thread.currentThread().interrupt();
+				return false;
+			}
+		}
+	}
+
+	/**
+	 * Tracking of one start of an application
+	 */
+	public class Tracking {
+
+		private final TrackedApplication application;
+
+		private final boolean polling;
+
+		private long seenPolls;
+
+		private long seenLogs;
+
+		private boolean stopped;
+
+		Tracking(TrackedApplication application, boolean polling) {
+			this.application = application;
+			this.polling = polling;
+			synchronized (application) {
+				application.addTracking(polling);
+				this.seenPolls = application.polls;
+				this.seenLogs = application.logs;
+			}
+		}
+
+		/**
+		 * Waits until the state of the application is polled again, or a log
+		 * message ends the start, or the given time elapses.
+		 * @param maxWait
+		 * @return the latest known state of the application, which is one of
+		 * {@link IServer#STATE_STARTED}, {@link IServer#STATE_STOPPED} or
+		 * {@link IServer#STATE_UNKNOWN}
+		 * @throws CoreException if the latest poll of the application failed
+		 */
+		public int awaitState(long maxWait) throws CoreException {
+			long deadline = System.currentTimeMillis() + maxWait;
+			synchronized (application) {
+				// Other log messages do not end the wait
+				while (application.polls == seenPolls && !application.stagingFailed) {
+					if (!application.waitUntil(deadline)) {
+						break;
+					}
+				}
+				seenPolls = application.polls;
+				seenLogs = application.logs;
+				if (application.stagingFailed) {
+					return IServer.STATE_STOPPED;
+				}
+				if (application.error != null) {
+					throw application.error;
+				}
+				return application.state;
+			}
+		}
+
+		/**
+		 * Waits until a log message of the application is received, or the
+		 * given time elapses.
+		 * @param maxWait
+		 * @return true if a log message was received since the last wait
+		 */
+		public boolean awaitLog(long maxWait) {
+			synchronized (application) {
+				long deadline = System.currentTimeMillis() + maxWait;
+				while (application.logs == seenLogs) {
+					if (!application.waitUntil(deadline)) {
+						return false;
+					}
+				}
+				seenLogs = application.logs;
+				return true;
+			}
+		}
+
+		/**
+		 * 
+		 * @return true if the application was staged since this start began,
+		 * according to its instances or its log
+		 */
+		public boolean isStaged() {
+			synchronized (application) {
+				return application.staged;
+			}
+		}
+
+		/**
+		 * 
+		 * @return true if the application no longer existed when last polled
+		 */
+		public boolean isApplicationMissing() {
+			synchronized (application) {
+				return application.missing;
+			}
+		}
+
+		public void stop() {
+			if (!stopped) {
+				stopped = true;
+				unregister(application, polling);
+			}
+		}
+	}
+}
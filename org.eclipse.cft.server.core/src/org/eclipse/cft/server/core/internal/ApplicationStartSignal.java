@@ -0,0 +1,110 @@
+/*******************************************************************************
+ * Copyright (c) 2017 Pivotal Software, Inc. and others
+ *
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * and Apache License v2.0 which accompanies this distribution.
+ *
+ * The Eclipse Public License is available at
+ *
+ * http://www.eclipse.org/legal/epl-v10.html
+ *
+ * and the Apache License v2.0 is available at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * You may elect to redistribute this code under either of these licenses.
+ *
+ *  Contributors:
+ *     Pivotal Software, Inc. - initial API and implementation
+ ********************************************************************************/
+package org.eclipse.cft.server.core.internal;
+
+import java.util.Locale;
+
+import org.eclipse.cft.server.core.internal.log.CloudLog;
+
+/**
+ * Changes in the staging or instance state of an application that can be read
+ * from the log messages Cloud Foundry streams for it while it starts. Signals
+ * only prompt a check of the actual state of the application. This includes
+ * {@link #STAGING_FAILED}, which ends the start only once the check confirms
+ * that the application failed to stage.
+ */
+public enum ApplicationStartSignal {
+
+	STAGING_COMPLETE,
+
+	STAGING_FAILED,
+
+	INSTANCE_STARTING,
+
+	INSTANCE_HEALTHY,
+
+	INSTANCE_CRASHED,
+
+	INSTANCE_OUTPUT,
+
+	APPLICATION_STOPPED;
+
+	/**
+	 * 
+	 * @return true if the application state is likely to have changed after
+	 * this signal, and should be checked right away
+	 */
+	public boolean isStateChange() {
+		return this == INSTANCE_HEALTHY || this == INSTANCE_CRASHED || this == APPLICATION_STOPPED;
+	}
+
+	/**
+	 * 
+	 * @param log
+	 * @return signal carried by the given log message, or null if the message
+	 * does not indicate a change in staging or instance state
+	 */
+	public static ApplicationStartSignal getSignal(CloudLog log) {
+		if (log == null || log.getMessage() == null) {
+			return null;
+		}
+		// Depending on the client, the source type (e.g. STG, CELL, API,
+		// APP/PROC/WEB) is either the source name or the source ID
+		String source = (log.getSourceName() + " " + log.getSourceId()).toUpperCase(Locale.ENGLISH); //$NON-NLS-1$
+		String message = log.getMessage().toLowerCase(Locale.ENGLISH);
+
+		if (source.contains("STG")) { //$NON-NLS-1$
+			if (message.contains("staging failed") || message.contains("failed to stage") //$NON-NLS-1$ //$NON-NLS-2$
+					|| message.contains("staging error")) { //$NON-NLS-1$
+				return STAGING_FAILED;
+			}
+			if (message.contains("staging complete")) { //$NON-NLS-1$
+				return STAGING_COMPLETE;
+			}
+		}
+		else if (source.contains("CELL")) { //$NON-NLS-1$
+			if (message.contains("container became healthy")) { //$NON-NLS-1$
+				return INSTANCE_HEALTHY;
+			}
+			if (message.contains("creating container")) { //$NON-NLS-1$
+				return INSTANCE_STARTING;
+			}
+		}
+		else if (source.contains("DEA")) { //$NON-NLS-1$
+			if (message.contains("starting app instance")) { //$NON-NLS-1$
+				return INSTANCE_STARTING;
+			}
+		}
+		else if (source.contains("API")) { //$NON-NLS-1$
+			if (message.contains("\"reason\"=>\"crashed\"") || message.contains("app instance exited") //$NON-NLS-1$ //$NON-NLS-2$
+					|| message.contains("process has crashed")) { //$NON-NLS-1$
+				return INSTANCE_CRASHED;
+			}
+			if (message.contains("\"state\"=>\"stopped\"")) { //$NON-NLS-1$
+				return APPLICATION_STOPPED;
+			}
+		}
+		else if (source.contains("APP")) { //$NON-NLS-1$
+			return INSTANCE_OUTPUT;
+		}
+		return null;
+	}
+}
@@ -184,6 +184,35 @@ public class CloudErrorUtil {
 		return false;
 	}
 
+	/**
+	 * Cloud controller error codes of applications that failed to stage:
+	 * staging error, no app detected, buildpack compile failed, buildpack
+	 * release failed and no buildpacks found.
+	 */
+	private static final int[] STAGING_FAILED_ERROR_CODES = { 170001, 170003, 170004, 170005, 170006 };
+
+	/**
+	 * 
+	 * @param t
+	 * @return true if the error reports that the application failed to stage.
+	 * Recognises errors of both the v1 and the v2 client.
+	 */
+	public static boolean isStagingFailedError(Throwable t) {
+		for (Throwable cause = t; cause != null; cause = cause.getCause() != cause ? cause.getCause() : null) {
+			int code = cause instanceof CloudFoundryException
+					? ((CloudFoundryException) cause).getCloudFoundryErrorCode() : -1;
+			String message = cause.getMessage();
+			for (int failedCode : STAGING_FAILED_ERROR_CODES) {
+				// v2 client errors have the code in their message, e.g.
+				// "CF-StagingError(170001): ..."
+				if (code == failedCode || (message != null && message.contains("(" + failedCode + ")"))) { //$NON-NLS-1$ //$NON-NLS-2$
+					return true;
+				}
+			}
+		}
+		return false;
+	}
+
 	public static boolean is503Error(Throwable t) {
 		HttpServerErrorException httpException = getHttpServerError(t);
 
@@ -25,12 +25,19 @@ import java.io.File;
 import java.util.ArrayList;
 import java.util.List;
 import java.util.StringTokenizer;
+import java.util.zip.Deflater;
 
 import org.eclipse.cft.server.core.AbstractAppStateTracker;
+import org.eclipse.cft.server.core.internal.client.ClientRequestExecutor;
 import org.eclipse.cft.server.core.internal.client.CloudFoundryApplicationModule;
 import org.eclipse.cft.server.core.internal.client.CloudFoundryClientFactory;
 import org.eclipse.cft.server.core.internal.client.DeploymentConfiguration;
+import org.eclipse.cft.server.core.internal.client.HttpConnectionPool;
+import org.eclipse.cft.server.core.internal.client.RestUtils;
 import org.eclipse.cft.server.core.internal.client.diego.DiegoTarget;
+import org.eclipse.cft.server.core.internal.log.HttpTracer;
+import org.eclipse.cft.server.core.internal.log.RecentLogCache;
+import org.eclipse.cft.server.core.internal.ssh.SshSessionPool;
 import org.eclipse.core.net.proxy.IProxyService;
 import org.eclipse.core.resources.ResourcesPlugin;
 import org.eclipse.core.runtime.CoreException;
@@ -278,6 +285,24 @@ public class CloudFoundryPlugin extends Plugin {
 
 	public static final boolean DEFAULT_INCREMENTAL_PUBLISH_PREFERENCE_VAL = true;
 
+	public static final String ARCHIVE_COMPRESSION_LEVEL_PREFERENCE = PLUGIN_ID + ".publish.archive.compression"; //$NON-NLS-1$
+
+	public static final int DEFAULT_ARCHIVE_COMPRESSION_LEVEL_PREFERENCE_VAL = Deflater.DEFAULT_COMPRESSION;
+
+	public static final String PUBLISH_PARALLELISM_PREFERENCE = PLUGIN_ID + ".publish.parallelism"; //$NON-NLS-1$
+
+	/**
+	 * By default, modules are published one at a time
+	 */
+	public static final int DEFAULT_PUBLISH_PARALLELISM_PREFERENCE_VAL = 1;
+
+	public static final String HTTP_MAX_CONNECTIONS_PER_ROUTE_PREFERENCE = PLUGIN_ID
+			+ ".http.maxConnectionsPerRoute"; //$NON-NLS-1$
+
+	private static final String DEPLOYED_RESOURCES_INDEX_FOLDER = "deployedResources"; //$NON-NLS-1$
+
+	private static final String RECENT_LOGS_FOLDER = "recentLogs"; //$NON-NLS-1$
+
 	private static CloudFoundryCallback callback;
 
 	private static CloudFoundryTargetManager targetManager;
@@ -291,7 +316,9 @@ public class CloudFoundryPlugin extends Plugin {
 
 	private static IProxyService proxyService;
 
-	private DeployedResourceCache sha1Cache = new DeployedResourceCache();
+	private DeployedResourceCache sha1Cache;
+
+	private RecentLogCache recentLogCache;
 
 	private InstanceScope INSTANCE_SCOPE = new InstanceScope();
 
@@ -368,14 +395,96 @@ public class CloudFoundryPlugin extends Plugin {
 				DEFAULT_INCREMENTAL_PUBLISH_PREFERENCE_VAL);
 	}
 
+	/**
+	 * 
+	 * @return compression level used when building war files and module jars,
+	 * between {@link Deflater#NO_COMPRESSION} and
+	 * {@link Deflater#BEST_COMPRESSION}, or {@link Deflater#DEFAULT_COMPRESSION}
+	 */
+	public synchronized int getArchiveCompressionLevel() {
+		int level = getPreferences().getInt(ARCHIVE_COMPRESSION_LEVEL_PREFERENCE,
+				DEFAULT_ARCHIVE_COMPRESSION_LEVEL_PREFERENCE_VAL);
+		if (level < Deflater.DEFAULT_COMPRESSION || level > Deflater.BEST_COMPRESSION) {
+			level = DEFAULT_ARCHIVE_COMPRESSION_LEVEL_PREFERENCE_VAL;
+		}
+		return level;
+	}
+
+	public synchronized void setArchiveCompressionLevel(int level) {
+		IEclipsePreferences prefs = getPreferences();
+		prefs.putInt(ARCHIVE_COMPRESSION_LEVEL_PREFERENCE, level);
+		try {
+			prefs.flush();
+		}
+		catch (BackingStoreException e) {
+			logError(e);
+		}
+	}
+
+	/**
+	 * 
+	 * @return maximum number of independent root modules that are published
+	 * to a server at the same time. A value of 1 means modules are published
+	 * one after another.
+	 */
+	public synchronized int getPublishParallelism() {
+		int parallelism = getPreferences().getInt(PUBLISH_PARALLELISM_PREFERENCE,
+				DEFAULT_PUBLISH_PARALLELISM_PREFERENCE_VAL);
+		return parallelism > 0 ? parallelism : DEFAULT_PUBLISH_PARALLELISM_PREFERENCE_VAL;
+	}
+
+	public synchronized void setPublishParallelism(int parallelism) {
+		IEclipsePreferences prefs = getPreferences();
+		prefs.putInt(PUBLISH_PARALLELISM_PREFERENCE, parallelism);
+		try {
+			prefs.flush();
+		}
+		catch (BackingStoreException e) {
+			logError(e);
+		}
+	}
+
+	/**
+	 * 
+	 * @return maximum number of connections kept open to the same host by the
+	 * HTTP connection pool of a server
+	 */
+	public synchronized int getMaxConnectionsPerRoute() {
+		int maxConnections = getPreferences().getInt(HTTP_MAX_CONNECTIONS_PER_ROUTE_PREFERENCE,
+				RestUtils.MAX_CONNECTIONS_PER_ROUTE);
+		return maxConnections > 0 ? maxConnections : RestUtils.MAX_CONNECTIONS_PER_ROUTE;
+	}
+
+	public synchronized void setMaxConnectionsPerRoute(int maxConnections) {
+		IEclipsePreferences prefs = getPreferences();
+		prefs.putInt(HTTP_MAX_CONNECTIONS_PER_ROUTE_PREFERENCE, maxConnections);
+		try {
+			prefs.flush();
+		}
+		catch (BackingStoreException e) {
+			logError(e);
+		}
+		HttpConnectionPool.setMaxConnectionsPerRouteForAll(getMaxConnectionsPerRoute());
+	}
+
 	public IEclipsePreferences getPreferences() {
 		return INSTANCE_SCOPE.getNode(PLUGIN_ID);
 	}
 
 	public synchronized DeployedResourceCache getDeployedResourcesCache() {
+		if (sha1Cache == null) {
+			sha1Cache = new DeployedResourceCache(getStateLocation().append(DEPLOYED_RESOURCES_INDEX_FOLDER).toFile());
+		}
 		return sha1Cache;
 	}
 
+	public synchronized RecentLogCache getRecentLogCache() {
+		if (recentLogCache == null) {
+			recentLogCache = new RecentLogCache(getStateLocation().append(RECENT_LOGS_FOLDER).toFile());
+		}
+		return recentLogCache;
+	}
+
 	public static synchronized void setCallback(CloudFoundryCallback callback) {
 		CloudFoundryPlugin.callback = callback;
 	}
@@ -456,6 +565,22 @@ public class CloudFoundryPlugin extends Plugin {
 			moduleCache = null;
 		}
 
+		synchronized (this) {
+			if (sha1Cache != null) {
+				sha1Cache.dispose();
+				sha1Cache = null;
+			}
+			if (recentLogCache != null) {
+				recentLogCache.dispose();
+				recentLogCache = null;
+			}
+			HttpTracer.disposeCurrent();
+		}
+
+		SshSessionPool.disposeAll();
+		HttpConnectionPool.closeAll();
+		ClientRequestExecutor.shutdown();
+
 		plugin = null;
 		super.stop(context);
 	}
@@ -20,29 +20,21 @@
  ********************************************************************************/
 package org.eclipse.cft.server.core.internal;
 
-import java.io.BufferedOutputStream;
 import java.io.File;
-import java.io.FileInputStream;
-import java.io.FileOutputStream;
 import java.io.IOException;
-import java.io.InputStream;
 import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.List;
 import java.util.Map;
 import java.util.Map.Entry;
 import java.util.Set;
-import java.util.zip.ZipEntry;
-import java.util.zip.ZipOutputStream;
 
 import org.cloudfoundry.client.lib.CloudCredentials;
 import org.cloudfoundry.client.lib.domain.CloudApplication;
 import org.eclipse.cft.server.core.ApplicationDeploymentInfo;
 import org.eclipse.cft.server.core.CFServiceInstance;
 import org.eclipse.cft.server.core.EnvironmentVariable;
-import org.eclipse.core.resources.IContainer;
-import org.eclipse.core.resources.IFile;
-import org.eclipse.core.resources.IResource;
+import org.eclipse.cft.server.core.internal.ZipArchivePackager.ZipTask;
 import org.eclipse.core.runtime.CoreException;
 import org.eclipse.core.runtime.IPath;
 import org.eclipse.core.runtime.IProgressMonitor;
@@ -52,13 +44,9 @@ import org.eclipse.core.runtime.Path;
 import org.eclipse.core.runtime.Status;
 import org.eclipse.jst.server.core.IJ2EEModule;
 import org.eclipse.jst.server.core.IWebModule;
-import org.eclipse.osgi.util.NLS;
 import org.eclipse.wst.server.core.IModule;
 import org.eclipse.wst.server.core.IModuleType;
-import org.eclipse.wst.server.core.internal.ProgressUtil;
 import org.eclipse.wst.server.core.internal.Server;
-import org.eclipse.wst.server.core.internal.ServerPlugin;
-import org.eclipse.wst.server.core.model.IModuleFile;
 import org.eclipse.wst.server.core.model.IModuleFolder;
 import org.eclipse.wst.server.core.model.IModuleResource;
 import org.eclipse.wst.server.core.util.ModuleFile;
@@ -81,8 +69,6 @@ public class CloudUtil {
 
 	public static final int DEFAULT_MEMORY = 512;
 
-	private static final IStatus[] EMPTY_STATUS = new IStatus[0];
-
 	public static IWebModule getWebModule(IModule[] modules) {
 
 		IModuleType moduleType = modules[0].getModuleType();
@@ -154,6 +140,12 @@ public class CloudUtil {
 
 			IWebModule webModule = getWebModule(modules);
 
+			ZipArchivePackager packager = getZipArchivePackager();
+
+			// Child module jars are independent of each other, so build them
+			// in parallel
+			List<ZipTask> childJars = new ArrayList<ZipTask>();
+
 			if (webModule != null) {
 
 				IModule[] children = webModule.getModules();
@@ -194,21 +186,28 @@ public class CloudUtil {
 							jarPath = jarPath.removeLastSegments(1);
 
 							IModuleResource[] mr = server.getResources(new IModule[] { child });
-							IStatus[] status = helper.publishZip(mr, new Path(jarFile.getAbsolutePath()), monitor);
-							merge(result, status);
+							List<IModuleResource> childResources = new ArrayList<IModuleResource>();
+							for (IModuleResource childResource : mr) {
+								childResources.add(processModuleResource(childResource));
+							}
+							childJars.add(new ZipTask(childResources, jarFile, null));
 							resources.add(new ModuleFile(jarFile, jarFile.getName(), jarPath));
 						}
 					}
 				}
 			}
 
+			if (!childJars.isEmpty()) {
+				result.addAll(packager.publishZips(childJars));
+				throwException(result, "Publishing of " + modules[0].getName() + " failed"); //$NON-NLS-1$ //$NON-NLS-2$
+			}
+
 			List<IModuleResource> newResources = new ArrayList<IModuleResource>();
 			for (IModuleResource mr : resources) {
 				newResources.add(processModuleResource(mr));
 			}
 
-			IStatus[] status = helper.publishZip(newResources.toArray(new IModuleResource[0]),
-					new Path(targetFile.getAbsolutePath()), monitor);
+			IStatus[] status = packager.publishZip(newResources, targetFile, null);
 			merge(result, status);
 			throwException(result, "Publishing of " + modules[0].getName() + " failed"); //$NON-NLS-1$ //$NON-NLS-2$
 
@@ -256,34 +255,20 @@ public class CloudUtil {
 
 	public static IStatus[] publishZip(List<IModuleResource> allResources, File tempFile,
 			Set<IModuleResource> filterInFiles, IProgressMonitor monitor) {
-
-		monitor = ProgressUtil.getMonitorFor(monitor);
-
-		try {
-			BufferedOutputStream bout = new BufferedOutputStream(new FileOutputStream(tempFile));
-			ZipOutputStream zout = new ZipOutputStream(bout);
-			addZipEntries(zout, allResources, filterInFiles);
-			zout.close();
-
-		}
-		catch (CoreException e) {
-			return new IStatus[] { e.getStatus() };
-		}
-		catch (Exception e) {
-
-			return new Status[] { new Status(IStatus.ERROR, ServerPlugin.PLUGIN_ID, 0,
-					NLS.bind(Messages.ERROR_CREATE_ZIP, tempFile.getName(), e.getLocalizedMessage()), e) };
-		}
-		finally {
-			if (tempFile != null && tempFile.exists())
-				tempFile.deleteOnExit();
-		}
-		return EMPTY_STATUS;
+		return getZipArchivePackager().publishZip(allResources, tempFile, filterInFiles);
 	}
 
-	private static final int BUFFER = 65536;
-
-	private static byte[] buf = new byte[BUFFER];
+	/**
+	 * 
+	 * @return packager that builds archives using the compression level
+	 * configured in the plugin preferences. Never null.
+	 */
+	public static ZipArchivePackager getZipArchivePackager() {
+		CloudFoundryPlugin plugin = CloudFoundryPlugin.getDefault();
+		int compressionLevel = plugin != null ? plugin.getArchiveCompressionLevel()
+				: CloudFoundryPlugin.DEFAULT_ARCHIVE_COMPRESSION_LEVEL_PREFERENCE_VAL;
+		return new ZipArchivePackager(compressionLevel);
+	}
 
 	public static String getZipRelativeName(IModuleResource resource) {
 		IPath path = resource.getModuleRelativePath().append(resource.getName());
@@ -296,83 +281,6 @@ public class CloudUtil {
 
 	}
 
-	private static void addZipEntries(ZipOutputStream out, List<IModuleResource> allResources,
-			Set<IModuleResource> filterInFiles) throws Exception {
-		if (allResources == null)
-			return;
-
-		for (IModuleResource resource : allResources) {
-			if (resource instanceof IModuleFolder) {
-
-				IModuleResource[] folderResources = ((IModuleFolder) resource).members();
-
-				String entryPath = getZipRelativeName(resource);
-
-				ZipEntry zipEntry = new ZipEntry(entryPath);
-
-				long timeStamp = 0;
-				IContainer folder = (IContainer) resource.getAdapter(IContainer.class);
-				if (folder != null) {
-					timeStamp = folder.getLocalTimeStamp();
-				}
-
-				if (timeStamp != IResource.NULL_STAMP && timeStamp != 0) {
-					zipEntry.setTime(timeStamp);
-				}
-
-				out.putNextEntry(zipEntry);
-				out.closeEntry();
-
-				addZipEntries(out, Arrays.asList(folderResources), filterInFiles);
-				continue;
-			}
-
-			IModuleFile moduleFile = (IModuleFile) resource;
-			// Only add files that are in the filterInList
-			if (!filterInFiles.contains(moduleFile)) {
-				continue;
-			}
-
-			String entryPath = getZipRelativeName(resource);
-
-			ZipEntry zipEntry = new ZipEntry(entryPath);
-
-			InputStream input = null;
-			long timeStamp = 0;
-			IFile iFile = (IFile) moduleFile.getAdapter(IFile.class);
-			if (iFile != null) {
-				timeStamp = iFile.getLocalTimeStamp();
-				input = iFile.getContents();
-			}
-			else {
-				File file = (File) moduleFile.getAdapter(File.class);
-				timeStamp = file.lastModified();
-				input = new FileInputStream(file);
-			}
-
-			if (timeStamp != IResource.NULL_STAMP && timeStamp != 0) {
-				zipEntry.setTime(timeStamp);
-			}
-
-			out.putNextEntry(zipEntry);
-
-			try {
-				int n = 0;
-				while (n > -1) {
-					n = input.read(buf);
-					if (n > 0) {
-						out.write(buf, 0, n);
-					}
-				}
-			}
-			finally {
-				input.close();
-			}
-
-			out.closeEntry();
-		}
-	}
-
 	/**
 	 * Creates a temporary folder and file with the given names. It is the
 	 * responsibility of the caller to properly dispose the folder and file
@@ -1,5 +1,5 @@
 /*******************************************************************************
- * Copyright (c) 2012, 2014 Pivotal Software, Inc. 
+ * Copyright (c) 2012, 2017 Pivotal Software, Inc. 
  * 
  * All rights reserved. This program and the accompanying materials
  * are made available under the terms of the Eclipse Public License v1.0
@@ -20,33 +20,237 @@
  ********************************************************************************/
 package org.eclipse.cft.server.core.internal;
 
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.IOException;
+import java.nio.charset.Charset;
+import java.util.ArrayList;
 import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
 import java.util.Map;
+import java.util.Set;
 
 /**
  * Cache for sha1 hash entries and file sizes for incremental publishing of
  * deployed resources. This avoid recalculating hash entries for resources that
  * have not changed in the server. A server poll may still required to obtain a
  * list of unchanged resources.
- * 
+ * <p/>
+ * If an index location is specified, entries are also persisted per
+ * application in an append-only index file (see {@link RecordFileStore}), so
+ * that the cache survives workbench restarts. Index files are loaded lazily
+ * the first time an application's entries are requested, and rewritten in the
+ * background once they contain too many superseded records. Each entry
+ * records the last modified time of the workspace file it was computed from,
+ * so callers can detect stale entries with
+ * {@link DeployedResourceEntry#isStale(File)}.
+ *
  */
 public class DeployedResourceCache {
+
+	private static final int INDEX_MAGIC = 0xCF5A1DC0;
+
+	private static final int INDEX_VERSION = 1;
+
+	private static final String INDEX_FILE_EXTENSION = ".idx"; //$NON-NLS-1$
+
+	private static final Charset UTF8 = Charset.forName("UTF-8"); //$NON-NLS-1$
+
+	private static final int MAX_NAME_LENGTH = 1 << 20;
+
+	private static final long PERSIST_DELAY = 2000;
+
 	private final Map<CachedDeployedApplication, Map<String, DeployedResourceEntry>> cacheMap = new HashMap<CachedDeployedApplication, Map<String, DeployedResourceEntry>>();
 
+	/**
+	 * Entries added since the application's index file was last written.
+	 */
+	private final Map<CachedDeployedApplication, List<DeployedResourceEntry>> pendingEntries = new HashMap<CachedDeployedApplication, List<DeployedResourceEntry>>();
+
+	/**
+	 * Number of records, including superseded ones, in each loaded index file.
+	 */
+	private final Map<CachedDeployedApplication, Integer> indexRecordCounts = new HashMap<CachedDeployedApplication, Integer>();
+
+	/**
+	 * Applications whose index file must be rewritten entirely
+	 */
+	private final Set<CachedDeployedApplication> rewriteRequired = new HashSet<CachedDeployedApplication>();
+
+	private final RecordFileStore<DeployedResourceEntry> store;
+
+	/**
+	 * Creates an in-memory cache only. Entries are lost when the workbench is
+	 * shut down.
+	 */
+	public DeployedResourceCache() {
+		this(null);
+	}
+
+	/**
+	 *
+	 * @param indexLocation directory where per-application index files are
+	 * persisted. If null, the cache is kept in memory only.
+	 */
+	public DeployedResourceCache(File indexLocation) {
+		this.store = new RecordFileStore<DeployedResourceEntry>(indexLocation, INDEX_FILE_EXTENSION, INDEX_MAGIC,
+				INDEX_VERSION, "deployed resources index") { //$NON-NLS-1$
+
+			@Override
+			protected void persist(boolean flush) {
+				DeployedResourceCache.this.persist();
+			}
+
+			@Override
+			protected void writeRecord(DataOutputStream out, DeployedResourceEntry entry) throws IOException {
+				byte[] name = entry.getZipRelativeFileName().getBytes(UTF8);
+				byte[] sha1 = entry.getSha1() != null ? entry.getSha1() : new byte[0];
+				out.writeInt(name.length);
+				out.write(name);
+				out.writeLong(entry.getLastModified());
+				out.writeLong(entry.getFileSize());
+				out.writeByte(sha1.length);
+				out.write(sha1);
+			}
+
+			@Override
+			protected DeployedResourceEntry readRecord(DataInputStream in) throws IOException {
+				int nameLength = in.readInt();
+				if (nameLength < 0 || nameLength > MAX_NAME_LENGTH) {
+					throw new IOException("Corrupt index"); //$NON-NLS-1$
+				}
+				byte[] name = new byte[nameLength];
+				in.readFully(name);
+				long lastModified = in.readLong();
+				long fileSize = in.readLong();
+				byte[] sha1 = new byte[in.readUnsignedByte()];
+				in.readFully(sha1);
+				return new DeployedResourceEntry(sha1.length > 0 ? sha1 : null, fileSize, new String(name, UTF8),
+						lastModified);
+			}
+		};
+	}
+
 	public synchronized void add(CachedDeployedApplication applicationID, DeployedResourceEntry entry) {
+		Map<String, DeployedResourceEntry> appEntries = getAppEntries(applicationID);
+		appEntries.put(entry.getZipRelativeFileName(), entry);
+
+		if (store.getLocation() != null) {
+			List<DeployedResourceEntry> pending = pendingEntries.get(applicationID);
+			if (pending == null) {
+				pending = new ArrayList<DeployedResourceEntry>();
+				pendingEntries.put(applicationID, pending);
+			}
+			pending.add(entry);
+			store.schedulePersist(PERSIST_DELAY);
+		}
+	}
+
+	public synchronized DeployedResourceEntry getEntry(CachedDeployedApplication applicationID,
+			String zipRelativeFileName) {
+		Map<String, DeployedResourceEntry> appEntries = getAppEntries(applicationID);
+
+		return appEntries.get(zipRelativeFileName);
+	}
+
+	/**
+	 * Writes any pending entries to the index files and waits for background
+	 * persistence to complete. Should be invoked when the plugin is stopped.
+	 */
+	public void dispose() {
+		store.dispose();
+	}
+
+	/**
+	 * Returns the entries for the given application, lazily loading them from
+	 * the application's index file the first time they are requested.
+	 */
+	protected Map<String, DeployedResourceEntry> getAppEntries(CachedDeployedApplication applicationID) {
 		Map<String, DeployedResourceEntry> appEntries = cacheMap.get(applicationID);
 		if (appEntries == null) {
 			appEntries = new HashMap<String, DeployedResourceCache.DeployedResourceEntry>();
+			File indexFile = store.getFile(applicationID.getKey());
+			if (indexFile != null && indexFile.exists()) {
+				List<DeployedResourceEntry> records = new ArrayList<DeployedResourceEntry>();
+				try {
+					if (!store.read(indexFile, records)) {
+						// Keep the complete records, and drop the incomplete
+						// last record the next time the index is written
+						rewriteRequired.add(applicationID);
+						store.schedulePersist(PERSIST_DELAY);
+					}
+					// Later records supersede earlier records for the same
+					// resource
+					for (DeployedResourceEntry entry : records) {
+						appEntries.put(entry.getZipRelativeFileName(), entry);
+					}
+					indexRecordCounts.put(applicationID, records.size());
+				}
+				catch (IOException e) {
+					// Corrupt or unreadable index. Discard it and rehash.
+					CloudFoundryPlugin.logWarning("Unable to read deployed resources index " //$NON-NLS-1$
+							+ indexFile.getAbsolutePath() + " - " + e.getMessage()); //$NON-NLS-1$
+					appEntries.clear();
+					indexFile.delete();
+				}
+			}
 			cacheMap.put(applicationID, appEntries);
 		}
-		appEntries.put(entry.getZipRelativeFileName(), entry);
+		return appEntries;
 	}
 
-	public synchronized DeployedResourceEntry getEntry(CachedDeployedApplication applicationID,
-			String zipRelativeFileName) {
-		Map<String, DeployedResourceEntry> appEntries = cacheMap.get(applicationID);
+	/**
+	 * Appends pending entries to the index files, or rewrites an index file
+	 * entirely if it has accumulated too many superseded records.
+	 */
+	protected void persist() {
+		if (store.getLocation() == null) {
+			return;
+		}
+
+		Map<CachedDeployedApplication, List<DeployedResourceEntry>> toAppend = null;
+		Map<CachedDeployedApplication, List<DeployedResourceEntry>> toCompact = new HashMap<CachedDeployedApplication, List<DeployedResourceEntry>>();
+
+		synchronized (this) {
+			if (pendingEntries.isEmpty() && rewriteRequired.isEmpty()) {
+				return;
+			}
+			toAppend = new HashMap<CachedDeployedApplication, List<DeployedResourceEntry>>(pendingEntries);
+			pendingEntries.clear();
+
+			Set<CachedDeployedApplication> appIDs = new HashSet<CachedDeployedApplication>(toAppend.keySet());
+			appIDs.addAll(rewriteRequired);
+			for (CachedDeployedApplication appID : appIDs) {
+				Integer records = indexRecordCounts.get(appID);
+				List<DeployedResourceEntry> pending = toAppend.get(appID);
+				int total = (records != null ? records : 0) + (pending != null ? pending.size() : 0);
+				Map<String, DeployedResourceEntry> live = cacheMap.get(appID);
+				int liveCount = live != null ? live.size() : 0;
+
+				if (live != null && (rewriteRequired.contains(appID) || store.isCompactionDue(total, liveCount))) {
+					toCompact.put(appID, new ArrayList<DeployedResourceEntry>(live.values()));
+					toAppend.remove(appID);
+					indexRecordCounts.put(appID, liveCount);
+				}
+				else {
+					indexRecordCounts.put(appID, total);
+				}
+			}
+			rewriteRequired.clear();
+		}
 
-		return appEntries != null ? appEntries.get(zipRelativeFileName) : null;
+		if (!store.createLocation()) {
+			return;
+		}
+
+		for (Map.Entry<CachedDeployedApplication, List<DeployedResourceEntry>> entry : toAppend.entrySet()) {
+			store.write(store.getFile(entry.getKey().getKey()), entry.getValue(), true);
+		}
+		for (Map.Entry<CachedDeployedApplication, List<DeployedResourceEntry>> entry : toCompact.entrySet()) {
+			store.rewrite(store.getFile(entry.getKey().getKey()), entry.getValue());
+		}
 	}
 
 	public static class DeployedResourceEntry {
@@ -56,10 +260,17 @@ public class DeployedResourceCache {
 
 		private final String zipRelativeFileName;
 
+		private final long lastModified;
+
 		public DeployedResourceEntry(byte[] sha1, long fileSize, String zipRelativeFileName) {
+			this(sha1, fileSize, zipRelativeFileName, -1);
+		}
+
+		public DeployedResourceEntry(byte[] sha1, long fileSize, String zipRelativeFileName, long lastModified) {
 			this.sha1 = sha1;
 			this.fileSize = fileSize;
 			this.zipRelativeFileName = zipRelativeFileName;
+			this.lastModified = lastModified;
 		}
 
 		public String getZipRelativeFileName() {
@@ -73,28 +284,76 @@ public class DeployedResourceCache {
 		public long getFileSize() {
 			return fileSize;
 		}
+
+		/**
+		 *
+		 * @return last modified time of the file the entry was computed from,
+		 * or -1 if not known
+		 */
+		public long getLastModified() {
+			return lastModified;
+		}
+
+		/**
+		 *
+		 * @param file workspace file that this entry was computed from
+		 * @return true if the file has been modified since this entry was
+		 * computed, or if it cannot be determined. False otherwise.
+		 */
+		public boolean isStale(File file) {
+			return file == null || lastModified < 0 || file.lastModified() != lastModified
+					|| file.length() != fileSize;
+		}
 	}
 
 	/**
 	 * Light-weight representation of an app only for purposes of caching
-	 * deployed resources for that app.
+	 * deployed resources for that app. Apps with the same name on different
+	 * servers are cached separately.
 	 * 
 	 */
 	public static class CachedDeployedApplication {
 
+		private final String serverId;
+
 		private final String appName;
 
 		public CachedDeployedApplication(String appName) {
+			this(null, appName);
+		}
+
+		/**
+		 * 
+		 * @param serverId ID of the server the app is deployed to, or null if
+		 * not known
+		 * @param appName
+		 */
+		public CachedDeployedApplication(String serverId, String appName) {
+			this.serverId = serverId;
 			this.appName = appName;
 		}
 
+		public String getServerId() {
+			return serverId;
+		}
+
 		public String getAppName() {
 			return appName;
 		}
 
+		/**
+		 * 
+		 * @return key of the index file of the app
+		 */
+		protected String getKey() {
+			String name = appName != null ? appName : ""; //$NON-NLS-1$
+			return serverId != null ? serverId + '/' + name : name;
+		}
+
 		public int hashCode() {
 			final int prime = 31;
 			int result = 1;
+			result = prime * result + ((serverId == null) ? 0 : serverId.hashCode());
 			result = prime * result + ((appName == null) ? 0 : appName.hashCode());
 			return result;
 		}
@@ -111,6 +370,14 @@ public class DeployedResourceCache {
 				return false;
 			}
 			CachedDeployedApplication other = (CachedDeployedApplication) obj;
+			if (serverId == null) {
+				if (other.serverId != null) {
+					return false;
+				}
+			}
+			else if (!serverId.equals(other.serverId)) {
+				return false;
+			}
 			if (appName == null) {
 				if (other.appName != null) {
 					return false;
@@ -123,7 +390,7 @@ public class DeployedResourceCache {
 		}
 
 		public String toString() {
-			return appName.toString();
+			return getKey();
 		}
 
 	}
@@ -43,6 +43,8 @@ public class Messages extends NLS {
 	
 	public static String ApplicationInstanceStartingTracker_APPLICATION_NOT_EXISTS;
 
+	public static String ApplicationStartPoller_POLL_TIMEOUT;
+
 	public static String ApplicationLogConsoleManager_NO_RECENT_LOGS;
 
 	public static String ApplicationUrlLookupService_ERROR_GET_CLOUD_URL;
@@ -213,12 +215,30 @@ public class Messages extends NLS {
 
 	public static String CloudFoundryServerBehaviour_FETCHING_FILE;
 
+	public static String CloudFoundryServerBehaviour_DOWNLOADING_FILE;
+
+	public static String FileDownload_PROGRESS;
+
+	public static String FileDownload_PROGRESS_UNKNOWN_SIZE;
+
+	public static String FileDownload_ERROR;
+
+	public static String FileDownload_EXIT_STATUS_UNKNOWN;
+
+	public static String RemoteFileSearch_SEARCHING;
+
+	public static String RemoteFileSearch_SEARCHING_INSTANCE;
+
+	public static String RemoteFileSearch_NOT_SUPPORTED;
+
 	public static String CloudFoundryServerBehaviour_GET_ALL_APPS;
 
 	public static String CloudFoundryServerBehaviour_GET_ALL_SERVICES;
 
 	public static String CloudFoundryServerBehaviour_GET_APPLICATION;
 
+	public static String CloudFoundryServerBehaviour_PUBLISH_MODULE_STATUS;
+
 	public static String CloudFoundryServerBehaviour_RECONNECTING_SERVER;
 
 	public static String CloudFoundryServerBehaviour_UPDATE_APP_MEMORY;
@@ -334,6 +354,8 @@ public class Messages extends NLS {
 	
 	public static String SshDebugLaunchConfigDelegate_PORT_FORWARDING_SUCCESSFUL;
 
+	public static String SshDebugLaunchConfigDelegate_REUSING_TUNNEL;
+
 	public static String DELETING_MODULE;
 
 	public static String VALIDATING_CREDENTIALS;
@@ -20,6 +20,7 @@
  ********************************************************************************/
 package org.eclipse.cft.server.core.internal;
 
+import java.io.File;
 import java.util.ArrayList;
 import java.util.Collection;
 import java.util.HashMap;
@@ -54,6 +55,34 @@ public class ModuleCache {
 
 		private final List<CloudFoundryApplicationModule> cloudModules = new ArrayList<CloudFoundryApplicationModule>();
 
+		/**
+		 * Index of {@link #cloudModules} by local module name. If more than
+		 * one module has the same name, the first one in the list is indexed.
+		 */
+		private final Map<String, CloudFoundryApplicationModule> modulesByLocalName = new HashMap<String, CloudFoundryApplicationModule>();
+
+		/**
+		 * Index of {@link #cloudModules} by deployed application name. If more
+		 * than one module has the same name, the first one in the list is
+		 * indexed.
+		 */
+		private final Map<String, CloudFoundryApplicationModule> modulesByDeployedName = new HashMap<String, CloudFoundryApplicationModule>();
+
+		/**
+		 * Index of {@link #cloudModules} by local module ID. External modules
+		 * are not indexed. If more than one module has the same ID, the first
+		 * one in the list is indexed.
+		 */
+		private final Map<String, CloudFoundryApplicationModule> modulesByModuleId = new HashMap<String, CloudFoundryApplicationModule>();
+
+		/**
+		 * In-memory copy of the persisted local module ID -> deployed
+		 * application name mapping. Loaded on first access.
+		 */
+		private Map<String, String> moduleMapping;
+
+		private final ModuleMappingStore mappingStore;
+
 		/** Cached password in case secure store fails. */
 		private String password;
 
@@ -71,12 +100,16 @@ public class ModuleCache {
 
 		private int[] applicationMemoryChoices;
 
-		ServerData(IServer server) {
+		ServerData(IServer server, ModuleMappingStore mappingStore) {
 			this.server = server;
+			this.mappingStore = mappingStore;
 		}
 
 		public synchronized void clear() {
 			cloudModules.clear();
+			modulesByLocalName.clear();
+			modulesByDeployedName.clear();
+			modulesByModuleId.clear();
 		}
 
 		/**
@@ -103,9 +136,15 @@ public class ModuleCache {
 		public synchronized void updateCloudApplicationModule(CloudFoundryApplicationModule module) {
 			// Update the map of module ID -> Deployed Application name
 			if (module.getLocalModule() != null) {
-				Map<String, String> mapping = getLocalModuleToCloudModuleMapping();
-				mapping.put(module.getLocalModule().getId(), module.getDeployedApplicationName());
-				setLocalModuleToCloudModuleMapping(mapping);
+				String moduleId = module.getLocalModule().getId();
+				getLocalModuleToCloudModuleMapping().put(moduleId, module.getDeployedApplicationName());
+				mappingStore.put(getServerId(), moduleId, module.getDeployedApplicationName());
+			}
+
+			// The deployed name of a module in the cache may have changed, so
+			// it is no longer indexed under its previous name
+			if (isCached(module)) {
+				rebuildIndexes();
 			}
 		}
 
@@ -133,11 +172,11 @@ public class ModuleCache {
 			if (module == null) {
 				return;
 			}
-			cloudModules.remove(module);
+			if (cloudModules.remove(module)) {
+				rebuildIndexes();
+			}
 			if (module.getLocalModule() != null) {
-				Map<String, String> mapping = getLocalModuleToCloudModuleMapping();
-				mapping.remove(module.getLocalModule().getId());
-				setLocalModuleToCloudModuleMapping(mapping);
+				removeMapping(module.getLocalModule().getId());
 			}
 		}
 
@@ -146,16 +185,17 @@ public class ModuleCache {
 					cloudModules);
 			deletedModules.removeAll(allModules);
 			if (deletedModules.size() > 0) {
-				Map<String, String> mapping = getLocalModuleToCloudModuleMapping();
-				boolean mappingModified = false;
 				for (CloudFoundryApplicationModule deletedModule : deletedModules) {
 					if (deletedModule.getLocalModule() != null) {
-						mappingModified |= mapping.remove(deletedModule.getLocalModule().getId()) != null;
+						removeMapping(deletedModule.getLocalModule().getId());
 					}
 				}
-				if (mappingModified) {
-					setLocalModuleToCloudModuleMapping(mapping);
-				}
+			}
+		}
+
+		private void removeMapping(String moduleId) {
+			if (getLocalModuleToCloudModuleMapping().remove(moduleId) != null) {
+				mappingStore.remove(getServerId(), moduleId);
 			}
 		}
 
@@ -201,20 +241,39 @@ public class ModuleCache {
 
 		private void add(CloudFoundryApplicationModule module) {
 			cloudModules.add(module);
+			index(module);
+		}
+
+		private void index(CloudFoundryApplicationModule module) {
+			if (!modulesByLocalName.containsKey(module.getName())) {
+				modulesByLocalName.put(module.getName(), module);
+			}
+			String deployedName = module.getDeployedApplicationName();
+			if (deployedName != null && !modulesByDeployedName.containsKey(deployedName)) {
+				modulesByDeployedName.put(deployedName, module);
+			}
+			String moduleId = module.getLocalModuleId();
+			if (moduleId != null && !modulesByModuleId.containsKey(moduleId)) {
+				modulesByModuleId.put(moduleId, module);
+			}
 		}
 
-		private String convertMapToString(Map<String, String> map) {
-			if (map == null) {
-				return ""; //$NON-NLS-1$
+		private void rebuildIndexes() {
+			modulesByLocalName.clear();
+			modulesByDeployedName.clear();
+			modulesByModuleId.clear();
+			for (CloudFoundryApplicationModule module : cloudModules) {
+				index(module);
 			}
-			StringBuilder result = new StringBuilder();
-			for (Map.Entry<String, String> entry : map.entrySet()) {
-				result.append(entry.getKey());
-				result.append(","); //$NON-NLS-1$
-				result.append(entry.getValue());
-				result.append(","); //$NON-NLS-1$
+		}
+
+		private boolean isCached(CloudFoundryApplicationModule module) {
+			for (CloudFoundryApplicationModule cached : cloudModules) {
+				if (cached == module) {
+					return true;
+				}
 			}
-			return result.toString();
+			return false;
 		}
 
 		private Map<String, String> convertStringToMap(String str) {
@@ -237,18 +296,32 @@ public class ModuleCache {
 		 * application name (value)
 		 */
 		private Map<String, String> getLocalModuleToCloudModuleMapping() {
-			IEclipsePreferences node = new InstanceScope().getNode(CloudFoundryPlugin.PLUGIN_ID);
-			String string = node.get(KEY_MODULE_MAPPING_LIST + ":" + getServerId(), ""); //$NON-NLS-1$ //$NON-NLS-2$
-			return convertStringToMap(string);
+			if (moduleMapping == null) {
+				String serverId = getServerId();
+				moduleMapping = mappingStore.load(serverId);
+				if (moduleMapping == null) {
+					// Mappings used to be stored in the preferences. Import
+					// them, if any.
+					IEclipsePreferences node = new InstanceScope().getNode(CloudFoundryPlugin.PLUGIN_ID);
+					String string = node.get(KEY_MODULE_MAPPING_LIST + ":" + serverId, ""); //$NON-NLS-1$ //$NON-NLS-2$
+					moduleMapping = convertStringToMap(string);
+					if (!moduleMapping.isEmpty() && mappingStore.importMapping(serverId, moduleMapping)) {
+						// Do not import them again over newer mappings
+						node.remove(KEY_MODULE_MAPPING_LIST + ":" + serverId); //$NON-NLS-1$
+						try {
+							node.flush();
+						}
+						catch (BackingStoreException e) {
+							CloudFoundryPlugin.logError(e);
+						}
+					}
+				}
+			}
+			return moduleMapping;
 		}
 
 		private CloudFoundryApplicationModule getCloudModuleByDeployedAppName(String deployedApplicationName) {
-			for (CloudFoundryApplicationModule module : cloudModules) {
-				if (deployedApplicationName.equals(module.getDeployedApplicationName())) {
-					return module;
-				}
-			}
-			return null;
+			return modulesByDeployedName.get(deployedApplicationName);
 		}
 
 		/**
@@ -265,12 +338,7 @@ public class ModuleCache {
 		 * @return
 		 */
 		private CloudFoundryApplicationModule getCloudModuleToLocalModuleName(String localName) {
-			for (CloudFoundryApplicationModule module : cloudModules) {
-				if (localName.equals(module.getName())) {
-					return module;
-				}
-			}
-			return null;
+			return modulesByLocalName.get(localName);
 		}
 
 		private String getServerId() {
@@ -278,23 +346,6 @@ public class ModuleCache {
 			return cfs.getServerId();
 		}
 
-		private void setLocalModuleToCloudModuleMapping(Map<String, String> list) {
-			String string = convertMapToString(list);
-			IEclipsePreferences node = new InstanceScope().getNode(CloudFoundryPlugin.PLUGIN_ID);
-			CloudFoundryPlugin.trace("Updated mapping: " + string); //$NON-NLS-1$
-			node.put(KEY_MODULE_MAPPING_LIST + ":" + getServerId(), string); //$NON-NLS-1$
-			try {
-				node.flush();
-			}
-			catch (BackingStoreException e) {
-				CloudFoundryPlugin
-						.getDefault()
-						.getLog()
-						.log(new Status(IStatus.ERROR, CloudFoundryPlugin.PLUGIN_ID,
-								"Failed to update application mappings", e)); //$NON-NLS-1$
-			}
-		}
-
 		synchronized CloudFoundryApplicationModule getExistingCloudModule(IModule module) {
 			if (module == null) {
 				return null;
@@ -306,6 +357,12 @@ public class ModuleCache {
 				return appModule;
 			}
 
+			// Or created for a module with the same ID
+			appModule = modulesByModuleId.get(module.getId());
+			if (appModule != null) {
+				return appModule;
+			}
+
 			// Otherwise check if there is a mapping between the IModule ID and
 			// the deployed application name, and
 			// search for a cloud module that matches the deployed application
@@ -347,7 +404,11 @@ public class ModuleCache {
 			return appModule;
 		}
 
-		void updateServerId(String oldServerId, String newServerId) {
+		synchronized void updateServerId(String oldServerId, String newServerId) {
+			mappingStore.rename(oldServerId, newServerId);
+
+			// Move mappings that have not yet been imported from the
+			// preferences
 			IEclipsePreferences node = new InstanceScope().getNode(CloudFoundryPlugin.PLUGIN_ID);
 			String string = node.get(KEY_MODULE_MAPPING_LIST + ":" + oldServerId, ""); //$NON-NLS-1$ //$NON-NLS-2$
 			node.remove(KEY_MODULE_MAPPING_LIST + ":" + oldServerId); //$NON-NLS-1$
@@ -368,8 +429,12 @@ public class ModuleCache {
 	 */
 	static final String KEY_MODULE_MAPPING_LIST = "org.eclipse.cft.moduleMapping"; //$NON-NLS-1$
 
+	private static final String MODULE_MAPPING_FOLDER = "moduleMappings"; //$NON-NLS-1$
+
 	private Map<IServer, ServerData> dataByServer;
 
+	private final ModuleMappingStore mappingStore;
+
 	private IServerLifecycleListener listener = new IServerLifecycleListener() {
 
 		public void serverAdded(IServer server) {
@@ -383,22 +448,41 @@ public class ModuleCache {
 
 		public void serverRemoved(IServer server) {
 			remove(server);
+			// Let the per-server state of other components be released too
+			CloudFoundryServer cloudServer = (CloudFoundryServer) server.loadAdapter(CloudFoundryServer.class,
+					null);
+			if (cloudServer != null) {
+				ServerEventHandler.getDefault()
+						.fireServerEvent(new CloudServerEvent(cloudServer, CloudServerEvent.EVENT_SERVER_DELETED));
+			}
 		}
 	};
 
 	public ModuleCache() {
+		this(CloudFoundryPlugin.getDefault() != null
+				? CloudFoundryPlugin.getDefault().getStateLocation().append(MODULE_MAPPING_FOLDER).toFile() : null);
+	}
+
+	/**
+	 * 
+	 * @param mappingLocation directory where module mappings are persisted. If
+	 * null, mappings are kept in memory only.
+	 */
+	public ModuleCache(File mappingLocation) {
 		dataByServer = new HashMap<IServer, ServerData>();
+		mappingStore = new ModuleMappingStore(mappingLocation);
 		ServerCore.addServerLifecycleListener(listener);
 	}
 
 	public void dispose() {
 		ServerCore.removeServerLifecycleListener(listener);
+		mappingStore.dispose();
 	}
 
 	public synchronized ServerData getData(IServer server) {
 		ServerData data = dataByServer.get(server);
 		if (data == null && server != null) {
-			data = new ServerData(server);
+			data = new ServerData(server, mappingStore);
 			dataByServer.put(server, data);
 		}
 		return data;
@@ -412,6 +496,8 @@ public class ModuleCache {
 		String serverId =  cfs.getServerId(); 
 		
 		if (serverId != null) {
+			mappingStore.delete(serverId);
+
 			IEclipsePreferences node = new InstanceScope().getNode(CloudFoundryPlugin.PLUGIN_ID);
 			node.remove(KEY_MODULE_MAPPING_LIST + ":" + serverId); //$NON-NLS-1$
 			try {
@@ -0,0 +1,382 @@
+/*******************************************************************************
+ * Copyright (c) 2017 Pivotal Software, Inc. and others
+ *
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * and Apache License v2.0 which accompanies this distribution.
+ *
+ * The Eclipse Public License is available at
+ *
+ * http://www.eclipse.org/legal/epl-v10.html
+ *
+ * and the Apache License v2.0 is available at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * You may elect to redistribute this code under either of these licenses.
+ *
+ *  Contributors:
+ *     Pivotal Software, Inc. - initial API and implementation
+ ********************************************************************************/
+package org.eclipse.cft.server.core.internal;
+
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * Persists the local module ID -> deployed application name mapping of each
+ * server. Changes are recorded in memory and written in the background, after
+ * a short delay, so that the many changes made while refreshing a server with
+ * a large number of applications are written together.
+ * <p/>
+ * Each server's mapping is stored in its own append-only log file (see
+ * {@link RecordFileStore}), with one record per change. Logs are rewritten
+ * with only the current mapping once they contain too many superseded
+ * records.
+ */
+public class ModuleMappingStore {
+
+	private static final int LOG_MAGIC = 0xCF5A1DC1;
+
+	private static final int LOG_VERSION = 1;
+
+	private static final byte PUT = 1;
+
+	private static final byte REMOVE = 2;
+
+	private static final String LOG_FILE_EXTENSION = ".mappings"; //$NON-NLS-1$
+
+	private static final long PERSIST_DELAY = 1000;
+
+	/**
+	 * Current mapping of each server that has been loaded or changed
+	 */
+	private final Map<String, Map<String, String>> mappings = new HashMap<String, Map<String, String>>();
+
+	/**
+	 * Changes made since the server's log was last written
+	 */
+	private final Map<String, List<MappingRecord>> pendingRecords = new HashMap<String, List<MappingRecord>>();
+
+	/**
+	 * Number of records, including superseded ones, in each server's log
+	 */
+	private final Map<String, Integer> logRecordCounts = new HashMap<String, Integer>();
+
+	/**
+	 * Servers whose log must be rewritten entirely
+	 */
+	private final Set<String> rewriteRequired = new HashSet<String>();
+
+	/**
+	 * Held while writing, deleting or renaming logs, so that the background
+	 * persistence never writes a log that has since been deleted or renamed
+	 */
+	private final Object ioLock = new Object();
+
+	private final RecordFileStore<MappingRecord> store;
+
+	/**
+	 *
+	 * @param location directory where the mapping logs are written. If null,
+	 * mappings are kept in memory only.
+	 */
+	public ModuleMappingStore(File location) {
+		this.store = new RecordFileStore<MappingRecord>(location, LOG_FILE_EXTENSION, LOG_MAGIC, LOG_VERSION,
+				"application module mappings") { //$NON-NLS-1$
+
+			@Override
+			protected void persist(boolean flush) {
+				ModuleMappingStore.this.persist(flush);
+			}
+
+			@Override
+			protected void writeRecord(DataOutputStream out, MappingRecord record) throws IOException {
+				out.writeByte(record.op);
+				out.writeUTF(record.moduleId);
+				if (record.op == PUT) {
+					out.writeUTF(record.deployedAppName);
+				}
+			}
+
+			@Override
+			protected MappingRecord readRecord(DataInputStream in) throws IOException {
+				byte op = in.readByte();
+				String moduleId = in.readUTF();
+				if (op == PUT) {
+					return new MappingRecord(op, moduleId, in.readUTF());
+				}
+				else if (op == REMOVE) {
+					return new MappingRecord(op, moduleId, null);
+				}
+				throw new IOException("Corrupt mapping record"); //$NON-NLS-1$
+			}
+		};
+	}
+
+	/**
+	 *
+	 * @param serverId
+	 * @return a copy of the stored mapping for the given server, or null if no
+	 * mapping has been stored for the server
+	 */
+	public synchronized Map<String, String> load(String serverId) {
+		Map<String, String> mapping = getMapping(serverId);
+		return mapping != null ? new HashMap<String, String>(mapping) : null;
+	}
+
+	public synchronized void put(String serverId, String moduleId, String deployedAppName) {
+		Map<String, String> mapping = getOrCreateMapping(serverId);
+		if (!deployedAppName.equals(mapping.put(moduleId, deployedAppName))) {
+			addRecord(serverId, new MappingRecord(PUT, moduleId, deployedAppName));
+		}
+	}
+
+	public synchronized void remove(String serverId, String moduleId) {
+		Map<String, String> mapping = getOrCreateMapping(serverId);
+		if (mapping.remove(moduleId) != null) {
+			addRecord(serverId, new MappingRecord(REMOVE, moduleId, null));
+		}
+	}
+
+	/**
+	 * Replaces the entire mapping for the given server. Used to import
+	 * mappings stored elsewhere.
+	 */
+	public synchronized void replace(String serverId, Map<String, String> newMapping) {
+		mappings.put(serverId, new HashMap<String, String>(newMapping));
+		pendingRecords.remove(serverId);
+		rewriteRequired.add(serverId);
+		schedulePersist();
+	}
+
+	/**
+	 * Replaces the entire mapping for the given server, and writes it right
+	 * away rather than in the background. Used to import mappings stored
+	 * elsewhere, which may be discarded once the import succeeded.
+	 * @return true if the mapping was written
+	 */
+	public boolean importMapping(String serverId, Map<String, String> newMapping) {
+		synchronized (ioLock) {
+			replace(serverId, newMapping);
+			return persist(false);
+		}
+	}
+
+	/**
+	 * Removes the stored mapping for the given server.
+	 */
+	public void delete(String serverId) {
+		synchronized (ioLock) {
+			synchronized (this) {
+				mappings.remove(serverId);
+				pendingRecords.remove(serverId);
+				logRecordCounts.remove(serverId);
+				rewriteRequired.remove(serverId);
+			}
+			File log = getLogFile(serverId);
+			if (log != null && log.exists() && !log.delete()) {
+				CloudFoundryPlugin.logWarning("Unable to delete application module mappings " //$NON-NLS-1$
+						+ log.getAbsolutePath());
+			}
+		}
+	}
+
+	/**
+	 * Moves the stored mapping of a server whose ID has changed
+	 */
+	public void rename(String oldServerId, String newServerId) {
+		synchronized (ioLock) {
+			Map<String, String> mapping;
+			synchronized (this) {
+				mapping = getMapping(oldServerId);
+			}
+			delete(oldServerId);
+			if (mapping != null) {
+				replace(newServerId, mapping);
+			}
+		}
+	}
+
+	/**
+	 * Writes all pending changes and waits for background persistence to
+	 * complete. Should be invoked when the plugin is stopped.
+	 */
+	public void dispose() {
+		store.dispose();
+	}
+
+	/**
+	 * Appends pending changes to the server logs, or rewrites a log entirely
+	 * if it has accumulated too many superseded records.
+	 * @param compactAll true if all logs with pending changes should be
+	 * rewritten
+	 * @return true if all pending changes were written
+	 */
+	protected boolean persist(boolean compactAll) {
+		if (store.getLocation() == null) {
+			return false;
+		}
+		synchronized (ioLock) {
+			Map<String, List<MappingRecord>> toAppend = new HashMap<String, List<MappingRecord>>();
+			Map<String, Map<String, String>> toRewrite = new HashMap<String, Map<String, String>>();
+
+			synchronized (this) {
+				for (String serverId : rewriteRequired) {
+					Map<String, String> mapping = mappings.get(serverId);
+					if (mapping != null) {
+						toRewrite.put(serverId, new HashMap<String, String>(mapping));
+						logRecordCounts.put(serverId, mapping.size());
+					}
+				}
+				rewriteRequired.clear();
+
+				for (Map.Entry<String, List<MappingRecord>> entry : pendingRecords.entrySet()) {
+					String serverId = entry.getKey();
+					if (toRewrite.containsKey(serverId)) {
+						continue;
+					}
+					Integer records = logRecordCounts.get(serverId);
+					int total = (records != null ? records : 0) + entry.getValue().size();
+					Map<String, String> mapping = mappings.get(serverId);
+					int liveCount = mapping != null ? mapping.size() : 0;
+
+					if (mapping != null && (compactAll || store.isCompactionDue(total, liveCount))) {
+						toRewrite.put(serverId, new HashMap<String, String>(mapping));
+						logRecordCounts.put(serverId, liveCount);
+					}
+					else {
+						toAppend.put(serverId, entry.getValue());
+						logRecordCounts.put(serverId, total);
+					}
+				}
+				pendingRecords.clear();
+			}
+
+			if (toAppend.isEmpty() && toRewrite.isEmpty()) {
+				return true;
+			}
+
+			if (!store.createLocation()) {
+				return false;
+			}
+
+			boolean written = true;
+			for (Map.Entry<String, List<MappingRecord>> entry : toAppend.entrySet()) {
+				written &= store.write(getLogFile(entry.getKey()), entry.getValue(), true);
+			}
+			for (Map.Entry<String, Map<String, String>> entry : toRewrite.entrySet()) {
+				List<MappingRecord> records = new ArrayList<MappingRecord>(entry.getValue().size());
+				for (Map.Entry<String, String> mapping : entry.getValue().entrySet()) {
+					records.add(new MappingRecord(PUT, mapping.getKey(), mapping.getValue()));
+				}
+				written &= store.rewrite(getLogFile(entry.getKey()), records);
+			}
+			return written;
+		}
+	}
+
+	/**
+	 * Replays all complete records in the given log into the given map. A
+	 * trailing, incomplete record is ignored, and dropped the next time the
+	 * log is written.
+	 * @return number of complete records read
+	 * @throws IOException if the log is not valid
+	 */
+	protected int readLog(String serverId, File log, Map<String, String> mapping) throws IOException {
+		List<MappingRecord> records = new ArrayList<MappingRecord>();
+		if (!store.read(log, records)) {
+			rewriteRequired.add(serverId);
+		}
+		for (MappingRecord record : records) {
+			if (record.op == PUT) {
+				mapping.put(record.moduleId, record.deployedAppName);
+			}
+			else {
+				mapping.remove(record.moduleId);
+			}
+		}
+		return records.size();
+	}
+
+	protected File getLogFile(String serverId) {
+		return store.getFile(serverId);
+	}
+
+	/**
+	 * Returns the current mapping for the given server, lazily loading it
+	 * from the server's log the first time it is requested.
+	 * @return mapping, or null if none is stored for the server.
+	 */
+	private Map<String, String> getMapping(String serverId) {
+		Map<String, String> mapping = mappings.get(serverId);
+		if (mapping == null) {
+			File log = getLogFile(serverId);
+			if (log != null && log.exists()) {
+				mapping = new HashMap<String, String>();
+				try {
+					logRecordCounts.put(serverId, readLog(serverId, log, mapping));
+					mappings.put(serverId, mapping);
+					if (rewriteRequired.contains(serverId)) {
+						schedulePersist();
+					}
+				}
+				catch (IOException e) {
+					// Corrupt or unreadable log. Discard it.
+					CloudFoundryPlugin.logWarning("Unable to read application module mappings " //$NON-NLS-1$
+							+ log.getAbsolutePath() + " - " + e.getMessage()); //$NON-NLS-1$
+					rewriteRequired.remove(serverId);
+					mapping = null;
+					log.delete();
+				}
+			}
+		}
+		return mapping;
+	}
+
+	private Map<String, String> getOrCreateMapping(String serverId) {
+		Map<String, String> mapping = getMapping(serverId);
+		if (mapping == null) {
+			mapping = new HashMap<String, String>();
+			mappings.put(serverId, mapping);
+		}
+		return mapping;
+	}
+
+	private void addRecord(String serverId, MappingRecord record) {
+		List<MappingRecord> pending = pendingRecords.get(serverId);
+		if (pending == null) {
+			pending = new ArrayList<MappingRecord>();
+			pendingRecords.put(serverId, pending);
+		}
+		pending.add(record);
+		schedulePersist();
+	}
+
+	private void schedulePersist() {
+		store.schedulePersist(PERSIST_DELAY);
+	}
+
+	protected static class MappingRecord {
+
+		private final byte op;
+
+		private final String moduleId;
+
+		private final String deployedAppName;
+
+		MappingRecord(byte op, String moduleId, String deployedAppName) {
+			this.op = op;
+			this.moduleId = moduleId;
+			this.deployedAppName = deployedAppName;
+		}
+	}
+}
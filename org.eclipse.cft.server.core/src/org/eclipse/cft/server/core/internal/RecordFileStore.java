@@ -0,0 +1,304 @@
+/*******************************************************************************
+ * Copyright (c) 2017 Pivotal Software, Inc. and others
+ *
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * and Apache License v2.0 which accompanies this distribution.
+ *
+ * The Eclipse Public License is available at
+ *
+ * http://www.eclipse.org/legal/epl-v10.html
+ *
+ * and the Apache License v2.0 is available at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * You may elect to redistribute this code under either of these licenses.
+ *
+ *  Contributors:
+ *     Pivotal Software, Inc. - initial API and implementation
+ ********************************************************************************/
+package org.eclipse.cft.server.core.internal;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.EOFException;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.util.List;
+
+import org.eclipse.core.runtime.IProgressMonitor;
+import org.eclipse.core.runtime.IStatus;
+import org.eclipse.core.runtime.Status;
+import org.eclipse.core.runtime.jobs.Job;
+
+/**
+ * Stores records in append-only files, one file per key, in a common
+ * location. Each file starts with a header that identifies the format of its
+ * records, which subclasses define. A file whose last record was only
+ * partially written, for example if the workbench exited while writing it, is
+ * read up to its last complete record.
+ * <p/>
+ * Changes may be written right away, or in the background after a short delay
+ * with {@link #schedulePersist(long)}, so that many changes are written
+ * together. Files are rewritten with only their live records once they
+ * contain too many superseded records.
+ * @param <R> type of the records
+ */
+public abstract class RecordFileStore<R> {
+
+	/**
+	 * Files are compacted once the number of records exceeds this factor times
+	 * the number of live records, or {@link #MIN_COMPACTION_RECORDS},
+	 * whichever is larger.
+	 */
+	private static final int COMPACTION_FACTOR = 2;
+
+	private static final int MIN_COMPACTION_RECORDS = 64;
+
+	private final File location;
+
+	private final String extension;
+
+	private final int magic;
+
+	private final int version;
+
+	private final String description;
+
+	private Job persistJob;
+
+	/**
+	 *
+	 * @param location directory of the files. If null, nothing is stored.
+	 * @param extension extension of the files
+	 * @param magic first value of the header of the files
+	 * @param version version of the format of the records, written in the
+	 * header
+	 * @param description what is stored, for job names and log messages
+	 */
+	protected RecordFileStore(File location, String extension, int magic, int version, String description) {
+		this.location = location;
+		this.extension = extension;
+		this.magic = magic;
+		this.version = version;
+		this.description = description;
+	}
+
+	public File getLocation() {
+		return location;
+	}
+
+	/**
+	 *
+	 * @param key
+	 * @return file of the given key, or null if nothing is stored
+	 */
+	public File getFile(String key) {
+		if (location == null) {
+			return null;
+		}
+		return new File(location, getFileName(key, extension));
+	}
+
+	/**
+	 *
+	 * @param key
+	 * @param extension
+	 * @return name of the file of the given key, which is valid on all
+	 * platforms
+	 */
+	public static String getFileName(String key, String extension) {
+		// Keys may contain characters that are not valid in file names.
+		// Append the hash code to avoid collisions between sanitised keys.
+		return key.replaceAll("[^A-Za-z0-9._-]", "_") + '-' //$NON-NLS-1$ //$NON-NLS-2$
+				+ Integer.toHexString(key.hashCode()) + extension;
+	}
+
+	/**
+	 * Creates the location of the files if it does not exist
+	 * @return true if the location exists
+	 */
+	public boolean createLocation() {
+		if (location == null) {
+			return false;
+		}
+		if (!location.exists() && !location.mkdirs()) {
+			CloudFoundryPlugin.logWarning("Unable to create " + description + " location " //$NON-NLS-1$ //$NON-NLS-2$
+					+ location.getAbsolutePath());
+			return false;
+		}
+		return true;
+	}
+
+	/**
+	 *
+	 * @param records number of records in a file, including superseded ones
+	 * @param liveRecords number of records that are not superseded
+	 * @return true if the file should be rewritten with only its live records
+	 */
+	public boolean isCompactionDue(int records, int liveRecords) {
+		return records > Math.max(MIN_COMPACTION_RECORDS, COMPACTION_FACTOR * liveRecords);
+	}
+
+	/**
+	 * Reads all complete records of the given file. A trailing, incomplete
+	 * record is ignored.
+	 * @param file
+	 * @param records list the records are added to
+	 * @return false if the last record of the file is incomplete. It is
+	 * dropped the next time the file is rewritten.
+	 * @throws IOException if the file is not valid
+	 */
+	public boolean read(File file, List<R> records) throws IOException {
+		BufferedInputStream buffered = new BufferedInputStream(new FileInputStream(file));
+		DataInputStream in = new DataInputStream(buffered);
+		try {
+			if (in.readInt() != magic || in.readInt() != version) {
+				throw new IOException("Unrecognised " + description + " format"); //$NON-NLS-1$ //$NON-NLS-2$
+			}
+			while (true) {
+				buffered.mark(1);
+				if (buffered.read() == -1) {
+					return true;
+				}
+				buffered.reset();
+				try {
+					records.add(readRecord(in));
+				}
+				catch (EOFException e) {
+					return false;
+				}
+			}
+		}
+		finally {
+			in.close();
+		}
+	}
+
+	/**
+	 *
+	 * @param file
+	 * @param records
+	 * @param append true to append the records to the file, if it exists
+	 * @return true if the records were written successfully
+	 */
+	public boolean write(File file, List<R> records, boolean append) {
+		boolean writeHeader = !append || !file.exists() || file.length() == 0;
+		DataOutputStream out = null;
+		try {
+			out = new DataOutputStream(new BufferedOutputStream(new FileOutputStream(file, !writeHeader)));
+			if (writeHeader) {
+				out.writeInt(magic);
+				out.writeInt(version);
+			}
+			for (R record : records) {
+				writeRecord(out, record);
+			}
+			return true;
+		}
+		catch (IOException e) {
+			CloudFoundryPlugin.logError(e);
+			return false;
+		}
+		finally {
+			if (out != null) {
+				try {
+					out.close();
+				}
+				catch (IOException e) {
+					// Ignore
+				}
+			}
+		}
+	}
+
+	/**
+	 * Rewrites a file by writing a new file and replacing the old one, so
+	 * that the existing file remains intact if writing fails.
+	 * @return true if the file was replaced
+	 */
+	public boolean rewrite(File file, List<R> records) {
+		File temp = new File(file.getParentFile(), file.getName() + ".tmp"); //$NON-NLS-1$
+		if (!write(temp, records, false)) {
+			return false;
+		}
+		if (file.exists() && !file.delete() || !temp.renameTo(file)) {
+			CloudFoundryPlugin.logWarning("Unable to replace " + description + ' ' + file.getAbsolutePath()); //$NON-NLS-1$
+			temp.delete();
+			return false;
+		}
+		return true;
+	}
+
+	/**
+	 * Runs {@link #persist(boolean)} in the background after the given
+	 * delay. Does nothing if nothing is stored.
+	 * @param delay in milliseconds
+	 */
+	public synchronized void schedulePersist(long delay) {
+		if (location == null) {
+			return;
+		}
+		if (persistJob == null) {
+			persistJob = new Job("Persisting " + description) { //$NON-NLS-1$
+
+				@Override
+				protected IStatus run(IProgressMonitor monitor) {
+					persist(false);
+					return Status.OK_STATUS;
+				}
+			};
+			persistJob.setSystem(true);
+		}
+		persistJob.schedule(delay);
+	}
+
+	/**
+	 * Waits for background persistence to complete, and writes all pending
+	 * changes. Should be invoked when the plugin is stopped.
+	 */
+	public void dispose() {
+		Job job;
+		synchronized (this) {
+			job = persistJob;
+		}
+		if (job != null) {
+			job.cancel();
+			try {
+				job.join();
+			}
+			catch (InterruptedException e) {
+				Thread.currentThread().interrupt();
+			}
+		}
+		if (location != null) {
+			persist(true);
+		}
+	}
+
+	/**
+	 * Writes pending changes. Does nothing by default, for stores that write
+	 * changes right away.
+	 * @param flush true if the store is disposed, in which case all files
+	 * with pending changes may be rewritten
+	 */
+	protected void persist(boolean flush) {
+		// Nothing pending by default
+	}
+
+	protected abstract void writeRecord(DataOutputStream out, R record) throws IOException;
+
+	/**
+	 *
+	 * @return record read from the given stream
+	 * @throws EOFException if the record is incomplete
+	 * @throws IOException if the record is not valid
+	 */
+	protected abstract R readRecord(DataInputStream in) throws IOException;
+
+}
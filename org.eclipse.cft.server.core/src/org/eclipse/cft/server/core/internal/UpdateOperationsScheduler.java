@@ -20,10 +20,17 @@
  ********************************************************************************/
 package org.eclipse.cft.server.core.internal;
 
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
 import org.eclipse.cft.server.core.internal.client.ModulesOperation;
 import org.eclipse.cft.server.core.internal.client.CFOperation;
 import org.eclipse.cft.server.core.internal.client.CloudBehaviourOperations;
 import org.eclipse.cft.server.core.internal.client.ICloudFoundryOperation;
+import org.eclipse.cft.server.core.internal.client.UpdateModuleOperation;
 import org.eclipse.core.runtime.CoreException;
 import org.eclipse.core.runtime.IProgressMonitor;
 import org.eclipse.core.runtime.IStatus;
@@ -37,7 +44,12 @@ import org.eclipse.wst.server.core.IModule;
  * updating a single modules, or all modules in the associated Cloud server.
  * 
  * <p/>
- * Only ONE refresh job per server instance is run.
+ * Only ONE refresh job per server instance is run. Requests that arrive while
+ * the job is running are not dropped, but queued and coalesced: a pending full
+ * refresh replaces any pending module updates that it already covers, and
+ * repeated requests of the same type for the same module are merged into one.
+ * All pending requests are run as a single batch, and the job keeps draining
+ * the queue until it is empty.
  * 
  * 
  */
@@ -49,6 +61,19 @@ public class UpdateOperationsScheduler implements OperationScheduler {
 
 	private CFOperation opToRun;
 
+	/**
+	 * Pending full refresh, or null if none is pending.
+	 */
+	private CFOperation pendingUpdateAll;
+
+	/**
+	 * Pending module operations, in request order, keyed by module and
+	 * operation type.
+	 */
+	private final Map<String, CFOperation> pendingModuleOps = new LinkedHashMap<String, CFOperation>();
+
+	private boolean jobScheduled;
+
 	/**
 	 * 
 	 * @param cloudServer may be null if not resolved.
@@ -115,13 +140,70 @@ public class UpdateOperationsScheduler implements OperationScheduler {
 		scheduleRefresh(cloudServer.getBehaviour().operations().updateOnPublish(module));
 	}
 
-	private synchronized void scheduleRefresh(CFOperation opToRun) {
-		if (this.opToRun == null) {
-			this.opToRun = opToRun;
+	private synchronized void scheduleRefresh(CFOperation op) {
+		IModule module = op instanceof ModulesOperation ? ((ModulesOperation) op).getFirstModule() : null;
+		if (module == null) {
+			// Full refresh. Pending module updates are redundant, except for
+			// those that fire their own events (e.g. after publish)
+			pendingUpdateAll = op;
+			for (Iterator<CFOperation> it = pendingModuleOps.values().iterator(); it.hasNext();) {
+				if (isCoveredByUpdateAll(it.next())) {
+					it.remove();
+				}
+			}
+		}
+		else if (pendingUpdateAll == null || !isCoveredByUpdateAll(op)) {
+			// Replacing keeps the original request order, but runs the most
+			// recent request
+			pendingModuleOps.put(module.getId() + ':' + op.getClass().getName(), op);
+		}
+
+		if (!jobScheduled) {
+			jobScheduled = true;
 			schedule();
 		}
 	}
 
+	/**
+	 * 
+	 * @param op
+	 * @return true if the given module operation only refreshes the module,
+	 * and therefore is already performed by a full refresh.
+	 */
+	protected boolean isCoveredByUpdateAll(CFOperation op) {
+		return op instanceof UpdateModuleOperation;
+	}
+
+	/**
+	 * Removes all pending operations, in the order they should be run.
+	 * Returns an empty list, and marks the job as no longer scheduled, if
+	 * there are no pending operations.
+	 */
+	private synchronized List<CFOperation> drainPending() {
+		List<CFOperation> batch = new ArrayList<CFOperation>(pendingModuleOps.size() + 1);
+		if (pendingUpdateAll != null) {
+			batch.add(pendingUpdateAll);
+			pendingUpdateAll = null;
+		}
+		batch.addAll(pendingModuleOps.values());
+		pendingModuleOps.clear();
+
+		if (batch.isEmpty()) {
+			jobScheduled = false;
+		}
+		return batch;
+	}
+
+	private synchronized void setCurrentOperation(CFOperation op) {
+		this.opToRun = op;
+	}
+
+	private synchronized void clearPending() {
+		pendingUpdateAll = null;
+		pendingModuleOps.clear();
+		jobScheduled = false;
+	}
+
 	private void schedule() {
 		// Must be visible in progress bar as it can be long running op
 		refreshJob.setSystem(false);
@@ -137,54 +219,79 @@ public class UpdateOperationsScheduler implements OperationScheduler {
 
 		@Override
 		public IStatus run(IProgressMonitor monitor) {
-
-			IModule module = null;
+			IStatus status = Status.OK_STATUS;
 			try {
-				CloudFoundryServer cloudServer = null;
-				module = opToRun instanceof ModulesOperation ? ((ModulesOperation) opToRun).getFirstModule() : null;
+				List<CFOperation> batch = drainPending();
+				while (!batch.isEmpty()) {
+					CloudFoundryServer cloudServer = null;
+					try {
+						cloudServer = getCloudServer(batch.get(0));
+					}
+					catch (CoreException ce) {
+						CloudFoundryPlugin.logError(ce);
+						status = ce.getStatus();
+					}
 
-				try {
-					cloudServer = opToRun.getBehaviour() != null ? opToRun.getBehaviour().getCloudFoundryServer()
-							: null;
-				}
-				catch (CoreException ce) {
-					CloudFoundryPlugin.logError(ce);
-					return ce.getStatus();
-				}
+					// Cloud server must not be null as it's the source of
+					// the event
+					if (cloudServer == null && status.isOK()) {
+						status = CloudFoundryPlugin.getErrorStatus(NLS.bind(
+								Messages.RefreshModulesHandler_EVENT_CLOUD_SERVER_NULL, batch.get(0).getClass()));
+						CloudFoundryPlugin.log(status);
+					}
 
-				// Cloud server must not be null as it's the source of
-				// the event
-				if (cloudServer == null) {
-					IStatus error = CloudFoundryPlugin.getErrorStatus(
-							NLS.bind(Messages.RefreshModulesHandler_EVENT_CLOUD_SERVER_NULL, opToRun.getClass()));
-					CloudFoundryPlugin.log(error);
-					return error;
-				}
+					if (cloudServer != null) {
+						// At this stage, cloud server is NOT null
+						runOperations(batch, cloudServer, monitor);
+					}
+
+					if (monitor.isCanceled()) {
+						clearPending();
+						return Status.CANCEL_STATUS;
+					}
 
-				// At this stage, cloud server is NOT null
-				runOperation(module, cloudServer, monitor);
+					// Run anything that was requested while the batch was
+					// running
+					batch = drainPending();
+				}
+			}
+			catch (RuntimeException e) {
+				clearPending();
+				throw e;
 			}
 			finally {
-				opToRun = null;
+				setCurrentOperation(null);
 			}
 
-			return Status.OK_STATUS;
+			return status;
+		}
+
+		protected CloudFoundryServer getCloudServer(CFOperation op) throws CoreException {
+			return op.getBehaviour() != null ? op.getBehaviour().getCloudFoundryServer() : null;
 		}
 
 		/**
 		 * 
-		 * @param monitor
-		 * @param module optionally null if operation is not being performed on
-		 * a single module
+		 * @param batch operations to run, in order
 		 * @param cloudServer must NOT be null
+		 * @param monitor
 		 */
-		protected void runOperation(IModule module, CloudFoundryServer cloudServer, IProgressMonitor monitor) {
+		protected void runOperations(List<CFOperation> batch, CloudFoundryServer cloudServer,
+				IProgressMonitor monitor) {
 			try {
 				ServerEventHandler.getDefault().fireUpdateStarting(cloudServer);
-				opToRun.run(monitor);
-			}
-			catch (Throwable t) {
-				cloudServer.setAndSaveToken(null);
+				for (CFOperation op : batch) {
+					if (monitor.isCanceled()) {
+						break;
+					}
+					setCurrentOperation(op);
+					try {
+						op.run(monitor);
+					}
+					catch (Throwable t) {
+						cloudServer.setAndSaveToken(null);
+					}
+				}
 			}
 			finally {
 				ServerEventHandler.getDefault().fireUpdateCompleted(cloudServer);
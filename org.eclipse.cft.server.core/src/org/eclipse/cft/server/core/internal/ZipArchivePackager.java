@@ -0,0 +1,357 @@
+/*******************************************************************************
+ * Copyright (c) 2017 Pivotal Software, Inc. and others
+ *
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * and Apache License v2.0 which accompanies this distribution.
+ *
+ * The Eclipse Public License is available at
+ *
+ * http://www.eclipse.org/legal/epl-v10.html
+ *
+ * and the Apache License v2.0 is available at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * You may elect to redistribute this code under either of these licenses.
+ *
+ *  Contributors:
+ *     Pivotal Software, Inc. - initial API and implementation
+ ********************************************************************************/
+package org.eclipse.cft.server.core.internal;
+
+import java.io.BufferedOutputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.InputStream;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.zip.CRC32;
+import java.util.zip.Deflater;
+import java.util.zip.ZipEntry;
+import java.util.zip.ZipOutputStream;
+
+import org.eclipse.cft.server.core.internal.client.ClientRequestExecutor;
+import org.eclipse.core.resources.IContainer;
+import org.eclipse.core.resources.IFile;
+import org.eclipse.core.resources.IResource;
+import org.eclipse.core.runtime.CoreException;
+import org.eclipse.core.runtime.IStatus;
+import org.eclipse.core.runtime.Status;
+import org.eclipse.osgi.util.NLS;
+import org.eclipse.wst.server.core.model.IModuleFile;
+import org.eclipse.wst.server.core.model.IModuleFolder;
+import org.eclipse.wst.server.core.model.IModuleResource;
+
+/**
+ * Builds zip archives, like war files and module jars, from module resources.
+ * Unlike the webtools publish helper, a packager can be used to build several
+ * archives at the same time: copy buffers are taken from a shared pool for the
+ * duration of a single archive, and independent archives can be built in
+ * parallel through {@link #publishZips(List)}.
+ * <p/>
+ * Jars under WEB-INF/lib are already compressed, so they are STORED rather
+ * than compressed a second time. As the size and CRC of a stored entry must be
+ * known before the entry is written, jars are buffered in memory while they
+ * are read, so that each jar is read only once. Jars too large to be buffered
+ * are written without compression instead. All other entries are compressed
+ * with the packager's compression level.
+ */
+public class ZipArchivePackager {
+
+	private static final int BUFFER = 65536;
+
+	private static final int MAX_POOLED_BUFFERS = 8;
+
+	private static final int MAX_PARALLEL_ARCHIVES = 4;
+
+	/**
+	 * Largest jar that is buffered in memory to be STORED
+	 */
+	private static final int MAX_STORED_SIZE = 16 * 1024 * 1024;
+
+	private static final String LIB_FOLDER = "WEB-INF/lib/"; //$NON-NLS-1$
+
+	private static final String JAR_EXTENSION = ".jar"; //$NON-NLS-1$
+
+	private static final IStatus[] EMPTY_STATUS = new IStatus[0];
+
+	private static final ConcurrentLinkedQueue<byte[]> bufferPool = new ConcurrentLinkedQueue<byte[]>();
+
+	private static final AtomicInteger pooledBuffers = new AtomicInteger();
+
+	private final int compressionLevel;
+
+	/**
+	 *
+	 * @param compressionLevel between {@link Deflater#NO_COMPRESSION} and
+	 * {@link Deflater#BEST_COMPRESSION}, or
+	 * {@link Deflater#DEFAULT_COMPRESSION}
+	 */
+	public ZipArchivePackager(int compressionLevel) {
+		this.compressionLevel = compressionLevel;
+	}
+
+	/**
+	 * Writes the given resources to a zip file.
+	 * @param allResources resources to archive. Folders are always added.
+	 * @param zipFile target zip file
+	 * @param filterInFiles if not null, only files in this set are added.
+	 * @return error status if the archive could not be built, or an empty
+	 * array if successful
+	 */
+	public IStatus[] publishZip(List<IModuleResource> allResources, File zipFile, Set<IModuleResource> filterInFiles) {
+		byte[] buf = acquireBuffer();
+		try {
+			ZipOutputStream zout = new ZipOutputStream(new BufferedOutputStream(new FileOutputStream(zipFile)));
+			try {
+				zout.setLevel(compressionLevel);
+				addZipEntries(zout, allResources, filterInFiles, buf);
+			}
+			finally {
+				zout.close();
+			}
+		}
+		catch (CoreException e) {
+			return new IStatus[] { e.getStatus() };
+		}
+		catch (Exception e) {
+			return new IStatus[] { new Status(IStatus.ERROR, CloudFoundryPlugin.PLUGIN_ID, 0,
+					NLS.bind(Messages.ERROR_CREATE_ZIP, zipFile.getName(), e.getLocalizedMessage()), e) };
+		}
+		finally {
+			releaseBuffer(buf);
+			if (zipFile.exists()) {
+				zipFile.deleteOnExit();
+			}
+		}
+		return EMPTY_STATUS;
+	}
+
+	/**
+	 * Builds several independent archives in parallel, and waits for all of
+	 * them to complete.
+	 * @param tasks
+	 * @return statuses of all archives that failed, or empty list if all
+	 * archives were successfully built
+	 */
+	public List<IStatus> publishZips(List<ZipTask> tasks) {
+		List<IStatus> result = new ArrayList<IStatus>();
+		if (tasks.size() == 1) {
+			ZipTask task = tasks.get(0);
+			result.addAll(Arrays.asList(publishZip(task.resources, task.zipFile, task.filterInFiles)));
+			return result;
+		}
+
+		ExecutorService executor = ClientRequestExecutor.newBoundedExecutor(
+				Math.min(Runtime.getRuntime().availableProcessors(), MAX_PARALLEL_ARCHIVES));
+		List<Future<IStatus[]>> futures = new ArrayList<Future<IStatus[]>>();
+		for (final ZipTask task : tasks) {
+			futures.add(executor.submit(new Callable<IStatus[]>() {
+				public IStatus[] call() throws Exception {
+					return publishZip(task.resources, task.zipFile, task.filterInFiles);
+				}
+			}));
+		}
+		executor.shutdown();
+
+		for (int i = 0; i < futures.size(); i++) {
+			try {
+				result.addAll(Arrays.asList(futures.get(i).get()));
+			}
+			catch (InterruptedException e) {
+				Thread.currentThread().interrupt();
+				result.add(CloudFoundryPlugin.getErrorStatus(e));
+			}
+			catch (ExecutionException e) {
+				result.add(new Status(IStatus.ERROR, CloudFoundryPlugin.PLUGIN_ID, 0,
+						NLS.bind(Messages.ERROR_CREATE_ZIP, tasks.get(i).zipFile.getName(),
+								e.getCause().getLocalizedMessage()),
+						e.getCause()));
+			}
+		}
+		return result;
+	}
+
+	protected void addZipEntries(ZipOutputStream out, List<IModuleResource> allResources,
+			Set<IModuleResource> filterInFiles, byte[] buf) throws Exception {
+		if (allResources == null)
+			return;
+
+		for (IModuleResource resource : allResources) {
+			if (resource instanceof IModuleFolder) {
+
+				IModuleResource[] folderResources = ((IModuleFolder) resource).members();
+
+				String entryPath = CloudUtil.getZipRelativeName(resource);
+
+				ZipEntry zipEntry = new ZipEntry(entryPath);
+
+				long timeStamp = 0;
+				IContainer folder = (IContainer) resource.getAdapter(IContainer.class);
+				if (folder != null) {
+					timeStamp = folder.getLocalTimeStamp();
+				}
+
+				if (timeStamp != IResource.NULL_STAMP && timeStamp != 0) {
+					zipEntry.setTime(timeStamp);
+				}
+
+				out.putNextEntry(zipEntry);
+				out.closeEntry();
+
+				addZipEntries(out, Arrays.asList(folderResources), filterInFiles, buf);
+				continue;
+			}
+
+			IModuleFile moduleFile = (IModuleFile) resource;
+			// Only add files that are in the filterInList
+			if (filterInFiles != null && !filterInFiles.contains(moduleFile)) {
+				continue;
+			}
+
+			String entryPath = CloudUtil.getZipRelativeName(resource);
+
+			ZipEntry zipEntry = new ZipEntry(entryPath);
+
+			long timeStamp = 0;
+			IFile iFile = (IFile) moduleFile.getAdapter(IFile.class);
+			File file = null;
+			if (iFile != null) {
+				timeStamp = iFile.getLocalTimeStamp();
+			}
+			else {
+				file = (File) moduleFile.getAdapter(File.class);
+				timeStamp = file.lastModified();
+			}
+
+			if (timeStamp != IResource.NULL_STAMP && timeStamp != 0) {
+				zipEntry.setTime(timeStamp);
+			}
+
+			InputStream input = openInputStream(iFile, file);
+			try {
+				if (isStored(entryPath)) {
+					addStoredEntry(out, zipEntry, input, buf);
+				}
+				else {
+					out.putNextEntry(zipEntry);
+					copy(input, out, buf);
+					out.closeEntry();
+				}
+			}
+			finally {
+				input.close();
+			}
+		}
+	}
+
+	/**
+	 * Adds a STORED entry, reading its content only once. The content is
+	 * buffered while its CRC is computed, as the size and CRC of a stored
+	 * entry must be known before the entry is written. If the content is
+	 * larger than {@link #getMaxStoredSize()}, the entry is written without
+	 * compression instead.
+	 */
+	protected void addStoredEntry(ZipOutputStream out, ZipEntry zipEntry, InputStream input, byte[] buf)
+			throws Exception {
+		CRC32 crc = new CRC32();
+		ByteArrayOutputStream content = new ByteArrayOutputStream(buf.length);
+		int n = 0;
+		while ((n = input.read(buf)) > -1) {
+			crc.update(buf, 0, n);
+			content.write(buf, 0, n);
+			if (content.size() > getMaxStoredSize()) {
+				out.setLevel(Deflater.NO_COMPRESSION);
+				try {
+					out.putNextEntry(zipEntry);
+					content.writeTo(out);
+					copy(input, out, buf);
+					out.closeEntry();
+				}
+				finally {
+					out.setLevel(compressionLevel);
+				}
+				return;
+			}
+		}
+		zipEntry.setMethod(ZipEntry.STORED);
+		zipEntry.setSize(content.size());
+		zipEntry.setCompressedSize(content.size());
+		zipEntry.setCrc(crc.getValue());
+		out.putNextEntry(zipEntry);
+		content.writeTo(out);
+		out.closeEntry();
+	}
+
+	protected int getMaxStoredSize() {
+		return MAX_STORED_SIZE;
+	}
+
+	private static void copy(InputStream input, ZipOutputStream out, byte[] buf) throws Exception {
+		int n = 0;
+		while ((n = input.read(buf)) > -1) {
+			out.write(buf, 0, n);
+		}
+	}
+
+	protected boolean isStored(String entryPath) {
+		return entryPath.startsWith(LIB_FOLDER) && entryPath.endsWith(JAR_EXTENSION);
+	}
+
+	protected InputStream openInputStream(IFile iFile, File file) throws Exception {
+		return iFile != null ? iFile.getContents() : new FileInputStream(file);
+	}
+
+	protected static byte[] acquireBuffer() {
+		byte[] buf = bufferPool.poll();
+		if (buf != null) {
+			pooledBuffers.decrementAndGet();
+			return buf;
+		}
+		return new byte[BUFFER];
+	}
+
+	protected static void releaseBuffer(byte[] buf) {
+		if (pooledBuffers.incrementAndGet() <= MAX_POOLED_BUFFERS) {
+			bufferPool.offer(buf);
+		}
+		else {
+			pooledBuffers.decrementAndGet();
+		}
+	}
+
+	/**
+	 * An archive to be built by {@link ZipArchivePackager#publishZips(List)}
+	 */
+	public static class ZipTask {
+
+		private final List<IModuleResource> resources;
+
+		private final File zipFile;
+
+		private final Set<IModuleResource> filterInFiles;
+
+		/**
+		 *
+		 * @param resources resources to archive
+		 * @param zipFile target zip file
+		 * @param filterInFiles if not null, only files in this set are added
+		 */
+		public ZipTask(List<IModuleResource> resources, File zipFile, Set<IModuleResource> filterInFiles) {
+			this.resources = resources;
+			this.zipFile = zipFile;
+			this.filterInFiles = filterInFiles;
+		}
+	}
+}
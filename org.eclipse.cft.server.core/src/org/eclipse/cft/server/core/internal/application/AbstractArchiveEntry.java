@@ -36,11 +36,11 @@ public abstract class AbstractArchiveEntry implements ArchiveEntry {
 
 	public static final int UNDEFINED_SIZE = -1;
 
-	private static final int BUFFER_SIZE = 4096;
+	protected static final int BUFFER_SIZE = 64 * 1024;
 
-	private long size = UNDEFINED_SIZE;
+	private volatile long size = UNDEFINED_SIZE;
 
-	private byte[] sha1Digest;
+	private volatile byte[] sha1Digest;
 
 	/**
 	 * Sets the size that should be returned. If this method is not called the
@@ -82,39 +82,55 @@ public abstract class AbstractArchiveEntry implements ArchiveEntry {
 		return sha1Digest;
 	}
 
-	private void deduceMissingData() {
+	/**
+	 * Computes the size and, if not already set, the SHA1 digest of this
+	 * entry. This may be invoked ahead of time from a different thread than
+	 * the one that later reads the values.
+	 */
+	protected synchronized void deduceMissingData() {
+		if (this.size != UNDEFINED_SIZE && this.sha1Digest != null) {
+			return;
+		}
 		try {
-			InputStream inputStream = getInputStream();
-			try {
-				try {
-					MessageDigest digest = (this.sha1Digest == null ? MessageDigest.getInstance("SHA") : null); //$NON-NLS-1$
-					byte[] buffer = new byte[BUFFER_SIZE];
-					int byteCount = 0;
-					int bytesRead = -1;
-					while ((bytesRead = inputStream.read(buffer)) != -1) {
-						byteCount += bytesRead;
-						if (digest != null) {
-							digest.update(buffer, 0, bytesRead);
-						}
-					}
-					if (this.size == UNDEFINED_SIZE) {
-						this.size = byteCount;
-					}
-					if (this.sha1Digest == null && digest != null) {
-						this.sha1Digest = digest.digest();
-					}
-				}
-				catch (Exception e) {
-					throw new IllegalStateException(e);
-				}
-
+			MessageDigest digest = (this.sha1Digest == null ? MessageDigest.getInstance("SHA") : null); //$NON-NLS-1$
+			long byteCount = readContent(digest);
+			if (this.size == UNDEFINED_SIZE) {
+				this.size = byteCount;
 			}
-			finally {
-				inputStream.close();
+			if (this.sha1Digest == null && digest != null) {
+				this.sha1Digest = digest.digest();
 			}
 		}
-		catch (IOException e) {
+		catch (Exception e) {
 			throw new IllegalStateException(e);
 		}
 	}
+
+	/**
+	 * Reads the entire content of this entry, updating the given digest, if
+	 * not null, with the bytes read. Subclasses that have direct access to the
+	 * underlying file may override this to read the content more efficiently.
+	 * @param digest to update with the content. May be null if only the size
+	 * is required.
+	 * @return number of bytes read
+	 * @throws IOException if failed to read the content
+	 */
+	protected long readContent(MessageDigest digest) throws IOException {
+		InputStream inputStream = getInputStream();
+		try {
+			byte[] buffer = new byte[BUFFER_SIZE];
+			long byteCount = 0;
+			int bytesRead = -1;
+			while ((bytesRead = inputStream.read(buffer)) != -1) {
+				byteCount += bytesRead;
+				if (digest != null) {
+					digest.update(buffer, 0, bytesRead);
+				}
+			}
+			return byteCount;
+		}
+		finally {
+			inputStream.close();
+		}
+	}
 }
\ No newline at end of file
@@ -24,6 +24,10 @@ import java.io.File;
 import java.io.FileInputStream;
 import java.io.IOException;
 import java.io.InputStream;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.security.MessageDigest;
 import java.util.ArrayList;
 import java.util.List;
 
@@ -63,12 +67,21 @@ import org.eclipse.wst.server.core.model.IModuleResource;
  */
 public abstract class AbstractModuleResourceArchive implements CFApplicationArchive {
 
+	private static final ThreadLocal<ByteBuffer> DIGEST_BUFFER = new ThreadLocal<ByteBuffer>() {
+		@Override
+		protected ByteBuffer initialValue() {
+			return ByteBuffer.allocateDirect(AbstractArchiveEntry.BUFFER_SIZE);
+		}
+	};
+
 	protected List<ArchiveEntry> entries;
 
 	private final IModule module;
 
 	private final List<IModuleResource> resources;
 
+	private ArchiveDigestStatistics digestStatistics;
+
 	protected AbstractModuleResourceArchive(IModule module, List<IModuleResource> resources) {
 		this.module = module;
 		this.resources = resources;
@@ -76,12 +89,30 @@ public abstract class AbstractModuleResourceArchive implements CFApplicationArch
 
 	public Iterable<ArchiveEntry> getEntries() {
 		if (entries == null) {
-			entries = new ArrayList<ArchiveEntry>();
-			collectEntriesPriorToDeployment(entries, resources.toArray(new IModuleResource[0]));
+			long start = System.currentTimeMillis();
+			List<ArchiveEntry> collected = new ArrayList<ArchiveEntry>();
+			collectEntriesPriorToDeployment(collected, resources.toArray(new IModuleResource[0]));
+			long collectTime = System.currentTimeMillis() - start;
+
+			// Compute all sha1 digests in parallel before the client starts
+			// requesting them one entry at a time.
+			digestStatistics = ArchiveDigestPipeline.getDefault().computeDigests(collected);
+			digestStatistics.setCollectTime(collectTime);
+			entries = collected;
 		}
 		return entries;
 	}
 
+	/**
+	 * 
+	 * @return statistics on how long it took to collect the archive's entries
+	 * and compute their sha1 digests, or null if entries have not yet been
+	 * collected
+	 */
+	public ArchiveDigestStatistics getDigestStatistics() {
+		return digestStatistics;
+	}
+
 	protected List<IModuleResource> getModuleResources() {
 		return resources;
 	}
@@ -193,6 +224,40 @@ public abstract class AbstractModuleResourceArchive implements CFApplicationArch
 			return file != null && file.exists();
 		}
 
+		/**
+		 * Reads the file through its channel rather than an input stream,
+		 * into a direct buffer reused by the thread. Files are not memory
+		 * mapped, as mappings keep files locked on Windows until they are
+		 * garbage collected.
+		 */
+		@Override
+		protected long readContent(MessageDigest digest) throws IOException {
+			if (!canComputeResourceEntry()) {
+				return super.readContent(digest);
+			}
+			RandomAccessFile raf = new RandomAccessFile(file, "r"); //$NON-NLS-1$
+			try {
+				FileChannel channel = raf.getChannel();
+				long fileSize = channel.size();
+				if (digest == null) {
+					return fileSize;
+				}
+				ByteBuffer buffer = DIGEST_BUFFER.get();
+				long byteCount = 0;
+				buffer.clear();
+				while (channel.read(buffer) != -1) {
+					buffer.flip();
+					byteCount += buffer.remaining();
+					digest.update(buffer);
+					buffer.clear();
+				}
+				return byteCount;
+			}
+			finally {
+				raf.close();
+			}
+		}
+
 		public InputStream getInputStream() throws IOException {
 
 			if (canComputeResourceEntry()) {
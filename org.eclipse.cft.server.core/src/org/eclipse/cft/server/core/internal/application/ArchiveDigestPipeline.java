@@ -0,0 +1,153 @@
+/*******************************************************************************
+ * Copyright (c) 2017 Pivotal Software, Inc. and others
+ *
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * and Apache License v2.0 which accompanies this distribution.
+ *
+ * The Eclipse Public License is available at
+ *
+ * http://www.eclipse.org/legal/epl-v10.html
+ *
+ * and the Apache License v2.0 is available at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * You may elect to redistribute this code under either of these licenses.
+ *
+ *  Contributors:
+ *     Pivotal Software, Inc. - initial API and implementation
+ ********************************************************************************/
+package org.eclipse.cft.server.core.internal.application;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Future;
+
+import org.eclipse.cft.server.core.ArchiveEntry;
+import org.eclipse.cft.server.core.internal.application.AbstractModuleResourceArchive.ModuleFileEntryAdapter;
+import org.eclipse.cft.server.core.internal.client.ClientRequestExecutor;
+
+/**
+ * Computes sha1 digests and sizes for module file archive entries in parallel,
+ * before the Cloud Foundry client requests them one entry at a time during
+ * resource matching. Digests are computed in batches on the shared background
+ * threads of {@link ClientRequestExecutor}, a bounded number of batches at a
+ * time.
+ * <p/>
+ * Entries that fail to compute their digest are skipped, so that the error is
+ * surfaced again, in the normal way, when the client requests the digest.
+ */
+public class ArchiveDigestPipeline {
+
+	private static final int MAX_PARALLELISM = 8;
+
+	/**
+	 * Number of entries whose digests are computed by a single task
+	 */
+	private static final int BATCH_SIZE = 16;
+
+	private static ArchiveDigestPipeline defaultPipeline;
+
+	private final int parallelism;
+
+	private final ExecutorService executor;
+
+	public ArchiveDigestPipeline(int parallelism) {
+		this.parallelism = Math.max(1, parallelism);
+		this.executor = ClientRequestExecutor.newBoundedExecutor(this.parallelism);
+	}
+
+	public static synchronized ArchiveDigestPipeline getDefault() {
+		if (defaultPipeline == null) {
+			defaultPipeline = new ArchiveDigestPipeline(
+					Math.min(Runtime.getRuntime().availableProcessors(), MAX_PARALLELISM));
+		}
+		return defaultPipeline;
+	}
+
+	/**
+	 * Computes digests for all module file entries in the given list. Other
+	 * types of entries are ignored. Blocks until all digests are computed.
+	 * @param entries
+	 * @return non-null statistics for the computation
+	 */
+	public ArchiveDigestStatistics computeDigests(List<ArchiveEntry> entries) {
+		List<ModuleFileEntryAdapter> files = new ArrayList<ModuleFileEntryAdapter>();
+		for (ArchiveEntry entry : entries) {
+			if (entry instanceof ModuleFileEntryAdapter) {
+				files.add((ModuleFileEntryAdapter) entry);
+			}
+		}
+
+		long start = System.currentTimeMillis();
+		List<Future<Long>> batches = new ArrayList<Future<Long>>();
+		for (int from = 0; from < files.size(); from += BATCH_SIZE) {
+			batches.add(executor.submit(new DigestTask(files, from, Math.min(from + BATCH_SIZE, files.size()))));
+		}
+		long bytes = 0;
+		try {
+			for (Future<Long> batch : batches) {
+				bytes += batch.get();
+			}
+		}
+		catch (InterruptedException e) {
+			// Remaining digests are computed when the client requests them
+			for (Future<Long> batch : batches) {
+				batch.cancel(true);
+			}
+			Thread.currentThread().interrupt();
+		}
+		catch (ExecutionException e) {
+			// Not expected, as errors of each entry are skipped
+		}
+
+		ArchiveDigestStatistics statistics = new ArchiveDigestStatistics(parallelism);
+		statistics.setDigestTime(System.currentTimeMillis() - start);
+		statistics.setFileCount(files.size());
+		statistics.setByteCount(bytes);
+		return statistics;
+	}
+
+	/**
+	 * Computes digests for a range of entries
+	 */
+	private static class DigestTask implements Callable<Long> {
+
+		private final List<ModuleFileEntryAdapter> files;
+
+		private final int from;
+
+		private final int to;
+
+		DigestTask(List<ModuleFileEntryAdapter> files, int from, int to) {
+			this.files = files;
+			this.from = from;
+			this.to = to;
+		}
+
+		public Long call() {
+			long bytes = 0;
+			for (int i = from; i < to && !Thread.currentThread().isInterrupted(); i++) {
+				bytes += computeDigest(files.get(i));
+			}
+			return bytes;
+		}
+
+		protected long computeDigest(ModuleFileEntryAdapter entry) {
+			try {
+				entry.getSha1Digest();
+				long size = entry.getSize();
+				return size > 0 ? size : 0;
+			}
+			catch (RuntimeException e) {
+				// Let the client surface the error when it requests the
+				// digest
+				return 0;
+			}
+		}
+	}
+}
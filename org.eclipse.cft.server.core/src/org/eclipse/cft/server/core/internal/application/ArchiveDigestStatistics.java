@@ -0,0 +1,93 @@
+/*******************************************************************************
+ * Copyright (c) 2017 Pivotal Software, Inc. and others
+ *
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * and Apache License v2.0 which accompanies this distribution.
+ *
+ * The Eclipse Public License is available at
+ *
+ * http://www.eclipse.org/legal/epl-v10.html
+ *
+ * and the Apache License v2.0 is available at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * You may elect to redistribute this code under either of these licenses.
+ *
+ *  Contributors:
+ *     Pivotal Software, Inc. - initial API and implementation
+ ********************************************************************************/
+package org.eclipse.cft.server.core.internal.application;
+
+/**
+ * Timing breakdown for preparing the entries of an application archive prior
+ * to publishing: collecting the entries from the module resources, and
+ * computing their sha1 digests.
+ */
+public class ArchiveDigestStatistics {
+
+	private final int parallelism;
+
+	private long collectTime;
+
+	private long digestTime;
+
+	private int fileCount;
+
+	private long byteCount;
+
+	public ArchiveDigestStatistics(int parallelism) {
+		this.parallelism = parallelism;
+	}
+
+	public int getParallelism() {
+		return parallelism;
+	}
+
+	/**
+	 *
+	 * @return time in milliseconds to collect the archive entries
+	 */
+	public long getCollectTime() {
+		return collectTime;
+	}
+
+	public void setCollectTime(long collectTime) {
+		this.collectTime = collectTime;
+	}
+
+	/**
+	 *
+	 * @return time in milliseconds to compute the digests of all file entries
+	 */
+	public long getDigestTime() {
+		return digestTime;
+	}
+
+	public void setDigestTime(long digestTime) {
+		this.digestTime = digestTime;
+	}
+
+	public int getFileCount() {
+		return fileCount;
+	}
+
+	public void setFileCount(int fileCount) {
+		this.fileCount = fileCount;
+	}
+
+	public long getByteCount() {
+		return byteCount;
+	}
+
+	public void setByteCount(long byteCount) {
+		this.byteCount = byteCount;
+	}
+
+	@Override
+	public String toString() {
+		return "collect=" + collectTime + "ms, digest=" + digestTime + "ms, files=" + fileCount + ", bytes=" //$NON-NLS-1$ //$NON-NLS-2$ //$NON-NLS-3$ //$NON-NLS-4$
+				+ byteCount + ", parallelism=" + parallelism; //$NON-NLS-1$
+	}
+}
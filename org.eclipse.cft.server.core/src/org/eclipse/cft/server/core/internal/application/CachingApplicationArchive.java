@@ -20,25 +20,19 @@
  ********************************************************************************/
 package org.eclipse.cft.server.core.internal.application;
 
-import java.io.File;
 import java.io.IOException;
 import java.io.InputStream;
 import java.util.ArrayList;
-import java.util.Enumeration;
-import java.util.HashMap;
 import java.util.HashSet;
 import java.util.List;
-import java.util.Map;
 import java.util.Set;
-import java.util.zip.ZipEntry;
-import java.util.zip.ZipException;
-import java.util.zip.ZipFile;
 
 import org.eclipse.cft.server.core.ArchiveEntry;
 import org.eclipse.cft.server.core.internal.CloudFoundryPlugin;
 import org.eclipse.cft.server.core.internal.CloudUtil;
 import org.eclipse.cft.server.core.internal.DeployedResourceCache.CachedDeployedApplication;
 import org.eclipse.cft.server.core.internal.DeployedResourceCache.DeployedResourceEntry;
+import org.eclipse.core.resources.IFile;
 import org.eclipse.core.runtime.CoreException;
 import org.eclipse.wst.server.core.IModule;
 import org.eclipse.wst.server.core.model.IModuleFile;
@@ -68,7 +62,8 @@ import org.eclipse.wst.server.core.model.IModuleResource;
  * <p/>
  * 2) The second phase involves handling the list of resources that the server
  * indicates have not changed. This is done through a callback handler, which
- * then builds the partial war file with only those resources that have changed.
+ * then restricts the archive entries to only those resources that have changed.
+ * The content of these entries is streamed directly from the workspace files.
  * 
  */
 public class CachingApplicationArchive extends AbstractModuleResourceArchive {
@@ -80,9 +75,9 @@ public class CachingApplicationArchive extends AbstractModuleResourceArchive {
 	private final CachedDeployedApplication appID;
 
 	public CachingApplicationArchive(List<IModuleResource> allResources, List<IModuleResource> changedResources,
-			IModule module, String appName) {
+			IModule module, String serverId, String appName) {
 		super(module, allResources);
-		this.appID = new CachedDeployedApplication(appName);
+		this.appID = new CachedDeployedApplication(serverId, appName);
 		this.changedResources = changedResourcesAsZipNames(changedResources);
 	}
 
@@ -108,115 +103,27 @@ public class CachingApplicationArchive extends AbstractModuleResourceArchive {
 		return new ZipModuleFileEntryAdapter(file, appID, changed);
 	}
 
+	/**
+	 * Restricts the entries of this archive to those that the server does not
+	 * already have. Rather than writing the changed resources to a temporary
+	 * war file first, the remaining entries stream their content directly from
+	 * the workspace files when the client builds the upload payload.
+	 * @param knownResourceNames names of the entries that the server already
+	 * has
+	 */
 	public void generatePartialWarFile(Set<String> knownResourceNames) {
 		Iterable<ArchiveEntry> localEntries = getEntries();
-		Map<String, AbstractModuleResourceEntryAdapter> missingChangedEntries = new HashMap<String, AbstractModuleResourceEntryAdapter>();
-		Set<IModuleResource> missingChangedResources = new HashSet<IModuleResource>();
+		List<ArchiveEntry> toDeploy = new ArrayList<ArchiveEntry>();
 
 		for (ArchiveEntry entry : localEntries) {
-
+			// Directories are always included, as they would be in a war file
 			if (entry.isDirectory() || !knownResourceNames.contains(entry.getName())) {
-				missingChangedEntries.put(entry.getName(), (AbstractModuleResourceEntryAdapter) entry);
-				missingChangedResources.add(((AbstractModuleResourceEntryAdapter) entry).getResource());
-			}
-		}
-
-		// Build war file with changed/missing resources
-		try {
-
-			File partialWar = CloudUtil.createWarFile(getModuleResources(), getModule(), missingChangedResources, null);
-
-			if (partialWar.exists()) {
-				fileName = partialWar.getName();
-				ZipFile zipPartialWar = new ZipFile(partialWar);
-				Enumeration<? extends ZipEntry> zipEntries = zipPartialWar.entries();
-				List<ArchiveEntry> toDeploy = new ArrayList<ArchiveEntry>();
-				while (zipEntries.hasMoreElements()) {
-					ZipEntry zipEntry = zipEntries.nextElement();
-
-					AbstractModuleResourceEntryAdapter archiveEntry = missingChangedEntries.get(zipEntry.getName());
-					if (archiveEntry != null) {
-						DeployedResourceEntry deployedResourcesEntry = archiveEntry instanceof ZipModuleFileEntryAdapter
-								? ((ZipModuleFileEntryAdapter) archiveEntry).getDeployedResourcesEntry() : null;
-						toDeploy.add(new PartialZipEntryAdapter(deployedResourcesEntry, zipEntry, zipPartialWar));
-
-					}
-
-				}
-				entries = toDeploy;
-			}
-		}
-		catch (CoreException e) {
-			// Failed to create partial war
-			CloudFoundryPlugin.log(e);
-		}
-		catch (ZipException e) {
-			// Failed to create partial war
-			CloudFoundryPlugin.logError(e);
-		}
-		catch (IOException e) {
-			// Failed to create partial war
-			CloudFoundryPlugin.logError(e);
-		}
-	}
-
-	/**
-	 * Entry to be used to access actual payload files. Sha1 entries should be
-	 * computed prior to creating the entry, ideally without uncompressing the
-	 * archive file, and possibly using a cache
-	 * 
-	 */
-	public class PartialZipEntryAdapter implements ArchiveEntry {
-		private final DeployedResourceEntry deployedResourcesEntry;
-
-		private final ZipEntry zipEntry;
-
-		private final ZipFile zipFile;
-
-		public PartialZipEntryAdapter(DeployedResourceEntry deployedResourcesEntry, ZipEntry zipEntry,
-				ZipFile zipFile) {
-			this.zipFile = zipFile;
-			this.zipEntry = zipEntry;
-			this.deployedResourcesEntry = deployedResourcesEntry;
-		}
-
-		public boolean isDirectory() {
-			return zipEntry.isDirectory();
-		}
-
-		public String getName() {
-			return zipEntry.getName();
-		}
-
-		/**
-		 * 
-		 * @return deployed resource, or null if not defined for this zip entry.
-		 * Note that for directory cases, there won't be a deployed resource so
-		 * this would be one case where null is returned
-		 */
-		protected DeployedResourceEntry getDeployedResourceEntry() {
-			return deployedResourcesEntry;
-		}
-
-		public long getSize() {
-			return getDeployedResourceEntry() != null ? getDeployedResourceEntry().getFileSize()
-					: AbstractModuleResourceEntryAdapter.UNDEFINED_SIZE;
-		}
-
-		public byte[] getSha1Digest() {
-			// Do not obtain it from the zip Entry to avoid unzipping the
-			// archive.
-			return getDeployedResourceEntry() != null ? getDeployedResourceEntry().getSha1() : null;
-		}
-
-		public InputStream getInputStream() throws IOException {
-			if (isDirectory()) {
-				return null;
+				toDeploy.add(entry);
 			}
-
-			return zipFile.getInputStream(zipEntry);
 		}
 
+		fileName = getModule().getName() + ".war"; //$NON-NLS-1$
+		entries = toDeploy;
 	}
 
 	public class ZipModuleFolderEntryAdapter extends ModuleFolderEntryAdapter {
@@ -243,6 +150,8 @@ public class CachingApplicationArchive extends AbstractModuleResourceArchive {
 
 		private final boolean recalculate;
 
+		private DeployedResourceEntry resolvedEntry;
+
 		public ZipModuleFileEntryAdapter(IModuleFile moduleFile, CachedDeployedApplication appName,
 				boolean recalculate) {
 			super(moduleFile);
@@ -257,18 +166,30 @@ public class CachingApplicationArchive extends AbstractModuleResourceArchive {
 			return entry != null ? entry.getFileSize() : UNDEFINED_SIZE;
 		}
 
-		public DeployedResourceEntry getDeployedResourcesEntry() {
+		public synchronized DeployedResourceEntry getDeployedResourcesEntry() {
+
+			// Resolve the entry only once per publish, as it is requested
+			// both when computing digests and when building the partial war
+			if (resolvedEntry != null) {
+				return resolvedEntry;
+			}
 
 			DeployedResourceEntry deployedResourcesEntry = CloudFoundryPlugin.getDefault().getDeployedResourcesCache()
 					.getEntry(appName, getName());
 
-			if (canComputeResourceEntry() && (recalculate || deployedResourcesEntry == null)) {
+			// Entries loaded from the persisted index may be out of date if the
+			// file was changed while the workbench was not running, so also
+			// verify against the workspace file
+			if (canComputeResourceEntry() && (recalculate || deployedResourcesEntry == null
+					|| deployedResourcesEntry.isStale(file))) {
+				long lastModified = file.lastModified();
 				byte[] sha1 = super.getSha1Digest();
 				long fileSize = super.getSize();
-				deployedResourcesEntry = new DeployedResourceEntry(sha1, fileSize, getName());
+				deployedResourcesEntry = new DeployedResourceEntry(sha1, fileSize, getName(), lastModified);
 				CloudFoundryPlugin.getDefault().getDeployedResourcesCache().add(appName, deployedResourcesEntry);
 			}
 
+			resolvedEntry = deployedResourcesEntry;
 			return deployedResourcesEntry;
 		}
 
@@ -277,6 +198,25 @@ public class CachingApplicationArchive extends AbstractModuleResourceArchive {
 			return entry != null ? entry.getSha1() : null;
 		}
 
+		@Override
+		public InputStream getInputStream() throws IOException {
+			InputStream input = super.getInputStream();
+			if (input == null) {
+				// Not accessible as a local file. Read it through the
+				// workspace instead.
+				IFile iFile = (IFile) getResource().getAdapter(IFile.class);
+				if (iFile != null) {
+					try {
+						input = iFile.getContents();
+					}
+					catch (CoreException e) {
+						throw new IOException(e);
+					}
+				}
+			}
+			return input;
+		}
+
 		protected String computeName(IModuleResource resource) {
 			return CloudUtil.getZipRelativeName(resource);
 		}
@@ -68,6 +68,14 @@ public class ZipArchive implements CFApplicationArchive {
 		return name;
 	}
 
+	/**
+	 * 
+	 * @return the zip file of the archive
+	 */
+	public File getFile() {
+		return new File(zipFile.getName());
+	}
+
 	public void close() throws CoreException {
 		try {
 			if (zipFile != null) {
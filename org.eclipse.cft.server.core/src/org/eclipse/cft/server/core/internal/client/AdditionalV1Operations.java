@@ -21,12 +21,18 @@
  */
 package org.eclipse.cft.server.core.internal.client;
 
+import java.io.IOException;
 import java.util.ArrayList;
 import java.util.Arrays;
+import java.util.Collections;
 import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
 import java.util.UUID;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Future;
 
 import org.cloudfoundry.client.lib.CloudFoundryException;
 import org.cloudfoundry.client.lib.CloudFoundryOperations;
@@ -35,12 +41,19 @@ import org.cloudfoundry.client.lib.domain.ApplicationStats;
 import org.cloudfoundry.client.lib.domain.CloudApplication;
 import org.cloudfoundry.client.lib.domain.CloudSpace;
 import org.cloudfoundry.client.lib.domain.InstanceStats;
+import org.cloudfoundry.client.lib.domain.Staging;
 import org.cloudfoundry.client.lib.util.CloudEntityResourceMapper;
 import org.cloudfoundry.client.lib.util.JsonUtil;
 import org.eclipse.cft.server.core.internal.CloudErrorUtil;
 import org.eclipse.cft.server.core.internal.CloudFoundryServer;
+import org.eclipse.cft.server.core.internal.client.ResourcePageReader.Resource;
+import org.eclipse.cft.server.core.internal.client.ResourcePageReader.ResourcePage;
 import org.eclipse.core.runtime.CoreException;
+import org.eclipse.core.runtime.OperationCanceledException;
+import org.springframework.http.HttpMethod;
 import org.springframework.http.HttpStatus;
+import org.springframework.http.client.ClientHttpResponse;
+import org.springframework.web.client.ResponseExtractor;
 
 /**
  * Work-around for limitations in v1 cloudfoundry-client-lib (1.1.4 and
@@ -52,8 +65,31 @@ import org.springframework.http.HttpStatus;
  */
 public class AdditionalV1Operations extends CFClientV1Support {
 
+	/**
+	 * Largest page of resources returned by the Cloud Controller
+	 */
+	public static final int MAX_PAGE_SIZE = 100;
+
+	/**
+	 * Pages fetched at the same time, once the number of pages is known
+	 */
+	public static final int MAX_PARALLEL_PAGES = 4;
+
+	/**
+	 * Shared by all clients, so that the bound applies across servers
+	 */
+	private static final ExecutorService pageExecutor = ClientRequestExecutor
+			.newBoundedExecutor(MAX_PARALLEL_PAGES);
+
+	private static final ResourcePageReader APPLICATION_READER = new ResourcePageReader(
+			Collections.singleton("environment_json")); //$NON-NLS-1$
+
+	private static final ResourcePageReader RESOURCE_READER = new ResourcePageReader(null);
+
 	private CloudEntityResourceMapper resourceMapper = new CloudEntityResourceMapper();
 
+	private volatile Map<String, String> stackNames;
+
 	public AdditionalV1Operations(CloudFoundryOperations client, CloudSpace sessionSpace, CFInfo cloudInfo,
 			HttpProxyConfiguration httpProxyConfiguration, CloudFoundryServer cfServer, boolean trustSelfSigned) {
 		super(client, sessionSpace, cloudInfo, httpProxyConfiguration, cfServer, trustSelfSigned);
@@ -65,21 +101,35 @@ public class AdditionalV1Operations extends CFClientV1Support {
 	 * <p/>
 	 * Information that may be MISSING from the list for each app: service
 	 * bindings, mapped URLs, and app instances.
+	 * <p/>
+	 * Applications are listed without inline relations, in pages of the
+	 * largest size that are fetched in parallel and read with a streaming
+	 * parser. The stacks of the applications are resolved from a single
+	 * request.
 	 * @return list of apps with basic information
 	 * @throws CoreException
 	 */
 	public List<CloudApplication> getBasicApplications() {
 		List<CloudApplication> apps = new ArrayList<CloudApplication>();
 
-		if (getExistingConnectionSession() != null) {
+		CloudSpace sessionSpace = getExistingConnectionSession();
+		if (sessionSpace != null) {
 			Map<String, Object> urlVars = new HashMap<String, Object>();
-			String urlPath = "/v2";
-			urlVars.put("space", getExistingConnectionSession().getMeta().getGuid());
-			urlPath = urlPath + "/spaces/{space}";
-			urlPath = urlPath + "/apps?inline-relations-depth=1";
-			List<Map<String, Object>> resourceList = getAllResources(urlPath, urlVars);
-			for (Map<String, Object> resource : resourceList) {
-				CloudApplication app = mapBasicCloudApplication(resource);
+			urlVars.put("space", sessionSpace.getMeta().getGuid()); //$NON-NLS-1$
+			String urlPath = "/v2/spaces/{space}/apps?results-per-page=" + MAX_PAGE_SIZE + "&page={page}"; //$NON-NLS-1$ //$NON-NLS-2$
+			List<Resource> resources = getAllResourcePages(urlPath, urlVars, APPLICATION_READER);
+
+			Map<String, String> stacks = resources.isEmpty() ? Collections.<String, String> emptyMap()
+					: getStackNames(false);
+			boolean stacksRefreshed = false;
+			for (Resource resource : resources) {
+				String stackGuid = resource.getEntity("stack_guid", String.class); //$NON-NLS-1$
+				if (stackGuid != null && !stacks.containsKey(stackGuid) && !stacksRefreshed) {
+					// Stack added since the stacks were last fetched
+					stacks = getStackNames(true);
+					stacksRefreshed = true;
+				}
+				CloudApplication app = mapLeanCloudApplication(resource, sessionSpace, stacks);
 				if (app != null) {
 					apps.add(app);
 				}
@@ -165,6 +215,72 @@ public class AdditionalV1Operations extends CFClientV1Support {
 		return cloudApp;
 	}
 
+	/**
+	 * Maps the attributes of an application read without inline relations,
+	 * as {@link CloudEntityResourceMapper} would map the full resource
+	 */
+	protected CloudApplication mapLeanCloudApplication(Resource resource, CloudSpace space,
+			Map<String, String> stacks) {
+		String name = resource.getEntity("name", String.class); //$NON-NLS-1$
+		if (name == null || resource.getMetadata("guid", String.class) == null) { //$NON-NLS-1$
+			return null;
+		}
+		Map<String, Object> metadata = new HashMap<String, Object>();
+		metadata.put("metadata", resource.getMetadata()); //$NON-NLS-1$
+		CloudApplication app = new CloudApplication(CloudEntityResourceMapper.getMeta(metadata), name);
+
+		app.setInstances(getInt(resource, "instances")); //$NON-NLS-1$
+		app.setMemory(getInt(resource, "memory")); //$NON-NLS-1$
+		app.setDiskQuota(getInt(resource, "disk_quota")); //$NON-NLS-1$
+		String state = resource.getEntity("state", String.class); //$NON-NLS-1$
+		if (state != null) {
+			app.setState(CloudApplication.AppState.valueOf(state));
+		}
+		app.setDiego(Boolean.TRUE.equals(resource.getEntity("diego", Boolean.class))); //$NON-NLS-1$
+		app.setEnableSsh(Boolean.TRUE.equals(resource.getEntity("enable_ssh", Boolean.class))); //$NON-NLS-1$
+		app.setServices(new ArrayList<String>());
+		app.setSpace(space);
+
+		String stackGuid = resource.getEntity("stack_guid", String.class); //$NON-NLS-1$
+		app.setStaging(new Staging(resource.getEntity("command", String.class), //$NON-NLS-1$
+				resource.getEntity("buildpack", String.class), //$NON-NLS-1$
+				stackGuid != null ? stacks.get(stackGuid) : null,
+				resource.getEntity("health_check_timeout", Integer.class), //$NON-NLS-1$
+				resource.getEntity("detected_buildpack", String.class))); //$NON-NLS-1$
+
+		Map<String, Object> env = resource.getEntityObject("environment_json"); //$NON-NLS-1$
+		if (env != null && !env.isEmpty()) {
+			app.setEnv(new HashMap<Object, Object>(env));
+		}
+		return app;
+	}
+
+	private static int getInt(Resource resource, String name) {
+		Integer value = resource.getEntity(name, Integer.class);
+		return value != null ? value : 0;
+	}
+
+	/**
+	 * 
+	 * @param refresh true if the stacks should be fetched again
+	 * @return names of the stacks of the target by stack GUID
+	 */
+	protected Map<String, String> getStackNames(boolean refresh) {
+		Map<String, String> names = stackNames;
+		if (names == null || refresh) {
+			names = new HashMap<String, String>();
+			String urlPath = "/v2/stacks?results-per-page=" + MAX_PAGE_SIZE + "&page={page}"; //$NON-NLS-1$ //$NON-NLS-2$
+			for (Resource stack : getAllResourcePages(urlPath, new HashMap<String, Object>(), RESOURCE_READER)) {
+				String guid = stack.getMetadata("guid", String.class); //$NON-NLS-1$
+				if (guid != null) {
+					names.put(guid, stack.getEntity("name", String.class)); //$NON-NLS-1$
+				}
+			}
+			stackNames = names;
+		}
+		return names;
+	}
+
 	protected Map<String, Object> getBasicApplicationResource(String appName) {
 		Map<String, Object> urlVars = new HashMap<String, Object>();
 		String urlPath = "/v2"; //$NON-NLS-1$
@@ -311,6 +427,79 @@ public class AdditionalV1Operations extends CFClientV1Support {
 		return allResources;
 	}
 
+	/**
+	 * Fetches the first page of resources, and then the remaining pages in
+	 * parallel.
+	 * @param urlPath path with a "page" URL variable for the page number
+	 * @param urlVars other URL variables
+	 * @param reader
+	 * @return resources of all pages, in page order
+	 */
+	protected List<Resource> getAllResourcePages(final String urlPath, final Map<String, Object> urlVars,
+			final ResourcePageReader reader) {
+		ResourcePage firstPage = getResourcePage(urlPath, urlVars, 1, reader);
+		List<Resource> allResources = new ArrayList<Resource>(firstPage.getResources());
+		int totalPages = firstPage.getTotalPages();
+		if (totalPages > 1) {
+			List<Future<ResourcePage>> pages = new ArrayList<Future<ResourcePage>>();
+			try {
+				for (int page = 2; page <= totalPages; page++) {
+					final int pageNumber = page;
+					pages.add(getPageExecutor().submit(new Callable<ResourcePage>() {
+						public ResourcePage call() throws Exception {
+							return getResourcePage(urlPath, urlVars, pageNumber, reader);
+						}
+					}));
+				}
+				for (Future<ResourcePage> page : pages) {
+					allResources.addAll(getPage(page).getResources());
+				}
+			}
+			finally {
+				// Do not fetch the remaining pages if one failed
+				for (Future<ResourcePage> page : pages) {
+					page.cancel(true);
+				}
+			}
+		}
+		return allResources;
+	}
+
+	protected ResourcePage getResourcePage(String urlPath, Map<String, Object> urlVars, int page,
+			final ResourcePageReader reader) {
+		Map<String, Object> pageVars = new HashMap<String, Object>(urlVars);
+		pageVars.put("page", page); //$NON-NLS-1$
+		return restTemplate.execute(getUrl(urlPath), HttpMethod.GET, null, new ResponseExtractor<ResourcePage>() {
+			public ResourcePage extractData(ClientHttpResponse response) throws IOException {
+				return reader.read(response.getBody());
+			}
+		}, pageVars);
+	}
+
+	private static ResourcePage getPage(Future<ResourcePage> page) {
+		try {
+			return page.get();
+		}
+		catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+			throw new OperationCanceledException();
+		}
+		catch (ExecutionException e) {
+			Throwable cause = e.getCause();
+			if (cause instanceof RuntimeException) {
+				throw (RuntimeException) cause;
+			}
+			if (cause instanceof Error) {
+				throw (Error) cause;
+			}
+			throw new IllegalStateException(cause);
+		}
+	}
+
+	protected static ExecutorService getPageExecutor() {
+		return pageExecutor;
+	}
+
 	@SuppressWarnings("unchecked")
 	protected String addPageOfResources(String nextUrl, List<Map<String, Object>> allResources) {
 		String resp = restTemplate.getForObject(getUrl(nextUrl), String.class);
@@ -20,9 +20,7 @@
  ********************************************************************************/
 package org.eclipse.cft.server.core.internal.client;
 
-import org.cloudfoundry.client.lib.CloudFoundryException;
 import org.cloudfoundry.client.lib.CloudFoundryOperations;
-import org.eclipse.cft.server.core.internal.CloudErrorUtil;
 import org.eclipse.core.runtime.CoreException;
 import org.eclipse.core.runtime.SubMonitor;
 
@@ -33,21 +31,16 @@ import org.eclipse.core.runtime.SubMonitor;
  */
 abstract class AppInStoppedStateAwareRequest<T> extends BehaviourRequest<T> {
 
+	private static final RetryPolicy RETRY_POLICY = new RetryPolicy().retryOn(RetryPolicy.APP_IN_STOPPED_STATE,
+			new Backoff(500, 2000, 2, 0.2, 10));
+
 	public AppInStoppedStateAwareRequest(String label, CloudFoundryServerBehaviour behaviour) {
 		super(label, behaviour);
 	}
 
-	protected long waitOnErrorInterval(Throwable exception, SubMonitor monitor) throws CoreException {
-
-		if (exception instanceof CoreException) {
-			exception = ((CoreException) exception).getCause();
-		}
-
-		if (exception instanceof CloudFoundryException
-				&& CloudErrorUtil.isAppStoppedStateError((CloudFoundryException) exception)) {
-			return CloudOperationsConstants.ONE_SECOND_INTERVAL;
-		}
-		return -1;
+	@Override
+	protected RetryPolicy getRetryPolicy() {
+		return RETRY_POLICY;
 	}
 
 	protected abstract T doRun(CloudFoundryOperations client, SubMonitor progress) throws CoreException;
@@ -22,25 +22,25 @@ package org.eclipse.cft.server.core.internal.client;
 
 import org.eclipse.cft.server.core.internal.CloudErrorUtil;
 import org.eclipse.core.runtime.CoreException;
-import org.eclipse.core.runtime.SubMonitor;
 
 /**
  * [Bug 480364] - Fetching applications from Diego-enabled targets results
  * in 503 Server errors if application is starting. Retry the operation when
- * 503 is encountered.
+ * 503 is encountered, backing off exponentially.
  */
 abstract public class ApplicationRequest<T> extends BehaviourRequest<T> {
 
+	private static final RetryPolicy RETRY_POLICY = new RetryPolicy()
+			.retryOn(RetryPolicy.SERVICE_UNAVAILABLE, new Backoff(1000, 8000, 2, 0.2, 10))
+			.retryOn(RetryPolicy.TRANSPORT_FAILURE, new Backoff(1000, 4000, 2, 0.2, 3));
+
 	public ApplicationRequest(String label, CloudFoundryServerBehaviour behaviour) {
 		super(label, behaviour);
 	}
 
 	@Override
-	protected long waitOnErrorInterval(Throwable exception, SubMonitor monitor) throws CoreException {
-		if (CloudErrorUtil.is503Error(exception)) {
-			return 2000;
-		}
-		return super.waitOnErrorInterval(exception, monitor);
+	protected RetryPolicy getRetryPolicy() {
+		return RETRY_POLICY;
 	}
 
 	@Override
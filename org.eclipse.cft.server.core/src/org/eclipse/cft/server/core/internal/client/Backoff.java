@@ -0,0 +1,89 @@
+/*******************************************************************************
+ * Copyright (c) 2017 Pivotal Software, Inc. and others
+ *
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * and Apache License v2.0 which accompanies this distribution.
+ *
+ * The Eclipse Public License is available at
+ *
+ * http://www.eclipse.org/legal/epl-v10.html
+ *
+ * and the Apache License v2.0 is available at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * You may elect to redistribute this code under either of these licenses.
+ *
+ *  Contributors:
+ *     Pivotal Software, Inc. - initial API and implementation
+ ********************************************************************************/
+package org.eclipse.cft.server.core.internal.client;
+
+import java.util.concurrent.ThreadLocalRandom;
+
+/**
+ * Exponential backoff between attempts of a request. The delay starts at an
+ * initial value, and is multiplied on each further attempt, up to a maximum
+ * delay. A random jitter is applied to each delay, so that clients that fail
+ * at the same time do not all retry at the same time.
+ */
+public class Backoff {
+
+	/**
+	 * Number of attempts that is only limited by the request timeout
+	 */
+	public static final int UNLIMITED = -1;
+
+	private final long initialDelay;
+
+	private final long maxDelay;
+
+	private final double multiplier;
+
+	private final double jitter;
+
+	private final int maxRetries;
+
+	/**
+	 *
+	 * @param initialDelay delay in milliseconds before the first retry
+	 * @param maxDelay maximum delay in milliseconds
+	 * @param multiplier factor applied to the delay on each further retry
+	 * @param jitter fraction between 0 and 1 by which each delay is randomly
+	 * increased or decreased
+	 * @param maxRetries maximum number of retries, or {@link #UNLIMITED}
+	 */
+	public Backoff(long initialDelay, long maxDelay, double multiplier, double jitter, int maxRetries) {
+		this.initialDelay = initialDelay;
+		this.maxDelay = Math.max(initialDelay, maxDelay);
+		this.multiplier = Math.max(1, multiplier);
+		this.jitter = Math.min(1, Math.max(0, jitter));
+		this.maxRetries = maxRetries;
+	}
+
+	/**
+	 *
+	 * @return backoff with the same delay before each retry, and no jitter
+	 */
+	public static Backoff fixed(long delay, int maxRetries) {
+		return new Backoff(delay, delay, 1, 0, maxRetries);
+	}
+
+	/**
+	 *
+	 * @param retry number of the retry, starting at 1
+	 * @return delay in milliseconds before the given retry, or -1 if the retry
+	 * should not be attempted
+	 */
+	public long getDelay(int retry) {
+		if (retry < 1 || (maxRetries != UNLIMITED && retry > maxRetries)) {
+			return -1;
+		}
+		double delay = Math.min(maxDelay, initialDelay * Math.pow(multiplier, retry - 1));
+		if (jitter > 0) {
+			delay = delay * (1 - jitter + 2 * jitter * ThreadLocalRandom.current().nextDouble());
+		}
+		return Math.max(1, Math.round(delay));
+	}
+}
@@ -24,6 +24,7 @@ import org.cloudfoundry.client.lib.CloudFoundryOperations;
 import org.eclipse.cft.server.core.internal.CloudErrorUtil;
 import org.eclipse.cft.server.core.internal.Messages;
 import org.eclipse.cft.server.core.internal.log.HttpTracer;
+import org.eclipse.cft.server.core.internal.metrics.CloudMetrics;
 import org.eclipse.core.runtime.Assert;
 import org.eclipse.core.runtime.CoreException;
 import org.eclipse.core.runtime.IProgressMonitor;
@@ -80,8 +81,12 @@ public abstract class BaseClientRequest<T> {
 		}
 
 		HttpTracer.getCurrent().trace(client);
+		long start = System.currentTimeMillis();
+		boolean failed = true;
 		try {
-			return runAndWait(client, subProgress);
+			T result = runAndWait(client, subProgress);
+			failed = false;
+			return result;
 		}
 		catch (CoreException ce) {
 			// See if it is a connection error. If so, parse it into readable
@@ -95,6 +100,8 @@ public abstract class BaseClientRequest<T> {
 			}
 		}
 		finally {
+			CloudMetrics.getDefault().recordRequest(getRequestLabel(), System.currentTimeMillis() - start, failed);
+			HttpTracer.endRequest();
 			subProgress.done();
 		}
 
@@ -103,16 +110,19 @@ public abstract class BaseClientRequest<T> {
 	/**
 	 * Performs a client operation, and if necessary, re-attempts the operation
 	 * after a certain interval IFF an error occurs based on
-	 * {@link #getTotalTimeWait()} and
-	 * {@link #waitOnErrorInterval(Throwable, SubMonitor)}.
+	 * {@link #getTotalTimeWait()} and {@link #getRetryPolicy()}, or
+	 * {@link #waitOnErrorInterval(Throwable, SubMonitor)} if the request has no
+	 * retry policy.
 	 * <p/>
 	 * The default behaviour is to only attempt a client operation once and quit
 	 * after an error is encountered. Subclasses may modify this behaviour by
-	 * overriding {@link #getTotalTimeWait()} and
+	 * overriding {@link #getTotalTimeWait()} and {@link #getRetryPolicy()} or
 	 * {@link #waitOnErrorInterval(Throwable, SubMonitor)}
 	 * <p/>
 	 * Note that reattempts are only decided based on errors thrown by the
 	 * client invocation, not by results generated by the client invocation.
+	 * Reattempts of transport failures are skipped while the
+	 * {@link #getCircuitBreaker()} of the target is open.
 	 * @param client client whose operations are invoked. Never null.
 	 * @param subProgress
 	 * @return result of operation. Can be null.
@@ -128,6 +138,8 @@ public abstract class BaseClientRequest<T> {
 
 		boolean reattempt = true;
 		long timeLeft = getTotalTimeWait();
+		RetryContext context = new RetryContext();
+		CircuitBreaker breaker = getCircuitBreaker();
 
 		// Either this operation returns a result during the waiting period or
 		// an error occurred, and error
@@ -138,16 +150,29 @@ public abstract class BaseClientRequest<T> {
 			long interval = -1;
 
 			try {
-				return doRun(client, subProgress);
+				T result = doRun(client, subProgress);
+				if (breaker != null) {
+					breaker.recordSuccess();
+				}
+				return result;
 			}
 			catch (Throwable e) {
 				error = e;
 			}
 
-			interval = waitOnErrorInterval(error, subProgress);
+			RetryPolicy policy = getRetryPolicy();
+			interval = policy != null ? policy.getRetryDelay(error, context)
+					: waitOnErrorInterval(error, subProgress);
+			if (breaker != null && !(error instanceof OperationCanceledException)) {
+				breaker.recordAttempt(error);
+				if (interval > 0 && CircuitBreaker.isTransportFailure(error) && !breaker.allowRetry()) {
+					interval = -1;
+				}
+			}
 			timeLeft -= interval;
 			reattempt = !subProgress.isCanceled() && timeLeft >= 0 && interval > 0;
 			if (reattempt) {
+				CloudMetrics.getDefault().recordRetry(getRequestLabel());
 
 				try {
 					Thread.sleep(interval);
@@ -203,6 +228,25 @@ public abstract class BaseClientRequest<T> {
 		return -1;
 	}
 
+	/**
+	 * Policy that decides which errors result in further attempts, and how
+	 * long to wait before each attempt. If null,
+	 * {@link #waitOnErrorInterval(Throwable, SubMonitor)} is used instead.
+	 * @return retry policy, or null by default
+	 */
+	protected RetryPolicy getRetryPolicy() {
+		return null;
+	}
+
+	/**
+	 *
+	 * @return circuit breaker of the target of the request, or null if
+	 * retries do not depend on the state of the target
+	 */
+	protected CircuitBreaker getCircuitBreaker() {
+		return null;
+	}
+
 	/**
 	 * Perform the actual client operation. The client is guaranteed to be
 	 * non-null at this stage.
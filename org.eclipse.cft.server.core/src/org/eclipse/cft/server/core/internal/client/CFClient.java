@@ -20,8 +20,15 @@
  ********************************************************************************/
 package org.eclipse.cft.server.core.internal.client;
 
+import java.io.File;
 import java.util.List;
+import java.util.concurrent.Future;
 
+import org.cloudfoundry.client.lib.domain.ApplicationStats;
+import org.cloudfoundry.client.lib.domain.CloudApplication;
+import org.cloudfoundry.client.lib.domain.CloudRoute;
+import org.cloudfoundry.client.lib.domain.InstancesInfo;
+import org.eclipse.cft.server.core.CFServiceInstance;
 import org.eclipse.cft.server.core.internal.log.CFApplicationLogListener;
 import org.eclipse.cft.server.core.internal.log.CFStreamingLogToken;
 import org.eclipse.cft.server.core.internal.log.CloudLog;
@@ -39,4 +46,59 @@ public interface CFClient {
 
 	public List<CloudLog> getRecentLogs(String appName) throws CoreException;
 
+	/*
+	 * Non-blocking requests. The requests are sent right away, and the
+	 * returned futures complete when the response is received, so that callers
+	 * can send several requests concurrently. Errors are reported as the cause
+	 * of the ExecutionException thrown by the futures.
+	 */
+
+	public Future<List<CloudApplication>> getApplications() throws CoreException;
+
+	/**
+	 * 
+	 * @param appName
+	 * @return future of the application, or of null if the application does
+	 * not exist
+	 * @throws CoreException if the request could not be sent
+	 */
+	public Future<CloudApplication> getApplication(String appName) throws CoreException;
+
+	public Future<ApplicationStats> getApplicationStats(String appName) throws CoreException;
+
+	/**
+	 * 
+	 * @param appName
+	 * @return future of the instances of the application, or of null if the
+	 * application does not exist or is stopped
+	 * @throws CoreException if the request could not be sent
+	 */
+	public Future<InstancesInfo> getInstancesInfo(String appName) throws CoreException;
+
+	public Future<List<CFServiceInstance>> getServices() throws CoreException;
+
+	/**
+	 * 
+	 * @param domainName
+	 * @return future of the routes of the space in the given domain, or in
+	 * all domains if null
+	 * @throws CoreException if the request could not be sent
+	 */
+	public Future<List<CloudRoute>> getRoutes(String domainName) throws CoreException;
+
+	/**
+	 * Uploads the given archive as the bits of the application, creating the
+	 * application if it does not exist yet. The application is not started,
+	 * and its routes are kept.
+	 */
+	public Future<Void> uploadApplication(String appName, File archive) throws CoreException;
+
+	/**
+	 * Stops the application if it is running, and starts it again so that its
+	 * current bits are staged.
+	 * @return future that completes once the start is requested. The start of
+	 * the instances has to be tracked by the caller.
+	 */
+	public Future<Void> restartApplication(String appName) throws CoreException;
+
 }
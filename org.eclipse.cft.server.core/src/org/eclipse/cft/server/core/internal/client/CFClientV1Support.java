@@ -57,7 +57,8 @@ public class CFClientV1Support {
 		this.oauth = getHeaderProvider(cfClient);
 		this.existingSessionConnection = existingSessionConnection;
 
-		this.restTemplate = RestUtils.createRestTemplate(httpProxyConfiguration, trustSelfSigned, true);
+		this.restTemplate = RestUtils.createRestTemplate(cloudInfo.getCloudControllerUrl(), httpProxyConfiguration,
+				trustSelfSigned, true);
 		ClientHttpRequestFactory requestFactory = restTemplate.getRequestFactory();
 		restTemplate.setRequestFactory(authorize(requestFactory));
 
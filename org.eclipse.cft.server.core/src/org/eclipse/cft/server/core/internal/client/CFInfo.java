@@ -39,7 +39,7 @@ public class CFInfo {
 	private Map<String, Object> infoMap;
 
 	public CFInfo(CloudCredentials creds, String url, HttpProxyConfiguration proxyConf, boolean selfSigned) {
-		restTemplate = RestUtils.createRestTemplate(proxyConf, selfSigned, false);
+		restTemplate = RestUtils.createRestTemplate(url, proxyConf, selfSigned, false);
 		this.ccUrl = url;
 	}
 
@@ -25,6 +25,8 @@ import org.cloudfoundry.client.lib.NotFinishedStagingException;
 import org.eclipse.cft.server.core.internal.CloudFoundryPlugin;
 import org.eclipse.cft.server.core.internal.CloudServerUtil;
 import org.eclipse.cft.server.core.internal.Messages;
+import org.eclipse.cft.server.core.internal.metrics.CloudMetrics;
+import org.eclipse.cft.server.core.internal.metrics.MetricsTimer;
 import org.eclipse.core.runtime.CoreException;
 import org.eclipse.core.runtime.IStatus;
 import org.eclipse.core.runtime.Status;
@@ -81,4 +83,23 @@ public abstract class CFOperation implements ICloudFoundryOperation {
 	protected boolean shouldLogException(CoreException e) {
 		return true;
 	}
+
+	/**
+	 * 
+	 * @return timer recording the latency of a run of this operation in
+	 * {@link CloudMetrics}
+	 */
+	protected MetricsTimer startOperationTimer() {
+		return CloudMetrics.getDefault().startOperation(getOperationName());
+	}
+
+	/**
+	 * 
+	 * @param phase one of the phases defined in {@link CloudMetrics}
+	 * @return timer recording the latency of the given phase of this
+	 * operation in {@link CloudMetrics}
+	 */
+	protected MetricsTimer startPhaseTimer(String phase) {
+		return CloudMetrics.getDefault().startPhase(getOperationName(), phase);
+	}
 }
@@ -0,0 +1,56 @@
+/*******************************************************************************
+ * Copyright (c) 2017 Pivotal Software, Inc. and others
+ *
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * and Apache License v2.0 which accompanies this distribution.
+ *
+ * The Eclipse Public License is available at
+ *
+ * http://www.eclipse.org/legal/epl-v10.html
+ *
+ * and the Apache License v2.0 is available at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * You may elect to redistribute this code under either of these licenses.
+ *
+ *  Contributors:
+ *     Pivotal Software, Inc. - initial API and implementation
+ ********************************************************************************/
+package org.eclipse.cft.server.core.internal.client;
+
+import org.eclipse.core.runtime.IProgressMonitor;
+import org.eclipse.core.runtime.NullProgressMonitor;
+
+/**
+ * Monitor for requests that run in other threads than the operation that
+ * started them. Progress is not reported through it, as the parent monitor
+ * may only be used by the thread of the operation, but cancellation in either
+ * direction is propagated: if the parent is canceled, all the requests see
+ * it, and if a request cancels (for example, if the user cancels the
+ * deployment wizard of a published module), the parent is canceled as well.
+ */
+class CancelPropagatingMonitor extends NullProgressMonitor {
+
+	private final IProgressMonitor parent;
+
+	public CancelPropagatingMonitor(IProgressMonitor parent) {
+		this.parent = parent;
+	}
+
+	@Override
+	public boolean isCanceled() {
+		return super.isCanceled() || parent.isCanceled();
+	}
+
+	@Override
+	public void setCanceled(boolean cancelled) {
+		super.setCanceled(cancelled);
+		if (cancelled) {
+			synchronized (parent) {
+				parent.setCanceled(true);
+			}
+		}
+	}
+}
@@ -0,0 +1,155 @@
+/*******************************************************************************
+ * Copyright (c) 2017 Pivotal Software, Inc. and others
+ *
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * and Apache License v2.0 which accompanies this distribution.
+ *
+ * The Eclipse Public License is available at
+ *
+ * http://www.eclipse.org/legal/epl-v10.html
+ *
+ * and the Apache License v2.0 is available at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * You may elect to redistribute this code under either of these licenses.
+ *
+ *  Contributors:
+ *     Pivotal Software, Inc. - initial API and implementation
+ ********************************************************************************/
+package org.eclipse.cft.server.core.internal.client;
+
+import java.io.IOException;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+import org.eclipse.cft.server.core.internal.CloudFoundryServer;
+import org.springframework.http.HttpStatus;
+import org.springframework.web.client.HttpServerErrorException;
+import org.springframework.web.client.ResourceAccessException;
+
+/**
+ * Stops requests to a Cloud Foundry target from retrying transport failures
+ * once the target has failed too many attempts in a row, for example while
+ * the target cannot be reached. Requests are still attempted once, but
+ * transport failures are not retried until the breaker is closed again, so
+ * that many clients sharing the same target do not add to its load.
+ * <p/>
+ * Only transport failures are counted (see
+ * {@link #isTransportFailure(Throwable)}). Expected errors of a target that
+ * responds, like staging not finished or application in stopped state, are not
+ * failures of the target, and close the breaker like any other response.
+ * <p/>
+ * The breaker opens after {@link #FAILURE_THRESHOLD} consecutive transport
+ * failures, and allows retries again after {@link #OPEN_DURATION}. Any
+ * response of the target closes it. Another failure after the open period
+ * reopens it right away.
+ */
+public class CircuitBreaker {
+
+	public static final int FAILURE_THRESHOLD = 5;
+
+	public static final long OPEN_DURATION = 30 * 1000;
+
+	private static final Map<String, CircuitBreaker> breakers = new ConcurrentHashMap<String, CircuitBreaker>();
+
+	private final int failureThreshold;
+
+	private final long openDuration;
+
+	private int consecutiveFailures;
+
+	private long openUntil;
+
+	public CircuitBreaker(int failureThreshold, long openDuration) {
+		this.failureThreshold = failureThreshold;
+		this.openDuration = openDuration;
+	}
+
+	/**
+	 *
+	 * @param cloudServer
+	 * @return breaker shared by all requests to the given server, or null if
+	 * the server cannot be identified
+	 */
+	public static CircuitBreaker forServer(CloudFoundryServer cloudServer) {
+		String serverId = cloudServer != null ? cloudServer.getServerId() : null;
+		if (serverId == null) {
+			return null;
+		}
+		CircuitBreaker breaker = breakers.get(serverId);
+		if (breaker == null) {
+			synchronized (breakers) {
+				breaker = breakers.get(serverId);
+				if (breaker == null) {
+					breaker = new CircuitBreaker(FAILURE_THRESHOLD, OPEN_DURATION);
+					breakers.put(serverId, breaker);
+				}
+			}
+		}
+		return breaker;
+	}
+
+	/**
+	 *
+	 * @return true if failed requests may be retried
+	 */
+	public synchronized boolean allowRetry() {
+		return System.currentTimeMillis() >= openUntil;
+	}
+
+	public synchronized boolean isOpen() {
+		return !allowRetry();
+	}
+
+	/**
+	 *
+	 * @param error
+	 * @return true if the error means that the target could not be reached or
+	 * that its router could not reach it: I/O errors like connection refused
+	 * or timeouts, and 502 or 504 responses
+	 */
+	public static boolean isTransportFailure(Throwable error) {
+		for (Throwable cause = error; cause != null; cause = cause.getCause() != cause ? cause.getCause() : null) {
+			if (cause instanceof IOException || cause instanceof ResourceAccessException) {
+				return true;
+			}
+			if (cause instanceof HttpServerErrorException) {
+				HttpStatus status = ((HttpServerErrorException) cause).getStatusCode();
+				return status == HttpStatus.BAD_GATEWAY || status == HttpStatus.GATEWAY_TIMEOUT;
+			}
+		}
+		return false;
+	}
+
+	/**
+	 * Records the result of an attempt. Transport failures count towards
+	 * opening the breaker, while any other error is a response of the target,
+	 * and closes it like a success.
+	 * @param error error thrown by the attempt
+	 */
+	public void recordAttempt(Throwable error) {
+		if (isTransportFailure(error)) {
+			recordFailure();
+		}
+		else {
+			recordSuccess();
+		}
+	}
+
+	/**
+	 * Records an attempt that failed with a transport failure
+	 */
+	public synchronized void recordFailure() {
+		consecutiveFailures++;
+		if (consecutiveFailures >= failureThreshold) {
+			openUntil = System.currentTimeMillis() + openDuration;
+		}
+	}
+
+	public synchronized void recordSuccess() {
+		consecutiveFailures = 0;
+		openUntil = 0;
+	}
+}
@@ -0,0 +1,519 @@
+/*******************************************************************************
+ * Copyright (c) 2017 Pivotal Software, Inc. and others
+ *
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * and Apache License v2.0 which accompanies this distribution.
+ *
+ * The Eclipse Public License is available at
+ *
+ * http://www.eclipse.org/legal/epl-v10.html
+ *
+ * and the Apache License v2.0 is available at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * You may elect to redistribute this code under either of these licenses.
+ *
+ *  Contributors:
+ *     Pivotal Software, Inc. - initial API and implementation
+ ********************************************************************************/
+package org.eclipse.cft.server.core.internal.client;
+
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.Queue;
+import java.util.concurrent.AbstractExecutorService;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledThreadPoolExecutor;
+import java.util.concurrent.SynchronousQueue;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+import org.eclipse.cft.server.core.internal.CloudFoundryPlugin;
+import org.eclipse.core.runtime.CoreException;
+import org.eclipse.core.runtime.IProgressMonitor;
+import org.eclipse.core.runtime.OperationCanceledException;
+import org.eclipse.core.runtime.ProgressMonitorWrapper;
+
+/**
+ * Runs client requests on a shared pool of request threads, so that the
+ * calling thread can return as soon as the user cancels the request, without
+ * having to wait for the underlying client call to complete.
+ * <p/>
+ * Cancellation is pushed to the running request rather than polled by the
+ * caller: cancelling the monitor that is passed to the request cancels it
+ * immediately, and a single watcher checks the callers' monitors for
+ * cancellation on behalf of all running requests.
+ * <p/>
+ * Note: Since the client itself does not check the monitor, the request may
+ * still be running after the calling thread has returned. The request thread
+ * is interrupted, which aborts most blocking I/O.
+ * <p/>
+ * Other background work of the tooling shares the threads managed here as
+ * well: periodic tasks run on the {@link #getScheduler() shared scheduler},
+ * and parallel tasks on {@link #newBoundedExecutor(int) bounded executors}
+ * that share one pool of background threads. All of them are shut down when
+ * the plugin stops.
+ */
+public class ClientRequestExecutor {
+
+	/**
+	 * Requests are mostly waiting on I/O, so allow more threads than
+	 * processors.
+	 */
+	private static final int THREADS_PER_PROCESSOR = 4;
+
+	private static final int MIN_THREADS = 8;
+
+	private static final long KEEP_ALIVE_SECONDS = 60;
+
+	private static final long CANCELLATION_CHECK_INTERVAL = 100;
+
+	private static final int SCHEDULER_THREADS = 2;
+
+	private static ClientRequestExecutor defaultExecutor;
+
+	private static ScheduledThreadPoolExecutor scheduler;
+
+	private static ThreadPoolExecutor backgroundExecutor;
+
+	private final ThreadPoolExecutor executor;
+
+	private final ScheduledExecutorService cancellationWatcher;
+
+	/**
+	 * Running requests, and the monitors of their callers
+	 */
+	private final Map<Future<?>, IProgressMonitor> running = new ConcurrentHashMap<Future<?>, IProgressMonitor>();
+
+	private final AtomicLong submittedCount = new AtomicLong();
+
+	private final AtomicLong cancelledCount = new AtomicLong();
+
+	private final AtomicLong failedCount = new AtomicLong();
+
+	public ClientRequestExecutor(int maxThreads) {
+		executor = new ThreadPoolExecutor(maxThreads, maxThreads, KEEP_ALIVE_SECONDS, TimeUnit.SECONDS,
+				new LinkedBlockingQueue<Runnable>(), new RequestThreadFactory("Cloud Foundry request")); //$NON-NLS-1$
+		executor.allowCoreThreadTimeOut(true);
+
+		cancellationWatcher = Executors.newSingleThreadScheduledExecutor(
+				new RequestThreadFactory("Cloud Foundry request cancellation")); //$NON-NLS-1$
+		cancellationWatcher.scheduleWithFixedDelay(new Runnable() {
+			public void run() {
+				cancelRequestsOfCancelledMonitors();
+			}
+		}, CANCELLATION_CHECK_INTERVAL, CANCELLATION_CHECK_INTERVAL, TimeUnit.MILLISECONDS);
+	}
+
+	public static synchronized ClientRequestExecutor getDefault() {
+		if (defaultExecutor == null) {
+			defaultExecutor = new ClientRequestExecutor(
+					Math.max(MIN_THREADS, Runtime.getRuntime().availableProcessors() * THREADS_PER_PROCESSOR));
+		}
+		return defaultExecutor;
+	}
+
+	/**
+	 * Scheduler shared by the periodic tasks of the tooling, like evicting
+	 * idle connections or checking the state of applications. Tasks must be
+	 * short, and should hand off any blocking work to a
+	 * {@link #newBoundedExecutor(int) bounded executor}, so that they do not
+	 * delay the tasks of other features.
+	 * @return shared scheduler. Callers must not shut it down.
+	 */
+	public static synchronized ScheduledExecutorService getScheduler() {
+		if (scheduler == null) {
+			scheduler = new ScheduledThreadPoolExecutor(SCHEDULER_THREADS,
+					new RequestThreadFactory("Cloud Foundry scheduler")); //$NON-NLS-1$
+			// Do not keep cancelled periodic tasks until their next run
+			scheduler.setRemoveOnCancelPolicy(true);
+		}
+		return scheduler;
+	}
+
+	/**
+	 * Creates an executor that runs its tasks on the shared background
+	 * threads, at most the given number of tasks at a time. Further tasks are
+	 * queued until a running task completes.
+	 * <p/>
+	 * Shutting down the returned executor only rejects further tasks of that
+	 * executor. The shared threads are shut down when the plugin stops.
+	 * @param maxParallel maximum number of tasks running at the same time
+	 * @return new executor
+	 */
+	public static ExecutorService newBoundedExecutor(int maxParallel) {
+		return new BoundedExecutor(maxParallel);
+	}
+
+	private static synchronized ThreadPoolExecutor getBackgroundExecutor() {
+		if (backgroundExecutor == null) {
+			// Threads are only bounded by the bounded executors, so that tasks
+			// that wait on tasks of another bounded executor cannot starve
+			// each other
+			backgroundExecutor = new ThreadPoolExecutor(0, Integer.MAX_VALUE, KEEP_ALIVE_SECONDS, TimeUnit.SECONDS,
+					new SynchronousQueue<Runnable>(), new RequestThreadFactory("Cloud Foundry background")); //$NON-NLS-1$
+		}
+		return backgroundExecutor;
+	}
+
+	/**
+	 * Shuts down the shared request executor, scheduler and background
+	 * threads. Running requests and tasks are interrupted. The executors are
+	 * created again if they are needed after this.
+	 */
+	public static synchronized void shutdown() {
+		if (defaultExecutor != null) {
+			defaultExecutor.executor.shutdownNow();
+			defaultExecutor.cancellationWatcher.shutdownNow();
+			defaultExecutor = null;
+		}
+		if (scheduler != null) {
+			// Cancel the periodic tasks that were never run again, so that
+			// their owners see them as done and schedule them again if
+			// needed
+			for (Runnable task : scheduler.shutdownNow()) {
+				if (task instanceof Future) {
+					((Future<?>) task).cancel(false);
+				}
+			}
+			scheduler = null;
+		}
+		if (backgroundExecutor != null) {
+			backgroundExecutor.shutdownNow();
+			backgroundExecutor = null;
+		}
+	}
+
+	/**
+	 * Runs the request in a request thread, and waits for it to complete or
+	 * for the monitor to be cancelled.
+	 * @param request
+	 * @param monitor
+	 * @return result of the request
+	 * @throws CoreException if the request failed
+	 * @throws OperationCanceledException if the monitor was cancelled before
+	 * the request completed
+	 */
+	public <T> T runAndWait(final BaseClientRequest<T> request, IProgressMonitor monitor) throws CoreException {
+		if (monitor.isCanceled()) {
+			throw new OperationCanceledException();
+		}
+
+		final CancellingMonitor requestMonitor = new CancellingMonitor(monitor);
+		Future<T> future = executor.submit(new Callable<T>() {
+			public T call() throws Exception {
+				return request.run(requestMonitor);
+			}
+		});
+		submittedCount.incrementAndGet();
+		requestMonitor.setFuture(future);
+		running.put(future, monitor);
+
+		try {
+			return future.get();
+		}
+		catch (CancellationException e) {
+			cancelledCount.incrementAndGet();
+			throw new OperationCanceledException();
+		}
+		catch (InterruptedException e) {
+			future.cancel(true);
+			cancelledCount.incrementAndGet();
+			Thread.currentThread().interrupt();
+			throw new OperationCanceledException();
+		}
+		catch (ExecutionException e) {
+			failedCount.incrementAndGet();
+			Throwable cause = e.getCause();
+			if (cause instanceof CoreException) {
+				throw (CoreException) cause;
+			}
+			else if (cause instanceof RuntimeException) {
+				throw (RuntimeException) cause;
+			}
+			else if (cause instanceof Error) {
+				throw (Error) cause;
+			}
+			throw new RuntimeException(cause);
+		}
+		finally {
+			running.remove(future);
+		}
+	}
+
+	/**
+	 *
+	 * @return snapshot of the pool and request counts
+	 */
+	public Statistics getStatistics() {
+		return new Statistics(executor.getPoolSize(), executor.getLargestPoolSize(), executor.getMaximumPoolSize(),
+				executor.getActiveCount(), executor.getQueue().size(), submittedCount.get(),
+				executor.getCompletedTaskCount(), cancelledCount.get(), failedCount.get());
+	}
+
+	protected void cancelRequestsOfCancelledMonitors() {
+		for (Iterator<Map.Entry<Future<?>, IProgressMonitor>> it = running.entrySet().iterator(); it.hasNext();) {
+			Map.Entry<Future<?>, IProgressMonitor> entry = it.next();
+			if (entry.getValue().isCanceled()) {
+				entry.getKey().cancel(true);
+				it.remove();
+			}
+		}
+	}
+
+	/**
+	 * Monitor passed to the request, that cancels the request as soon as it
+	 * is cancelled.
+	 */
+	private static class CancellingMonitor extends ProgressMonitorWrapper {
+
+		private volatile Future<?> future;
+
+		CancellingMonitor(IProgressMonitor monitor) {
+			super(monitor);
+		}
+
+		void setFuture(Future<?> future) {
+			this.future = future;
+			if (isCanceled()) {
+				future.cancel(true);
+			}
+		}
+
+		@Override
+		public void setCanceled(boolean cancelled) {
+			super.setCanceled(cancelled);
+			Future<?> future = this.future;
+			if (cancelled && future != null) {
+				future.cancel(true);
+			}
+		}
+	}
+
+	/**
+	 * Runs tasks on the shared background threads, at most a given number at
+	 * a time. Queued tasks are run by the thread of the task that completes,
+	 * so that the number of threads used never exceeds the bound.
+	 */
+	private static class BoundedExecutor extends AbstractExecutorService {
+
+		private final int maxParallel;
+
+		private final Queue<Runnable> queue = new ArrayDeque<Runnable>();
+
+		private int running;
+
+		private boolean shutdown;
+
+		BoundedExecutor(int maxParallel) {
+			this.maxParallel = Math.max(1, maxParallel);
+		}
+
+		public void execute(final Runnable task) {
+			synchronized (this) {
+				if (shutdown) {
+					throw new RejectedExecutionException();
+				}
+				if (running >= maxParallel) {
+					queue.add(task);
+					return;
+				}
+				running++;
+			}
+			try {
+				getBackgroundExecutor().execute(new Runnable() {
+					public void run() {
+						Runnable next = task;
+						while (next != null) {
+							// Do not let the cancellation of the previous task
+							// interrupt the next one
+							Thread.interrupted();
+							try {
+								next.run();
+							}
+							catch (RuntimeException e) {
+								CloudFoundryPlugin.logError(e);
+							}
+							next = takeNext();
+						}
+					}
+				});
+			}
+			catch (RejectedExecutionException e) {
+				// The shared threads are shut down
+				synchronized (this) {
+					running--;
+					notifyAll();
+				}
+				throw e;
+			}
+		}
+
+		private synchronized Runnable takeNext() {
+			Runnable next = queue.poll();
+			if (next == null) {
+				running--;
+				notifyAll();
+			}
+			return next;
+		}
+
+		public synchronized void shutdown() {
+			shutdown = true;
+		}
+
+		public synchronized List<Runnable> shutdownNow() {
+			shutdown = true;
+			List<Runnable> pending = new ArrayList<Runnable>(queue);
+			queue.clear();
+			return pending;
+		}
+
+		public synchronized boolean isShutdown() {
+			return shutdown;
+		}
+
+		public synchronized boolean isTerminated() {
+			return shutdown && running == 0;
+		}
+
+		public synchronized boolean awaitTermination(long timeout, TimeUnit unit) throws InterruptedException {
+			long end = System.currentTimeMillis() + unit.toMillis(timeout);
+			while (!isTerminated()) {
+				long left = end - System.currentTimeMillis();
+				if (left <= 0) {
+					return false;
+				}
+				wait(left);
+			}
+			return true;
+		}
+	}
+
+	private static class RequestThreadFactory implements ThreadFactory {
+
+		private final AtomicInteger count = new AtomicInteger();
+
+		private final String name;
+
+		RequestThreadFactory(String name) {
+			this.name = name;
+		}
+
+		public Thread newThread(Runnable runnable) {
+			Thread thread = new Thread(runnable, name + ' ' + count.incrementAndGet());
+			thread.setDaemon(true);
+			return thread;
+		}
+	}
+
+	/**
+	 * Pool and request counts of a {@link ClientRequestExecutor}
+	 */
+	public static class Statistics {
+
+		private final int poolSize;
+
+		private final int largestPoolSize;
+
+		private final int maximumPoolSize;
+
+		private final int activeCount;
+
+		private final int queuedCount;
+
+		private final long submittedCount;
+
+		private final long completedCount;
+
+		private final long cancelledCount;
+
+		private final long failedCount;
+
+		Statistics(int poolSize, int largestPoolSize, int maximumPoolSize, int activeCount, int queuedCount,
+				long submittedCount, long completedCount, long cancelledCount, long failedCount) {
+			this.poolSize = poolSize;
+			this.largestPoolSize = largestPoolSize;
+			this.maximumPoolSize = maximumPoolSize;
+			this.activeCount = activeCount;
+			this.queuedCount = queuedCount;
+			this.submittedCount = submittedCount;
+			this.completedCount = completedCount;
+			this.cancelledCount = cancelledCount;
+			this.failedCount = failedCount;
+		}
+
+		public int getPoolSize() {
+			return poolSize;
+		}
+
+		public int getLargestPoolSize() {
+			return largestPoolSize;
+		}
+
+		public int getMaximumPoolSize() {
+			return maximumPoolSize;
+		}
+
+		/**
+		 *
+		 * @return number of requests currently running
+		 */
+		public int getActiveCount() {
+			return activeCount;
+		}
+
+		/**
+		 *
+		 * @return number of requests waiting for a request thread
+		 */
+		public int getQueuedCount() {
+			return queuedCount;
+		}
+
+		public long getSubmittedCount() {
+			return submittedCount;
+		}
+
+		/**
+		 *
+		 * @return number of requests that have completed, including failed
+		 * and cancelled requests
+		 */
+		public long getCompletedCount() {
+			return completedCount;
+		}
+
+		public long getCancelledCount() {
+			return cancelledCount;
+		}
+
+		public long getFailedCount() {
+			return failedCount;
+		}
+
+		@Override
+		public String toString() {
+			return "pool=" + poolSize + "/" + maximumPoolSize + ", largest=" + largestPoolSize + ", active=" //$NON-NLS-1$ //$NON-NLS-2$ //$NON-NLS-3$ //$NON-NLS-4$
+					+ activeCount + ", queued=" + queuedCount + ", submitted=" + submittedCount + ", completed=" //$NON-NLS-1$ //$NON-NLS-2$ //$NON-NLS-3$
+					+ completedCount + ", cancelled=" + cancelledCount + ", failed=" + failedCount; //$NON-NLS-1$ //$NON-NLS-2$
+		}
+	}
+}
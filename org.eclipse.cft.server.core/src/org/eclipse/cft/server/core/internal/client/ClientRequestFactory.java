@@ -21,6 +21,8 @@
  ********************************************************************************/
 package org.eclipse.cft.server.core.internal.client;
 
+import java.io.IOException;
+import java.io.InputStream;
 import java.io.StringWriter;
 import java.util.ArrayList;
 import java.util.Collections;
@@ -28,6 +30,7 @@ import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
 
+import org.cloudfoundry.client.lib.ClientHttpResponseCallback;
 import org.cloudfoundry.client.lib.CloudCredentials;
 import org.cloudfoundry.client.lib.CloudFoundryException;
 import org.cloudfoundry.client.lib.CloudFoundryOperations;
@@ -60,6 +63,7 @@ import org.eclipse.core.runtime.Status;
 import org.eclipse.core.runtime.SubMonitor;
 import org.eclipse.osgi.util.NLS;
 import org.eclipse.wst.server.core.IModule;
+import org.springframework.http.client.ClientHttpResponse;
 import org.springframework.security.oauth2.common.OAuth2AccessToken;
 import org.springframework.web.client.RestClientException;
 
@@ -158,6 +162,10 @@ public class ClientRequestFactory {
 			protected Void doRun(CloudFoundryOperations client, SubMonitor progress) throws CoreException {
 				CloudFoundryPlugin.logInfo("ClientRequestFactory.deleteApplication(...): appName:"+appName);
 				client.deleteApplication(appName);
+				// Do not show logs of the deleted app for a new app with the
+				// same name
+				CloudFoundryPlugin.getDefault().getRecentLogCache()
+						.delete(behaviour.getCloudFoundryServer().getServerId(), appName);
 				return null;
 			}
 		};
@@ -644,6 +652,46 @@ public class ClientRequestFactory {
 		};
 	}
 
+	/**
+	 * Streams a remote file to the local file of the given download, without
+	 * holding the content in memory.
+	 */
+	public BaseClientRequest<FileDownload> downloadFile(final CloudApplication app, final int instanceIndex,
+			final String path, final FileDownload download) throws CoreException {
+		String label = NLS.bind(Messages.CloudFoundryServerBehaviour_DOWNLOADING_FILE, path, app.getName());
+		return new FileRequest<FileDownload>(label, behaviour) {
+			@Override
+			protected FileDownload doRun(CloudFoundryOperations client, final SubMonitor progress)
+					throws CoreException {
+				// The files API has no ranges, so a resumed download skips
+				// the content already downloaded
+				final long offset = download.getOffset();
+				client.openFile(app.getName(), instanceIndex, path, new ClientHttpResponseCallback() {
+
+					@Override
+					public void onClientHttpResponse(ClientHttpResponse response) throws IOException {
+						InputStream in = response.getBody();
+						FileDownload.skip(in, offset);
+						download.transfer(in, response.getHeaders().getContentLength(), progress);
+					}
+				});
+				return download;
+			}
+		};
+	}
+
+	/**
+	 * Searches the files of an application instance for lines matching the
+	 * given pattern. Requires SSH access to the instance, which is not
+	 * available with this factory.
+	 * @return request that reports each match to the listener, and returns
+	 * the number of matches
+	 */
+	public BaseClientRequest<Integer> searchFiles(CloudApplication app, int instanceIndex, String path,
+			String pattern, RemoteFileSearch.IListener listener) throws CoreException {
+		throw CloudErrorUtil.toCoreException(NLS.bind(Messages.RemoteFileSearch_NOT_SUPPORTED, app.getName()));
+	}
+
 	/**
 	 * Check if the 'host' in the 'domainName' is reserved (route owned by us or
 	 * someone else), and if not reserve it. Clients are expected to call
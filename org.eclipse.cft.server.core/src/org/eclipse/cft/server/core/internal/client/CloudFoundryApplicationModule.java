@@ -507,6 +507,16 @@ public class CloudFoundryApplicationModule extends ExternalModule implements ICl
 		return localModuleId == CFAM_MODULE_ID;
 	}
 
+	/**
+	 * 
+	 * @return ID of the local WST module of the application, or null if the
+	 * application is external. Unlike {@link #getLocalModule()}, does not
+	 * look up the module in the server.
+	 */
+	public String getLocalModuleId() {
+		return isExternal() ? null : localModuleId;
+	}
+
 	public synchronized void setStatus(IStatus status) {
 		if (status == null || status.isOK()) {
 			this.validationStatus = null;
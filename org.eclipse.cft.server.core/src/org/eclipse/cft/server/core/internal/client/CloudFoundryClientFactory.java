@@ -34,10 +34,12 @@ import org.cloudfoundry.client.lib.CloudFoundryClient;
 import org.cloudfoundry.client.lib.CloudFoundryOperations;
 import org.cloudfoundry.client.lib.HttpProxyConfiguration;
 import org.cloudfoundry.client.lib.domain.CloudSpace;
+import org.cloudfoundry.client.lib.rest.CloudControllerClientFactory;
 import org.cloudfoundry.client.lib.util.CloudUtil;
 import org.cloudfoundry.client.lib.util.JsonUtil;
 import org.cloudfoundry.client.lib.util.RestUtil;
 import org.eclipse.cft.server.core.internal.CloudFoundryPlugin;
+import org.eclipse.cft.server.core.internal.log.HttpTracer;
 import org.eclipse.core.net.proxy.IProxyData;
 import org.eclipse.core.net.proxy.IProxyService;
 import org.springframework.http.HttpMethod;
@@ -87,8 +89,11 @@ public class CloudFoundryClientFactory {
 		// creation
 
 		HttpProxyConfiguration proxyConfiguration = getProxy(url);
-		return session != null ? new CloudFoundryClient(credentials, url, session, selfSigned)
-				: new CloudFoundryClient(credentials, url, proxyConfiguration, selfSigned);
+		return session != null
+				? new CloudFoundryClient(getControllerFactory(null, selfSigned).newCloudController(url, credentials,
+						session))
+				: new CloudFoundryClient(getControllerFactory(proxyConfiguration, selfSigned).newCloudController(url,
+						credentials, (CloudSpace) null));
 	}
 
 	public CloudFoundryOperations getCloudFoundryOperations(CloudCredentials credentials, URL url, String orgName,
@@ -101,7 +106,8 @@ public class CloudFoundryClientFactory {
 		// client
 		// creation
 		HttpProxyConfiguration proxyConfiguration = getProxy(url);
-		return new CloudFoundryClient(credentials, url, orgName, spaceName, proxyConfiguration, selfsigned);
+		return new CloudFoundryClient(getControllerFactory(proxyConfiguration, selfsigned).newCloudController(url,
+				credentials, orgName, spaceName));
 	}
 
 	public CloudFoundryOperations getCloudFoundryOperations(String cloudControllerUrl) throws MalformedURLException {
@@ -117,7 +123,20 @@ public class CloudFoundryClientFactory {
 		// therefore it is not critical to set the proxy in the client on client
 		// creation
 		HttpProxyConfiguration proxyConfiguration = getProxy(url);
-		return new CloudFoundryClient(url, proxyConfiguration, selfSigned);
+		return new CloudFoundryClient(
+				getControllerFactory(proxyConfiguration, selfSigned).newCloudController(url, null, (CloudSpace) null));
+	}
+
+	/**
+	 * Creates the factory of the controller client used by a
+	 * {@link CloudFoundryClient}, as the client would, but with the HTTP calls
+	 * of the client timed by the {@link HttpTracer}.
+	 */
+	protected CloudControllerClientFactory getControllerFactory(HttpProxyConfiguration proxyConfiguration,
+			boolean selfSigned) {
+		CloudControllerClientFactory factory = new CloudControllerClientFactory(proxyConfiguration, selfSigned);
+		HttpTracer.timeHttpCalls(factory.getRestTemplate());
+		return factory;
 	}
 
 	protected static CloudCredentials getCredentials(String userName, String password) {
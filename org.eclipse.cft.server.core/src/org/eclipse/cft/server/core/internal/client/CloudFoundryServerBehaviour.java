@@ -22,6 +22,7 @@
  ********************************************************************************/
 package org.eclipse.cft.server.core.internal.client;
 
+import java.io.File;
 import java.net.MalformedURLException;
 import java.net.URL;
 import java.util.ArrayList;
@@ -30,9 +31,15 @@ import java.util.Collection;
 import java.util.Collections;
 import java.util.HashMap;
 import java.util.HashSet;
+import java.util.LinkedHashMap;
 import java.util.List;
 import java.util.Map;
+import java.util.Map.Entry;
 import java.util.Set;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Future;
 import java.util.concurrent.locks.ReentrantLock;
 
 import org.cloudfoundry.client.lib.ApplicationLogListener;
@@ -40,6 +47,7 @@ import org.cloudfoundry.client.lib.CloudCredentials;
 import org.cloudfoundry.client.lib.CloudFoundryException;
 import org.cloudfoundry.client.lib.CloudFoundryOperations;
 import org.cloudfoundry.client.lib.HttpProxyConfiguration;
+import org.cloudfoundry.client.lib.StartingInfo;
 import org.cloudfoundry.client.lib.StreamingLogToken;
 import org.cloudfoundry.client.lib.domain.ApplicationLog;
 import org.cloudfoundry.client.lib.domain.ApplicationStats;
@@ -55,6 +63,7 @@ import org.eclipse.cft.server.core.CFServiceOffering;
 import org.eclipse.cft.server.core.ISshClientSupport;
 import org.eclipse.cft.server.core.internal.ApplicationAction;
 import org.eclipse.cft.server.core.internal.ApplicationInstanceRunningTracker;
+import org.eclipse.cft.server.core.internal.ApplicationStartPoller;
 import org.eclipse.cft.server.core.internal.ApplicationUrlLookupService;
 import org.eclipse.cft.server.core.internal.CloudErrorUtil;
 import org.eclipse.cft.server.core.internal.CloudFoundryLoginHandler;
@@ -78,6 +87,7 @@ import org.eclipse.cft.server.core.internal.log.AppLogUtil;
 import org.eclipse.cft.server.core.internal.log.CFApplicationLogListener;
 import org.eclipse.cft.server.core.internal.log.CFStreamingLogToken;
 import org.eclipse.cft.server.core.internal.log.CloudLog;
+import org.eclipse.cft.server.core.internal.log.RecentLogCache;
 import org.eclipse.cft.server.core.internal.log.V1CFApplicationLogListener;
 import org.eclipse.cft.server.core.internal.log.V1StreamingLogToken;
 import org.eclipse.cft.server.core.internal.spaces.CloudFoundrySpace;
@@ -88,7 +98,6 @@ import org.eclipse.core.runtime.IProgressMonitor;
 import org.eclipse.core.runtime.IStatus;
 import org.eclipse.core.runtime.MultiStatus;
 import org.eclipse.core.runtime.NullProgressMonitor;
-import org.eclipse.core.runtime.OperationCanceledException;
 import org.eclipse.core.runtime.Status;
 import org.eclipse.core.runtime.SubMonitor;
 import org.eclipse.core.runtime.jobs.IJobChangeEvent;
@@ -721,6 +730,18 @@ public class CloudFoundryServerBehaviour extends ServerBehaviourDelegate {
 	}
 
 	public List<CloudApplication> getBasicApplications(IProgressMonitor monitor) throws CoreException {
+		CFClient cfClient = getCFClient(monitor);
+		if (cfClient != null) {
+			String label = NLS.bind(Messages.CloudFoundryServerBehaviour_GET_ALL_APPS,
+					getCloudFoundryServer().getServer().getId());
+			return new CloudServerFutureRequest<List<CloudApplication>>(getCloudFoundryServer(), cfClient, label) {
+
+				@Override
+				protected Future<List<CloudApplication>> sendRequest(CFClient client) throws CoreException {
+					return client.getApplications();
+				}
+			}.run(monitor);
+		}
 		return getRequestFactory().getBasicApplications().run(monitor);
 	}
 
@@ -734,6 +755,17 @@ public class CloudFoundryServerBehaviour extends ServerBehaviourDelegate {
 	}
 
 	public InstancesInfo getInstancesInfo(final String applicationId, IProgressMonitor monitor) throws CoreException {
+		CFClient cfClient = getCFClient(monitor);
+		if (cfClient != null) {
+			String label = NLS.bind(Messages.CloudFoundryServerBehaviour_APP_INFO, applicationId);
+			return new CloudServerFutureRequest<InstancesInfo>(getCloudFoundryServer(), cfClient, label) {
+
+				@Override
+				protected Future<InstancesInfo> sendRequest(CFClient client) throws CoreException {
+					return client.getInstancesInfo(applicationId);
+				}
+			}.run(monitor);
+		}
 		return getRequestFactory().getInstancesInfo(applicationId).run(monitor);
 	}
 
@@ -742,6 +774,47 @@ public class CloudFoundryServerBehaviour extends ServerBehaviourDelegate {
 		return getRequestFactory().getFile(app, instanceIndex, path, isDir).run(monitor);
 	}
 
+	/**
+	 * Streams a remote file of an application instance to a local file. Unlike
+	 * {@link #getFile(CloudApplication, int, String, boolean, IProgressMonitor)}
+	 * , the content is not held in memory nor converted to characters, so this
+	 * should be used for large or binary files.
+	 * @param app
+	 * @param instanceIndex
+	 * @param path path of the file in the application instance
+	 * @param localFile
+	 * @param resume true to continue a previous download to the same local
+	 * file, false to replace it
+	 * @param monitor
+	 * @return the completed download, with its transfer rate
+	 * @throws CoreException if the download failed. The content downloaded so
+	 * far is kept in the local file, so that it can be resumed.
+	 */
+	public FileDownload downloadFile(CloudApplication app, int instanceIndex, String path, File localFile,
+			boolean resume, IProgressMonitor monitor) throws CoreException {
+		return getRequestFactory().downloadFile(app, instanceIndex, path, new FileDownload(localFile, resume))
+				.run(monitor);
+	}
+
+	/**
+	 * Searches the files of an application instance for lines matching the
+	 * given pattern. Use {@link RemoteFileSearch} to search all instances in
+	 * parallel.
+	 * @param app
+	 * @param instanceIndex
+	 * @param path directory to search, relative to the home directory of the
+	 * instance
+	 * @param pattern extended regular expression
+	 * @param listener notified of each match as it is found
+	 * @param monitor
+	 * @return number of matches
+	 * @throws CoreException if the instance could not be searched
+	 */
+	public int searchFiles(CloudApplication app, int instanceIndex, String path, String pattern,
+			RemoteFileSearch.IListener listener, IProgressMonitor monitor) throws CoreException {
+		return getRequestFactory().searchFiles(app, instanceIndex, path, pattern, listener).run(monitor);
+	}
+
 	public List<CFServiceOffering> getServiceOfferings(IProgressMonitor monitor) throws CoreException {
 		return getRequestFactory().getServiceOfferings().run(monitor);
 	}
@@ -754,6 +827,18 @@ public class CloudFoundryServerBehaviour extends ServerBehaviourDelegate {
 	}
 
 	public List<CFServiceInstance> getServices(IProgressMonitor monitor) throws CoreException {
+		CFClient cfClient = getCFClient(monitor);
+		if (cfClient != null) {
+			String label = NLS.bind(Messages.CloudFoundryServerBehaviour_GET_ALL_SERVICES,
+					getCloudFoundryServer().getServer().getId());
+			return new CloudServerFutureRequest<List<CFServiceInstance>>(getCloudFoundryServer(), cfClient, label) {
+
+				@Override
+				protected Future<List<CFServiceInstance>> sendRequest(CFClient client) throws CoreException {
+					return client.getServices();
+				}
+			}.run(monitor);
+		}
 		return getRequestFactory().getServices().run(monitor);
 	}
 
@@ -1441,8 +1526,95 @@ public class CloudFoundryServerBehaviour extends ServerBehaviourDelegate {
 			
 		}
 
-		super.publishModules(kind, modules, deltaKind2, multi, monitor);
+		int parallelism = CloudFoundryPlugin.getDefault() != null
+				? CloudFoundryPlugin.getDefault().getPublishParallelism() : 1;
+		if (parallelism > 1 && modules != null && deltaKind2 != null) {
+			publishModulesConcurrently(kind, modules, deltaKind2, multi, parallelism, monitor);
+		}
+		else {
+			super.publishModules(kind, modules, deltaKind2, multi, monitor);
+		}
+
+	}
+
+	/**
+	 * Publishes independent root modules concurrently, up to the given number
+	 * at a time. A root module and its child modules are published together,
+	 * in their original order, by the same thread. Statuses for each root
+	 * module are added to the given multi status once all root modules have
+	 * been published.
+	 */
+	private void publishModulesConcurrently(final int kind, List/* <IModule[]> */ modules,
+			List/* <Integer> */ deltaKind2, MultiStatus multi, int parallelism, final IProgressMonitor monitor) {
+
+		// Group each root module with its children, preserving the order in
+		// which they were requested
+		final Map<String, List<IModule[]>> groupModules = new LinkedHashMap<String, List<IModule[]>>();
+		final Map<String, List<Integer>> groupDeltaKinds = new HashMap<String, List<Integer>>();
+		for (int i = 0; i < modules.size(); i++) {
+			IModule[] module = (IModule[]) modules.get(i);
+			String rootId = module[0].getId();
+			List<IModule[]> group = groupModules.get(rootId);
+			if (group == null) {
+				group = new ArrayList<IModule[]>();
+				groupModules.put(rootId, group);
+				groupDeltaKinds.put(rootId, new ArrayList<Integer>());
+			}
+			group.add(module);
+			groupDeltaKinds.get(rootId).add((Integer) deltaKind2.get(i));
+		}
+
+		if (groupModules.size() <= 1) {
+			super.publishModules(kind, modules, deltaKind2, multi, monitor);
+			return;
+		}
+
+		final SubMonitor subMonitor = SubMonitor.convert(monitor, groupModules.size());
+		final IProgressMonitor groupMonitor = new CancelPropagatingMonitor(monitor);
+
+		ExecutorService executor = ClientRequestExecutor
+				.newBoundedExecutor(Math.min(parallelism, groupModules.size()));
+		List<String> groupNames = new ArrayList<String>();
+		List<Future<MultiStatus>> results = new ArrayList<Future<MultiStatus>>();
+		try {
+			for (final Entry<String, List<IModule[]>> group : groupModules.entrySet()) {
+				final String groupName = group.getValue().get(0)[0].getName();
+				groupNames.add(groupName);
+				results.add(executor.submit(new Callable<MultiStatus>() {
+					public MultiStatus call() throws Exception {
+						MultiStatus groupStatus = new MultiStatus(CloudFoundryPlugin.PLUGIN_ID, 0,
+								NLS.bind(Messages.CloudFoundryServerBehaviour_PUBLISH_MODULE_STATUS, groupName), null);
+						if (!groupMonitor.isCanceled()) {
+							CloudFoundryServerBehaviour.super.publishModules(kind, group.getValue(),
+									groupDeltaKinds.get(group.getKey()), groupStatus, groupMonitor);
+						}
+						return groupStatus;
+					}
+				}));
+			}
 
+			for (int i = 0; i < results.size(); i++) {
+				try {
+					MultiStatus groupStatus = results.get(i).get();
+					if (!groupStatus.isOK()) {
+						multi.add(groupStatus);
+					}
+				}
+				catch (ExecutionException e) {
+					multi.add(CloudFoundryPlugin.getErrorStatus(
+							NLS.bind(Messages.CloudFoundryServerBehaviour_PUBLISH_MODULE_STATUS, groupNames.get(i)),
+							e.getCause()));
+				}
+				subMonitor.worked(1);
+			}
+		}
+		catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+			monitor.setCanceled(true);
+		}
+		finally {
+			executor.shutdownNow();
+		}
 	}
 
 	@Override
@@ -1581,10 +1753,21 @@ public class CloudFoundryServerBehaviour extends ServerBehaviourDelegate {
 	 */
 	public List<CloudRoute> getRoutes(final String domainName, IProgressMonitor monitor) throws CoreException {
 
+		CFClient cfClient = getCFClient(monitor);
+		if (cfClient != null) {
+			return new CloudServerFutureRequest<List<CloudRoute>>(getCloudFoundryServer(), cfClient,
+					NLS.bind(Messages.ROUTES, domainName)) {
+
+				@Override
+				protected Future<List<CloudRoute>> sendRequest(CFClient client) throws CoreException {
+					return client.getRoutes(domainName);
+				}
+			}.run(monitor);
+		}
+
 		BaseClientRequest<List<CloudRoute>> request = getRequestFactory().getRoutes(domainName);
 
-		CancellableRequestThread<List<CloudRoute>> t = new CancellableRequestThread<List<CloudRoute>>(request, monitor);
-		return t.runAndWaitForCompleteOrCancelled();
+		return ClientRequestExecutor.getDefault().runAndWait(request, monitor);
 
 	}
 
@@ -1615,8 +1798,7 @@ public class CloudFoundryServerBehaviour extends ServerBehaviourDelegate {
 
 		BaseClientRequest<Boolean> request = getRequestFactory().reserveRouteIfAvailable(host, domainName);
 
-		CancellableRequestThread<Boolean> t = new CancellableRequestThread<Boolean>(request, monitor);
-		Boolean result = t.runAndWaitForCompleteOrCancelled();
+		Boolean result = ClientRequestExecutor.getDefault().runAndWait(request, monitor);
 
 		if (result != null) {
 			return result;
@@ -1940,7 +2122,8 @@ public class CloudFoundryServerBehaviour extends ServerBehaviourDelegate {
 		IModuleResourceDelta[] deltas = getPublishedResourceDelta(modules);
 		List<IModuleResource> changedResources = getChangedResources(deltas);
 		CFApplicationArchive moduleArchive = new CachingApplicationArchive(Arrays.asList(allResources),
-				changedResources, modules[0], deploymentInfo.getDeploymentName());
+				changedResources, modules[0], getCloudFoundryServer().getServerId(),
+				deploymentInfo.getDeploymentName());
 
 		return moduleArchive;
 	}
@@ -2183,7 +2366,80 @@ public class CloudFoundryServerBehaviour extends ServerBehaviourDelegate {
 		return hybridClient;
 	}
 
+	/**
+	 * Returns a client for non-blocking requests to the server, so that
+	 * several requests can be sent concurrently.
+	 * @param monitor
+	 * @return client, or null if no such client is available for the server,
+	 * in which case the blocking requests of this behaviour should be used
+	 * instead
+	 * @throws CoreException
+	 */
+	public CFClient getCFClient(IProgressMonitor monitor) throws CoreException {
+		return getHybridClient(monitor);
+	}
+
+	/**
+	 * Stops the application if it is running, and starts it again so that its
+	 * current bits are staged. The start of its instances has to be tracked by
+	 * the caller.
+	 * @param appName
+	 * @param label
+	 * @param monitor
+	 * @return starting info of the application, or null if not available
+	 * @throws CoreException if the restart could not be requested
+	 */
+	public StartingInfo restartApplication(final String appName, String label, IProgressMonitor monitor)
+			throws CoreException {
+		CFClient cfClient = getCFClient(monitor);
+		if (cfClient != null) {
+			new CloudServerFutureRequest<Void>(getCloudFoundryServer(), cfClient, label) {
+
+				@Override
+				protected Future<Void> sendRequest(CFClient client) throws CoreException {
+					return client.restartApplication(appName);
+				}
+			}.run(monitor);
+			return null;
+		}
+		return getRequestFactory().restartApplication(appName, label).run(monitor);
+	}
+
+	/**
+	 * Fetches the recent logs of the application from the server, and adds
+	 * them to the logs cached for the application in previous requests.
+	 * @param appName
+	 * @param monitor
+	 * @return cached and recent logs of the application, in timestamp order
+	 * @throws CoreException if recent logs could not be fetched
+	 */
 	public List<CloudLog> getRecentAppLogs(final String appName, IProgressMonitor monitor) throws CoreException {
+		List<CloudLog> recentLogs = fetchRecentAppLogs(appName, monitor);
+		if (appName == null) {
+			return recentLogs;
+		}
+		RecentLogCache cache = CloudFoundryPlugin.getDefault().getRecentLogCache();
+		String serverId = getCloudFoundryServer().getServerId();
+		cache.merge(serverId, appName, recentLogs);
+		return cache.getLogs(serverId, appName);
+	}
+
+	/**
+	 * Returns the logs of the application that were cached when recent logs
+	 * were last fetched, without any request to the server.
+	 * @param appName
+	 * @return cached logs in timestamp order, or empty list if none are cached
+	 * @throws CoreException
+	 */
+	public List<CloudLog> getCachedAppLogs(String appName) throws CoreException {
+		if (appName == null) {
+			return Collections.emptyList();
+		}
+		return CloudFoundryPlugin.getDefault().getRecentLogCache().getLogs(getCloudFoundryServer().getServerId(),
+				appName);
+	}
+
+	protected List<CloudLog> fetchRecentAppLogs(final String appName, IProgressMonitor monitor) throws CoreException {
 		
 		CFClient hybridClient = getHybridClient(monitor);
 		if (hybridClient != null) {
@@ -2214,8 +2470,13 @@ public class CloudFoundryServerBehaviour extends ServerBehaviourDelegate {
 		}
 	}
 
-	public CFStreamingLogToken startAppLogStreaming(final String appName, final CFApplicationLogListener listener, IProgressMonitor monitor) throws CoreException {
-		if (appName != null && listener != null) {
+	public CFStreamingLogToken startAppLogStreaming(final String appName, CFApplicationLogListener logListener, IProgressMonitor monitor) throws CoreException {
+		if (appName != null && logListener != null) {
+
+			// Let the start tracking of the application follow its progress
+			// through its logs
+			final CFApplicationLogListener listener = ApplicationStartPoller.forServer(getCloudFoundryServer())
+					.getLogListener(appName, logListener);
 
 			CFClient hybridClient = getHybridClient(monitor);
 			if (hybridClient != null) {
@@ -2248,138 +2509,3 @@ public class CloudFoundryServerBehaviour extends ServerBehaviourDelegate {
 		return null;
 	}
 }
-
-/**
- * Requests may be wrapped using this class, such that if the user cancels the
- * monitor, the thread will automatically return.
- * 
- * Note: Since the BaseClientRequest itself does not check the monitor, the
- * BaseClientRequest may still be running even though the calling thread has
- * return. Care should be taken to consider this logic.
- */
-class CancellableRequestThread<T> {
-
-	private T result = null;
-
-	private Throwable exceptionThrown = null;
-
-	private boolean threadComplete = false;
-
-	private final Object lock = new Object();
-
-	private final IProgressMonitor monitor;
-
-	private final BaseClientRequest<T> request;
-
-	public CancellableRequestThread(BaseClientRequest<T> request, IProgressMonitor monitor) {
-		this.request = request;
-		this.monitor = monitor;
-	}
-
-	/** This is called by ThreadWrapper.run(...) */
-	private void runInThread() {
-
-		try {
-			result = request.run(monitor);
-		}
-		catch (Exception e) {
-			exceptionThrown = e;
-		}
-		finally {
-			synchronized (lock) {
-				threadComplete = true;
-				lock.notify();
-			}
-		}
-
-	}
-
-	/**
-	 * Starts the thread to invoke the request, and begins waiting for the
-	 * thread to complete or be cancelled.
-	 */
-	public T runAndWaitForCompleteOrCancelled() {
-		try {
-
-			// Start the thread that runs the requst
-			ThreadWrapper tw = new ThreadWrapper();
-			tw.start();
-
-			while (!monitor.isCanceled()) {
-
-				synchronized (lock) {
-					// Check for cancelled every 0.25 seconds.
-					lock.wait(250);
-
-					if (threadComplete) {
-						break;
-					}
-				}
-			}
-
-			Throwable thr = getExceptionThrown();
-			// Throw any caught exceptions
-			if (thr != null) {
-				if (thr instanceof RuntimeException) {
-					// Throw unchecked exception
-					throw (RuntimeException) thr;
-
-				}
-				else {
-					// Convert checked to unchecked exception
-					throw new RuntimeException(thr);
-				}
-
-			}
-
-			// Check for cancelled
-			if (!isThreadComplete() && getResult() == null) {
-				throw new OperationCanceledException();
-			}
-
-			T result = getResult();
-
-			return result;
-
-		}
-		catch (InterruptedException e) {
-			throw new OperationCanceledException();
-		}
-	}
-
-	public Throwable getExceptionThrown() {
-		synchronized (lock) {
-			return exceptionThrown;
-		}
-	}
-
-	public boolean isThreadComplete() {
-		synchronized (lock) {
-			return threadComplete;
-		}
-	}
-
-	public T getResult() {
-		synchronized (lock) {
-			return result;
-		}
-	}
-
-	/**
-	 * Simple thread that calls runInThread(...), to ensure that the
-	 * BaseClientRequest may only be started by calling the
-	 * runAndWaitForCompleteOrCancelled(...) method.
-	 */
-	private class ThreadWrapper extends Thread {
-
-		private ThreadWrapper() {
-			setDaemon(true);
-			setName(CancellableRequestThread.class.getName());
-		}
-
-		@Override
-		public void run() {
-			runInThread();
-		}
-	}
-}
@@ -0,0 +1,89 @@
+/*******************************************************************************
+ * Copyright (c) 2017 Pivotal Software, Inc. and others
+ *
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * and Apache License v2.0 which accompanies this distribution.
+ *
+ * The Eclipse Public License is available at
+ *
+ * http://www.eclipse.org/legal/epl-v10.html
+ *
+ * and the Apache License v2.0 is available at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * You may elect to redistribute this code under either of these licenses.
+ *
+ *  Contributors:
+ *     Pivotal Software, Inc. - initial API and implementation
+ ********************************************************************************/
+package org.eclipse.cft.server.core.internal.client;
+
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+
+import org.eclipse.cft.server.core.internal.CloudErrorUtil;
+import org.eclipse.cft.server.core.internal.CloudFoundryServer;
+import org.eclipse.core.runtime.CoreException;
+import org.eclipse.core.runtime.IProgressMonitor;
+import org.eclipse.core.runtime.OperationCanceledException;
+
+/**
+ * Runs a non-blocking request of a {@link CFClient}, and waits for its
+ * response. The request is cancelled if the monitor is cancelled while
+ * waiting.
+ */
+public abstract class CloudServerFutureRequest<T> extends CloudServerRequest<T> {
+
+	/*
+	 * Interval at which the monitor is checked for cancellation while waiting
+	 */
+	private static final long CANCEL_CHECK_INTERVAL = 200;
+
+	public CloudServerFutureRequest(CloudFoundryServer cloudServer, CFClient client, String label) {
+		super(cloudServer, client, label);
+	}
+
+	@Override
+	protected T runRequest(CFClient client, IProgressMonitor monitor) throws CoreException {
+		Future<T> response = sendRequest(client);
+		try {
+			while (true) {
+				if (monitor.isCanceled()) {
+					response.cancel(true);
+					throw new OperationCanceledException();
+				}
+				try {
+					return response.get(CANCEL_CHECK_INTERVAL, TimeUnit.MILLISECONDS);
+				}
+				catch (TimeoutException e) {
+					// Check for cancellation again
+				}
+			}
+		}
+		catch (InterruptedException e) {
+			response.cancel(true);
+			Thread.currentThread().interrupt();
+			throw new OperationCanceledException();
+		}
+		catch (ExecutionException e) {
+			Throwable cause = e.getCause();
+			if (cause instanceof CoreException) {
+				throw (CoreException) cause;
+			}
+			throw CloudErrorUtil.toCoreException(cause);
+		}
+	}
+
+	/**
+	 *
+	 * @param client
+	 * @return future of the response
+	 * @throws CoreException if the request could not be sent
+	 */
+	protected abstract Future<T> sendRequest(CFClient client) throws CoreException;
+
+}
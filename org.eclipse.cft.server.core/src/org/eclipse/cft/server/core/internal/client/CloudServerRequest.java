@@ -25,6 +25,7 @@ import org.eclipse.cft.server.core.internal.CloudErrorUtil;
 import org.eclipse.cft.server.core.internal.CloudFoundryPlugin;
 import org.eclipse.cft.server.core.internal.CloudFoundryServer;
 import org.eclipse.cft.server.core.internal.Messages;
+import org.eclipse.cft.server.core.internal.metrics.CloudMetrics;
 import org.eclipse.core.runtime.Assert;
 import org.eclipse.core.runtime.CoreException;
 import org.eclipse.core.runtime.IProgressMonitor;
@@ -68,16 +69,19 @@ public abstract class CloudServerRequest<T> {
 	/**
 	 * Performs the client request, and if necessary, re-attempts the request
 	 * after a certain interval IFF an error occurs based on
-	 * {@link #getRetryTimeout()} and
-	 * {@link #getRetryInterval(Throwable, SubMonitor)}.
+	 * {@link #getRetryTimeout()} and {@link #getRetryPolicy()}, or
+	 * {@link #getRetryInterval(Throwable, IProgressMonitor)} if the request has
+	 * no retry policy.
 	 * <p/>
 	 * The default behaviour is to only attempt a client request once and quit
 	 * after an error is encountered. Subclasses may modify this behaviour by
-	 * overriding {@link #getRetryTimeout()} and
-	 * {@link #getRetryInterval(Throwable, SubMonitor)}
+	 * overriding {@link #getRetryTimeout()} and {@link #getRetryPolicy()} or
+	 * {@link #getRetryInterval(Throwable, IProgressMonitor)}
 	 * <p/>
 	 * Note that reattempts are only decided based on errors thrown by the
 	 * client invocation, not by results generated by the client invocation.
+	 * Reattempts of transport failures are skipped while the circuit breaker
+	 * of the server is open.
 	 * @param client client whose operations are invoked. Never null.
 	 * @param subProgress
 	 * @return result of operation. Can be null.
@@ -93,6 +97,8 @@ public abstract class CloudServerRequest<T> {
 
 		boolean reattempt = true;
 		long timeLeft = getRetryTimeout();
+		RetryContext context = new RetryContext();
+		CircuitBreaker breaker = CircuitBreaker.forServer(getCloudServer());
 
 		// Either this operation returns a result during the waiting period or
 		// an error occurred, and error
@@ -103,16 +109,28 @@ public abstract class CloudServerRequest<T> {
 			long interval = -1;
 
 			try {
-				return runRequest(client, monitor);
+				T result = runRequest(client, monitor);
+				if (breaker != null) {
+					breaker.recordSuccess();
+				}
+				return result;
 			}
 			catch (Throwable e) {
 				error = e;
 			}
 
-			interval = getRetryInterval(error, monitor);
+			RetryPolicy policy = getRetryPolicy();
+			interval = policy != null ? policy.getRetryDelay(error, context) : getRetryInterval(error, monitor);
+			if (breaker != null && !(error instanceof OperationCanceledException)) {
+				breaker.recordAttempt(error);
+				if (interval > 0 && CircuitBreaker.isTransportFailure(error) && !breaker.allowRetry()) {
+					interval = -1;
+				}
+			}
 			timeLeft -= interval;
 			reattempt = !monitor.isCanceled() && timeLeft >= 0 && interval > 0;
 			if (reattempt) {
+				CloudMetrics.getDefault().recordRetry(requestLabel);
 
 				try {
 					Thread.sleep(interval);
@@ -149,8 +167,12 @@ public abstract class CloudServerRequest<T> {
 		SubMonitor subProgress = SubMonitor.convert(monitor);
 		subProgress.subTask(requestLabel);
 
+		long start = System.currentTimeMillis();
+		boolean failed = true;
 		try {
-			return promptCredentialsAndRun(subProgress);
+			T result = promptCredentialsAndRun(subProgress);
+			failed = false;
+			return result;
 		}
 		catch (CoreException ce) {
 			// See if it is a connection error. If so, parse it into readable
@@ -164,6 +186,7 @@ public abstract class CloudServerRequest<T> {
 			}
 		}
 		finally {
+			CloudMetrics.getDefault().recordRequest(requestLabel, System.currentTimeMillis() - start, failed);
 			subProgress.done();
 		}
 
@@ -246,6 +269,16 @@ public abstract class CloudServerRequest<T> {
 		return -1;
 	}
 
+	/**
+	 * Policy that decides which errors result in further attempts, and how
+	 * long to wait before each attempt. If null,
+	 * {@link #getRetryInterval(Throwable, IProgressMonitor)} is used instead.
+	 * @return retry policy, or null by default
+	 */
+	protected RetryPolicy getRetryPolicy() {
+		return null;
+	}
+
 	/**
 	 * Total amount of time to wait. If less than the wait interval length, only
 	 * one attempt will be made
@@ -0,0 +1,187 @@
+/*******************************************************************************
+ * Copyright (c) 2017 Pivotal Software, Inc. and others
+ *
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * and Apache License v2.0 which accompanies this distribution.
+ *
+ * The Eclipse Public License is available at
+ *
+ * http://www.eclipse.org/legal/epl-v10.html
+ *
+ * and the Apache License v2.0 is available at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * You may elect to redistribute this code under either of these licenses.
+ *
+ *  Contributors:
+ *     Pivotal Software, Inc. - initial API and implementation
+ ********************************************************************************/
+package org.eclipse.cft.server.core.internal.client;
+
+import java.io.BufferedOutputStream;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+
+import org.eclipse.cft.server.core.internal.Messages;
+import org.eclipse.core.runtime.IProgressMonitor;
+import org.eclipse.core.runtime.OperationCanceledException;
+import org.eclipse.core.runtime.SubMonitor;
+import org.eclipse.osgi.util.NLS;
+
+/**
+ * Streams the content of a remote file to a local file, without holding the
+ * content in memory or converting it to characters, so that binary files
+ * like heap dumps are downloaded as they are.
+ * <p/>
+ * If resuming, the download continues from the end of the existing local
+ * file, which is also kept if the download is cancelled or fails, so that it
+ * can be resumed later.
+ */
+public class FileDownload {
+
+	public static final int BUFFER_SIZE = 64 * 1024;
+
+	private static final long PROGRESS_INTERVAL = 500;
+
+	private final File localFile;
+
+	private final boolean resume;
+
+	private long bytesTransferred;
+
+	private long elapsed;
+
+	/**
+	 * 
+	 * @param localFile file to write the remote content to
+	 * @param resume true to continue a previous download into the same file,
+	 * false to replace the file
+	 */
+	public FileDownload(File localFile, boolean resume) {
+		this.localFile = localFile;
+		this.resume = resume;
+	}
+
+	public File getLocalFile() {
+		return localFile;
+	}
+
+	/**
+	 * 
+	 * @return position in the remote file from which the content is
+	 * downloaded
+	 */
+	public long getOffset() {
+		return resume && localFile.isFile() ? localFile.length() : 0;
+	}
+
+	/**
+	 * 
+	 * @return number of bytes written by the last transfer, not counting
+	 * resumed content
+	 */
+	public long getBytesTransferred() {
+		return bytesTransferred;
+	}
+
+	/**
+	 * 
+	 * @return average transfer rate of the last transfer
+	 */
+	public long getBytesPerSecond() {
+		return elapsed > 0 ? bytesTransferred * 1000 / elapsed : bytesTransferred;
+	}
+
+	/**
+	 * Writes the given stream to the local file. The stream must start at
+	 * {@link #getOffset()} in the remote file.
+	 * @param in remote content, which is not closed
+	 * @param totalBytes size of the whole remote file, or -1 if not known
+	 * @param monitor
+	 * @return number of bytes written
+	 * @throws IOException if reading or writing failed
+	 * @throws OperationCanceledException if the monitor was cancelled. The
+	 * content written so far is kept.
+	 */
+	public long transfer(InputStream in, long totalBytes, IProgressMonitor monitor) throws IOException {
+		long offset = getOffset();
+		SubMonitor progress = SubMonitor.convert(monitor,
+				totalBytes > offset ? (int) Math.min((totalBytes - offset) / 1024, Integer.MAX_VALUE) : 0);
+
+		File parent = localFile.getAbsoluteFile().getParentFile();
+		if (parent != null && !parent.exists()) {
+			parent.mkdirs();
+		}
+
+		bytesTransferred = 0;
+		elapsed = 0;
+		long start = System.currentTimeMillis();
+		long lastReported = start;
+		long reportedKb = 0;
+
+		OutputStream out = new BufferedOutputStream(new FileOutputStream(localFile, offset > 0), BUFFER_SIZE);
+		try {
+			byte[] buffer = new byte[BUFFER_SIZE];
+			int read;
+			while ((read = in.read(buffer)) != -1) {
+				out.write(buffer, 0, read);
+				bytesTransferred += read;
+
+				long now = System.currentTimeMillis();
+				elapsed = now - start;
+				long kb = bytesTransferred / 1024;
+				progress.worked((int) (kb - reportedKb));
+				reportedKb = kb;
+				if (now - lastReported >= PROGRESS_INTERVAL) {
+					lastReported = now;
+					progress.subTask(getProgressMessage(offset, totalBytes));
+				}
+				if (progress.isCanceled()) {
+					throw new OperationCanceledException();
+				}
+			}
+			out.flush();
+		}
+		finally {
+			elapsed = System.currentTimeMillis() - start;
+			out.close();
+		}
+		return bytesTransferred;
+	}
+
+	protected String getProgressMessage(long offset, long totalBytes) {
+		String downloadedKb = Long.toString((offset + bytesTransferred) / 1024);
+		String rateKb = Long.toString(getBytesPerSecond() / 1024);
+		if (totalBytes >= 0) {
+			return NLS.bind(Messages.FileDownload_PROGRESS,
+					new Object[] { downloadedKb, Long.toString(totalBytes / 1024), rateKb });
+		}
+		return NLS.bind(Messages.FileDownload_PROGRESS_UNKNOWN_SIZE, downloadedKb, rateKb);
+	}
+
+	/**
+	 * Skips the given number of bytes of a stream that does not support
+	 * starting at an offset
+	 * @param in
+	 * @param bytes
+	 * @throws IOException if the stream ends before the given number of bytes
+	 */
+	public static void skip(InputStream in, long bytes) throws IOException {
+		long remaining = bytes;
+		while (remaining > 0) {
+			long skipped = in.skip(remaining);
+			if (skipped <= 0) {
+				if (in.read() == -1) {
+					throw new IOException("Stream ended before offset " + bytes); //$NON-NLS-1$
+				}
+				skipped = 1;
+			}
+			remaining -= skipped;
+		}
+	}
+}
@@ -0,0 +1,360 @@
+/*******************************************************************************
+ * Copyright (c) 2017 Pivotal Software, Inc. and others
+ *
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * and Apache License v2.0 which accompanies this distribution.
+ *
+ * The Eclipse Public License is available at
+ *
+ * http://www.eclipse.org/legal/epl-v10.html
+ *
+ * and the Apache License v2.0 is available at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * You may elect to redistribute this code under either of these licenses.
+ *
+ *  Contributors:
+ *     Pivotal Software, Inc. - initial API and implementation
+ ********************************************************************************/
+package org.eclipse.cft.server.core.internal.client;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+import org.apache.http.HttpException;
+import org.apache.http.HttpRequest;
+import org.apache.http.HttpRequestInterceptor;
+import org.apache.http.HttpResponse;
+import org.apache.http.config.ConnectionConfig;
+import org.apache.http.config.Registry;
+import org.apache.http.config.RegistryBuilder;
+import org.apache.http.conn.ConnectionKeepAliveStrategy;
+import org.apache.http.conn.HttpConnectionFactory;
+import org.apache.http.conn.ManagedHttpClientConnection;
+import org.apache.http.conn.routing.HttpRoute;
+import org.apache.http.conn.socket.ConnectionSocketFactory;
+import org.apache.http.conn.socket.PlainConnectionSocketFactory;
+import org.apache.http.conn.ssl.SSLConnectionSocketFactory;
+import org.apache.http.impl.client.DefaultConnectionKeepAliveStrategy;
+import org.apache.http.impl.client.HttpClientBuilder;
+import org.apache.http.impl.conn.ManagedHttpClientConnectionFactory;
+import org.apache.http.impl.conn.PoolingHttpClientConnectionManager;
+import org.apache.http.pool.PoolStats;
+import org.apache.http.protocol.HttpContext;
+import org.cloudfoundry.client.lib.HttpProxyConfiguration;
+import org.eclipse.cft.server.core.internal.CloudFoundryPlugin;
+import org.eclipse.core.runtime.Assert;
+
+/**
+ * Pool of HTTP connections shared by all the REST templates that send
+ * requests to the same Cloud Foundry target with the same connection settings.
+ * Connections are kept alive between requests, and TLS sessions are reused
+ * when new connections are opened, so that support objects created for each
+ * operation do not pay for new TCP and TLS handshakes, in particular through
+ * a proxy.
+ * <p/>
+ * Idle connections are closed after {@link #KEEP_ALIVE}, unless the server
+ * asks for a shorter keep alive.
+ */
+public class HttpConnectionPool {
+
+	public static final long KEEP_ALIVE = 30 * 1000;
+
+	private static final long EVICTION_INTERVAL = 10 * 1000;
+
+	private static final Map<String, HttpConnectionPool> pools = new ConcurrentHashMap<String, HttpConnectionPool>();
+
+	private static ScheduledFuture<?> eviction;
+
+	private static final ConnectionKeepAliveStrategy KEEP_ALIVE_STRATEGY = new DefaultConnectionKeepAliveStrategy() {
+
+		@Override
+		public long getKeepAliveDuration(HttpResponse response, HttpContext context) {
+			long duration = super.getKeepAliveDuration(response, context);
+			// A negative duration means the server did not say, in which case
+			// connections would be kept forever
+			return duration > 0 && duration < KEEP_ALIVE ? duration : KEEP_ALIVE;
+		}
+	};
+
+	private final String serverUrl;
+
+	private final PoolingHttpClientConnectionManager connectionManager;
+
+	private final AtomicLong requests = new AtomicLong();
+
+	private final AtomicLong connectionsOpened = new AtomicLong();
+
+	private final HttpRequestInterceptor requestCounter = new HttpRequestInterceptor() {
+
+		@Override
+		public void process(HttpRequest request, HttpContext context) throws HttpException, IOException {
+			requests.incrementAndGet();
+		}
+	};
+
+	protected HttpConnectionPool(String serverUrl, boolean trustSelfSigned, int maxConnectionsPerRoute) {
+		this.serverUrl = serverUrl;
+
+		// A single socket factory per pool, so that its SSL context caches
+		// the TLS sessions of the connections of the pool
+		SSLConnectionSocketFactory sslSocketFactory = trustSelfSigned
+				? new SSLConnectionSocketFactory(RestUtils.buildSslContext(),
+						SSLConnectionSocketFactory.BROWSER_COMPATIBLE_HOSTNAME_VERIFIER)
+				: SSLConnectionSocketFactory.getSystemSocketFactory();
+		Registry<ConnectionSocketFactory> socketFactories = RegistryBuilder.<ConnectionSocketFactory> create()
+				.register("http", PlainConnectionSocketFactory.getSocketFactory()) //$NON-NLS-1$
+				.register("https", sslSocketFactory) //$NON-NLS-1$
+				.build();
+
+		HttpConnectionFactory<HttpRoute, ManagedHttpClientConnection> connectionFactory = new HttpConnectionFactory<HttpRoute, ManagedHttpClientConnection>() {
+
+			@Override
+			public ManagedHttpClientConnection create(HttpRoute route, ConnectionConfig config) {
+				connectionsOpened.incrementAndGet();
+				return ManagedHttpClientConnectionFactory.INSTANCE.create(route, config);
+			}
+		};
+
+		this.connectionManager = new PoolingHttpClientConnectionManager(socketFactories, connectionFactory);
+		setMaxConnectionsPerRoute(maxConnectionsPerRoute);
+	}
+
+	/**
+	 * 
+	 * @param serverUrl URL of the target. Must not be null.
+	 * @param httpProxyConfiguration
+	 * @param trustSelfSigned
+	 * @return pool shared by all clients of the given target using the same
+	 * proxy and certificate settings
+	 */
+	public static HttpConnectionPool forServer(String serverUrl, HttpProxyConfiguration httpProxyConfiguration,
+			boolean trustSelfSigned) {
+		Assert.isNotNull(serverUrl);
+		String key = getKey(serverUrl, httpProxyConfiguration, trustSelfSigned);
+		HttpConnectionPool pool = pools.get(key);
+		if (pool == null) {
+			synchronized (pools) {
+				pool = pools.get(key);
+				if (pool == null) {
+					pool = new HttpConnectionPool(serverUrl, trustSelfSigned, getMaxConnectionsPerRoutePreference());
+					pools.put(key, pool);
+					scheduleEviction();
+				}
+			}
+		}
+		return pool;
+	}
+
+	/**
+	 * Closes all pools and their connections. Clients that still use a
+	 * closed pool fail to send further requests. Invoked when the plugin
+	 * stops.
+	 */
+	public static void closeAll() {
+		synchronized (pools) {
+			for (HttpConnectionPool pool : pools.values()) {
+				pool.close();
+			}
+			pools.clear();
+		}
+		synchronized (HttpConnectionPool.class) {
+			if (eviction != null) {
+				eviction.cancel(false);
+				eviction = null;
+			}
+		}
+	}
+
+	/**
+	 * Applies the given limit to existing and future pools
+	 * @param maxConnectionsPerRoute
+	 */
+	public static void setMaxConnectionsPerRouteForAll(int maxConnectionsPerRoute) {
+		for (HttpConnectionPool pool : pools.values()) {
+			pool.setMaxConnectionsPerRoute(maxConnectionsPerRoute);
+		}
+	}
+
+	/**
+	 * 
+	 * @return statistics of all the pools, one per target and connection
+	 * settings
+	 */
+	public static List<Stats> getAllStats() {
+		List<Stats> stats = new ArrayList<Stats>();
+		for (HttpConnectionPool pool : pools.values()) {
+			stats.add(pool.getStats());
+		}
+		return stats;
+	}
+
+	/**
+	 * Sends the requests of the client built by the given builder through
+	 * this pool
+	 * @param builder
+	 */
+	public void configure(HttpClientBuilder builder) {
+		builder.setConnectionManager(connectionManager);
+		builder.setKeepAliveStrategy(KEEP_ALIVE_STRATEGY);
+		builder.addInterceptorFirst(requestCounter);
+	}
+
+	public void setMaxConnectionsPerRoute(int maxConnectionsPerRoute) {
+		connectionManager.setDefaultMaxPerRoute(maxConnectionsPerRoute);
+		connectionManager.setMaxTotal(Math.max(RestUtils.MAX_CONNECTIONS_TOTAL, 2 * maxConnectionsPerRoute));
+	}
+
+	public Stats getStats() {
+		PoolStats total = connectionManager.getTotalStats();
+		return new Stats(serverUrl, requests.get(), connectionsOpened.get(), total.getLeased(),
+				total.getAvailable(), total.getPending(), connectionManager.getDefaultMaxPerRoute());
+	}
+
+	protected void close() {
+		connectionManager.shutdown();
+	}
+
+	protected void closeIdleConnections() {
+		connectionManager.closeExpiredConnections();
+		connectionManager.closeIdleConnections(KEEP_ALIVE, TimeUnit.MILLISECONDS);
+	}
+
+	protected static String getKey(String serverUrl, HttpProxyConfiguration httpProxyConfiguration,
+			boolean trustSelfSigned) {
+		StringBuilder key = new StringBuilder();
+		key.append(serverUrl);
+		key.append('|');
+		key.append(trustSelfSigned);
+		if (httpProxyConfiguration != null) {
+			key.append('|');
+			key.append(httpProxyConfiguration.getProxyHost());
+			key.append(':');
+			key.append(httpProxyConfiguration.getProxyPort());
+			if (httpProxyConfiguration.isAuthRequired()) {
+				key.append('|');
+				key.append(httpProxyConfiguration.getUsername());
+			}
+		}
+		return key.toString();
+	}
+
+	private static int getMaxConnectionsPerRoutePreference() {
+		CloudFoundryPlugin plugin = CloudFoundryPlugin.getDefault();
+		return plugin != null ? plugin.getMaxConnectionsPerRoute() : RestUtils.MAX_CONNECTIONS_PER_ROUTE;
+	}
+
+	private static synchronized void scheduleEviction() {
+		// Scheduled again if the shared scheduler was shut down
+		if (eviction == null || eviction.isDone()) {
+			eviction = ClientRequestExecutor.getScheduler().scheduleWithFixedDelay(new Runnable() {
+
+				@Override
+				public void run() {
+					for (HttpConnectionPool pool : pools.values()) {
+						try {
+							pool.closeIdleConnections();
+						}
+						catch (RuntimeException e) {
+							CloudFoundryPlugin.logError(e);
+						}
+					}
+				}
+			}, EVICTION_INTERVAL, EVICTION_INTERVAL, TimeUnit.MILLISECONDS);
+		}
+	}
+
+	/**
+	 * Snapshot of the usage of a pool
+	 */
+	public static class Stats {
+
+		private final String serverUrl;
+
+		private final long requests;
+
+		private final long connectionsOpened;
+
+		private final int leased;
+
+		private final int available;
+
+		private final int pending;
+
+		private final int maxPerRoute;
+
+		public Stats(String serverUrl, long requests, long connectionsOpened, int leased, int available,
+				int pending, int maxPerRoute) {
+			this.serverUrl = serverUrl;
+			this.requests = requests;
+			this.connectionsOpened = connectionsOpened;
+			this.leased = leased;
+			this.available = available;
+			this.pending = pending;
+			this.maxPerRoute = maxPerRoute;
+		}
+
+		/**
+		 * 
+		 * @return URL of the target
+		 */
+		public String getServerUrl() {
+			return serverUrl;
+		}
+
+		public long getRequests() {
+			return requests;
+		}
+
+		/**
+		 * 
+		 * @return number of connections opened since the pool was created. The
+		 * fewer connections per request, the more connections are reused.
+		 */
+		public long getConnectionsOpened() {
+			return connectionsOpened;
+		}
+
+		/**
+		 * 
+		 * @return connections currently used by requests
+		 */
+		public int getLeased() {
+			return leased;
+		}
+
+		/**
+		 * 
+		 * @return idle connections kept alive for further requests
+		 */
+		public int getAvailable() {
+			return available;
+		}
+
+		/**
+		 * 
+		 * @return requests waiting for a connection
+		 */
+		public int getPending() {
+			return pending;
+		}
+
+		public int getMaxPerRoute() {
+			return maxPerRoute;
+		}
+
+		@Override
+		public String toString() {
+			return serverUrl + ": " + requests + " requests, " + connectionsOpened + " connections opened, " //$NON-NLS-1$ //$NON-NLS-2$ //$NON-NLS-3$
+					+ leased + " leased, " + available + " available, " + pending + " pending"; //$NON-NLS-1$ //$NON-NLS-2$ //$NON-NLS-3$
+		}
+	}
+}
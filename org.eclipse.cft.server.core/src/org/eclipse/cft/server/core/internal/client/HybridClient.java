@@ -20,9 +20,16 @@
  ********************************************************************************/
 package org.eclipse.cft.server.core.internal.client;
 
+import java.io.File;
 import java.util.List;
+import java.util.concurrent.Future;
 
 import org.cloudfoundry.client.lib.CloudFoundryOperations;
+import org.cloudfoundry.client.lib.domain.ApplicationStats;
+import org.cloudfoundry.client.lib.domain.CloudApplication;
+import org.cloudfoundry.client.lib.domain.CloudRoute;
+import org.cloudfoundry.client.lib.domain.InstancesInfo;
+import org.eclipse.cft.server.core.CFServiceInstance;
 import org.eclipse.cft.server.core.internal.CloudErrorUtil;
 import org.eclipse.cft.server.core.internal.CloudUtil;
 import org.eclipse.cft.server.core.internal.log.CFApplicationLogListener;
@@ -77,4 +84,44 @@ public class HybridClient implements CFClient {
 		return otherClient.getRecentLogs(appName);
 	}
 
+	@Override
+	public Future<List<CloudApplication>> getApplications() throws CoreException {
+		return otherClient.getApplications();
+	}
+
+	@Override
+	public Future<CloudApplication> getApplication(String appName) throws CoreException {
+		return otherClient.getApplication(appName);
+	}
+
+	@Override
+	public Future<ApplicationStats> getApplicationStats(String appName) throws CoreException {
+		return otherClient.getApplicationStats(appName);
+	}
+
+	@Override
+	public Future<InstancesInfo> getInstancesInfo(String appName) throws CoreException {
+		return otherClient.getInstancesInfo(appName);
+	}
+
+	@Override
+	public Future<List<CFServiceInstance>> getServices() throws CoreException {
+		return otherClient.getServices();
+	}
+
+	@Override
+	public Future<List<CloudRoute>> getRoutes(String domainName) throws CoreException {
+		return otherClient.getRoutes(domainName);
+	}
+
+	@Override
+	public Future<Void> uploadApplication(String appName, File archive) throws CoreException {
+		return otherClient.uploadApplication(appName, archive);
+	}
+
+	@Override
+	public Future<Void> restartApplication(String appName) throws CoreException {
+		return otherClient.restartApplication(appName);
+	}
+
 }
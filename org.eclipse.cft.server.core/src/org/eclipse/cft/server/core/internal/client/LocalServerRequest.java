@@ -133,6 +133,17 @@ public abstract class LocalServerRequest<T> extends ClientRequest<T> {
 		return getCloudServer().getBehaviour().getClient(monitor);
 	}
 
+	@Override
+	protected CircuitBreaker getCircuitBreaker() {
+		try {
+			return CircuitBreaker.forServer(getCloudServer());
+		}
+		catch (CoreException e) {
+			// The request itself will fail and log the error
+			return null;
+		}
+	}
+
 	/**
 	 * 
 	 * @return non-null Cloud Foundry server instance. If it cannot be resolved,
@@ -22,6 +22,7 @@ package org.eclipse.cft.server.core.internal.client;
 
 import org.eclipse.cft.server.core.internal.CloudErrorUtil;
 import org.eclipse.cft.server.core.internal.Messages;
+import org.eclipse.cft.server.core.internal.metrics.MetricsTimer;
 import org.eclipse.core.runtime.CoreException;
 import org.eclipse.core.runtime.IProgressMonitor;
 import org.eclipse.core.runtime.SubProgressMonitor;
@@ -89,8 +90,10 @@ public abstract class ModulesOperation extends CFOperation {
 			}
 		}
 
+		MetricsTimer timer = startOperationTimer();
 		try {
 			runOnVerifiedModule(monitor);
+			timer.succeeded();
 		}
 		catch (CoreException e) {
 			CloudFoundryApplicationModule appModule = getCloudModule(getFirstModule());
@@ -106,6 +109,9 @@ public abstract class ModulesOperation extends CFOperation {
 			}
 			throw e;
 		}
+		finally {
+			timer.stop();
+		}
 	}
 
 	/**
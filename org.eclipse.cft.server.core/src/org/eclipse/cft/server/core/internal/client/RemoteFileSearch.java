@@ -0,0 +1,268 @@
+/*******************************************************************************
+ * Copyright (c) 2017 Pivotal Software, Inc. and others
+ *
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * and Apache License v2.0 which accompanies this distribution.
+ *
+ * The Eclipse Public License is available at
+ *
+ * http://www.eclipse.org/legal/epl-v10.html
+ *
+ * and the Apache License v2.0 is available at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * You may elect to redistribute this code under either of these licenses.
+ *
+ *  Contributors:
+ *     Pivotal Software, Inc. - initial API and implementation
+ ********************************************************************************/
+package org.eclipse.cft.server.core.internal.client;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CompletionService;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorCompletionService;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Future;
+
+import org.cloudfoundry.client.lib.domain.CloudApplication;
+import org.eclipse.cft.server.core.internal.CloudErrorUtil;
+import org.eclipse.cft.server.core.internal.Messages;
+import org.eclipse.core.runtime.CoreException;
+import org.eclipse.core.runtime.IProgressMonitor;
+import org.eclipse.core.runtime.SubMonitor;
+import org.eclipse.osgi.util.NLS;
+
+/**
+ * Searches the files of all the instances of an application for a pattern,
+ * running one search command per instance, in parallel. Matches are reported
+ * to a listener as they are found, so that results of fast instances are
+ * shown while slower ones are still being searched.
+ */
+public class RemoteFileSearch {
+
+	public static final int MAX_PARALLEL_INSTANCES = 8;
+
+	/**
+	 * Matches reported per instance, after which the search of the instance
+	 * is stopped
+	 */
+	public static final int MAX_MATCHES_PER_INSTANCE = 1000;
+
+	private static ExecutorService executor;
+
+	private final CloudFoundryServerBehaviour behaviour;
+
+	private final CloudApplication app;
+
+	private final String path;
+
+	private final String pattern;
+
+	/**
+	 * 
+	 * @param behaviour
+	 * @param app
+	 * @param path directory searched in each instance, relative to the home
+	 * directory of the instance
+	 * @param pattern extended regular expression matched against each line
+	 */
+	public RemoteFileSearch(CloudFoundryServerBehaviour behaviour, CloudApplication app, String path,
+			String pattern) {
+		this.behaviour = behaviour;
+		this.app = app;
+		this.path = path;
+		this.pattern = pattern;
+	}
+
+	public CloudApplication getApplication() {
+		return app;
+	}
+
+	public String getPattern() {
+		return pattern;
+	}
+
+	/**
+	 * Searches all instances of the application. Failures of an instance are
+	 * reported to the listener, and do not stop the search of the other
+	 * instances.
+	 * @param listener notified from the threads searching the instances
+	 * @param monitor
+	 * @return total number of matches
+	 * @throws CoreException if the search was interrupted
+	 */
+	public int run(final IListener listener, IProgressMonitor monitor) throws CoreException {
+		int instances = app.getInstances();
+		SubMonitor progress = SubMonitor.convert(monitor,
+				NLS.bind(Messages.RemoteFileSearch_SEARCHING, pattern, app.getName()), instances);
+
+		CompletionService<Integer> completionService = new ExecutorCompletionService<Integer>(getExecutor());
+		List<Future<Integer>> pending = new ArrayList<Future<Integer>>();
+		final IProgressMonitor requestMonitor = new CancelPropagatingMonitor(progress);
+		int total = 0;
+
+		try {
+			for (int i = 0; i < instances; i++) {
+				final int instance = i;
+				pending.add(completionService.submit(new Callable<Integer>() {
+					public Integer call() throws Exception {
+						if (requestMonitor.isCanceled()) {
+							return 0;
+						}
+						return searchInstance(instance, listener, requestMonitor);
+					}
+				}));
+			}
+
+			for (int i = 0; i < instances; i++) {
+				total += getCompleted(completionService);
+				if (progress.isCanceled()) {
+					break;
+				}
+				progress.worked(1);
+			}
+		}
+		finally {
+			// Searches still pending if there was an error or cancellation
+			for (Future<Integer> future : pending) {
+				future.cancel(true);
+			}
+		}
+		return total;
+	}
+
+	protected int searchInstance(int instance, final IListener listener, IProgressMonitor monitor) {
+		// Matches are counted as they are reported, as they are already
+		// shown if the search of the instance fails later
+		final int[] matches = new int[1];
+		CoreException error = null;
+		try {
+			behaviour.searchFiles(app, instance, path, pattern, new IListener() {
+
+				public void matchFound(Match match) {
+					matches[0]++;
+					listener.matchFound(match);
+				}
+
+				public void instanceSearched(int searched, int count, CoreException searchError) {
+					// Reported below, once the request completes
+				}
+			}, monitor);
+		}
+		catch (CoreException e) {
+			error = e;
+		}
+		catch (RuntimeException e) {
+			error = CloudErrorUtil.toCoreException(e);
+		}
+		listener.instanceSearched(instance, matches[0], error);
+		return matches[0];
+	}
+
+	protected int getCompleted(CompletionService<Integer> completionService) throws CoreException {
+		try {
+			return completionService.take().get();
+		}
+		catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+			throw CloudErrorUtil.toCoreException(e);
+		}
+		catch (ExecutionException e) {
+			throw CloudErrorUtil.toCoreException(e.getCause());
+		}
+	}
+
+	protected static synchronized ExecutorService getExecutor() {
+		if (executor == null) {
+			// Shared by all searches, so that concurrent searches do not
+			// open more sessions at once
+			executor = ClientRequestExecutor.newBoundedExecutor(MAX_PARALLEL_INSTANCES);
+		}
+		return executor;
+	}
+
+	/**
+	 * Parses a line of grep output, in the form "file\0line:text" as written
+	 * by grep -Z, so that file names containing ':' are parsed correctly. Lines
+	 * in the form "file:line:text" are also accepted.
+	 * @param instance
+	 * @param output
+	 * @return match, or null if the line is not a match
+	 */
+	public static Match parseMatch(int instance, String output) {
+		int fileEnd = output.indexOf('\0');
+		if (fileEnd < 0) {
+			fileEnd = output.indexOf(':');
+		}
+		int lineEnd = fileEnd > 0 ? output.indexOf(':', fileEnd + 1) : -1;
+		if (lineEnd < 0) {
+			return null;
+		}
+		try {
+			int line = Integer.parseInt(output.substring(fileEnd + 1, lineEnd));
+			return new Match(instance, output.substring(0, fileEnd), line, output.substring(lineEnd + 1));
+		}
+		catch (NumberFormatException e) {
+			return null;
+		}
+	}
+
+	public interface IListener {
+
+		public void matchFound(Match match);
+
+		/**
+		 * 
+		 * @param instance
+		 * @param matches number of matches found in the instance
+		 * @param error error that stopped the search of the instance, or
+		 * null if it completed
+		 */
+		public void instanceSearched(int instance, int matches, CoreException error);
+
+	}
+
+	public static class Match {
+
+		private final int instance;
+
+		private final String file;
+
+		private final int line;
+
+		private final String text;
+
+		public Match(int instance, String file, int line, String text) {
+			this.instance = instance;
+			this.file = file;
+			this.line = line;
+			this.text = text;
+		}
+
+		public int getInstance() {
+			return instance;
+		}
+
+		public String getFile() {
+			return file;
+		}
+
+		public int getLine() {
+			return line;
+		}
+
+		public String getText() {
+			return text;
+		}
+
+		@Override
+		public String toString() {
+			return file + ':' + line + ':' + text;
+		}
+	}
+}
@@ -0,0 +1,247 @@
+/*******************************************************************************
+ * Copyright (c) 2017 Pivotal Software, Inc. and others
+ *
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * and Apache License v2.0 which accompanies this distribution.
+ *
+ * The Eclipse Public License is available at
+ *
+ * http://www.eclipse.org/legal/epl-v10.html
+ *
+ * and the Apache License v2.0 is available at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * You may elect to redistribute this code under either of these licenses.
+ *
+ *  Contributors:
+ *     Pivotal Software, Inc. - initial API and implementation
+ ********************************************************************************/
+package org.eclipse.cft.server.core.internal.client;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+import com.fasterxml.jackson.core.JsonFactory;
+import com.fasterxml.jackson.core.JsonParser;
+import com.fasterxml.jackson.core.JsonToken;
+
+/**
+ * Reads a page of resources returned by the Cloud Controller v2 API with a
+ * streaming parser. Only the scalar attributes of the metadata and entity of
+ * each resource are kept, along with the flat objects of the entity that are
+ * asked for, so that large pages are read without building the full JSON
+ * tree of each resource.
+ */
+public class ResourcePageReader {
+
+	private static final JsonFactory JSON_FACTORY = new JsonFactory();
+
+	private final Set<String> entityObjects;
+
+	/**
+	 * 
+	 * @param entityObjects names of the entity attributes that are flat JSON
+	 * objects to read, for example "environment_json". Other nested objects
+	 * and arrays are skipped.
+	 */
+	public ResourcePageReader(Set<String> entityObjects) {
+		this.entityObjects = entityObjects != null ? entityObjects : Collections.<String> emptySet();
+	}
+
+	public ResourcePage read(InputStream in) throws IOException {
+		JsonParser parser = JSON_FACTORY.createParser(in);
+		try {
+			ResourcePage page = new ResourcePage();
+			if (parser.nextToken() != JsonToken.START_OBJECT) {
+				throw new IOException("Expected a page of resources"); //$NON-NLS-1$
+			}
+			while (parser.nextToken() == JsonToken.FIELD_NAME) {
+				String field = parser.getCurrentName();
+				JsonToken value = parser.nextToken();
+				if ("total_pages".equals(field) && value == JsonToken.VALUE_NUMBER_INT) { //$NON-NLS-1$
+					page.totalPages = parser.getIntValue();
+				}
+				else if ("total_results".equals(field) && value == JsonToken.VALUE_NUMBER_INT) { //$NON-NLS-1$
+					page.totalResults = parser.getIntValue();
+				}
+				else if ("next_url".equals(field) && value == JsonToken.VALUE_STRING) { //$NON-NLS-1$
+					page.nextUrl = parser.getText();
+				}
+				else if ("resources".equals(field) && value == JsonToken.START_ARRAY) { //$NON-NLS-1$
+					while (parser.nextToken() == JsonToken.START_OBJECT) {
+						page.resources.add(readResource(parser));
+					}
+				}
+				else {
+					parser.skipChildren();
+				}
+			}
+			return page;
+		}
+		finally {
+			parser.close();
+		}
+	}
+
+	protected Resource readResource(JsonParser parser) throws IOException {
+		Resource resource = new Resource();
+		while (parser.nextToken() == JsonToken.FIELD_NAME) {
+			String field = parser.getCurrentName();
+			JsonToken value = parser.nextToken();
+			if ("metadata".equals(field) && value == JsonToken.START_OBJECT) { //$NON-NLS-1$
+				readObject(parser, resource.metadata, null, resource);
+			}
+			else if ("entity".equals(field) && value == JsonToken.START_OBJECT) { //$NON-NLS-1$
+				readObject(parser, resource.entity, entityObjects, resource);
+			}
+			else {
+				parser.skipChildren();
+			}
+		}
+		return resource;
+	}
+
+	/*
+	 * Reads the scalar attributes of the current object into the given map,
+	 * and the given flat objects into the resource
+	 */
+	protected void readObject(JsonParser parser, Map<String, Object> attributes, Set<String> objects,
+			Resource resource) throws IOException {
+		while (parser.nextToken() == JsonToken.FIELD_NAME) {
+			String field = parser.getCurrentName();
+			JsonToken value = parser.nextToken();
+			if (value == JsonToken.START_OBJECT && objects != null && objects.contains(field)) {
+				Map<String, Object> object = new HashMap<String, Object>();
+				readObject(parser, object, null, null);
+				resource.objects.put(field, object);
+			}
+			else if (value == JsonToken.START_OBJECT || value == JsonToken.START_ARRAY) {
+				parser.skipChildren();
+			}
+			else {
+				attributes.put(field, getScalarValue(parser, value));
+			}
+		}
+	}
+
+	protected Object getScalarValue(JsonParser parser, JsonToken value) throws IOException {
+		switch (value) {
+		case VALUE_STRING:
+			return parser.getText();
+		case VALUE_NUMBER_INT:
+			return parser.getNumberValue();
+		case VALUE_NUMBER_FLOAT:
+			return parser.getDoubleValue();
+		case VALUE_TRUE:
+			return Boolean.TRUE;
+		case VALUE_FALSE:
+			return Boolean.FALSE;
+		default:
+			return null;
+		}
+	}
+
+	/**
+	 * Page of resources, with the paging information of the response
+	 */
+	public static class ResourcePage {
+
+		private int totalPages = 1;
+
+		private int totalResults;
+
+		private String nextUrl;
+
+		private final List<Resource> resources = new ArrayList<Resource>();
+
+		public int getTotalPages() {
+			return totalPages;
+		}
+
+		public int getTotalResults() {
+			return totalResults;
+		}
+
+		/**
+		 * 
+		 * @return URL of the next page, or null if this is the last page
+		 */
+		public String getNextUrl() {
+			return nextUrl;
+		}
+
+		public List<Resource> getResources() {
+			return resources;
+		}
+	}
+
+	/**
+	 * Scalar attributes of a resource, and the flat objects of its entity
+	 * that were asked for
+	 */
+	public static class Resource {
+
+		private final Map<String, Object> metadata = new HashMap<String, Object>();
+
+		private final Map<String, Object> entity = new HashMap<String, Object>();
+
+		private final Map<String, Map<String, Object>> objects = new HashMap<String, Map<String, Object>>();
+
+		/**
+		 * 
+		 * @return scalar attributes of the metadata of the resource
+		 */
+		public Map<String, Object> getMetadata() {
+			return Collections.unmodifiableMap(metadata);
+		}
+
+		public <T> T getMetadata(String name, Class<T> type) {
+			return getValue(metadata, name, type);
+		}
+
+		public <T> T getEntity(String name, Class<T> type) {
+			return getValue(entity, name, type);
+		}
+
+		/**
+		 * 
+		 * @param name
+		 * @return flat object of the entity, or null if it was not read or is
+		 * null
+		 */
+		public Map<String, Object> getEntityObject(String name) {
+			return objects.get(name);
+		}
+
+		private static <T> T getValue(Map<String, Object> attributes, String name, Class<T> type) {
+			Object value = attributes.get(name);
+			if (value == null) {
+				return null;
+			}
+			if (type.isInstance(value)) {
+				return type.cast(value);
+			}
+			if (value instanceof Number) {
+				Number number = (Number) value;
+				if (type == Integer.class) {
+					return type.cast(number.intValue());
+				}
+				if (type == Long.class) {
+					return type.cast(number.longValue());
+				}
+			}
+			if (type == String.class) {
+				return type.cast(value.toString());
+			}
+			return null;
+		}
+	}
+}
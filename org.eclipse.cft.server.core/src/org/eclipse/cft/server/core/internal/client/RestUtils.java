@@ -17,8 +17,6 @@
  */
 package org.eclipse.cft.server.core.internal.client;
 
-import static org.apache.http.conn.ssl.SSLSocketFactory.BROWSER_COMPATIBLE_HOSTNAME_VERIFIER;
-
 import java.security.GeneralSecurityException;
 
 import org.apache.http.HttpHost;
@@ -26,6 +24,7 @@ import org.apache.http.auth.AuthScope;
 import org.apache.http.auth.UsernamePasswordCredentials;
 import org.apache.http.client.HttpClient;
 import org.apache.http.conn.routing.HttpRoutePlanner;
+import org.apache.http.conn.ssl.SSLConnectionSocketFactory;
 import org.apache.http.conn.ssl.SSLContextBuilder;
 import org.apache.http.conn.ssl.TrustSelfSignedStrategy;
 import org.apache.http.impl.client.BasicCredentialsProvider;
@@ -35,6 +34,7 @@ import org.apache.http.impl.conn.DefaultProxyRoutePlanner;
 import org.cloudfoundry.client.lib.HttpProxyConfiguration;
 import org.cloudfoundry.client.lib.rest.CloudControllerResponseErrorHandler;
 import org.cloudfoundry.client.lib.rest.LoggingRestTemplate;
+import org.eclipse.cft.server.core.internal.CloudFoundryPlugin;
 import org.springframework.http.client.ClientHttpRequestFactory;
 import org.springframework.http.client.HttpComponentsClientHttpRequestFactory;
 import org.springframework.web.client.RestTemplate;
@@ -46,26 +46,59 @@ import org.springframework.web.client.RestTemplate;
  * @author Thomas Risberg
  */
 public class RestUtils {
+
+	/**
+	 * Default connections kept per host, so that requests that are sent
+	 * concurrently to the same target (e.g. refreshing all applications in a
+	 * space) reuse pooled connections rather than waiting for one. See
+	 * {@link CloudFoundryPlugin#getMaxConnectionsPerRoute()}
+	 */
+	public static final int MAX_CONNECTIONS_PER_ROUTE = 10;
+
+	public static final int MAX_CONNECTIONS_TOTAL = 20;
 	
 	////////////////////////////////////////////////////////////////////////////////////////////////////////////
 	//  Select methods, copied from cf-java-client lib's RestUtil with minor modifications to allow 
 	//  disabling redirect handling
 
 	public static RestTemplate createRestTemplate(HttpProxyConfiguration httpProxyConfiguration, boolean trustSelfSignedCerts, boolean disableRedirectHandling) {
+		return createRestTemplate(null, httpProxyConfiguration, trustSelfSignedCerts, disableRedirectHandling);
+	}
+
+	/**
+	 * @param serverUrl target of the requests, used to share a pool of
+	 * connections with other templates of the same target. If null, the
+	 * template keeps its own connections.
+	 */
+	public static RestTemplate createRestTemplate(String serverUrl, HttpProxyConfiguration httpProxyConfiguration, boolean trustSelfSignedCerts, boolean disableRedirectHandling) {
 		RestTemplate restTemplate = new LoggingRestTemplate();
-		restTemplate.setRequestFactory(createRequestFactory(httpProxyConfiguration, trustSelfSignedCerts, disableRedirectHandling));
+		restTemplate.setRequestFactory(createRequestFactory(serverUrl, httpProxyConfiguration, trustSelfSignedCerts, disableRedirectHandling));
 		restTemplate.setErrorHandler(new CloudControllerResponseErrorHandler());
 		return restTemplate;
 	}
-	
+
 	public static ClientHttpRequestFactory createRequestFactory(HttpProxyConfiguration httpProxyConfiguration, boolean trustSelfSignedCerts, boolean disableRedirectHandling) {
+		return createRequestFactory(null, httpProxyConfiguration, trustSelfSignedCerts, disableRedirectHandling);
+	}
+
+	public static ClientHttpRequestFactory createRequestFactory(String serverUrl, HttpProxyConfiguration httpProxyConfiguration, boolean trustSelfSignedCerts, boolean disableRedirectHandling) {
 		HttpClientBuilder httpClientBuilder = HttpClients.custom().useSystemProperties();
 
-		if (trustSelfSignedCerts) {
-			httpClientBuilder.setSslcontext(buildSslContext());
-			httpClientBuilder.setHostnameVerifier(BROWSER_COMPATIBLE_HOSTNAME_VERIFIER);
+		// Connections, and the SSL settings used to open them, are shared by
+		// all clients of the same target. Clients that do not know their
+		// target are not pooled together, as they may send requests anywhere.
+		if (serverUrl != null) {
+			HttpConnectionPool.forServer(serverUrl, httpProxyConfiguration, trustSelfSignedCerts)
+					.configure(httpClientBuilder);
 		}
-		
+		else {
+			httpClientBuilder.setMaxConnPerRoute(MAX_CONNECTIONS_PER_ROUTE).setMaxConnTotal(MAX_CONNECTIONS_TOTAL);
+			if (trustSelfSignedCerts) {
+				httpClientBuilder.setSslcontext(buildSslContext());
+				httpClientBuilder.setHostnameVerifier(SSLConnectionSocketFactory.BROWSER_COMPATIBLE_HOSTNAME_VERIFIER);
+			}
+		}
+
 		if (disableRedirectHandling) {
 			httpClientBuilder.disableRedirectHandling();
 		}
@@ -92,7 +125,7 @@ public class RestUtils {
 		return requestFactory;
 	}
 
-	private static javax.net.ssl.SSLContext buildSslContext()  {
+	static javax.net.ssl.SSLContext buildSslContext()  {
 		try {
 			return new SSLContextBuilder().useSSL().loadTrustMaterial(null, new TrustSelfSignedStrategy()).build();
 		} catch (GeneralSecurityException gse) {
@@ -23,9 +23,13 @@ package org.eclipse.cft.server.core.internal.client;
 import org.cloudfoundry.client.lib.StartingInfo;
 import org.eclipse.cft.server.core.AbstractAppStateTracker;
 import org.eclipse.cft.server.core.internal.ApplicationAction;
+import org.eclipse.cft.server.core.internal.ApplicationInstanceRunningTracker;
+import org.eclipse.cft.server.core.internal.ApplicationStartPoller;
 import org.eclipse.cft.server.core.internal.CloudErrorUtil;
 import org.eclipse.cft.server.core.internal.CloudFoundryPlugin;
 import org.eclipse.cft.server.core.internal.Messages;
+import org.eclipse.cft.server.core.internal.metrics.CloudMetrics;
+import org.eclipse.cft.server.core.internal.metrics.MetricsTimer;
 import org.eclipse.core.runtime.CoreException;
 import org.eclipse.core.runtime.IProgressMonitor;
 import org.eclipse.core.runtime.OperationCanceledException;
@@ -45,6 +49,18 @@ import org.eclipse.wst.server.core.internal.Server;
 @SuppressWarnings("restriction")
 public class RestartOperation extends ApplicationOperation {
 
+	/**
+	 * Longest time between two checks of a framework tracker while the
+	 * application does not log anything. The console matches the output
+	 * shortly after it is received, so this also bounds how late a start
+	 * announced by the last line of output is noticed.
+	 */
+	private static final long FRAMEWORK_TRACKER_INTERVAL = 500;
+
+	private MetricsTimer stagingTimer;
+
+	private MetricsTimer trackingTimer;
+
 	/**
 	 * 
 	 */
@@ -126,13 +142,28 @@ public class RestartOperation extends ApplicationOperation {
 			// IMPORTANT: Notify that module state has been changed
 			getBehaviour().operations().updateModule(getFirstModule()).run(monitor);
 
-			// Perform the actual restarting in the client
-			StartingInfo info = getBehaviour().getRequestFactory().restartApplication(deploymentName, startLabel)
-					.run(monitor.newChild(20));
+			// Staging starts with the restart request, and ends once the
+			// application is staged, after which the start of its instances
+			// is tracked
+			stagingTimer = startPhaseTimer(CloudMetrics.PHASE_STAGING);
+			try {
+				// Perform the actual restarting in the client
+				StartingInfo info = getBehaviour().restartApplication(deploymentName, startLabel,
+						monitor.newChild(20));
 
-			appModule.setStartingInfo(info);
+				appModule.setStartingInfo(info);
 
-			updatedState = trackApplicationRunningState(appModule, startLabel, monitor);
+				updatedState = trackApplicationRunningState(appModule, startLabel, monitor);
+				if (trackingTimer != null) {
+					trackingTimer.succeeded();
+				}
+			}
+			finally {
+				stagingTimer.stop();
+				if (trackingTimer != null) {
+					trackingTimer.stop();
+				}
+			}
 		}
 		catch (OperationCanceledException oce) {
 			updatedState = IServer.STATE_UNKNOWN;
@@ -154,6 +185,17 @@ public class RestartOperation extends ApplicationOperation {
 		}
 	}
 
+	/**
+	 * Ends the staging phase of the restart, and starts its tracking phase
+	 */
+	protected void stagingCompleted() {
+		if (stagingTimer != null && trackingTimer == null) {
+			stagingTimer.succeeded();
+			stagingTimer.stop();
+			trackingTimer = startPhaseTimer(CloudMetrics.PHASE_TRACKING);
+		}
+	}
+
 	protected int trackApplicationRunningState(CloudFoundryApplicationModule cloudModule, String startLabel,
 			IProgressMonitor progress) throws CoreException {
 
@@ -163,8 +205,16 @@ public class RestartOperation extends ApplicationOperation {
 		// TODO: integrate with Application tracker used below.
 		// Get the running state of the application based on the instance state
 		// using the default tracker
-		int updatedState = RestartOperation.this.getBehaviour().getApplicationInstanceRunningTracker(cloudModule)
-				.track(progress);
+		ApplicationInstanceRunningTracker tracker = RestartOperation.this.getBehaviour()
+				.getApplicationInstanceRunningTracker(cloudModule);
+		tracker.setStagingListener(new ApplicationInstanceRunningTracker.IStagingListener() {
+
+			@Override
+			public void stagingCompleted() {
+				RestartOperation.this.stagingCompleted();
+			}
+		});
+		int updatedState = tracker.track(progress);
 
 		CloudFoundryPlugin.trace("Default tracker: application " + deploymentName + " tracking completed"); //$NON-NLS-1$ //$NON-NLS-2$
 
@@ -182,27 +232,32 @@ public class RestartOperation extends ApplicationOperation {
 			curTracker.setServer(RestartOperation.this.getBehaviour().getServer());
 			curTracker.startTracking(cloudModule, progress);
 
-			// Framework-based run state tracker. If tracker indicates that
-			// the
-			// app is no longer starting, it is considered started
-			// Wait for application to be ready or getting
-			// out of the starting state.
-			boolean isAppStarting = true;
-			while (isAppStarting && !progress.isCanceled()) {
-				// For framework trackers, keep tracking as long as tracker
-				// indicates it is in STARTING state
-				updatedState = curTracker.getApplicationState(cloudModule);
-				if (updatedState == IServer.STATE_STARTING) {
-					try {
-						Thread.sleep(200);
+			// Framework trackers detect the start from the application
+			// output, so only check them again once more output arrives, or
+			// at least every FRAMEWORK_TRACKER_INTERVAL
+			ApplicationStartPoller.Tracking logs = ApplicationStartPoller
+					.forServer(getBehaviour().getCloudFoundryServer()).watch(deploymentName);
+			try {
+				// Framework-based run state tracker. If tracker indicates that
+				// the
+				// app is no longer starting, it is considered started
+				// Wait for application to be ready or getting
+				// out of the starting state.
+				boolean isAppStarting = true;
+				while (isAppStarting && !progress.isCanceled()) {
+					// For framework trackers, keep tracking as long as tracker
+					// indicates it is in STARTING state
+					updatedState = curTracker.getApplicationState(cloudModule);
+					if (updatedState == IServer.STATE_STARTING) {
+						logs.awaitLog(FRAMEWORK_TRACKER_INTERVAL);
 					}
-					catch (InterruptedException e) {
-						// Do nothing
+					else {
+						isAppStarting = false;
 					}
 				}
-				else {
-					isAppStarting = false;
-				}
+			}
+			finally {
+				logs.stop();
 			}
 			curTracker.stopTracking(cloudModule, progress);
 		}
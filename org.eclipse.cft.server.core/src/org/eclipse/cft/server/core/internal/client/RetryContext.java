@@ -0,0 +1,58 @@
+/*******************************************************************************
+ * Copyright (c) 2017 Pivotal Software, Inc. and others
+ *
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * and Apache License v2.0 which accompanies this distribution.
+ *
+ * The Eclipse Public License is available at
+ *
+ * http://www.eclipse.org/legal/epl-v10.html
+ *
+ * and the Apache License v2.0 is available at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * You may elect to redistribute this code under either of these licenses.
+ *
+ *  Contributors:
+ *     Pivotal Software, Inc. - initial API and implementation
+ ********************************************************************************/
+package org.eclipse.cft.server.core.internal.client;
+
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * Retries made so far by one run of a request, in total and per class of
+ * error, so that each class of error can have its own retry budget.
+ */
+public class RetryContext {
+
+	private final Map<Object, Integer> retriesByErrorClass = new HashMap<Object, Integer>();
+
+	private int retries;
+
+	/**
+	 * Records a retry for the given class of error
+	 * @param errorClass
+	 * @return number of retries made so far for the given class of error,
+	 * including this one
+	 */
+	public int recordRetry(Object errorClass) {
+		retries++;
+		Integer count = retriesByErrorClass.get(errorClass);
+		int newCount = count != null ? count + 1 : 1;
+		retriesByErrorClass.put(errorClass, newCount);
+		return newCount;
+	}
+
+	public int getRetries() {
+		return retries;
+	}
+
+	public int getRetries(Object errorClass) {
+		Integer count = retriesByErrorClass.get(errorClass);
+		return count != null ? count : 0;
+	}
+}
@@ -0,0 +1,120 @@
+/*******************************************************************************
+ * Copyright (c) 2017 Pivotal Software, Inc. and others
+ *
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * and Apache License v2.0 which accompanies this distribution.
+ *
+ * The Eclipse Public License is available at
+ *
+ * http://www.eclipse.org/legal/epl-v10.html
+ *
+ * and the Apache License v2.0 is available at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * You may elect to redistribute this code under either of these licenses.
+ *
+ *  Contributors:
+ *     Pivotal Software, Inc. - initial API and implementation
+ ********************************************************************************/
+package org.eclipse.cft.server.core.internal.client;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import org.cloudfoundry.client.lib.CloudFoundryException;
+import org.cloudfoundry.client.lib.NotFinishedStagingException;
+import org.eclipse.cft.server.core.internal.CloudErrorUtil;
+import org.eclipse.core.runtime.CoreException;
+
+/**
+ * Decides whether, and after how long, a request that failed with a given
+ * error is attempted again. A policy is a list of rules, each pairing a class
+ * of errors with the {@link Backoff} used for that class of error. Errors that
+ * match no rule are not retried.
+ * <p/>
+ * Policies hold no state of their own, so the same policy can be shared by
+ * all requests of a given type. Retry counts are kept in the
+ * {@link RetryContext} of each run of a request.
+ */
+public class RetryPolicy {
+
+	/**
+	 * Matches a class of errors. Also used as the key of the class of error
+	 * in the {@link RetryContext}
+	 */
+	public interface ErrorMatcher {
+		public boolean matches(Throwable error);
+	}
+
+	/**
+	 * Service temporarily unavailable (503), for example when fetching an
+	 * application from a Diego-enabled target while it is starting
+	 */
+	public static final ErrorMatcher SERVICE_UNAVAILABLE = new ErrorMatcher() {
+		public boolean matches(Throwable error) {
+			return CloudErrorUtil.is503Error(error);
+		}
+	};
+
+	/**
+	 * Target could not be reached. Retries of these errors are skipped while
+	 * the {@link CircuitBreaker} of the target is open.
+	 */
+	public static final ErrorMatcher TRANSPORT_FAILURE = new ErrorMatcher() {
+		public boolean matches(Throwable error) {
+			return CircuitBreaker.isTransportFailure(error);
+		}
+	};
+
+	public static final ErrorMatcher NOT_FINISHED_STAGING = new ErrorMatcher() {
+		public boolean matches(Throwable error) {
+			return getCause(error) instanceof NotFinishedStagingException;
+		}
+	};
+
+	public static final ErrorMatcher APP_IN_STOPPED_STATE = new ErrorMatcher() {
+		public boolean matches(Throwable error) {
+			Throwable cause = getCause(error);
+			return cause instanceof CloudFoundryException
+					&& CloudErrorUtil.isAppStoppedStateError((CloudFoundryException) cause);
+		}
+	};
+
+	private final List<ErrorMatcher> matchers = new ArrayList<ErrorMatcher>();
+
+	private final List<Backoff> backoffs = new ArrayList<Backoff>();
+
+	/**
+	 * Adds a rule to retry errors matched by the given matcher. Rules are
+	 * evaluated in the order they are added.
+	 * @return this policy
+	 */
+	public RetryPolicy retryOn(ErrorMatcher matcher, Backoff backoff) {
+		matchers.add(matcher);
+		backoffs.add(backoff);
+		return this;
+	}
+
+	/**
+	 *
+	 * @param error error thrown by the last attempt
+	 * @param context retries made so far by the request
+	 * @return delay in milliseconds before the next attempt, or -1 if the
+	 * request should not be attempted again
+	 */
+	public long getRetryDelay(Throwable error, RetryContext context) {
+		for (int i = 0; i < matchers.size(); i++) {
+			ErrorMatcher matcher = matchers.get(i);
+			if (matcher.matches(error)) {
+				return backoffs.get(i).getDelay(context.recordRetry(matcher));
+			}
+		}
+		return -1;
+	}
+
+	protected static Throwable getCause(Throwable error) {
+		return error instanceof CoreException && error.getCause() != null ? error.getCause() : error;
+	}
+}
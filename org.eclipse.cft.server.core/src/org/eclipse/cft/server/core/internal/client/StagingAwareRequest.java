@@ -20,10 +20,7 @@
  ********************************************************************************/
 package org.eclipse.cft.server.core.internal.client;
 
-import org.cloudfoundry.client.lib.CloudFoundryException;
 import org.cloudfoundry.client.lib.CloudFoundryOperations;
-import org.cloudfoundry.client.lib.NotFinishedStagingException;
-import org.eclipse.cft.server.core.internal.CloudErrorUtil;
 import org.eclipse.core.runtime.CoreException;
 import org.eclipse.core.runtime.SubMonitor;
 
@@ -51,24 +48,23 @@ import org.eclipse.core.runtime.SubMonitor;
  */
 abstract public class StagingAwareRequest<T> extends BehaviourRequest<T> {
 
+	/**
+	 * Staging usually completes shortly after the app is started, so check
+	 * again quickly at first. The retry budgets roughly match the default
+	 * request timeout.
+	 */
+	private static final RetryPolicy RETRY_POLICY = new RetryPolicy()
+			.retryOn(RetryPolicy.NOT_FINISHED_STAGING, new Backoff(250, 4000, 1.6, 0.2, 10))
+			.retryOn(RetryPolicy.APP_IN_STOPPED_STATE, new Backoff(500, 2000, 2, 0.2, 10))
+			.retryOn(RetryPolicy.TRANSPORT_FAILURE, new Backoff(1000, 4000, 2, 0.2, 3));
+
 	public StagingAwareRequest(String label, CloudFoundryServerBehaviour behaviour) {
 		super(label, behaviour);
 	}
 
-	protected long waitOnErrorInterval(Throwable exception, SubMonitor monitor) throws CoreException {
-
-		if (exception instanceof CoreException) {
-			exception = ((CoreException) exception).getCause();
-		}
-
-		if (exception instanceof NotFinishedStagingException) {
-			return CloudOperationsConstants.ONE_SECOND_INTERVAL * 2;
-		}
-		else if (exception instanceof CloudFoundryException
-				&& CloudErrorUtil.isAppStoppedStateError((CloudFoundryException) exception)) {
-			return CloudOperationsConstants.ONE_SECOND_INTERVAL;
-		}
-		return -1;
+	@Override
+	protected RetryPolicy getRetryPolicy() {
+		return RETRY_POLICY;
 	}
 
 	protected abstract T doRun(CloudFoundryOperations client, SubMonitor progress) throws CoreException;
@@ -24,19 +24,25 @@ package org.eclipse.cft.server.core.internal.client;
 
 import java.io.IOException;
 import java.util.Set;
+import java.util.concurrent.Future;
 
 import org.cloudfoundry.client.lib.CloudFoundryOperations;
 import org.cloudfoundry.client.lib.UploadStatusCallback;
 import org.cloudfoundry.client.lib.archive.ApplicationArchive;
 import org.cloudfoundry.client.lib.domain.CloudApplication;
+import org.eclipse.cft.server.core.ArchiveEntry;
 import org.eclipse.cft.server.core.CFApplicationArchive;
 import org.eclipse.cft.server.core.internal.ApplicationAction;
 import org.eclipse.cft.server.core.internal.CloudErrorUtil;
 import org.eclipse.cft.server.core.internal.CloudFoundryPlugin;
 import org.eclipse.cft.server.core.internal.CloudFoundryServer;
 import org.eclipse.cft.server.core.internal.Messages;
+import org.eclipse.cft.server.core.internal.application.AbstractModuleResourceArchive;
 import org.eclipse.cft.server.core.internal.application.ApplicationUtil;
 import org.eclipse.cft.server.core.internal.application.CachingApplicationArchive;
+import org.eclipse.cft.server.core.internal.application.ZipArchive;
+import org.eclipse.cft.server.core.internal.metrics.CloudMetrics;
+import org.eclipse.cft.server.core.internal.metrics.MetricsTimer;
 import org.eclipse.core.runtime.CoreException;
 import org.eclipse.core.runtime.IProgressMonitor;
 import org.eclipse.core.runtime.IStatus;
@@ -138,9 +144,16 @@ public class StartOperation extends RestartOperation {
 			SubMonitor subMonitor = SubMonitor.convert(monitor, 100);
 
 			subMonitor.subTask(generatingArchiveLabel);
-			CFApplicationArchive applicationArchive = getBehaviour().generateApplicationArchiveFile(
-					appModule.getDeploymentInfo(), appModule, getModules(), server, incrementalPublish,
-					subMonitor.newChild(20));
+			CFApplicationArchive applicationArchive;
+			MetricsTimer archiveTimer = startPhaseTimer(CloudMetrics.PHASE_ARCHIVE);
+			try {
+				applicationArchive = getBehaviour().generateApplicationArchiveFile(appModule.getDeploymentInfo(),
+						appModule, getModules(), server, incrementalPublish, subMonitor.newChild(20));
+				archiveTimer.succeeded();
+			}
+			finally {
+				archiveTimer.stop();
+			}
 			if (applicationArchive == null) {
 				// An app archive must be always available, so if we reached
 				// this point and we have none
@@ -228,7 +241,7 @@ public class StartOperation extends RestartOperation {
 	protected void pushApplication(CloudFoundryOperations client, final CloudFoundryApplicationModule appModule,
 			CFApplicationArchive applicationArchive, final IProgressMonitor monitor) throws CoreException {
 
-		String appName = appModule.getDeploymentInfo().getDeploymentName();
+		final String appName = appModule.getDeploymentInfo().getDeploymentName();
 
 		// [95636410] - verify that the application actually exists.
 		// Otherwise a cryptic error may be thrown and the user may not
@@ -255,8 +268,26 @@ public class StartOperation extends RestartOperation {
 				// resources
 				// AFTER
 				// the server determines the list of missing file names.
+				long uploadStart = System.currentTimeMillis();
+				final UploadPhases uploadPhases = new UploadPhases(applicationArchive);
+				CFClient cfClient = getBehaviour().getCFClient(monitor);
 				try {
-					if (applicationArchive instanceof CachingApplicationArchive) {
+					if (cfClient != null && applicationArchive instanceof ZipArchive) {
+						// Packaged archives, such as war files, are pushed as is
+						// through the pooled client, which matches resources
+						// itself. The whole push is recorded as the upload.
+						final ZipArchive zipArchive = (ZipArchive) applicationArchive;
+						uploadPhases.resourcesMatched(null);
+						new CloudServerFutureRequest<Void>(getBehaviour().getCloudFoundryServer(), cfClient,
+								getOperationName() + " - " + appName) { //$NON-NLS-1$
+
+							@Override
+							protected Future<Void> sendRequest(CFClient client) throws CoreException {
+								return client.uploadApplication(appName, zipArchive.getFile());
+							}
+						}.run(monitor);
+					}
+					else if (applicationArchive instanceof CachingApplicationArchive) {
 						final CachingApplicationArchive cachingArchive = (CachingApplicationArchive) applicationArchive;
 						ApplicationArchive v1ArchiveWrapper = ApplicationUtil.asV1ApplicationArchive(cachingArchive);
 						client.uploadApplication(appName, v1ArchiveWrapper, new UploadStatusCallback() {
@@ -266,6 +297,7 @@ public class StartOperation extends RestartOperation {
 							}
 
 							public void onMatchedFileNames(Set<String> matchedFileNames) {
+								uploadPhases.resourcesMatched(matchedFileNames);
 								cachingArchive.generatePartialWarFile(matchedFileNames);
 							}
 
@@ -294,7 +326,7 @@ public class StartOperation extends RestartOperation {
 							}
 
 							public void onMatchedFileNames(Set<String> matchedFileNames) {
-
+								uploadPhases.resourcesMatched(matchedFileNames);
 							}
 
 							public void onCheckResources() {
@@ -306,6 +338,9 @@ public class StartOperation extends RestartOperation {
 							}
 						});
 					}
+					uploadPhases.uploaded();
+					logPublishTimings(appName, applicationArchive, System.currentTimeMillis() - uploadStart);
+
 					// Check for cancel
 					if (monitor.isCanceled()) {
 						throw new OperationCanceledException(
@@ -313,6 +348,7 @@ public class StartOperation extends RestartOperation {
 					}
 				}
 				finally {
+					uploadPhases.stop();
 					try {
 						applicationArchive.close();
 					}
@@ -337,4 +373,82 @@ public class StartOperation extends RestartOperation {
 		}
 
 	}
+
+	/**
+	 * Records how long the archive entries took to prepare, as well as the
+	 * overall upload time, to the info log.
+	 */
+	protected void logPublishTimings(String appName, CFApplicationArchive applicationArchive, long uploadTime) {
+		StringBuilder timings = new StringBuilder();
+		timings.append("Publish timings for "); //$NON-NLS-1$
+		timings.append(appName);
+		timings.append(": "); //$NON-NLS-1$
+		if (applicationArchive instanceof AbstractModuleResourceArchive
+				&& ((AbstractModuleResourceArchive) applicationArchive).getDigestStatistics() != null) {
+			timings.append(((AbstractModuleResourceArchive) applicationArchive).getDigestStatistics());
+			timings.append(", "); //$NON-NLS-1$
+		}
+		timings.append("upload="); //$NON-NLS-1$
+		timings.append(uploadTime);
+		timings.append("ms"); //$NON-NLS-1$
+		CloudFoundryPlugin.logInfo(timings.toString());
+	}
+
+	/**
+	 * Records the resource matching and the upload of the unmatched resources
+	 * as separate phases of the push in {@link CloudMetrics}. The client
+	 * notifies the matched resources in between the two.
+	 */
+	protected class UploadPhases {
+
+		private final CFApplicationArchive archive;
+
+		private final MetricsTimer matching = startPhaseTimer(CloudMetrics.PHASE_RESOURCE_MATCHING);
+
+		private MetricsTimer upload;
+
+		public UploadPhases(CFApplicationArchive archive) {
+			this.archive = archive;
+		}
+
+		public void resourcesMatched(Set<String> matchedFileNames) {
+			matching.succeeded();
+			matching.stop();
+			upload = startPhaseTimer(CloudMetrics.PHASE_UPLOAD);
+			upload.recordBytes(getUploadSize(archive, matchedFileNames));
+		}
+
+		public void uploaded() {
+			if (upload != null) {
+				upload.succeeded();
+			}
+			else {
+				matching.succeeded();
+			}
+		}
+
+		public void stop() {
+			matching.stop();
+			if (upload != null) {
+				upload.stop();
+			}
+		}
+	}
+
+	/**
+	 * 
+	 * @param archive
+	 * @param matchedFileNames resources already known to the server
+	 * @return uncompressed size of the archive entries that still need to be
+	 * uploaded
+	 */
+	protected static long getUploadSize(CFApplicationArchive archive, Set<String> matchedFileNames) {
+		long size = 0;
+		for (ArchiveEntry entry : archive.getEntries()) {
+			if (matchedFileNames == null || !matchedFileNames.contains(entry.getName())) {
+				size += Math.max(entry.getSize(), 0);
+			}
+		}
+		return size;
+	}
 }
@@ -20,16 +20,25 @@
  ********************************************************************************/
 package org.eclipse.cft.server.core.internal.client;
 
+import java.util.ArrayList;
 import java.util.LinkedHashMap;
 import java.util.List;
 import java.util.Map;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CompletionService;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorCompletionService;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Future;
 
 import org.cloudfoundry.client.lib.domain.ApplicationStats;
 import org.cloudfoundry.client.lib.domain.CloudApplication;
 import org.eclipse.cft.server.core.CFServiceInstance;
+import org.eclipse.cft.server.core.internal.CloudErrorUtil;
 import org.eclipse.cft.server.core.internal.CloudFoundryServer;
 import org.eclipse.cft.server.core.internal.Messages;
 import org.eclipse.cft.server.core.internal.ServerEventHandler;
+import org.eclipse.cft.server.core.internal.metrics.MetricsTimer;
 import org.eclipse.core.runtime.CoreException;
 import org.eclipse.core.runtime.IProgressMonitor;
 import org.eclipse.core.runtime.SubMonitor;
@@ -39,10 +48,28 @@ import org.eclipse.wst.server.core.IServer;
 
 /**
  * Updates all modules and services in the server
+ * <p/>
+ * Complete application information requires several requests per application,
+ * so complete applications are fetched concurrently, with a bounded number of
+ * requests in flight, and each module is updated and notified as soon as its
+ * application has been fetched.
  *
  */
 public class UpdateAllOperation extends CFOperation {
 
+	/**
+	 * Maximum number of complete applications fetched at the same time. Kept
+	 * below {@link RestUtils#MAX_CONNECTIONS_PER_ROUTE} so that concurrent
+	 * fetches do not wait for pooled connections
+	 */
+	private static final int MAX_PARALLEL_REQUESTS = 6;
+
+	/**
+	 * Shared by all refreshes, so that the bound applies across servers
+	 */
+	private static final ExecutorService executor = ClientRequestExecutor
+			.newBoundedExecutor(MAX_PARALLEL_REQUESTS);
+
 	public UpdateAllOperation(CloudFoundryServerBehaviour behaviour) {
 		super(behaviour);
 	}
@@ -64,6 +91,17 @@ public class UpdateAllOperation extends CFOperation {
 		subMonitor.beginTask(NLS.bind(Messages.CloudBehaviourOperations_REFRESHING_APPS_AND_SERVICES,
 				cloudServer.getServer().getId()), 100);
 
+		MetricsTimer timer = startOperationTimer();
+		try {
+			updateAll(cloudServer, subMonitor);
+			timer.succeeded();
+		}
+		finally {
+			timer.stop();
+		}
+	}
+
+	protected void updateAll(CloudFoundryServer cloudServer, SubMonitor subMonitor) throws CoreException {
 		if (isCanceled(subMonitor)) {
 			return;
 		}
@@ -125,13 +163,53 @@ public class UpdateAllOperation extends CFOperation {
 		Map<String, CloudApplication> deployedApplicationsByName = new LinkedHashMap<String, CloudApplication>();
 		Map<String, ApplicationStats> stats = new LinkedHashMap<String, ApplicationStats>();
 
+		// Keep the order of the basic list, regardless of the order in which
+		// the complete applications are fetched
 		for (CloudApplication toUpdate : applications) {
-			CFV1Application updatedApplication = getBehaviour().getCompleteApplication(toUpdate, subMonitor);
-			if (updatedApplication.getStats() != null) {
-				stats.put(toUpdate.getName(), updatedApplication.getStats());
+			deployedApplicationsByName.put(toUpdate.getName(), toUpdate);
+		}
+
+		subMonitor.setWorkRemaining(applications.size());
+
+		CompletionService<CFV1Application> completionService = new ExecutorCompletionService<CFV1Application>(
+				getExecutor());
+		List<Future<CFV1Application>> pending = new ArrayList<Future<CFV1Application>>();
+		final IProgressMonitor requestMonitor = new CancelPropagatingMonitor(subMonitor);
+
+		try {
+			for (final CloudApplication toUpdate : applications) {
+				pending.add(completionService.submit(new Callable<CFV1Application>() {
+					public CFV1Application call() throws Exception {
+						if (requestMonitor.isCanceled()) {
+							return null;
+						}
+						return getBehaviour().getCompleteApplication(toUpdate, requestMonitor);
+					}
+				}));
+			}
+
+			for (int i = 0; i < applications.size(); i++) {
+				CFV1Application updatedApplication = getCompleted(completionService);
+				if (isCanceled(subMonitor)) {
+					return;
+				}
+				if (updatedApplication == null) {
+					continue;
+				}
+				CloudApplication application = updatedApplication.getApplication();
+				if (updatedApplication.getStats() != null) {
+					stats.put(application.getName(), updatedApplication.getStats());
+				}
+				deployedApplicationsByName.put(application.getName(), application);
+				updateCompleteApp(updatedApplication, cloudServer);
+				subMonitor.worked(1);
+			}
+		}
+		finally {
+			// Requests still pending if there was an error or cancellation
+			for (Future<CFV1Application> future : pending) {
+				future.cancel(true);
 			}
-			deployedApplicationsByName.put(toUpdate.getName(), updatedApplication.getApplication());
-			subMonitor.worked(1);
 		}
 
 		cloudServer.addAndDeleteModules(deployedApplicationsByName, stats);
@@ -147,4 +225,50 @@ public class UpdateAllOperation extends CFOperation {
 			}
 		}
 	}
+
+	/**
+	 * Updates the existing module for a complete application, and notifies
+	 * listeners that the module has been updated. Applications without a
+	 * module are created when all applications have been fetched.
+	 * @param updatedApplication
+	 * @param cloudServer
+	 * @throws CoreException
+	 */
+	protected void updateCompleteApp(CFV1Application updatedApplication, CloudFoundryServer cloudServer)
+			throws CoreException {
+		CloudApplication application = updatedApplication.getApplication();
+		CloudFoundryApplicationModule appModule = null;
+		synchronized (cloudServer) {
+			appModule = cloudServer.getExistingCloudModule(application.getName());
+			if (appModule != null) {
+				appModule.setCloudApplication(application);
+				appModule.setApplicationStats(updatedApplication.getStats());
+			}
+		}
+		if (appModule != null && appModule.getLocalModule() != null) {
+			ServerEventHandler.getDefault().fireModuleUpdated(cloudServer, appModule.getLocalModule());
+		}
+	}
+
+	protected CFV1Application getCompleted(CompletionService<CFV1Application> completionService)
+			throws CoreException {
+		try {
+			return completionService.take().get();
+		}
+		catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+			throw CloudErrorUtil.toCoreException(e);
+		}
+		catch (ExecutionException e) {
+			Throwable cause = e.getCause();
+			if (cause instanceof CoreException) {
+				throw (CoreException) cause;
+			}
+			throw CloudErrorUtil.toCoreException(cause);
+		}
+	}
+
+	protected static ExecutorService getExecutor() {
+		return executor;
+	}
 }
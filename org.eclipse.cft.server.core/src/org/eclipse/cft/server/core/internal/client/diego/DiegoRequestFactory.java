@@ -20,10 +20,13 @@
  ********************************************************************************/
 package org.eclipse.cft.server.core.internal.client.diego;
 
+import java.io.BufferedInputStream;
 import java.io.BufferedOutputStream;
+import java.io.BufferedReader;
 import java.io.ByteArrayOutputStream;
 import java.io.IOException;
 import java.io.InputStream;
+import java.io.InputStreamReader;
 import java.io.OutputStream;
 import java.util.List;
 
@@ -41,7 +44,12 @@ import org.eclipse.cft.server.core.internal.client.CFInfo;
 import org.eclipse.cft.server.core.internal.client.ClientRequestFactory;
 import org.eclipse.cft.server.core.internal.client.CloudFoundryApplicationModule;
 import org.eclipse.cft.server.core.internal.client.CloudFoundryServerBehaviour;
+import org.eclipse.cft.server.core.internal.client.FileDownload;
+import org.eclipse.cft.server.core.internal.client.RemoteFileSearch;
+import org.eclipse.cft.server.core.internal.ssh.SshSessionPool;
 import org.eclipse.core.runtime.CoreException;
+import org.eclipse.core.runtime.IProgressMonitor;
+import org.eclipse.core.runtime.OperationCanceledException;
 import org.eclipse.core.runtime.SubMonitor;
 import org.eclipse.osgi.util.NLS;
 
@@ -52,6 +60,12 @@ import com.jcraft.jsch.Session;
 
 public class DiegoRequestFactory extends ClientRequestFactory {
 
+	/**
+	 * Longest time to wait for a remote command to report its exit status
+	 * once its output was read
+	 */
+	protected static final long EXIT_STATUS_TIMEOUT = 30000;
+
 	public DiegoRequestFactory(CloudFoundryServerBehaviour behaviour) {
 		super(behaviour);
 	}
@@ -141,8 +155,6 @@ public class DiegoRequestFactory extends ClientRequestFactory {
 	public BaseClientRequest<String> getFile(final CloudApplication app, final int instanceIndex, final String path,
 			final boolean isDir) throws CoreException {
 
-		final CloudFoundryServer cloudServer = behaviour.getCloudFoundryServer();
-
 		// If ssh is not supported, try the default legacy file fetching
 		if (!supportsSsh()) {
 			return super.getFile(app, instanceIndex, path, isDir);
@@ -162,7 +174,7 @@ public class DiegoRequestFactory extends ClientRequestFactory {
 					return null;
 				}
 				
-				Session session = ssh.connect(app.getName(), instanceIndex, cloudServer.getServer(), progress);
+				InstanceSession session = acquireSession(ssh, app, instanceIndex, progress);
 
 				String command = isDir ? "ls -p " + path //$NON-NLS-1$
 						// Basic work-around to scp which doesn't appear to work
@@ -170,7 +182,7 @@ public class DiegoRequestFactory extends ClientRequestFactory {
 						: "cat " + path; //$NON-NLS-1$
 
 				try {
-					Channel channel = session.openChannel("exec"); //$NON-NLS-1$
+					Channel channel = session.getSession().openChannel("exec"); //$NON-NLS-1$
 					((ChannelExec) channel).setCommand(command);
 
 					return getContent(channel);
@@ -179,12 +191,296 @@ public class DiegoRequestFactory extends ClientRequestFactory {
 					throw CloudErrorUtil.toCoreException(e);
 				}
 				finally {
-					session.disconnect();
+					session.close();
+				}
+			}
+		};
+	}
+
+	@Override
+	public BaseClientRequest<FileDownload> downloadFile(final CloudApplication app, final int instanceIndex,
+			final String path, final FileDownload download) throws CoreException {
+
+		if (!supportsSsh()) {
+			return super.downloadFile(app, instanceIndex, path, download);
+		}
+
+		String label = NLS.bind(Messages.CloudFoundryServerBehaviour_DOWNLOADING_FILE, path, app.getName());
+		return new BehaviourRequest<FileDownload>(label, behaviour) {
+			@Override
+			protected FileDownload doRun(CloudFoundryOperations client, SubMonitor progress) throws CoreException {
+				ISshClientSupport ssh = behaviour.getSshClientSupport(progress);
+				if (ssh == null) {
+					throw CloudErrorUtil.toCoreException(NLS.bind(Messages.FileDownload_ERROR, path,
+							"SSH is not supported by the Cloud Foundry target")); //$NON-NLS-1$
+				}
+
+				InstanceSession session = acquireSession(ssh, app, instanceIndex, progress);
+				try {
+					return streamFile(session.getSession(), path, download, progress);
+				}
+				finally {
+					session.close();
+				}
+			}
+		};
+	}
+
+	/**
+	 * Opens a session to the given application instance. The session is
+	 * leased from the session pool of the server if there is one, so that it
+	 * is reused across requests, as opening a session requires a one time code
+	 * and a handshake.
+	 * @return session to close once the request is done with it
+	 */
+	protected InstanceSession acquireSession(ISshClientSupport ssh, CloudApplication app, int instanceIndex,
+			IProgressMonitor monitor) throws CoreException {
+		CloudFoundryServer cloudServer = behaviour.getCloudFoundryServer();
+		SshSessionPool pool = SshSessionPool.forServer(cloudServer);
+		if (pool != null) {
+			SshSessionPool.Lease lease = pool.acquire(ssh, app.getName(), instanceIndex, monitor);
+			return new InstanceSession(lease.getSession(), lease);
+		}
+		return new InstanceSession(ssh.connect(app.getName(), instanceIndex, cloudServer.getServer(), monitor),
+				null);
+	}
+
+	/**
+	 * Session to an application instance, either leased from a session pool
+	 * or opened for a single request
+	 */
+	protected static class InstanceSession {
+
+		private final Session session;
+
+		private final SshSessionPool.Lease lease;
+
+		InstanceSession(Session session, SshSessionPool.Lease lease) {
+			this.session = session;
+			this.lease = lease;
+		}
+
+		public Session getSession() {
+			return session;
+		}
+
+		/**
+		 * Releases the lease of a pooled session, or disconnects the session
+		 * if it is not pooled
+		 */
+		public void close() {
+			if (lease != null) {
+				lease.release();
+			}
+			else {
+				session.disconnect();
+			}
+		}
+	}
+
+	/**
+	 * Streams the file over an exec channel. The size of the file is written
+	 * before its content, so that progress can be reported, and the content
+	 * starts at the offset of the download, so that it can be resumed.
+	 */
+	protected FileDownload streamFile(Session session, String path, FileDownload download, SubMonitor progress)
+			throws CoreException {
+		String quotedPath = quote(path);
+		long offset = download.getOffset();
+		String command = "wc -c < " + quotedPath + " && tail -c +" + (offset + 1) + ' ' + quotedPath; //$NON-NLS-1$ //$NON-NLS-2$
+
+		ByteArrayOutputStream err = new ByteArrayOutputStream();
+		Channel channel = null;
+		try {
+			channel = session.openChannel("exec"); //$NON-NLS-1$
+			((ChannelExec) channel).setCommand(command);
+			((ChannelExec) channel).setErrStream(err);
+			InputStream in = new BufferedInputStream(channel.getInputStream(), FileDownload.BUFFER_SIZE);
+			channel.connect();
+
+			long totalBytes = readSize(in);
+			if (totalBytes < 0) {
+				throw CloudErrorUtil.toCoreException(NLS.bind(Messages.FileDownload_ERROR, path, err.toString()));
+			}
+			if (totalBytes < offset) {
+				// The remote file was replaced since the download started.
+				// Download it again.
+				channel.disconnect();
+				return streamFile(session, path, new FileDownload(download.getLocalFile(), false), progress);
+			}
+			download.transfer(in, totalBytes, progress);
+
+			// Anything but a successful exit, including an unknown status,
+			// means the content may be truncated
+			int exitStatus = getExitStatus(channel, progress);
+			if (exitStatus != 0) {
+				String reason = exitStatus < 0 ? Messages.FileDownload_EXIT_STATUS_UNKNOWN : err.toString();
+				throw CloudErrorUtil.toCoreException(NLS.bind(Messages.FileDownload_ERROR, path, reason));
+			}
+			return download;
+		}
+		catch (IOException e) {
+			throw CloudErrorUtil.toCoreException(e);
+		}
+		catch (JSchException e) {
+			throw CloudErrorUtil.toCoreException(e);
+		}
+		finally {
+			if (channel != null) {
+				channel.disconnect();
+			}
+		}
+	}
+
+	@Override
+	public BaseClientRequest<Integer> searchFiles(final CloudApplication app, final int instanceIndex,
+			final String path, final String pattern, final RemoteFileSearch.IListener listener)
+			throws CoreException {
+
+		if (!supportsSsh()) {
+			return super.searchFiles(app, instanceIndex, path, pattern, listener);
+		}
+
+		String label = NLS.bind(Messages.RemoteFileSearch_SEARCHING_INSTANCE, app.getName(), instanceIndex);
+		return new BehaviourRequest<Integer>(label, behaviour) {
+			@Override
+			protected Integer runAndWait(CloudFoundryOperations client, SubMonitor subProgress)
+					throws CoreException {
+				// Matches are reported as they are found, so running the
+				// search again would report them twice
+				return doRun(client, subProgress);
+			}
+
+			@Override
+			protected Integer doRun(CloudFoundryOperations client, SubMonitor progress) throws CoreException {
+				ISshClientSupport ssh = behaviour.getSshClientSupport(progress);
+				if (ssh == null) {
+					throw CloudErrorUtil
+							.toCoreException(NLS.bind(Messages.RemoteFileSearch_NOT_SUPPORTED, app.getName()));
+				}
+
+				InstanceSession session = acquireSession(ssh, app, instanceIndex, progress);
+				try {
+					return grep(session.getSession(), instanceIndex, path, pattern, listener, progress);
+				}
+				finally {
+					session.close();
 				}
 			}
 		};
 	}
 
+	/**
+	 * Runs grep over an exec channel, reporting matches as their lines are
+	 * read. Binary and unreadable files are skipped. The search stops after
+	 * {@link RemoteFileSearch#MAX_MATCHES_PER_INSTANCE} matches.
+	 */
+	protected int grep(Session session, int instanceIndex, String path, String pattern,
+			RemoteFileSearch.IListener listener, SubMonitor progress) throws CoreException {
+		// -Z ends file names with a NUL, as they may contain ':'
+		String command = "grep -rnIsZE -e " + quote(pattern) + " -- " + quote(path); //$NON-NLS-1$ //$NON-NLS-2$
+
+		ByteArrayOutputStream err = new ByteArrayOutputStream();
+		Channel channel = null;
+		try {
+			channel = session.openChannel("exec"); //$NON-NLS-1$
+			((ChannelExec) channel).setCommand(command);
+			((ChannelExec) channel).setErrStream(err);
+			BufferedReader reader = new BufferedReader(new InputStreamReader(channel.getInputStream(), "UTF-8")); //$NON-NLS-1$
+			channel.connect();
+
+			int matches = 0;
+			String line;
+			while (matches < RemoteFileSearch.MAX_MATCHES_PER_INSTANCE && (line = reader.readLine()) != null) {
+				if (progress.isCanceled()) {
+					throw new OperationCanceledException();
+				}
+				RemoteFileSearch.Match match = RemoteFileSearch.parseMatch(instanceIndex, line);
+				if (match != null) {
+					matches++;
+					listener.matchFound(match);
+				}
+			}
+
+			// grep exits with 1 if nothing matched, and 2 on errors, such as
+			// an invalid pattern
+			if (matches == 0) {
+				int exitStatus = getExitStatus(channel, progress);
+				if (exitStatus < 0) {
+					throw CloudErrorUtil.toCoreException(Messages.FileDownload_EXIT_STATUS_UNKNOWN);
+				}
+				if (exitStatus > 1) {
+					throw CloudErrorUtil.toCoreException(err.toString());
+				}
+			}
+			return matches;
+		}
+		catch (IOException e) {
+			throw CloudErrorUtil.toCoreException(e);
+		}
+		catch (JSchException e) {
+			throw CloudErrorUtil.toCoreException(e);
+		}
+		finally {
+			if (channel != null) {
+				channel.disconnect();
+			}
+		}
+	}
+
+	/**
+	 * 
+	 * @return exit status of the command of the given channel, once its
+	 * output was read, or -1 if the channel did not close within
+	 * {@link #EXIT_STATUS_TIMEOUT} or closed without reporting a status
+	 */
+	protected static int getExitStatus(Channel channel, IProgressMonitor monitor) throws CoreException {
+		// The exit status is set once the channel is closed, which is usually
+		// shortly after the end of the output, but can take longer on a busy
+		// instance
+		long deadline = System.currentTimeMillis() + EXIT_STATUS_TIMEOUT;
+		try {
+			while (!channel.isClosed() && System.currentTimeMillis() < deadline) {
+				if (monitor != null && monitor.isCanceled()) {
+					throw new OperationCanceledException();
+				}
+				Thread.sleep(100);
+			}
+		}
+		catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+			throw CloudErrorUtil.toCoreException(e);
+		}
+		return channel.isClosed() ? channel.getExitStatus() : -1;
+	}
+
+	/**
+	 * 
+	 * @return the given value as a single argument of a shell command
+	 */
+	protected static String quote(String value) {
+		return "'" + value.replace("'", "'\\''") + "'"; //$NON-NLS-1$ //$NON-NLS-2$ //$NON-NLS-3$ //$NON-NLS-4$
+	}
+
+	/**
+	 * 
+	 * @return size written on the first line of the output, or -1 if the
+	 * output does not start with a size
+	 */
+	protected static long readSize(InputStream in) throws IOException {
+		StringBuilder line = new StringBuilder();
+		int read;
+		while ((read = in.read()) != -1 && read != '\n') {
+			line.append((char) read);
+		}
+		try {
+			return read == -1 ? -1 : Long.parseLong(line.toString().trim());
+		}
+		catch (NumberFormatException e) {
+			return -1;
+		}
+	}
+
 	@Override
 	public CFInfo getCloudInfo() throws CoreException {
 		if (cachedInfo == null) {
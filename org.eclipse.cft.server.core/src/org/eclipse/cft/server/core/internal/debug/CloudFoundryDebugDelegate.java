@@ -98,16 +98,47 @@ public abstract class CloudFoundryDebugDelegate extends AbstractJavaLaunchConfig
 		argMap.put("hostname", connectionDescriptor.getHost());//$NON-NLS-1$
 		argMap.put("port", connectionDescriptor.getPort() + "");//$NON-NLS-1$ //$NON-NLS-2$
 
-		setSourceLocator(launch);
+		boolean connected = false;
 		try {
+			setSourceLocator(launch);
 			connector.connect(argMap, monitor, launch);
 			ApplicationDebugLauncher.addDebuggerConnectionListener(
 					provider.getApplicationDebugLaunchId(appModule.getLocalModule(), cloudServer.getServer(), appInstance), launch);
+			connected = true;
 		}
 		catch (CoreException e) {
 			fireDebugChanged(configuration, e.getStatus());
 			throw e;
 		}
+		finally {
+			if (!connected) {
+				releaseConnection(cloudServer, connectionDescriptor);
+			}
+		}
+		debuggerConnected(launch, cloudServer, connectionDescriptor);
+	}
+
+	/**
+	 * Called once the debugger is attached to the given connection. By
+	 * default, does nothing.
+	 * @param launch
+	 * @param cloudServer
+	 * @param connectionDescriptor
+	 */
+	protected void debuggerConnected(ILaunch launch, CloudFoundryServer cloudServer,
+			DebugConnectionDescriptor connectionDescriptor) {
+		// Nothing to keep track of by default
+	}
+
+	/**
+	 * Releases the resources held for the given connection, once the
+	 * debugger is detached from it or could not be attached. By default, does
+	 * nothing.
+	 * @param cloudServer
+	 * @param connectionDescriptor
+	 */
+	protected void releaseConnection(CloudFoundryServer cloudServer, DebugConnectionDescriptor connectionDescriptor) {
+		// Nothing held by default
 	}
 
 	public final void fireDebugChanged(ILaunchConfiguration config, IStatus status) {
@@ -0,0 +1,649 @@
+/*******************************************************************************
+ * Copyright (c) 2017 Pivotal Software, Inc. and others
+ *
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * and Apache License v2.0 which accompanies this distribution.
+ *
+ * The Eclipse Public License is available at
+ *
+ * http://www.eclipse.org/legal/epl-v10.html
+ *
+ * and the Apache License v2.0 is available at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * You may elect to redistribute this code under either of these licenses.
+ *
+ *  Contributors:
+ *     Pivotal Software, Inc. - initial API and implementation
+ ********************************************************************************/
+package org.eclipse.cft.server.core.internal.debug;
+
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+import org.eclipse.cft.server.core.ISshClientSupport;
+import org.eclipse.cft.server.core.internal.CloudErrorUtil;
+import org.eclipse.cft.server.core.internal.CloudFoundryPlugin;
+import org.eclipse.cft.server.core.internal.CloudFoundryServer;
+import org.eclipse.cft.server.core.internal.CloudServerEvent;
+import org.eclipse.cft.server.core.internal.CloudServerListener;
+import org.eclipse.cft.server.core.internal.ServerEventHandler;
+import org.eclipse.cft.server.core.internal.application.ModuleChangeEvent;
+import org.eclipse.cft.server.core.internal.client.ClientRequestExecutor;
+import org.eclipse.cft.server.core.internal.client.CloudFoundryApplicationModule;
+import org.eclipse.cft.server.core.internal.ssh.SshSessionPool;
+import org.eclipse.core.runtime.CoreException;
+import org.eclipse.core.runtime.IProgressMonitor;
+import org.eclipse.core.runtime.NullProgressMonitor;
+
+import com.jcraft.jsch.JSchException;
+
+/**
+ * Keeps the debug tunnels of application instances open across debug
+ * launches, so that the debugger can be attached again without opening a new
+ * SSH session and port forwarding, or resolving the tunnel endpoint again.
+ * One manager is shared by all the launches of the same server.
+ * <p/>
+ * SSH tunnels are checked every {@link #CHECK_INTERVAL}, and right after the
+ * application is restarted or updated. A tunnel whose session was closed,
+ * for example because the instance was restarted, is opened again on the
+ * same local port, so that launches keep the same connection information. A
+ * tunnel that cannot be opened again for {@link #RECONNECT_TIMEOUT} is
+ * closed. A tunnel that no launch has used for {@link #UNUSED_TIMEOUT} is
+ * closed, which returns its session to the {@link SshSessionPool}. Tunnels
+ * are also closed when the application is stopped or deleted, or when the
+ * server is disconnected.
+ * <p/>
+ * Endpoints resolved by other means, like the ngrok tunnel address, are
+ * cached until the application is restarted or stopped.
+ * <p/>
+ * Tunnels are opened under the lock of each tunnel, so that opening a tunnel
+ * does not block the tunnels of other instances. The manager of a server is
+ * disposed when the server is disconnected or deleted.
+ */
+public class DebugTunnelManager {
+
+	public static final long CHECK_INTERVAL = 10 * 1000;
+
+	public static final long RECONNECT_TIMEOUT = 5 * 60 * 1000;
+
+	/**
+	 * How long a tunnel is kept open after the last launch using it
+	 * terminated, so that the debugger can be attached again right away
+	 */
+	public static final long UNUSED_TIMEOUT = SshSessionPool.IDLE_TIMEOUT;
+
+	private static final String LOCALHOST = "localhost"; //$NON-NLS-1$
+
+	private static final Map<String, DebugTunnelManager> managers = new ConcurrentHashMap<String, DebugTunnelManager>();
+
+	private static final CloudServerListener serverListener = new CloudServerListener() {
+		public void serverChanged(CloudServerEvent event) {
+			if (event.getServer() == null) {
+				return;
+			}
+			String serverId = event.getServer().getServerId();
+			if (event.getType() == CloudServerEvent.EVENT_SERVER_DISCONNECTED
+					|| event.getType() == CloudServerEvent.EVENT_SERVER_DELETED) {
+				dispose(serverId);
+				return;
+			}
+			DebugTunnelManager manager = serverId != null ? managers.get(serverId) : null;
+			if (manager != null) {
+				manager.serverChanged(event);
+			}
+		}
+	};
+
+	private final ConcurrentMap<String, Tunnel> tunnels = new ConcurrentHashMap<String, Tunnel>();
+
+	private final Map<String, DebugConnectionDescriptor> endpoints = new ConcurrentHashMap<String, DebugConnectionDescriptor>();
+
+	/*
+	 * Runs the checks of the tunnels, which open sessions, one at a time and
+	 * off the shared scheduler
+	 */
+	private final ExecutorService checkExecutor = ClientRequestExecutor.newBoundedExecutor(1);
+
+	private final AtomicBoolean checkPending = new AtomicBoolean();
+
+	private volatile CloudFoundryServer cloudServer;
+
+	private ScheduledFuture<?> checkTask;
+
+	protected DebugTunnelManager(CloudFoundryServer cloudServer) {
+		this.cloudServer = cloudServer;
+	}
+
+	/**
+	 * 
+	 * @param cloudServer
+	 * @return manager shared by all debug launches of the given server, or
+	 * null if the server cannot be identified
+	 */
+	public static DebugTunnelManager forServer(CloudFoundryServer cloudServer) {
+		String serverId = cloudServer != null ? cloudServer.getServerId() : null;
+		if (serverId == null) {
+			return null;
+		}
+		DebugTunnelManager manager = managers.get(serverId);
+		if (manager == null) {
+			synchronized (managers) {
+				manager = managers.get(serverId);
+				if (manager == null) {
+					manager = new DebugTunnelManager(cloudServer);
+					if (managers.isEmpty()) {
+						ServerEventHandler.getDefault().addServerListener(serverListener);
+					}
+					managers.put(serverId, manager);
+					manager.start();
+				}
+			}
+		}
+		manager.cloudServer = cloudServer;
+		return manager;
+	}
+
+	/**
+	 * Returns the open SSH tunnel to the debug port of the given application
+	 * instance, opening it if needed. The tunnel is used until the returned
+	 * connection information is {@link #release(DebugConnectionDescriptor)
+	 * released}.
+	 * @param ssh
+	 * @param appName
+	 * @param appInstance
+	 * @param remoteDebugPort
+	 * @param monitor
+	 * @return connection information of the local end of the tunnel
+	 * @throws CoreException if the tunnel could not be opened
+	 */
+	public DebugConnectionDescriptor getSshTunnel(ISshClientSupport ssh, String appName, int appInstance,
+			int remoteDebugPort, IProgressMonitor monitor) throws CoreException {
+		String key = getKey(appName, appInstance) + ':' + remoteDebugPort;
+		while (true) {
+			Tunnel tunnel = tunnels.get(key);
+			if (tunnel == null) {
+				Tunnel created = new Tunnel(appName, appInstance, remoteDebugPort);
+				tunnel = tunnels.putIfAbsent(key, created);
+				if (tunnel == null) {
+					tunnel = created;
+				}
+			}
+			DebugConnectionDescriptor descriptor;
+			try {
+				descriptor = tunnel.use(ssh, monitor);
+			}
+			catch (CoreException e) {
+				// Do not keep tunnels that were never opened
+				if (tunnel.isNew()) {
+					tunnels.remove(key, tunnel);
+				}
+				throw e;
+			}
+			if (descriptor != null) {
+				return descriptor;
+			}
+			// Closed meanwhile, so open a new tunnel
+			tunnels.remove(key, tunnel);
+		}
+	}
+
+	/**
+	 * Marks the tunnel of the given connection information as no longer used
+	 * by its launch. The tunnel is closed once it was not used for
+	 * {@link #UNUSED_TIMEOUT}. Does nothing if already released.
+	 * @param descriptor connection information returned by
+	 * {@link #getSshTunnel(ISshClientSupport, String, int, int, IProgressMonitor)}
+	 */
+	public void release(DebugConnectionDescriptor descriptor) {
+		for (Tunnel tunnel : tunnels.values()) {
+			if (tunnel.removeUser(descriptor)) {
+				return;
+			}
+		}
+	}
+
+	/**
+	 * 
+	 * @return true if the SSH tunnel to the given application instance is
+	 * open, in which case attaching the debugger does not open a session
+	 */
+	public boolean hasOpenSshTunnel(String appName, int appInstance, int remoteDebugPort) {
+		Tunnel tunnel = tunnels.get(getKey(appName, appInstance) + ':' + remoteDebugPort);
+		return tunnel != null && tunnel.isOpen();
+	}
+
+	/**
+	 * 
+	 * @return cached endpoint of the given application instance, or null if
+	 * not resolved since the application was last restarted
+	 */
+	public DebugConnectionDescriptor getEndpoint(String appName, int appInstance) {
+		return endpoints.get(getKey(appName, appInstance));
+	}
+
+	public void putEndpoint(String appName, int appInstance, DebugConnectionDescriptor endpoint) {
+		endpoints.put(getKey(appName, appInstance), endpoint);
+	}
+
+	/**
+	 * Closes the tunnels of all instances of the given application, and drops
+	 * their cached endpoints
+	 * @param appName
+	 */
+	public void close(String appName) {
+		removeEndpoints(appName);
+		for (Tunnel tunnel : removeTunnels(getKey(appName, -1))) {
+			tunnel.close();
+		}
+	}
+
+	public void closeAll() {
+		endpoints.clear();
+		for (Tunnel tunnel : removeTunnels(null)) {
+			tunnel.close();
+		}
+	}
+
+	/**
+	 * Closes the tunnels that were not used for {@link #UNUSED_TIMEOUT}, and
+	 * opens again the tunnels whose session was closed. Tunnels that could
+	 * not be opened again for {@link #RECONNECT_TIMEOUT} are closed.
+	 */
+	protected void checkTunnels() {
+		// Decide what to do with each tunnel first, so that no lock is held
+		// while sessions are opened
+		long now = System.currentTimeMillis();
+		Map<String, Tunnel> closed = new LinkedHashMap<String, Tunnel>();
+		for (Map.Entry<String, Tunnel> entry : tunnels.entrySet()) {
+			Tunnel tunnel = entry.getValue();
+			if (tunnel.closeIfUnused(now)) {
+				tunnels.remove(entry.getKey(), tunnel);
+			}
+			else if (!tunnel.isOpen() && !tunnel.isNew()) {
+				closed.put(entry.getKey(), tunnel);
+			}
+		}
+		if (closed.isEmpty()) {
+			return;
+		}
+
+		ISshClientSupport ssh = null;
+		try {
+			ssh = cloudServer.getBehaviour().getSshClientSupport(new NullProgressMonitor());
+		}
+		catch (CoreException e) {
+			// The target may not be reachable. Retried on the next check.
+		}
+		for (Map.Entry<String, Tunnel> entry : closed.entrySet()) {
+			Tunnel tunnel = entry.getValue();
+			if (tunnel.reopen(ssh, new NullProgressMonitor())) {
+				continue;
+			}
+			if (tunnel.closeIfReconnectTimedOut(System.currentTimeMillis())) {
+				tunnels.remove(entry.getKey(), tunnel);
+				CloudFoundryPlugin.logWarning("Closing debug tunnel to " + entry.getKey() //$NON-NLS-1$
+						+ " that could not be opened again"); //$NON-NLS-1$
+			}
+		}
+	}
+
+	protected void serverChanged(CloudServerEvent event) {
+		switch (event.getType()) {
+		case CloudServerEvent.EVENT_APP_DELETED:
+		case CloudServerEvent.EVENT_APP_STOPPED:
+			String stopped = getAppName(event);
+			if (stopped != null) {
+				close(stopped);
+			}
+			break;
+		case CloudServerEvent.EVENT_APP_DEPLOYMENT_CHANGED:
+			// The application was restarted, so its endpoints changed and
+			// its tunnels are to be opened again as soon as possible
+			String restarted = getAppName(event);
+			if (restarted != null) {
+				removeEndpoints(restarted);
+				scheduleCheck();
+			}
+			break;
+		case CloudServerEvent.EVENT_MODULE_UPDATED:
+		case CloudServerEvent.EVENT_INSTANCES_UPDATED:
+			if (!tunnels.isEmpty()) {
+				scheduleCheck();
+			}
+			break;
+		default:
+			break;
+		}
+	}
+
+	protected String getAppName(CloudServerEvent event) {
+		if (event instanceof ModuleChangeEvent && ((ModuleChangeEvent) event).getModule() != null) {
+			CloudFoundryApplicationModule appModule = event.getServer()
+					.getExistingCloudModule(((ModuleChangeEvent) event).getModule());
+			return appModule != null ? appModule.getDeployedApplicationName()
+					: ((ModuleChangeEvent) event).getModule().getName();
+		}
+		return null;
+	}
+
+	/**
+	 * Checks the tunnels as soon as possible, unless a check is already
+	 * pending
+	 */
+	protected void scheduleCheck() {
+		if (!checkPending.compareAndSet(false, true)) {
+			return;
+		}
+		try {
+			checkExecutor.execute(new Runnable() {
+
+				@Override
+				public void run() {
+					checkPending.set(false);
+					try {
+						checkTunnels();
+					}
+					catch (RuntimeException e) {
+						CloudFoundryPlugin.logError(e);
+					}
+				}
+			});
+		}
+		catch (RejectedExecutionException e) {
+			// Disposed
+			checkPending.set(false);
+		}
+	}
+
+	/**
+	 * Stops the manager of the given server, if any, and closes its tunnels
+	 * @param serverId
+	 */
+	protected static void dispose(String serverId) {
+		if (serverId == null) {
+			return;
+		}
+		DebugTunnelManager manager;
+		synchronized (managers) {
+			manager = managers.remove(serverId);
+			if (manager != null && managers.isEmpty()) {
+				ServerEventHandler.getDefault().removeServerListener(serverListener);
+			}
+		}
+		if (manager != null) {
+			manager.dispose();
+		}
+	}
+
+	protected void dispose() {
+		synchronized (this) {
+			if (checkTask != null) {
+				checkTask.cancel(false);
+				checkTask = null;
+			}
+		}
+		checkExecutor.shutdownNow();
+		closeAll();
+	}
+
+	/*
+	 * Starts checking the tunnels periodically
+	 */
+	private synchronized void start() {
+		checkTask = ClientRequestExecutor.getScheduler().scheduleWithFixedDelay(new Runnable() {
+
+			@Override
+			public void run() {
+				if (!tunnels.isEmpty()) {
+					scheduleCheck();
+				}
+			}
+		}, CHECK_INTERVAL, CHECK_INTERVAL, TimeUnit.MILLISECONDS);
+	}
+
+	private void removeEndpoints(String appName) {
+		String prefix = getKey(appName, -1);
+		for (String key : endpoints.keySet()) {
+			if (key.startsWith(prefix)) {
+				endpoints.remove(key);
+			}
+		}
+	}
+
+	/*
+	 * Removes the tunnels whose key starts with the given prefix, or all
+	 * tunnels if null
+	 */
+	private List<Tunnel> removeTunnels(String prefix) {
+		List<Tunnel> removed = new ArrayList<Tunnel>();
+		for (String key : tunnels.keySet()) {
+			if (prefix == null || key.startsWith(prefix)) {
+				Tunnel tunnel = tunnels.remove(key);
+				if (tunnel != null) {
+					removed.add(tunnel);
+				}
+			}
+		}
+		return removed;
+	}
+
+	/*
+	 * Key of the given instance, or prefix of the keys of all instances of the
+	 * application if the instance is negative
+	 */
+	private static String getKey(String appName, int appInstance) {
+		return appName + '/' + (appInstance >= 0 ? Integer.toString(appInstance) : ""); //$NON-NLS-1$
+	}
+
+	/**
+	 * Local port forwarding to the debug port of an application instance, on
+	 * a session leased from the {@link SshSessionPool}
+	 */
+	protected class Tunnel {
+
+		private final String appName;
+
+		private final int appInstance;
+
+		private final int remotePort;
+
+		private SshSessionPool.Lease lease;
+
+		/*
+		 * Local port of the tunnel, kept when the tunnel is opened again so
+		 * that launches keep the same connection information
+		 */
+		private int localPort;
+
+		/*
+		 * Time from which the tunnel could not be opened again, or 0 if
+		 * it is open
+		 */
+		private long closedSince;
+
+		/*
+		 * Connection information handed to the launches using the tunnel
+		 */
+		private final List<DebugConnectionDescriptor> users = new ArrayList<DebugConnectionDescriptor>();
+
+		/*
+		 * Time from which no launch used the tunnel
+		 */
+		private long unusedSince = System.currentTimeMillis();
+
+		/*
+		 * Whether the tunnel was closed for good. A closed tunnel is no
+		 * longer handed to launches nor opened again.
+		 */
+		private boolean closed;
+
+		protected Tunnel(String appName, int appInstance, int remotePort) {
+			this.appName = appName;
+			this.appInstance = appInstance;
+			this.remotePort = remotePort;
+		}
+
+		/**
+		 * Opens the tunnel if needed, and adds a user to it
+		 * @return connection information of the new user, or null if the
+		 * tunnel was closed
+		 */
+		protected synchronized DebugConnectionDescriptor use(ISshClientSupport ssh, IProgressMonitor monitor)
+				throws CoreException {
+			if (closed) {
+				return null;
+			}
+			if (!isOpen()) {
+				open(ssh, monitor);
+			}
+			DebugConnectionDescriptor descriptor = new DebugConnectionDescriptor(LOCALHOST, localPort);
+			users.add(descriptor);
+			return descriptor;
+		}
+
+		/**
+		 * 
+		 * @return true if the tunnel was never opened
+		 */
+		protected synchronized boolean isNew() {
+			return localPort == 0;
+		}
+
+		/**
+		 * Opens the tunnel again if its session was closed, and it was not
+		 * closed for good meanwhile
+		 * @param ssh SSH support, or null if not available
+		 * @return true if the tunnel is open
+		 */
+		protected synchronized boolean reopen(ISshClientSupport ssh, IProgressMonitor monitor) {
+			if (closed) {
+				return false;
+			}
+			if (isOpen()) {
+				return true;
+			}
+			if (ssh != null) {
+				try {
+					open(ssh, monitor);
+					return true;
+				}
+				catch (CoreException e) {
+					// The instance may still be restarting. Retried on the
+					// next check.
+				}
+			}
+			if (closedSince == 0) {
+				closedSince = System.currentTimeMillis();
+			}
+			return false;
+		}
+
+		/**
+		 * Closes the tunnel if no launch used it for {@link #UNUSED_TIMEOUT}
+		 * @return true if closed
+		 */
+		protected synchronized boolean closeIfUnused(long now) {
+			if (!closed && users.isEmpty() && now - unusedSince >= UNUSED_TIMEOUT) {
+				close();
+				return true;
+			}
+			return false;
+		}
+
+		/**
+		 * Closes the tunnel if it could not be opened again for
+		 * {@link #RECONNECT_TIMEOUT}
+		 * @return true if closed
+		 */
+		protected synchronized boolean closeIfReconnectTimedOut(long now) {
+			if (!closed && closedSince != 0 && now - closedSince >= RECONNECT_TIMEOUT) {
+				close();
+				return true;
+			}
+			return false;
+		}
+
+		protected synchronized boolean removeUser(DebugConnectionDescriptor descriptor) {
+			// Descriptors of different launches are equal, so compare them
+			// by identity
+			for (Iterator<DebugConnectionDescriptor> it = users.iterator(); it.hasNext();) {
+				if (it.next() == descriptor) {
+					it.remove();
+					if (users.isEmpty()) {
+						unusedSince = System.currentTimeMillis();
+					}
+					return true;
+				}
+			}
+			return false;
+		}
+
+		public synchronized boolean isOpen() {
+			return lease != null && lease.getSession().isConnected();
+		}
+
+		public synchronized void open(ISshClientSupport ssh, IProgressMonitor monitor) throws CoreException {
+			if (lease != null) {
+				// Session closed since, which also released its forwarded
+				// port
+				lease.release();
+				lease = null;
+			}
+			SshSessionPool pool = SshSessionPool.forServer(cloudServer);
+			if (pool == null) {
+				throw CloudErrorUtil.toCoreException("No SSH session pool for " + appName); //$NON-NLS-1$
+			}
+			SshSessionPool.Lease newLease = pool.acquire(ssh, appName, appInstance, monitor);
+			try {
+				localPort = forward(newLease, localPort);
+			}
+			catch (JSchException e) {
+				if (localPort == 0) {
+					newLease.release();
+					throw CloudErrorUtil.toCoreException("SSH connection error " + e.getMessage()); //$NON-NLS-1$
+				}
+				// The previous local port is no longer available
+				try {
+					localPort = forward(newLease, 0);
+				}
+				catch (JSchException e2) {
+					newLease.release();
+					throw CloudErrorUtil.toCoreException("SSH connection error " + e2.getMessage()); //$NON-NLS-1$
+				}
+			}
+			lease = newLease;
+			closedSince = 0;
+		}
+
+		protected int forward(SshSessionPool.Lease newLease, int port) throws JSchException {
+			return newLease.getSession().setPortForwardingL(port, LOCALHOST, remotePort);
+		}
+
+		public synchronized void close() {
+			closed = true;
+			if (lease != null) {
+				try {
+					lease.getSession().delPortForwardingL(localPort);
+				}
+				catch (JSchException e) {
+					// Already released with the session
+				}
+				lease.release();
+				lease = null;
+			}
+		}
+	}
+}
@@ -64,6 +64,11 @@ public class NgrokDebugLaunchConfigDelegate extends CloudFoundryDebugDelegate {
 		return null;
 	}
 
+	/**
+	 * Sets the debug options of the application, and starts it if it is
+	 * stopped or its options changed
+	 * @return true if the application was started
+	 */
 	public boolean configureApp(CloudFoundryApplicationModule appModule, CloudFoundryServer cloudServer, int instance,
 			int debugPort, IProgressMonitor monitor) throws CoreException {
 
@@ -104,7 +109,7 @@ public class NgrokDebugLaunchConfigDelegate extends CloudFoundryDebugDelegate {
 			cloudServer.getBehaviour().operations().applicationDeployment(mod, ApplicationAction.START, false)
 					.run(monitor);
 		}
-		return true;
+		return restart;
 
 	}
 
@@ -156,7 +161,23 @@ public class NgrokDebugLaunchConfigDelegate extends CloudFoundryDebugDelegate {
 			throw CloudErrorUtil.toCoreException(errorMessage);
 		}
 
-		configureApp(appModule, cloudServer, appInstance, remoteDebugPort, subMonitor);
+		boolean restarted = configureApp(appModule, cloudServer, appInstance, remoteDebugPort, subMonitor);
+
+		// The tunnel address only changes when ngrok is restarted with the
+		// application, so it is not fetched again until then
+		String appName = appModule.getDeployedApplicationName();
+		DebugTunnelManager tunnels = DebugTunnelManager.forServer(cloudServer);
+		if (tunnels != null) {
+			if (restarted) {
+				tunnels.close(appName);
+			}
+			else {
+				DebugConnectionDescriptor cached = tunnels.getEndpoint(appName, appInstance);
+				if (cached != null) {
+					return cached;
+				}
+			}
+		}
 
 		String fileContent = NgrokDebugProvider.getFileContent(appModule, cloudServer, remoteNgrokOutputFile,
 				subMonitor);
@@ -176,6 +197,9 @@ public class NgrokDebugLaunchConfigDelegate extends CloudFoundryDebugDelegate {
 						"Invalid port:" + descriptor.getPort() + " or ngrok server address: " + descriptor.getHost() //$NON-NLS-1$ //$NON-NLS-2$
 								+ " parsed from ngrok output file in the Cloud."); //$NON-NLS-1$
 			}
+			if (tunnels != null) {
+				tunnels.putEndpoint(appName, appInstance, descriptor);
+			}
 			return descriptor;
 		}
 		else {
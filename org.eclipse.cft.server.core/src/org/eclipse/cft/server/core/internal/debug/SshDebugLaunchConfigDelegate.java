@@ -32,6 +32,9 @@ import org.eclipse.cft.server.core.internal.Messages;
 import org.eclipse.cft.server.core.internal.client.CloudFoundryApplicationModule;
 import org.eclipse.core.runtime.CoreException;
 import org.eclipse.core.runtime.IProgressMonitor;
+import org.eclipse.debug.core.ILaunch;
+import org.eclipse.debug.core.ILaunchManager;
+import org.eclipse.debug.core.ILaunchesListener2;
 import org.eclipse.osgi.util.NLS;
 import org.eclipse.wst.server.core.IModule;
 
@@ -87,6 +90,13 @@ public class SshDebugLaunchConfigDelegate extends CloudFoundryDebugDelegate {
 			printToConsole(appModule, cloudServer, NLS.bind(Messages.SshDebugLaunchConfigDelegate_RESTARTING_APP,
 					appModule.getDeployedApplicationName()), false);
 
+			// Tunnels to the instances being restarted may still look open
+			// until their sessions time out
+			DebugTunnelManager tunnels = DebugTunnelManager.forServer(cloudServer);
+			if (tunnels != null) {
+				tunnels.close(appModule.getDeployedApplicationName());
+			}
+
 			cloudServer.getBehaviour().operations().applicationDeployment(mod, ApplicationAction.START, false)
 					.run(monitor);
 		}
@@ -101,6 +111,27 @@ public class SshDebugLaunchConfigDelegate extends CloudFoundryDebugDelegate {
 			throw CloudErrorUtil.toCoreException(
 					"Unable to resolve SSH connection information from the Cloud Foundry target. Please ensure SSH is supported.");//$NON-NLS-1$
 		}
+		String appName = appModule.getDeployedApplicationName();
+
+		// Tunnels are kept open across launches, so that the debugger can be
+		// attached again right away
+		DebugTunnelManager tunnels = DebugTunnelManager.forServer(cloudServer);
+		if (tunnels != null) {
+			boolean reused = tunnels.hasOpenSshTunnel(appName, appInstance, remoteDebugPort);
+			if (!reused) {
+				printToConsole(appModule, cloudServer,
+						NLS.bind(Messages.SshDebugLaunchConfigDelegate_CONNECTING_FOR_USER, appName), false);
+			}
+			DebugConnectionDescriptor descriptor = tunnels.getSshTunnel(ssh, appName, appInstance, remoteDebugPort,
+					monitor);
+			printToConsole(appModule, cloudServer,
+					NLS.bind(reused ? Messages.SshDebugLaunchConfigDelegate_REUSING_TUNNEL
+							: Messages.SshDebugLaunchConfigDelegate_PORT_FORWARDING_SUCCESSFUL, remoteDebugPort,
+							descriptor.getPort()),
+					false);
+			return descriptor;
+		}
+
 		try {
 			printToConsole(appModule, cloudServer,
 					NLS.bind(Messages.SshDebugLaunchConfigDelegate_CONNECTING_FOR_USER,
@@ -149,6 +180,61 @@ public class SshDebugLaunchConfigDelegate extends CloudFoundryDebugDelegate {
 		return getSshConnectionDescriptor(appModule, cloudServer, appInstance, remoteDebugPort, monitor);
 	}
 
+	@Override
+	protected void debuggerConnected(final ILaunch launch, final CloudFoundryServer cloudServer,
+			final DebugConnectionDescriptor connectionDescriptor) {
+		// Release the tunnel once the launch terminates, so that its session
+		// can be closed when no longer used
+		final ILaunchManager launchManager = getLaunchManager();
+		ILaunchesListener2 listener = new ILaunchesListener2() {
+
+			@Override
+			public void launchesTerminated(ILaunch[] launches) {
+				launchesEnded(launches);
+			}
+
+			@Override
+			public void launchesRemoved(ILaunch[] launches) {
+				launchesEnded(launches);
+			}
+
+			@Override
+			public void launchesAdded(ILaunch[] launches) {
+				// Not related to the launch
+			}
+
+			@Override
+			public void launchesChanged(ILaunch[] launches) {
+				// Not related to the launch
+			}
+
+			private void launchesEnded(ILaunch[] launches) {
+				for (ILaunch ended : launches) {
+					if (ended == launch) {
+						launchManager.removeLaunchListener(this);
+						releaseConnection(cloudServer, connectionDescriptor);
+						return;
+					}
+				}
+			}
+		};
+		launchManager.addLaunchListener(listener);
+
+		// The launch may have terminated before the listener was added
+		if (launch.isTerminated()) {
+			launchManager.removeLaunchListener(listener);
+			releaseConnection(cloudServer, connectionDescriptor);
+		}
+	}
+
+	@Override
+	protected void releaseConnection(CloudFoundryServer cloudServer, DebugConnectionDescriptor connectionDescriptor) {
+		DebugTunnelManager tunnels = DebugTunnelManager.forServer(cloudServer);
+		if (tunnels != null && connectionDescriptor != null) {
+			tunnels.release(connectionDescriptor);
+		}
+	}
+
 	@Override
 	protected void printToConsole(CloudFoundryApplicationModule appModule, CloudFoundryServer server, String message,
 			boolean error) {
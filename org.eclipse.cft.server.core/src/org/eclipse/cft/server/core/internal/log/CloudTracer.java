@@ -30,6 +30,8 @@ import org.eclipse.cft.server.core.internal.CloudFoundryPlugin;
  */
 public abstract class CloudTracer implements ICloudTracer {
 
+	private static volatile DefaultCloudTracer defaultTracer;
+
 	public void traceNewLogEntry(RestLogEntry restLogEntry) {
 
 		if (restLogEntry == null || !HttpTracer.getCurrent().isEnabled()) {
@@ -75,7 +77,25 @@ public abstract class CloudTracer implements ICloudTracer {
 	public static ICloudTracer getCurrentCloudTracer() {
 		// Add option for Framework here to load third-party tracers. For now,
 		// just return a default tracer
-		return new DefaultCloudTracer();
+		return getDefaultTracer();
+	}
+
+	/**
+	 *
+	 * @return tracer shared by all clients, that traces to the console
+	 */
+	static DefaultCloudTracer getDefaultTracer() {
+		DefaultCloudTracer tracer = defaultTracer;
+		if (tracer == null) {
+			synchronized (CloudTracer.class) {
+				tracer = defaultTracer;
+				if (tracer == null) {
+					tracer = new DefaultCloudTracer();
+					defaultTracer = tracer;
+				}
+			}
+		}
+		return tracer;
 	}
 
 }
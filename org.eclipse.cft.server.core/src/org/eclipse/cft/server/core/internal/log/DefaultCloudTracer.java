@@ -20,16 +20,16 @@
  ********************************************************************************/
 package org.eclipse.cft.server.core.internal.log;
 
-import java.io.StringWriter;
-
 import org.cloudfoundry.client.lib.RestLogEntry;
 
 /**
- * General-purpose tracer that parses a {@link RestLogEntry} into various String
- * traces, and assigns a {@link LogContentType} to each section of the log entry.
+ * General-purpose tracer that records each {@link RestLogEntry} in the HTTP
+ * trace sink, and parses the recorded events into various String traces on
+ * the trace thread, assigning a {@link LogContentType} to each section of the
+ * log entry.
  *
  */
-public class DefaultCloudTracer extends CloudTracer {
+public class DefaultCloudTracer extends CloudTracer implements HttpTraceSink.Listener {
 
 	static final String HTTP_TRACE_STATUS = "HTTP STATUS"; //$NON-NLS-1$
 
@@ -41,12 +41,21 @@ public class DefaultCloudTracer extends CloudTracer {
 
 	static final String SPACE = " "; //$NON-NLS-1$
 
+	static final String MILLISECONDS = "ms"; //$NON-NLS-1$
+
+	/**
+	 * Reused for every event. Only used on the trace thread.
+	 */
+	private final StringBuilder writer = new StringBuilder();
+
 	protected void doTrace(RestLogEntry restLogEntry) {
+		HttpTracer.getCurrent().publish(restLogEntry);
+	}
 
-		StringWriter writer = new StringWriter();
-		boolean isError = restLogEntry.getStatus() != null && ERROR_STATUS.equals(restLogEntry.getStatus());
+	public void traced(HttpTraceEvent event) {
+		writer.setLength(0);
 
-		writer.append(restLogEntry.getStatus());
+		writer.append(event.getStatus());
 
 		writer.append(SPACE);
 		writer.append(TRACE_SEPARATOR);
@@ -55,28 +64,37 @@ public class DefaultCloudTracer extends CloudTracer {
 		writer.append(HTTP_TRACE_STATUS);
 		writer.append(':');
 		writer.append(SPACE);
-		writer.append(restLogEntry.getHttpStatus().name());
+		writer.append(event.getHttpStatusName());
 
-		fireTraceEvent(getCloudLog(writer.toString(), isError ? TraceType.HTTP_ERROR : TraceType.HTTP_OK));
+		fireTraceEvent(getCloudLog(writer.toString(), event.isError() ? TraceType.HTTP_ERROR : TraceType.HTTP_OK));
 
-		writer = new StringWriter();
+		writer.setLength(0);
 		writer.append(SPACE);
 		writer.append(TRACE_SEPARATOR);
 		writer.append(SPACE);
 		writer.append(HTTP_TRACE_REQUEST);
 		writer.append(':');
 		writer.append(SPACE);
-		writer.append(restLogEntry.getMethod().toString());
+		writer.append(event.getMethod());
 
 		writer.append(' ');
-		writer.append(restLogEntry.getUri().toString());
+		writer.append(event.getUri());
 		writer.append(TRACE_SEPARATOR);
-		writer.append(restLogEntry.getMessage());
+		writer.append(event.getMessage());
+		if (event.getElapsedTime() != HttpTraceEvent.UNKNOWN) {
+			writer.append(TRACE_SEPARATOR);
+			writer.append(event.getElapsedTime());
+			writer.append(MILLISECONDS);
+		}
 		writer.append('\n');
 
 		fireTraceEvent(getCloudLog(writer.toString(), TraceType.HTTP_GENERAL));
 	}
 
+	public void drained() {
+		// Events are traced to the console as they are received
+	}
+
 	protected CloudLog getCloudLog(String log, LogContentType type) {
 		return new CloudLog(log, type);
 	}
@@ -0,0 +1,157 @@
+/*******************************************************************************
+ * Copyright (c) 2017 Pivotal Software, Inc. and others
+ *
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * and Apache License v2.0 which accompanies this distribution.
+ *
+ * The Eclipse Public License is available at
+ *
+ * http://www.eclipse.org/legal/epl-v10.html
+ *
+ * and the Apache License v2.0 is available at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * You may elect to redistribute this code under either of these licenses.
+ *
+ *  Contributors:
+ *     Pivotal Software, Inc. - initial API and implementation
+ ********************************************************************************/
+package org.eclipse.cft.server.core.internal.log;
+
+import java.net.URI;
+
+import org.cloudfoundry.client.lib.RestLogEntry;
+
+/**
+ * Structured trace of a single HTTP call made by the Cloud Foundry client.
+ * <p/>
+ * Events are pre-allocated and reused by the {@link HttpTraceSink}, so
+ * listeners must not keep a reference to an event after they are notified.
+ */
+public class HttpTraceEvent {
+
+	public static final long UNKNOWN = -1;
+
+	private static final String BYTES_SUFFIX = " bytes"; //$NON-NLS-1$
+
+	/**
+	 * Sequence of the event in the sink, set once all other fields are set
+	 */
+	volatile long sequence = -1;
+
+	private long timestamp;
+
+	private String threadName;
+
+	private String method;
+
+	private URI uri;
+
+	private String status;
+
+	private int httpStatus;
+
+	private String httpStatusName;
+
+	private long responseBytes;
+
+	private long elapsedTime;
+
+	private String message;
+
+	void set(RestLogEntry entry, long elapsedTime) {
+		this.timestamp = System.currentTimeMillis();
+		this.threadName = Thread.currentThread().getName();
+		this.method = entry.getMethod() != null ? entry.getMethod().name() : null;
+		this.uri = entry.getUri();
+		this.status = entry.getStatus();
+		this.httpStatus = entry.getHttpStatus() != null ? entry.getHttpStatus().value() : (int) UNKNOWN;
+		this.httpStatusName = entry.getHttpStatus() != null ? entry.getHttpStatus().name() : null;
+		this.message = entry.getMessage();
+		this.responseBytes = parseResponseBytes(message);
+		this.elapsedTime = elapsedTime;
+	}
+
+	/**
+	 * The client describes the response body as "[length] bytes" if it is
+	 * text or binary content.
+	 */
+	protected static long parseResponseBytes(String message) {
+		if (message == null || !message.endsWith(BYTES_SUFFIX)) {
+			return UNKNOWN;
+		}
+		try {
+			return Long.parseLong(message.substring(0, message.length() - BYTES_SUFFIX.length()));
+		}
+		catch (NumberFormatException e) {
+			return UNKNOWN;
+		}
+	}
+
+	/**
+	 *
+	 * @return time in milliseconds when the response was received
+	 */
+	public long getTimestamp() {
+		return timestamp;
+	}
+
+	public String getThreadName() {
+		return threadName;
+	}
+
+	public String getMethod() {
+		return method;
+	}
+
+	public URI getUri() {
+		return uri;
+	}
+
+	/**
+	 *
+	 * @return "OK" or "ERROR"
+	 */
+	public String getStatus() {
+		return status;
+	}
+
+	public boolean isError() {
+		return DefaultCloudTracer.ERROR_STATUS.equals(status);
+	}
+
+	/**
+	 *
+	 * @return HTTP status code, or {@link #UNKNOWN}
+	 */
+	public int getHttpStatus() {
+		return httpStatus;
+	}
+
+	public String getHttpStatusName() {
+		return httpStatusName;
+	}
+
+	/**
+	 *
+	 * @return size of the response body, or {@link #UNKNOWN}
+	 */
+	public long getResponseBytes() {
+		return responseBytes;
+	}
+
+	/**
+	 *
+	 * @return time in milliseconds from the start of the HTTP call to the end
+	 * of its response, or {@link #UNKNOWN}
+	 */
+	public long getElapsedTime() {
+		return elapsedTime;
+	}
+
+	public String getMessage() {
+		return message;
+	}
+}
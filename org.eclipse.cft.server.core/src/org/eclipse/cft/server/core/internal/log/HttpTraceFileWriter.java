@@ -0,0 +1,160 @@
+/*******************************************************************************
+ * Copyright (c) 2017 Pivotal Software, Inc. and others
+ *
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * and Apache License v2.0 which accompanies this distribution.
+ *
+ * The Eclipse Public License is available at
+ *
+ * http://www.eclipse.org/legal/epl-v10.html
+ *
+ * and the Apache License v2.0 is available at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * You may elect to redistribute this code under either of these licenses.
+ *
+ *  Contributors:
+ *     Pivotal Software, Inc. - initial API and implementation
+ ********************************************************************************/
+package org.eclipse.cft.server.core.internal.log;
+
+import java.io.BufferedWriter;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.nio.charset.Charset;
+
+import org.eclipse.cft.server.core.internal.CloudFoundryPlugin;
+
+/**
+ * Writes HTTP trace events to a local file, one event per line as tab
+ * separated key=value fields. The file is rotated once it reaches a maximum
+ * size, keeping a bounded number of older files.
+ * <p/>
+ * Only used by the trace task of the {@link HttpTraceSink}.
+ */
+public class HttpTraceFileWriter implements HttpTraceSink.Listener {
+
+	public static final long MAX_FILE_SIZE = 5 * 1024 * 1024;
+
+	public static final int MAX_ROTATED_FILES = 3;
+
+	private static final Charset UTF_8 = Charset.forName("UTF-8"); //$NON-NLS-1$
+
+	private final File file;
+
+	private final StringBuilder line = new StringBuilder();
+
+	private Writer writer;
+
+	private long size;
+
+	private boolean failed;
+
+	public HttpTraceFileWriter(File file) {
+		this.file = file;
+	}
+
+	public File getFile() {
+		return file;
+	}
+
+	public synchronized void traced(HttpTraceEvent event) {
+		if (failed) {
+			return;
+		}
+		line.setLength(0);
+		line.append("time=").append(event.getTimestamp()); //$NON-NLS-1$
+		append("thread", event.getThreadName()); //$NON-NLS-1$
+		append("method", event.getMethod()); //$NON-NLS-1$
+		append("uri", event.getUri() != null ? event.getUri().toString() : null); //$NON-NLS-1$
+		append("status", event.getStatus()); //$NON-NLS-1$
+		line.append("\thttpStatus=").append(event.getHttpStatus()); //$NON-NLS-1$
+		line.append("\tbytes=").append(event.getResponseBytes()); //$NON-NLS-1$
+		line.append("\telapsedMs=").append(event.getElapsedTime()); //$NON-NLS-1$
+		if (event.getResponseBytes() == HttpTraceEvent.UNKNOWN) {
+			append("message", event.getMessage()); //$NON-NLS-1$
+		}
+		line.append('\n');
+
+		try {
+			if (writer == null || size >= MAX_FILE_SIZE) {
+				open();
+			}
+			writer.write(line.toString());
+			size += line.length();
+		}
+		catch (IOException e) {
+			// Do not report the error on every event
+			failed = true;
+			CloudFoundryPlugin.logError("Failed to write HTTP trace to " + file + ": " + e.getMessage(), e); //$NON-NLS-1$ //$NON-NLS-2$
+			close();
+		}
+	}
+
+	public synchronized void drained() {
+		if (writer != null) {
+			try {
+				writer.flush();
+			}
+			catch (IOException e) {
+				CloudFoundryPlugin.logError(e);
+			}
+		}
+	}
+
+	private void append(String key, String value) {
+		line.append('\t').append(key).append('=');
+		if (value != null) {
+			for (int i = 0; i < value.length(); i++) {
+				char c = value.charAt(i);
+				// Keep one event per line
+				line.append(c == '\t' || c == '\n' || c == '\r' ? ' ' : c);
+			}
+		}
+	}
+
+	protected void open() throws IOException {
+		close();
+		if (file.exists() && file.length() >= MAX_FILE_SIZE) {
+			rotate();
+		}
+		file.getParentFile().mkdirs();
+		size = file.exists() ? file.length() : 0;
+		writer = new BufferedWriter(new OutputStreamWriter(new FileOutputStream(file, true), UTF_8));
+	}
+
+	protected void rotate() {
+		File oldest = getRotatedFile(MAX_ROTATED_FILES);
+		if (oldest.exists()) {
+			oldest.delete();
+		}
+		for (int i = MAX_ROTATED_FILES - 1; i >= 1; i--) {
+			File rotated = getRotatedFile(i);
+			if (rotated.exists()) {
+				rotated.renameTo(getRotatedFile(i + 1));
+			}
+		}
+		file.renameTo(getRotatedFile(1));
+	}
+
+	protected File getRotatedFile(int index) {
+		return new File(file.getParentFile(), file.getName() + '.' + index);
+	}
+
+	public synchronized void close() {
+		if (writer != null) {
+			try {
+				writer.close();
+			}
+			catch (IOException e) {
+				// Ignore
+			}
+			writer = null;
+		}
+	}
+}
@@ -0,0 +1,230 @@
+/*******************************************************************************
+ * Copyright (c) 2017 Pivotal Software, Inc. and others
+ *
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * and Apache License v2.0 which accompanies this distribution.
+ *
+ * The Eclipse Public License is available at
+ *
+ * http://www.eclipse.org/legal/epl-v10.html
+ *
+ * and the Apache License v2.0 is available at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * You may elect to redistribute this code under either of these licenses.
+ *
+ *  Contributors:
+ *     Pivotal Software, Inc. - initial API and implementation
+ ********************************************************************************/
+package org.eclipse.cft.server.core.internal.log;
+
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicLong;
+
+import org.cloudfoundry.client.lib.RestLogEntry;
+import org.eclipse.cft.server.core.internal.CloudFoundryPlugin;
+import org.eclipse.cft.server.core.internal.client.ClientRequestExecutor;
+
+/**
+ * Asynchronous sink for HTTP traces. The thread that makes the HTTP call only
+ * copies the trace into a pre-allocated event of a ring buffer. Events are
+ * passed to the listeners of the sink, like the trace console or a trace
+ * file, by a separate trace task, which runs on the shared background threads
+ * one batch at a time.
+ * <p/>
+ * If the trace task falls behind, new events are dropped rather than
+ * blocking the HTTP call, and the number of dropped events is counted.
+ */
+public class HttpTraceSink {
+
+	public static final int DEFAULT_CAPACITY = 1024;
+
+	private static final long DRAIN_INTERVAL = 50;
+
+	/**
+	 * Receives trace events on the trace task
+	 */
+	public interface Listener {
+
+		/**
+		 * @param event trace event. Only valid for the duration of the call.
+		 */
+		public void traced(HttpTraceEvent event);
+
+		/**
+		 * Called after a batch of events has been passed to the listener
+		 */
+		public void drained();
+
+	}
+
+	private final HttpTraceEvent[] events;
+
+	private final int mask;
+
+	private final AtomicLong tail = new AtomicLong();
+
+	/**
+	 * Next sequence to be passed to listeners. Only written by the trace
+	 * task.
+	 */
+	private volatile long head;
+
+	private final AtomicLong droppedCount = new AtomicLong();
+
+	private final List<Listener> listeners = new CopyOnWriteArrayList<Listener>();
+
+	private final ExecutorService traceExecutor = ClientRequestExecutor.newBoundedExecutor(1);
+
+	private final AtomicBoolean drainPending = new AtomicBoolean();
+
+	private final ScheduledFuture<?> drainTask;
+
+	/**
+	 *
+	 * @param capacity number of events in the ring buffer. Rounded up to a
+	 * power of two.
+	 */
+	public HttpTraceSink(int capacity) {
+		int size = Integer.highestOneBit(Math.max(2, capacity) - 1) << 1;
+		this.events = new HttpTraceEvent[size];
+		for (int i = 0; i < size; i++) {
+			events[i] = new HttpTraceEvent();
+		}
+		this.mask = size - 1;
+
+		drainTask = ClientRequestExecutor.getScheduler().scheduleWithFixedDelay(new Runnable() {
+			public void run() {
+				if (getPendingCount() > 0) {
+					scheduleDrain();
+				}
+			}
+		}, DRAIN_INTERVAL, DRAIN_INTERVAL, TimeUnit.MILLISECONDS);
+	}
+
+	/**
+	 * Drains the published events on the trace executor, unless a drain is
+	 * already pending
+	 */
+	protected void scheduleDrain() {
+		if (!drainPending.compareAndSet(false, true)) {
+			return;
+		}
+		try {
+			traceExecutor.execute(new Runnable() {
+				public void run() {
+					drainPending.set(false);
+					drain();
+				}
+			});
+		}
+		catch (RejectedExecutionException e) {
+			// Disposed
+			drainPending.set(false);
+		}
+	}
+
+	public void addListener(Listener listener) {
+		if (!listeners.contains(listener)) {
+			listeners.add(listener);
+		}
+	}
+
+	public void removeListener(Listener listener) {
+		listeners.remove(listener);
+	}
+
+	/**
+	 * Records the given entry. Does not block.
+	 * @param entry
+	 * @param elapsedTime elapsed time of the call in milliseconds, or
+	 * {@link HttpTraceEvent#UNKNOWN}
+	 * @return true if recorded, false if dropped because the buffer is full
+	 */
+	public boolean publish(RestLogEntry entry, long elapsedTime) {
+		while (true) {
+			long sequence = tail.get();
+			if (sequence - head >= events.length) {
+				droppedCount.incrementAndGet();
+				return false;
+			}
+			if (tail.compareAndSet(sequence, sequence + 1)) {
+				HttpTraceEvent event = events[(int) sequence & mask];
+				event.set(entry, elapsedTime);
+				// Publishes the event to the trace task
+				event.sequence = sequence;
+				return true;
+			}
+		}
+	}
+
+	/**
+	 * Passes published events to the listeners. Only called by the trace
+	 * executor.
+	 */
+	protected void drain() {
+		long sequence = head;
+		boolean drained = false;
+		while (true) {
+			HttpTraceEvent event = events[(int) sequence & mask];
+			if (event.sequence != sequence) {
+				break;
+			}
+			for (Listener listener : listeners) {
+				try {
+					listener.traced(event);
+				}
+				catch (Throwable t) {
+					// Failure in tracing. Catch as to not prevent further
+					// events from being traced.
+					CloudFoundryPlugin.logError(t);
+				}
+			}
+			sequence++;
+			head = sequence;
+			drained = true;
+		}
+		if (drained) {
+			for (Listener listener : listeners) {
+				try {
+					listener.drained();
+				}
+				catch (Throwable t) {
+					CloudFoundryPlugin.logError(t);
+				}
+			}
+		}
+	}
+
+	public long getDroppedCount() {
+		return droppedCount.get();
+	}
+
+	/**
+	 *
+	 * @return number of events waiting to be passed to the listeners
+	 */
+	public int getPendingCount() {
+		return (int) (tail.get() - head);
+	}
+
+	public void dispose() {
+		drainTask.cancel(false);
+		traceExecutor.shutdown();
+		try {
+			traceExecutor.awaitTermination(DRAIN_INTERVAL * 4, TimeUnit.MILLISECONDS);
+		}
+		catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+		}
+		listeners.clear();
+	}
+}
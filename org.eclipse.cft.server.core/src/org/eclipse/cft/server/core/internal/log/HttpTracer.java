@@ -20,16 +20,31 @@
  ********************************************************************************/
 package org.eclipse.cft.server.core.internal.log;
 
+import java.io.File;
+import java.io.IOException;
+import java.net.URI;
+import java.util.concurrent.TimeUnit;
+
+import org.apache.http.client.HttpClient;
 import org.cloudfoundry.client.lib.CloudFoundryOperations;
 import org.cloudfoundry.client.lib.RestLogCallback;
 import org.cloudfoundry.client.lib.RestLogEntry;
 import org.eclipse.cft.server.core.internal.CloudFoundryPlugin;
 import org.eclipse.core.runtime.preferences.IEclipsePreferences;
 import org.osgi.service.prefs.BackingStoreException;
+import org.springframework.http.HttpMethod;
+import org.springframework.http.client.ClientHttpRequest;
+import org.springframework.http.client.ClientHttpRequestFactory;
+import org.springframework.http.client.HttpComponentsClientHttpRequestFactory;
+import org.springframework.web.client.RestTemplate;
 
 /**
  * Enables HTTP tracing for Cloud Foundry requests via a
  * {@link CloudFoundryOperations}.
+ * <p/>
+ * Traces are recorded in an {@link HttpTraceSink} on the thread making the
+ * HTTP call, and written to the trace console, and optionally to a rotating
+ * trace file, by a separate trace task.
  *
  */
 public class HttpTracer {
@@ -38,9 +53,27 @@ public class HttpTracer {
 
 	public static final String PREFERENCE_TRACE = CloudFoundryPlugin.PLUGIN_ID + ".http.tracing"; //$NON-NLS-1$
 
+	public static final String PREFERENCE_TRACE_FILE = CloudFoundryPlugin.PLUGIN_ID + ".http.tracing.file"; //$NON-NLS-1$
+
+	private static final String TRACE_FOLDER = "trace"; //$NON-NLS-1$
+
+	private static final String TRACE_FILE = "http-trace.log"; //$NON-NLS-1$
+
+	/**
+	 * Start of the HTTP call in progress on the current thread, in
+	 * nanoseconds, or 0 if none was started
+	 */
+	private static final ThreadLocal<long[]> callStart = new ThreadLocal<long[]>();
+
 	private RestLogCallback activeListener = null;
 
-	private static boolean isEnabled;
+	private volatile HttpTraceSink sink;
+
+	private HttpTraceFileWriter fileWriter;
+
+	private static volatile boolean isEnabled;
+
+	private static boolean isFileEnabled;
 
 	public static synchronized HttpTracer getCurrent() {
 		if (currentTracer == null) {
@@ -50,6 +83,95 @@ public class HttpTracer {
 		return currentTracer;
 	}
 
+	public static synchronized void disposeCurrent() {
+		if (currentTracer != null) {
+			currentTracer.dispose();
+			currentTracer = null;
+		}
+	}
+
+	/**
+	 * Times the HTTP calls made through the given template, from the creation
+	 * of each HTTP request to the end of its response, when the call is
+	 * traced. Must be invoked before the template is used by a client, as the
+	 * client may wrap the request factory of the template.
+	 * @param restTemplate
+	 */
+	public static void timeHttpCalls(RestTemplate restTemplate) {
+		ClientHttpRequestFactory requestFactory = restTemplate.getRequestFactory();
+		if (requestFactory instanceof HttpComponentsClientHttpRequestFactory
+				&& !(requestFactory instanceof TimedRequestFactory)) {
+			restTemplate.setRequestFactory(
+					new TimedRequestFactory(((HttpComponentsClientHttpRequestFactory) requestFactory).getHttpClient()));
+		}
+	}
+
+	/**
+	 * Marks the start of an HTTP call on the current thread. The call ends
+	 * when it is traced, once its response has been read.
+	 */
+	protected static void startHttpCall() {
+		if (isEnabled) {
+			long[] start = callStart.get();
+			if (start == null) {
+				start = new long[1];
+				callStart.set(start);
+			}
+			start[0] = System.nanoTime();
+		}
+	}
+
+	/**
+	 * Forgets any HTTP call started on the current thread. Invoked when a
+	 * request completes.
+	 */
+	public static void endRequest() {
+		if (callStart.get() != null) {
+			callStart.remove();
+		}
+	}
+
+	/**
+	 * Ends the HTTP call in progress on the current thread.
+	 * @return milliseconds since the start of the HTTP call, or
+	 * {@link HttpTraceEvent#UNKNOWN} if no call was started on the thread
+	 */
+	protected static long takeElapsedTime() {
+		long[] start = callStart.get();
+		if (start == null || start[0] == 0) {
+			return HttpTraceEvent.UNKNOWN;
+		}
+		long elapsed = TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start[0]);
+		start[0] = 0;
+		return elapsed;
+	}
+
+	/**
+	 * Records an HTTP call in the trace sink. Does not block.
+	 * @param entry
+	 */
+	public void publish(RestLogEntry entry) {
+		getSink().publish(entry, takeElapsedTime());
+	}
+
+	public HttpTraceSink getSink() {
+		HttpTraceSink current = sink;
+		if (current == null) {
+			synchronized (this) {
+				current = sink;
+				if (current == null) {
+					current = new HttpTraceSink(HttpTraceSink.DEFAULT_CAPACITY);
+					current.addListener(CloudTracer.getDefaultTracer());
+					if (fileWriter != null) {
+						current.addListener(fileWriter);
+					}
+					sink = current;
+				}
+			}
+		}
+		return current;
+	}
+
 	/**
 	 * Trace requests in the given client. Generally, this will either register
 	 * a trace listener to the client, if tracing is enabled, or unregister a
@@ -103,6 +225,65 @@ public class HttpTracer {
 		}
 	}
 
+	/**
+	 *
+	 * @param enable true if traces should also be written to a local trace
+	 * file, when tracing is enabled
+	 */
+	public synchronized void enableFileTracing(boolean enable) {
+		isFileEnabled = enable;
+		IEclipsePreferences prefs = CloudFoundryPlugin.getDefault().getPreferences();
+		prefs.putBoolean(PREFERENCE_TRACE_FILE, isFileEnabled);
+		try {
+			prefs.flush();
+		}
+		catch (BackingStoreException e) {
+			CloudFoundryPlugin.logError(e);
+		}
+		updateFileWriter();
+	}
+
+	public synchronized boolean isFileTracingEnabled() {
+		return isFileEnabled;
+	}
+
+	/**
+	 *
+	 * @return trace file, or null if file tracing is disabled
+	 */
+	public synchronized File getTraceFile() {
+		return fileWriter != null ? fileWriter.getFile() : null;
+	}
+
+	protected synchronized void updateFileWriter() {
+		if (isFileEnabled && fileWriter == null) {
+			File file = CloudFoundryPlugin.getDefault().getStateLocation().append(TRACE_FOLDER).append(TRACE_FILE)
+					.toFile();
+			fileWriter = new HttpTraceFileWriter(file);
+			if (sink != null) {
+				sink.addListener(fileWriter);
+			}
+		}
+		else if (!isFileEnabled && fileWriter != null) {
+			if (sink != null) {
+				sink.removeListener(fileWriter);
+			}
+			fileWriter.close();
+			fileWriter = null;
+		}
+	}
+
+	protected synchronized void dispose() {
+		if (sink != null) {
+			sink.dispose();
+			sink = null;
+		}
+		if (fileWriter != null) {
+			fileWriter.close();
+			fileWriter = null;
+		}
+	}
+
 	/**
 	 * 
 	 * @return true if tracing is enabled for all clients and all servers. False
@@ -120,6 +301,8 @@ public class HttpTracer {
 	 */
 	public synchronized boolean loadTracePreference() {
 		isEnabled = CloudFoundryPlugin.getDefault().getPreferences().getBoolean(PREFERENCE_TRACE, false);
+		isFileEnabled = CloudFoundryPlugin.getDefault().getPreferences().getBoolean(PREFERENCE_TRACE_FILE, false);
+		updateFileWriter();
 		// When loading from preference store, if tracing is enabled, also show
 		// the tracing view (e.g. a console)
 		if (isEnabled) {
@@ -128,12 +311,31 @@ public class HttpTracer {
 		return isEnabled;
 	}
 
+	/**
+	 * Marks the start of each HTTP call when its request is created, before
+	 * the request body is written. Extends the default request factory, as
+	 * the client configures the timeouts of the factory it delegates to.
+	 */
+	protected static class TimedRequestFactory extends HttpComponentsClientHttpRequestFactory {
+
+		public TimedRequestFactory(HttpClient httpClient) {
+			super(httpClient);
+		}
+
+		@Override
+		public ClientHttpRequest createRequest(URI uri, HttpMethod httpMethod) throws IOException {
+			startHttpCall();
+			return super.createRequest(uri, httpMethod);
+		}
+	}
+
 	public static class PrintingApplicationLogListener implements RestLogCallback {
 
 		public PrintingApplicationLogListener() {
 		}
 
 		public void onNewLogEntry(RestLogEntry restLogEntry) {
+			// The tracer is shared, and only records the entry
 			CloudTracer.getCurrentCloudTracer().traceNewLogEntry(restLogEntry);
 		}
 	}
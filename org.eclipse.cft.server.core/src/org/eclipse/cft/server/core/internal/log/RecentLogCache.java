@@ -0,0 +1,323 @@
+/*******************************************************************************
+ * Copyright (c) 2017 Pivotal Software, Inc. and others
+ *
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * and Apache License v2.0 which accompanies this distribution.
+ *
+ * The Eclipse Public License is available at
+ *
+ * http://www.eclipse.org/legal/epl-v10.html
+ *
+ * and the Apache License v2.0 is available at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * You may elect to redistribute this code under either of these licenses.
+ *
+ *  Contributors:
+ *     Pivotal Software, Inc. - initial API and implementation
+ ********************************************************************************/
+package org.eclipse.cft.server.core.internal.log;
+
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.IOException;
+import java.nio.charset.Charset;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.Date;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+import org.eclipse.cft.server.core.internal.CloudFoundryPlugin;
+import org.eclipse.cft.server.core.internal.RecordFileStore;
+
+/**
+ * Keeps the recent logs of applications on disk, so that the log history of
+ * an application can be shown as soon as its console is opened, including in
+ * later sessions, and only logs that are newer than the cached history need
+ * to be added after fetching recent logs from the server.
+ * <p/>
+ * Logs are kept in timestamp order, one file per application (see
+ * {@link RecordFileStore}). The number of logs and characters kept for each
+ * application is bounded, and the oldest logs are discarded first.
+ */
+public class RecentLogCache {
+
+	public static final int MAX_LOGS_PER_APPLICATION = 2000;
+
+	public static final int MAX_CHARACTERS_PER_APPLICATION = 1000000;
+
+	/**
+	 * Number of applications whose logs are kept in memory
+	 */
+	private static final int MAX_LOADED_APPLICATIONS = 16;
+
+	private static final int CACHE_MAGIC = 0xCF5A1DC2;
+
+	private static final int CACHE_VERSION = 1;
+
+	private static final byte LOG_RECORD = 1;
+
+	private static final String CACHE_FILE_EXTENSION = ".logs"; //$NON-NLS-1$
+
+	private static final Charset UTF_8 = Charset.forName("UTF-8"); //$NON-NLS-1$
+
+	private static final Comparator<CloudLog> TIMESTAMP_COMPARATOR = new Comparator<CloudLog>() {
+		public int compare(CloudLog log1, CloudLog log2) {
+			long timestamp1 = getTimestamp(log1);
+			long timestamp2 = getTimestamp(log2);
+			return timestamp1 < timestamp2 ? -1 : (timestamp1 == timestamp2 ? 0 : 1);
+		}
+	};
+
+	private final RecordFileStore<CloudLog> store;
+
+	/**
+	 * Loaded logs by cache file name, in least recently used order
+	 */
+	private final Map<String, List<CloudLog>> loadedLogs = new LinkedHashMap<String, List<CloudLog>>(16, 0.75f,
+			true) {
+
+		private static final long serialVersionUID = 1L;
+
+		@Override
+		protected boolean removeEldestEntry(Map.Entry<String, List<CloudLog>> eldest) {
+			return size() > MAX_LOADED_APPLICATIONS;
+		}
+	};
+
+	/**
+	 *
+	 * @param location folder of the cache files. If null, logs are only
+	 * cached in memory.
+	 */
+	public RecentLogCache(File location) {
+		this.store = new RecordFileStore<CloudLog>(location, CACHE_FILE_EXTENSION, CACHE_MAGIC, CACHE_VERSION,
+				"log cache") { //$NON-NLS-1$
+
+			@Override
+			protected void writeRecord(DataOutputStream out, CloudLog log) throws IOException {
+				out.writeByte(LOG_RECORD);
+				out.writeLong(getTimestamp(log));
+				out.writeUTF(log.getLogType() != null ? log.getLogType().getId()
+						: LogContentType.APPLICATION_LOG_UNKNOWN.getId());
+				writeOptional(out, log.getAppId());
+				writeOptional(out, log.getSourceName());
+				writeOptional(out, log.getSourceId());
+				byte[] message = log.getMessage() != null ? log.getMessage().getBytes(UTF_8) : new byte[0];
+				out.writeInt(message.length);
+				out.write(message);
+			}
+
+			@Override
+			protected CloudLog readRecord(DataInputStream in) throws IOException {
+				if (in.readByte() != LOG_RECORD) {
+					throw new IOException("Corrupt log record"); //$NON-NLS-1$
+				}
+				long timestamp = in.readLong();
+				LogContentType type = getType(in.readUTF());
+				String appId = readOptional(in);
+				String sourceName = readOptional(in);
+				String sourceId = readOptional(in);
+				int length = in.readInt();
+				if (length < 0 || length > MAX_CHARACTERS_PER_APPLICATION * 4) {
+					throw new IOException("Corrupt log record"); //$NON-NLS-1$
+				}
+				byte[] message = new byte[length];
+				in.readFully(message);
+				return new CloudLog(appId, new String(message, UTF_8), timestamp >= 0 ? new Date(timestamp) : null,
+						type, sourceName, sourceId);
+			}
+		};
+		store.createLocation();
+	}
+
+	/**
+	 *
+	 * @param serverId
+	 * @param appName
+	 * @return cached logs of the application in timestamp order. Empty if
+	 * none are cached.
+	 */
+	public synchronized List<CloudLog> getLogs(String serverId, String appName) {
+		return new ArrayList<CloudLog>(load(serverId, appName));
+	}
+
+	/**
+	 * Adds logs fetched from the server to the cached logs of the
+	 * application. Fetched logs that are already cached are ignored.
+	 * @param serverId
+	 * @param appName
+	 * @param fetched recent logs fetched from the server, in any order
+	 * @return fetched logs that were not already cached, in timestamp order
+	 */
+	public synchronized List<CloudLog> merge(String serverId, String appName, List<CloudLog> fetched) {
+		List<CloudLog> cached = load(serverId, appName);
+		List<CloudLog> newLogs = getNewerLogs(fetched, cached);
+		if (newLogs.isEmpty()) {
+			return newLogs;
+		}
+
+		cached.addAll(newLogs);
+		boolean trimmed = trim(cached);
+
+		File file = getCacheFile(serverId, appName);
+		if (file != null) {
+			if (trimmed) {
+				store.rewrite(file, cached);
+			}
+			else {
+				store.write(file, newLogs, true);
+			}
+		}
+		return newLogs;
+	}
+
+	/**
+	 * Removes the cached logs of the application, for example when the
+	 * application is deleted.
+	 */
+	public synchronized void delete(String serverId, String appName) {
+		File file = getCacheFile(serverId, appName);
+		loadedLogs.remove(getCacheKey(serverId, appName));
+		if (file != null && file.exists()) {
+			file.delete();
+		}
+	}
+
+	public synchronized void dispose() {
+		loadedLogs.clear();
+	}
+
+	/**
+	 *
+	 * @param logs logs in any order
+	 * @param cached logs in timestamp order
+	 * @return logs that are newer than the latest of the cached logs, in
+	 * timestamp order. Logs with the same timestamp as the latest cached log
+	 * are included unless they are already cached.
+	 */
+	public static List<CloudLog> getNewerLogs(List<CloudLog> logs, List<CloudLog> cached) {
+		List<CloudLog> sorted = new ArrayList<CloudLog>();
+		if (logs == null) {
+			return sorted;
+		}
+		long last = cached.isEmpty() ? Long.MIN_VALUE : getTimestamp(cached.get(cached.size() - 1));
+		for (CloudLog log : logs) {
+			long timestamp = getTimestamp(log);
+			if (timestamp > last || (timestamp == last && !containsLogAt(cached, log, last))) {
+				sorted.add(log);
+			}
+		}
+		// Stable sort, so that logs with the same timestamp keep their order
+		Collections.sort(sorted, TIMESTAMP_COMPARATOR);
+		return sorted;
+	}
+
+	protected static boolean containsLogAt(List<CloudLog> cached, CloudLog log, long timestamp) {
+		for (int i = cached.size() - 1; i >= 0; i--) {
+			CloudLog other = cached.get(i);
+			if (getTimestamp(other) != timestamp) {
+				return false;
+			}
+			if (equal(log.getMessage(), other.getMessage()) && equal(log.getSourceId(), other.getSourceId())) {
+				return true;
+			}
+		}
+		return false;
+	}
+
+	protected static long getTimestamp(CloudLog log) {
+		return log.getTimestamp() != null ? log.getTimestamp().getTime() : -1;
+	}
+
+	private static boolean equal(String value1, String value2) {
+		return value1 == null ? value2 == null : value1.equals(value2);
+	}
+
+	/**
+	 * Discards the oldest logs until the logs are within bounds
+	 * @return true if logs were discarded
+	 */
+	protected boolean trim(List<CloudLog> logs) {
+		long characters = 0;
+		for (CloudLog log : logs) {
+			characters += getLength(log);
+		}
+		int discard = 0;
+		while (discard < logs.size()
+				&& (logs.size() - discard > MAX_LOGS_PER_APPLICATION || characters > MAX_CHARACTERS_PER_APPLICATION)) {
+			characters -= getLength(logs.get(discard));
+			discard++;
+		}
+		if (discard > 0) {
+			logs.subList(0, discard).clear();
+			return true;
+		}
+		return false;
+	}
+
+	private static int getLength(CloudLog log) {
+		return log.getMessage() != null ? log.getMessage().length() : 0;
+	}
+
+	protected List<CloudLog> load(String serverId, String appName) {
+		String key = getCacheKey(serverId, appName);
+		List<CloudLog> logs = loadedLogs.get(key);
+		if (logs == null) {
+			logs = new ArrayList<CloudLog>();
+			File file = getCacheFile(serverId, appName);
+			if (file != null && file.exists()) {
+				try {
+					if (!store.read(file, logs)) {
+						// Drop the incomplete log, so that further logs
+						// can be appended
+						store.rewrite(file, logs);
+					}
+				}
+				catch (IOException e) {
+					CloudFoundryPlugin.logWarning("Discarding unreadable log cache " + file + ": " + e.getMessage()); //$NON-NLS-1$ //$NON-NLS-2$
+					logs.clear();
+					file.delete();
+				}
+			}
+			loadedLogs.put(key, logs);
+		}
+		return logs;
+	}
+
+	private static void writeOptional(DataOutputStream out, String value) throws IOException {
+		out.writeUTF(value != null ? value : ""); //$NON-NLS-1$
+	}
+
+	private static String readOptional(DataInputStream in) throws IOException {
+		String value = in.readUTF();
+		return value.length() > 0 ? value : null;
+	}
+
+	protected static LogContentType getType(String id) {
+		if (LogContentType.APPLICATION_LOG_STS_ERROR.getId().equals(id)) {
+			return LogContentType.APPLICATION_LOG_STS_ERROR;
+		}
+		else if (LogContentType.APPLICATION_LOG_STD_OUT.getId().equals(id)) {
+			return LogContentType.APPLICATION_LOG_STD_OUT;
+		}
+		else if (LogContentType.APPLICATION_LOG_UNKNOWN.getId().equals(id)) {
+			return LogContentType.APPLICATION_LOG_UNKNOWN;
+		}
+		return new LogContentType(id);
+	}
+
+	protected String getCacheKey(String serverId, String appName) {
+		return serverId + '/' + appName;
+	}
+
+	protected File getCacheFile(String serverId, String appName) {
+		return store.getFile(getCacheKey(serverId, appName));
+	}
+}
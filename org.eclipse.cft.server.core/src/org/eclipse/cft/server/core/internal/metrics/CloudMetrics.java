@@ -0,0 +1,202 @@
+/*******************************************************************************
+ * Copyright (c) 2017 Pivotal Software, Inc. and others
+ *
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * and Apache License v2.0 which accompanies this distribution.
+ *
+ * The Eclipse Public License is available at
+ *
+ * http://www.eclipse.org/legal/epl-v10.html
+ *
+ * and the Apache License v2.0 is available at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * You may elect to redistribute this code under either of these licenses.
+ *
+ *  Contributors:
+ *     Pivotal Software, Inc. - initial API and implementation
+ ********************************************************************************/
+package org.eclipse.cft.server.core.internal.metrics;
+
+import java.io.BufferedWriter;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.List;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+
+import org.eclipse.cft.server.core.internal.CloudErrorUtil;
+import org.eclipse.core.runtime.CoreException;
+
+/**
+ * Records latency, retries, errors and bytes uploaded for client requests,
+ * for operations and for each phase of an operation (e.g. archive generation,
+ * resource matching, upload, staging and waiting for the application to run),
+ * so that slow publishes can be broken down.
+ * <p/>
+ * Request labels often contain application names, so the number of distinct
+ * metrics is bounded. Once {@link #MAX_METRICS} is reached, further names of
+ * the same kind are recorded under {@link #OTHER}.
+ */
+public class CloudMetrics {
+
+	public static final String PHASE_ARCHIVE = "archive"; //$NON-NLS-1$
+
+	public static final String PHASE_RESOURCE_MATCHING = "resource matching"; //$NON-NLS-1$
+
+	public static final String PHASE_UPLOAD = "upload"; //$NON-NLS-1$
+
+	public static final String PHASE_STAGING = "staging"; //$NON-NLS-1$
+
+	public static final String PHASE_TRACKING = "tracking"; //$NON-NLS-1$
+
+	public static final String OTHER = "(other)"; //$NON-NLS-1$
+
+	public static final int MAX_METRICS = 500;
+
+	private static final String PHASE_SEPARATOR = " / "; //$NON-NLS-1$
+
+	private static CloudMetrics defaultMetrics;
+
+	private final ConcurrentMap<String, RequestMetrics> metrics = new ConcurrentHashMap<String, RequestMetrics>();
+
+	public static synchronized CloudMetrics getDefault() {
+		if (defaultMetrics == null) {
+			defaultMetrics = new CloudMetrics();
+		}
+		return defaultMetrics;
+	}
+
+	/**
+	 * 
+	 * @param label request label
+	 * @param elapsed total time of the request, including retries, in
+	 * milliseconds
+	 * @param error true if the request failed
+	 */
+	public void recordRequest(String label, long elapsed, boolean error) {
+		getMetrics(RequestMetrics.Kind.REQUEST, label).record(elapsed, error);
+	}
+
+	public void recordRetry(String label) {
+		getMetrics(RequestMetrics.Kind.REQUEST, label).recordRetry();
+	}
+
+	/**
+	 * 
+	 * @param operation operation name
+	 * @param phase
+	 * @return timer that records the phase once closed
+	 */
+	public MetricsTimer startPhase(String operation, String phase) {
+		return new MetricsTimer(getMetrics(RequestMetrics.Kind.PHASE, operation + PHASE_SEPARATOR + phase));
+	}
+
+	/**
+	 * 
+	 * @param operation operation name
+	 * @return timer that records the operation once closed
+	 */
+	public MetricsTimer startOperation(String operation) {
+		return new MetricsTimer(getMetrics(RequestMetrics.Kind.OPERATION, operation));
+	}
+
+	public void recordBytes(String operation, String phase, long bytes) {
+		getMetrics(RequestMetrics.Kind.PHASE, operation + PHASE_SEPARATOR + phase).recordBytes(bytes);
+	}
+
+	protected RequestMetrics getMetrics(RequestMetrics.Kind kind, String name) {
+		if (name == null) {
+			name = OTHER;
+		}
+		String key = kind + ":" + name; //$NON-NLS-1$
+		RequestMetrics existing = metrics.get(key);
+		if (existing != null) {
+			return existing;
+		}
+		if (metrics.size() >= MAX_METRICS) {
+			name = OTHER;
+			key = kind + ":" + name; //$NON-NLS-1$
+		}
+		RequestMetrics created = new RequestMetrics(kind, name);
+		existing = metrics.putIfAbsent(key, created);
+		return existing != null ? existing : created;
+	}
+
+	/**
+	 * 
+	 * @return all recorded metrics, sorted by kind and then by name. Never
+	 * null.
+	 */
+	public List<RequestMetrics> getMetrics() {
+		List<RequestMetrics> all = new ArrayList<RequestMetrics>(metrics.values());
+		Collections.sort(all, new Comparator<RequestMetrics>() {
+			public int compare(RequestMetrics first, RequestMetrics second) {
+				int result = first.getKind().compareTo(second.getKind());
+				return result != 0 ? result : first.getName().compareTo(second.getName());
+			}
+		});
+		return all;
+	}
+
+	/**
+	 * Drops all recorded metrics. Runs that are still in progress are not
+	 * recorded.
+	 */
+	public void reset() {
+		metrics.clear();
+	}
+
+	/**
+	 * Writes the current metrics to the given file, in CSV format, with
+	 * latencies in milliseconds.
+	 * @param file
+	 * @throws CoreException if failed to write the file
+	 */
+	public void export(File file) throws CoreException {
+		Writer writer = null;
+		try {
+			writer = new BufferedWriter(new OutputStreamWriter(new FileOutputStream(file), "UTF-8")); //$NON-NLS-1$
+			writer.write("kind,name,count,errors,retries,bytes,mean,p50,p90,p99,max\n"); //$NON-NLS-1$
+			for (RequestMetrics metric : getMetrics()) {
+				LatencyHistogram latency = metric.getLatency();
+				writer.write(metric.getKind().name());
+				writer.write(',');
+				writer.write(quote(metric.getName()));
+				long[] values = { metric.getCount(), metric.getErrors(), metric.getRetries(), metric.getBytes(),
+						latency.getMean(), latency.getPercentile(50), latency.getPercentile(90),
+						latency.getPercentile(99), latency.getMax() };
+				for (long value : values) {
+					writer.write(',');
+					writer.write(Long.toString(value));
+				}
+				writer.write('\n');
+			}
+		}
+		catch (IOException e) {
+			throw CloudErrorUtil.toCoreException(e);
+		}
+		finally {
+			if (writer != null) {
+				try {
+					writer.close();
+				}
+				catch (IOException e) {
+					// Ignore
+				}
+			}
+		}
+	}
+
+	static String quote(String value) {
+		return '"' + value.replace("\"", "\"\"") + '"'; //$NON-NLS-1$ //$NON-NLS-2$
+	}
+}
@@ -0,0 +1,123 @@
+/*******************************************************************************
+ * Copyright (c) 2017 Pivotal Software, Inc. and others
+ *
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * and Apache License v2.0 which accompanies this distribution.
+ *
+ * The Eclipse Public License is available at
+ *
+ * http://www.eclipse.org/legal/epl-v10.html
+ *
+ * and the Apache License v2.0 is available at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * You may elect to redistribute this code under either of these licenses.
+ *
+ *  Contributors:
+ *     Pivotal Software, Inc. - initial API and implementation
+ ********************************************************************************/
+package org.eclipse.cft.server.core.internal.metrics;
+
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/**
+ * Latency histogram with fixed buckets, from one millisecond up to ten
+ * minutes. Recording is lock-free and never allocates, so it can be done on
+ * every request. Percentiles are approximated by the upper bound of the bucket
+ * they fall in, capped by the largest recorded value.
+ */
+public class LatencyHistogram {
+
+	/**
+	 * Upper bounds of the buckets, in milliseconds. An additional bucket
+	 * holds all the values above the last bound.
+	 */
+	static final long[] BOUNDS = { 1, 2, 5, 10, 20, 50, 100, 200, 500, 1000, 2000, 5000, 10000, 20000, 30000, 60000,
+			120000, 300000, 600000 };
+
+	private final AtomicLongArray buckets = new AtomicLongArray(BOUNDS.length + 1);
+
+	private final AtomicLong count = new AtomicLong();
+
+	private final AtomicLong total = new AtomicLong();
+
+	private final AtomicLong max = new AtomicLong();
+
+	/**
+	 * 
+	 * @param millis latency to record. Negative values are recorded as 0.
+	 */
+	public void record(long millis) {
+		if (millis < 0) {
+			millis = 0;
+		}
+		buckets.incrementAndGet(getBucket(millis));
+		count.incrementAndGet();
+		total.addAndGet(millis);
+
+		long currentMax = max.get();
+		while (millis > currentMax && !max.compareAndSet(currentMax, millis)) {
+			currentMax = max.get();
+		}
+	}
+
+	static int getBucket(long millis) {
+		for (int i = 0; i < BOUNDS.length; i++) {
+			if (millis <= BOUNDS[i]) {
+				return i;
+			}
+		}
+		return BOUNDS.length;
+	}
+
+	public long getCount() {
+		return count.get();
+	}
+
+	public long getTotal() {
+		return total.get();
+	}
+
+	public long getMax() {
+		return max.get();
+	}
+
+	public long getMean() {
+		long currentCount = count.get();
+		return currentCount > 0 ? total.get() / currentCount : 0;
+	}
+
+	/**
+	 * 
+	 * @param percentile between 0 and 100
+	 * @return approximate latency below which the given percentage of the
+	 * recorded values fall, or 0 if nothing was recorded
+	 */
+	public long getPercentile(double percentile) {
+		long[] counts = new long[buckets.length()];
+		long currentCount = 0;
+		for (int i = 0; i < counts.length; i++) {
+			counts[i] = buckets.get(i);
+			currentCount += counts[i];
+		}
+		if (currentCount == 0) {
+			return 0;
+		}
+		long rank = (long) Math.ceil(currentCount * Math.min(Math.max(percentile, 0), 100) / 100);
+		if (rank < 1) {
+			rank = 1;
+		}
+		long seen = 0;
+		long currentMax = max.get();
+		for (int i = 0; i < counts.length; i++) {
+			seen += counts[i];
+			if (seen >= rank) {
+				return i < BOUNDS.length ? Math.min(BOUNDS[i], currentMax) : currentMax;
+			}
+		}
+		return currentMax;
+	}
+}
@@ -0,0 +1,57 @@
+/*******************************************************************************
+ * Copyright (c) 2017 Pivotal Software, Inc. and others
+ *
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * and Apache License v2.0 which accompanies this distribution.
+ *
+ * The Eclipse Public License is available at
+ *
+ * http://www.eclipse.org/legal/epl-v10.html
+ *
+ * and the Apache License v2.0 is available at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * You may elect to redistribute this code under either of these licenses.
+ *
+ *  Contributors:
+ *     Pivotal Software, Inc. - initial API and implementation
+ ********************************************************************************/
+package org.eclipse.cft.server.core.internal.metrics;
+
+/**
+ * Times one run of an operation or of an operation phase. Call
+ * {@link #succeeded()} once the work completes, and {@link #stop()} in a
+ * finally block. A run that is stopped without succeeding is recorded as an
+ * error.
+ */
+public class MetricsTimer {
+
+	private final RequestMetrics metrics;
+
+	private final long start = System.currentTimeMillis();
+
+	private boolean succeeded;
+
+	private boolean stopped;
+
+	MetricsTimer(RequestMetrics metrics) {
+		this.metrics = metrics;
+	}
+
+	public void succeeded() {
+		succeeded = true;
+	}
+
+	public void recordBytes(long bytes) {
+		metrics.recordBytes(bytes);
+	}
+
+	public void stop() {
+		if (!stopped) {
+			stopped = true;
+			metrics.record(System.currentTimeMillis() - start, !succeeded);
+		}
+	}
+}
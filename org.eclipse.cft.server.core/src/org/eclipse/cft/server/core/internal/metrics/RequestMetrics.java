@@ -0,0 +1,97 @@
+/*******************************************************************************
+ * Copyright (c) 2017 Pivotal Software, Inc. and others
+ *
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * and Apache License v2.0 which accompanies this distribution.
+ *
+ * The Eclipse Public License is available at
+ *
+ * http://www.eclipse.org/legal/epl-v10.html
+ *
+ * and the Apache License v2.0 is available at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * You may elect to redistribute this code under either of these licenses.
+ *
+ *  Contributors:
+ *     Pivotal Software, Inc. - initial API and implementation
+ ********************************************************************************/
+package org.eclipse.cft.server.core.internal.metrics;
+
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Metrics recorded for one client request label, one operation, or one phase
+ * of an operation: latency, number of runs, errors, retries and bytes
+ * uploaded.
+ */
+public class RequestMetrics {
+
+	public enum Kind {
+		REQUEST, OPERATION, PHASE
+	}
+
+	private final Kind kind;
+
+	private final String name;
+
+	private final LatencyHistogram latency = new LatencyHistogram();
+
+	private final AtomicLong errors = new AtomicLong();
+
+	private final AtomicLong retries = new AtomicLong();
+
+	private final AtomicLong bytes = new AtomicLong();
+
+	public RequestMetrics(Kind kind, String name) {
+		this.kind = kind;
+		this.name = name;
+	}
+
+	public Kind getKind() {
+		return kind;
+	}
+
+	public String getName() {
+		return name;
+	}
+
+	public void record(long elapsed, boolean error) {
+		latency.record(elapsed);
+		if (error) {
+			errors.incrementAndGet();
+		}
+	}
+
+	public void recordRetry() {
+		retries.incrementAndGet();
+	}
+
+	public void recordBytes(long count) {
+		if (count > 0) {
+			bytes.addAndGet(count);
+		}
+	}
+
+	public LatencyHistogram getLatency() {
+		return latency;
+	}
+
+	public long getCount() {
+		return latency.getCount();
+	}
+
+	public long getErrors() {
+		return errors.get();
+	}
+
+	public long getRetries() {
+		return retries.get();
+	}
+
+	public long getBytes() {
+		return bytes.get();
+	}
+}
@@ -15,6 +15,7 @@ package org.eclipse.cft.server.core.internal.ssh;
 import java.net.URI;
 import java.net.URISyntaxException;
 import java.util.List;
+import java.util.UUID;
 
 import org.apache.http.NameValuePair;
 import org.apache.http.client.utils.URIBuilder;
@@ -114,16 +115,28 @@ public class SshClientSupport extends CFClientV1Support implements ISshClientSup
 			throw CloudErrorUtil.toCoreException(NLS.bind(Messages.SshClientSupport_NO_CLOUD_APP, appName));
 		}
 
+		return openSession(getSshHost(), app.getMeta().getGuid(), appInstance, getSshCode());
+	}
+
+	/**
+	 * Opens an SSH session to the given application instance
+	 * @param sshHost
+	 * @param appGuid
+	 * @param appInstance
+	 * @param oneTimeCode code obtained from {@link #getSshCode()}. Each code
+	 * can only be used once.
+	 * @return connected session
+	 * @throws CoreException if the session failed to connect
+	 */
+	public static Session openSession(SshHost sshHost, UUID appGuid, int appInstance, String oneTimeCode)
+			throws CoreException {
 		JSch jsch = new JSch();
 
 		String user = "cf:" //$NON-NLS-1$
-				+ app.getMeta().getGuid().toString() + "/" + appInstance; //$NON-NLS-1$
+				+ appGuid.toString() + "/" + appInstance; //$NON-NLS-1$
 
-		String oneTimeCode = null;
 		try {
-			Session session = jsch.getSession(user, getSshHost().getHost(), getSshHost().getPort());
-
-			oneTimeCode = getSshCode();
+			Session session = jsch.getSession(user, sshHost.getHost(), sshHost.getPort());
 
 			session.setPassword(oneTimeCode);
 			session.setUserInfo(getUserInfo(oneTimeCode));
@@ -139,7 +152,7 @@ public class SshClientSupport extends CFClientV1Support implements ISshClientSup
 		}
 	}
 
-	protected UserInfo getUserInfo(final String accessToken) {
+	protected static UserInfo getUserInfo(final String accessToken) {
 		return new UserInfo() {
 
 			@Override
@@ -0,0 +1,452 @@
+/*******************************************************************************
+ * Copyright (c) 2017 Pivotal Software, Inc. and others
+ *
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * and Apache License v2.0 which accompanies this distribution.
+ *
+ * The Eclipse Public License is available at
+ *
+ * http://www.eclipse.org/legal/epl-v10.html
+ *
+ * and the Apache License v2.0 is available at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * You may elect to redistribute this code under either of these licenses.
+ *
+ *  Contributors:
+ *     Pivotal Software, Inc. - initial API and implementation
+ ********************************************************************************/
+package org.eclipse.cft.server.core.internal.ssh;
+
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.TimeUnit;
+
+import org.cloudfoundry.client.lib.domain.CloudApplication;
+import org.eclipse.cft.server.core.ISshClientSupport;
+import org.eclipse.cft.server.core.internal.CloudErrorUtil;
+import org.eclipse.cft.server.core.internal.CloudFoundryPlugin;
+import org.eclipse.cft.server.core.internal.CloudFoundryServer;
+import org.eclipse.cft.server.core.internal.CloudServerEvent;
+import org.eclipse.cft.server.core.internal.CloudServerListener;
+import org.eclipse.cft.server.core.internal.Messages;
+import org.eclipse.cft.server.core.internal.ServerEventHandler;
+import org.eclipse.cft.server.core.internal.client.ClientRequestExecutor;
+import org.eclipse.core.runtime.CoreException;
+import org.eclipse.core.runtime.IProgressMonitor;
+import org.eclipse.osgi.util.NLS;
+
+import com.jcraft.jsch.Session;
+
+/**
+ * Keeps SSH sessions to application instances open between requests, so that
+ * browsing the files of an instance or debugging it does not pay for a one
+ * time code request and an SSH handshake each time. One pool is shared by all
+ * clients of the same server.
+ * <p/>
+ * Sessions are leased to callers, which open their own channels on them.
+ * Up to {@link #MAX_CHANNELS_PER_SESSION} leases share the same session
+ * before another session is opened to the same instance. Sessions that have
+ * not been leased for {@link #IDLE_TIMEOUT} are closed. After a session is
+ * opened, the one time code for the next session is fetched in the
+ * background.
+ * <p/>
+ * The pool of a server is closed when the server is disconnected or deleted,
+ * and all pools are closed when the plugin stops.
+ */
+public class SshSessionPool {
+
+	public static final long IDLE_TIMEOUT = 60 * 1000;
+
+	public static final int MAX_CHANNELS_PER_SESSION = 5;
+
+	/**
+	 * How long a prefetched one time code is used before a new one is
+	 * requested, well within the validity of the code
+	 */
+	public static final long CODE_MAX_AGE = 60 * 1000;
+
+	private static final long EVICTION_INTERVAL = 15 * 1000;
+
+	/**
+	 * One time codes fetched at the same time, across all servers
+	 */
+	private static final int MAX_PARALLEL_PREFETCHES = 2;
+
+	private static final Map<String, SshSessionPool> pools = new ConcurrentHashMap<String, SshSessionPool>();
+
+	private static final ExecutorService prefetchExecutor = ClientRequestExecutor
+			.newBoundedExecutor(MAX_PARALLEL_PREFETCHES);
+
+	private static final CloudServerListener serverListener = new CloudServerListener() {
+		public void serverChanged(CloudServerEvent event) {
+			if ((event.getType() == CloudServerEvent.EVENT_SERVER_DISCONNECTED
+					|| event.getType() == CloudServerEvent.EVENT_SERVER_DELETED) && event.getServer() != null) {
+				dispose(event.getServer().getServerId());
+			}
+		}
+	};
+
+	private static ScheduledFuture<?> eviction;
+
+	private final Map<String, List<PooledSession>> sessions = new ConcurrentHashMap<String, List<PooledSession>>();
+
+	/*
+	 * GUIDs of the applications by name, so that sessions can be opened
+	 * without looking up the application each time
+	 */
+	private final Map<String, UUID> appGuids = new ConcurrentHashMap<String, UUID>();
+
+	private volatile CloudFoundryServer cloudServer;
+
+	private String prefetchedCode;
+
+	private long prefetchedAt;
+
+	private boolean prefetching;
+
+	private boolean disposed;
+
+	protected SshSessionPool(CloudFoundryServer cloudServer) {
+		this.cloudServer = cloudServer;
+	}
+
+	/**
+	 * 
+	 * @param cloudServer
+	 * @return pool shared by all clients of the given server, or null if the
+	 * server cannot be identified
+	 */
+	public static SshSessionPool forServer(CloudFoundryServer cloudServer) {
+		String serverId = cloudServer != null ? cloudServer.getServerId() : null;
+		if (serverId == null) {
+			return null;
+		}
+		SshSessionPool pool = pools.get(serverId);
+		if (pool == null) {
+			synchronized (pools) {
+				pool = pools.get(serverId);
+				if (pool == null) {
+					pool = new SshSessionPool(cloudServer);
+					if (pools.isEmpty()) {
+						ServerEventHandler.getDefault().addServerListener(serverListener);
+					}
+					pools.put(serverId, pool);
+				}
+			}
+		}
+		scheduleEviction();
+		pool.cloudServer = cloudServer;
+		return pool;
+	}
+
+	/**
+	 * Closes the pool of the given server, if any, and disconnects its
+	 * sessions
+	 * @param serverId
+	 */
+	protected static void dispose(String serverId) {
+		if (serverId == null) {
+			return;
+		}
+		SshSessionPool pool;
+		synchronized (pools) {
+			pool = pools.remove(serverId);
+			if (pool != null && pools.isEmpty()) {
+				ServerEventHandler.getDefault().removeServerListener(serverListener);
+			}
+		}
+		if (pool != null) {
+			pool.dispose();
+		}
+	}
+
+	/**
+	 * Closes all pools and disconnects their sessions. Invoked when the plugin
+	 * stops.
+	 */
+	public static void disposeAll() {
+		for (String serverId : new ArrayList<String>(pools.keySet())) {
+			dispose(serverId);
+		}
+		synchronized (SshSessionPool.class) {
+			if (eviction != null) {
+				eviction.cancel(false);
+				eviction = null;
+			}
+		}
+	}
+
+	/**
+	 * Leases a session to the given application instance, opening one if
+	 * needed. The lease must be released once the channels opened on the
+	 * session are closed.
+	 * @param ssh
+	 * @param appName
+	 * @param appInstance
+	 * @param monitor
+	 * @return non-null lease of a connected session
+	 * @throws CoreException if no session could be opened
+	 */
+	public Lease acquire(ISshClientSupport ssh, String appName, int appInstance, IProgressMonitor monitor)
+			throws CoreException {
+		String key = appName + '/' + appInstance;
+		PooledSession pooled = leaseExisting(key);
+		if (pooled == null) {
+			pooled = new PooledSession(key, openSession(ssh, appName, appInstance, monitor));
+			synchronized (this) {
+				pooled.leases++;
+				getSessions(key).add(pooled);
+			}
+		}
+		return new Lease(pooled);
+	}
+
+	protected synchronized PooledSession leaseExisting(String key) {
+		List<PooledSession> keySessions = getSessions(key);
+		for (Iterator<PooledSession> it = keySessions.iterator(); it.hasNext();) {
+			PooledSession pooled = it.next();
+			if (!pooled.session.isConnected()) {
+				if (pooled.leases == 0) {
+					it.remove();
+				}
+			}
+			else if (pooled.leases < MAX_CHANNELS_PER_SESSION) {
+				pooled.leases++;
+				return pooled;
+			}
+		}
+		return null;
+	}
+
+	protected synchronized void release(PooledSession pooled) {
+		pooled.leases--;
+		pooled.lastReleased = System.currentTimeMillis();
+	}
+
+	protected Session openSession(ISshClientSupport ssh, String appName, int appInstance, IProgressMonitor monitor)
+			throws CoreException {
+		SshHost sshHost = cloudServer.getBehaviour().getCloudInfo().getSshHost();
+		UUID appGuid = getAppGuid(appName, monitor);
+		String code = takePrefetchedCode();
+		boolean prefetched = code != null;
+		if (code == null) {
+			code = ssh.getSshCode();
+		}
+		try {
+			return SshClientSupport.openSession(sshHost, appGuid, appInstance, code);
+		}
+		catch (CoreException e) {
+			// The application may have been pushed again under a different
+			// GUID, or the prefetched code may no longer be valid
+			appGuids.remove(appName);
+			if (!prefetched) {
+				throw e;
+			}
+			return SshClientSupport.openSession(sshHost, getAppGuid(appName, monitor), appInstance,
+					ssh.getSshCode());
+		}
+		finally {
+			prefetchCode(ssh);
+		}
+	}
+
+	protected UUID getAppGuid(String appName, IProgressMonitor monitor) throws CoreException {
+		UUID guid = appGuids.get(appName);
+		if (guid == null) {
+			CloudApplication app = cloudServer.getBehaviour().getCloudApplication(appName, monitor);
+			if (app == null) {
+				throw CloudErrorUtil.toCoreException(NLS.bind(Messages.SshClientSupport_NO_CLOUD_APP, appName));
+			}
+			guid = app.getMeta().getGuid();
+			appGuids.put(appName, guid);
+		}
+		return guid;
+	}
+
+	protected synchronized String takePrefetchedCode() {
+		String code = prefetchedCode;
+		boolean fresh = System.currentTimeMillis() - prefetchedAt < CODE_MAX_AGE;
+		prefetchedCode = null;
+		return fresh ? code : null;
+	}
+
+	/**
+	 * Fetches the one time code of the next session in the background, unless
+	 * a code is already being fetched
+	 * @param ssh
+	 */
+	protected void prefetchCode(final ISshClientSupport ssh) {
+		synchronized (this) {
+			if (prefetching || disposed) {
+				return;
+			}
+			prefetching = true;
+		}
+		try {
+			prefetchExecutor.execute(new Runnable() {
+
+				@Override
+				public void run() {
+					String code = null;
+					try {
+						code = ssh.getSshCode();
+					}
+					catch (RuntimeException e) {
+						// The code is fetched again when it is needed
+						CloudFoundryPlugin.logWarning("Failed to prefetch SSH one time code: " + e.getMessage()); //$NON-NLS-1$
+					}
+					synchronized (SshSessionPool.this) {
+						prefetching = false;
+						if (code != null && !disposed) {
+							prefetchedCode = code;
+							prefetchedAt = System.currentTimeMillis();
+						}
+					}
+				}
+			});
+		}
+		catch (RejectedExecutionException e) {
+			// Plugin stopping
+			synchronized (this) {
+				prefetching = false;
+			}
+		}
+	}
+
+	/**
+	 * Disconnects all sessions of the pool, including leased ones, and
+	 * forgets the cached application GUIDs and one time code
+	 */
+	protected void dispose() {
+		List<Session> toClose = new ArrayList<Session>();
+		synchronized (this) {
+			disposed = true;
+			prefetchedCode = null;
+			for (List<PooledSession> keySessions : sessions.values()) {
+				for (PooledSession pooled : keySessions) {
+					toClose.add(pooled.session);
+				}
+			}
+			sessions.clear();
+		}
+		appGuids.clear();
+		for (Session session : toClose) {
+			session.disconnect();
+		}
+	}
+
+	/**
+	 * Closes the sessions that are not leased, and have not been released for
+	 * at least {@link #IDLE_TIMEOUT}
+	 */
+	protected void closeIdleSessions() {
+		List<Session> toClose = new ArrayList<Session>();
+		long now = System.currentTimeMillis();
+		synchronized (this) {
+			for (List<PooledSession> keySessions : sessions.values()) {
+				for (Iterator<PooledSession> it = keySessions.iterator(); it.hasNext();) {
+					PooledSession pooled = it.next();
+					if (pooled.leases == 0 && now - pooled.lastReleased >= IDLE_TIMEOUT) {
+						it.remove();
+						toClose.add(pooled.session);
+					}
+				}
+			}
+		}
+		for (Session session : toClose) {
+			session.disconnect();
+		}
+	}
+
+	private List<PooledSession> getSessions(String key) {
+		List<PooledSession> keySessions = sessions.get(key);
+		if (keySessions == null) {
+			keySessions = new ArrayList<PooledSession>();
+			sessions.put(key, keySessions);
+		}
+		return keySessions;
+	}
+
+	private static synchronized void scheduleEviction() {
+		// Scheduled again if the shared scheduler was shut down
+		if (eviction == null || eviction.isDone()) {
+			eviction = ClientRequestExecutor.getScheduler().scheduleWithFixedDelay(new Runnable() {
+
+				@Override
+				public void run() {
+					for (SshSessionPool pool : pools.values()) {
+						try {
+							pool.closeIdleSessions();
+						}
+						catch (RuntimeException e) {
+							CloudFoundryPlugin.logError(e);
+						}
+					}
+				}
+			}, EVICTION_INTERVAL, EVICTION_INTERVAL, TimeUnit.MILLISECONDS);
+		}
+	}
+
+	protected static class PooledSession {
+
+		private final String key;
+
+		private final Session session;
+
+		private int leases;
+
+		private long lastReleased;
+
+		protected PooledSession(String key, Session session) {
+			this.key = key;
+			this.session = session;
+		}
+
+		@Override
+		public String toString() {
+			return key;
+		}
+	}
+
+	/**
+	 * Session leased from the pool
+	 */
+	public class Lease {
+
+		private final PooledSession pooled;
+
+		private boolean released;
+
+		protected Lease(PooledSession pooled) {
+			this.pooled = pooled;
+		}
+
+		public Session getSession() {
+			return pooled.session;
+		}
+
+		/**
+		 * Returns the session to the pool. The session is kept open for
+		 * other requests.
+		 */
+		public void release() {
+			synchronized (SshSessionPool.this) {
+				if (released) {
+					return;
+				}
+				released = true;
+			}
+			SshSessionPool.this.release(pooled);
+		}
+	}
+}
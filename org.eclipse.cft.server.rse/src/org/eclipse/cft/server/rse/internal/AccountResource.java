@@ -24,6 +24,7 @@ import java.util.ArrayList;
 import java.util.List;
 
 import org.cloudfoundry.client.lib.domain.CloudApplication;
+import org.cloudfoundry.client.lib.domain.CloudApplication.AppState;
 import org.eclipse.cft.server.core.internal.CloudFoundryServer;
 import org.eclipse.core.runtime.CoreException;
 import org.eclipse.core.runtime.IProgressMonitor;
@@ -71,6 +72,11 @@ public class AccountResource extends CloudFoundryHostFile {
 		try {
 			List<CloudApplication> cloudApps = server.getBehaviour().getApplications(monitor);
 			for (CloudApplication cloudApp : cloudApps) {
+				// Files of stopped applications are gone, and are listed again
+				// once they are started
+				if (!AppState.STARTED.equals(cloudApp.getState())) {
+					DirectoryCache.getDefault().invalidate(server, cloudApp.getName());
+				}
 				int count = cloudApp.getInstances();
 				for (int i = 0; i < count; i++) {
 					ApplicationResource resource = new ApplicationResource(server, cloudApp, i);
@@ -20,9 +20,7 @@
  ********************************************************************************/
 package org.eclipse.cft.server.rse.internal;
 
-import java.util.HashMap;
 import java.util.List;
-import java.util.Map;
 
 import org.cloudfoundry.client.lib.domain.CloudApplication;
 import org.eclipse.cft.server.core.internal.CloudFoundryServer;
@@ -42,15 +40,12 @@ public class ApplicationResource extends CloudFoundryHostFile {
 
 	private CloudFoundryServer server;
 
-	private Map<String, List<FileResource>> fileMap;
-
 	public ApplicationResource(CloudFoundryServer server, CloudApplication app, int id) {
 		super();
 		this.app = app;
 		this.server = server;
 		this.id = id;
 		provider = new FilesContentProvider(server, app, id);
-		fileMap = new HashMap<String, List<FileResource>>();
 	}
 
 	public boolean canRead() {
@@ -66,8 +61,8 @@ public class ApplicationResource extends CloudFoundryHostFile {
 	}
 
 	/**
-	 * Fetches the list of children for the given path over the network. Do not
-	 * call this method from a UI thread, call
+	 * Fetches the list of children for the given path over the network, unless
+	 * it was fetched recently. Do not call this method from a UI thread, call
 	 * {@link #getChildren(String, IProgressMonitor)} instead.
 	 * 
 	 * @param path
@@ -75,9 +70,7 @@ public class ApplicationResource extends CloudFoundryHostFile {
 	 * @return
 	 */
 	public List<FileResource> fetchChildren(String path, IProgressMonitor monitor) {
-		List<FileResource> files = provider.getElements(path, monitor);
-		fileMap.put(path, files);
-		return files;
+		return provider.getElements(path, monitor);
 	}
 
 	public String getAbsolutePath() {
@@ -103,10 +96,10 @@ public class ApplicationResource extends CloudFoundryHostFile {
 	 * 
 	 * @param path
 	 * @param monitor
-	 * @return
+	 * @return cached children, or null if they were not fetched recently
 	 */
 	public List<FileResource> getChildren(String path, IProgressMonitor monitor) {
-		return fileMap.get(path);
+		return DirectoryCache.getDefault().get(server, app.getName(), id, path);
 	}
 
 	@Override
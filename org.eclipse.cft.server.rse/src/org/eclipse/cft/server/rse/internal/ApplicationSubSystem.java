@@ -22,14 +22,18 @@ package org.eclipse.cft.server.rse.internal;
 
 import org.eclipse.cft.server.core.internal.CloudServerEvent;
 import org.eclipse.cft.server.core.internal.CloudServerListener;
+import org.eclipse.core.runtime.IProgressMonitor;
 import org.eclipse.rse.core.events.ISystemResourceChangeEvents;
 import org.eclipse.rse.core.events.SystemResourceChangeEvent;
 import org.eclipse.rse.core.model.IHost;
 import org.eclipse.rse.core.subsystems.IConnectorService;
+import org.eclipse.rse.services.clientserver.messages.SystemMessageException;
 import org.eclipse.rse.services.files.IFileService;
 import org.eclipse.rse.services.search.ISearchService;
 import org.eclipse.rse.subsystems.files.core.servicesubsystem.FileServiceSubSystem;
 import org.eclipse.rse.subsystems.files.core.subsystems.IHostFileToRemoteFileAdapter;
+import org.eclipse.rse.subsystems.files.core.subsystems.IRemoteFile;
+import org.eclipse.rse.subsystems.files.core.subsystems.IRemoteFileContext;
 import org.eclipse.wst.server.core.IServer;
 import org.eclipse.wst.server.core.IServerLifecycleListener;
 import org.eclipse.wst.server.core.IServerListener;
@@ -68,6 +72,26 @@ public class ApplicationSubSystem extends FileServiceSubSystem implements CloudS
 		if (type == CloudServerEvent.EVENT_INSTANCES_UPDATED) {
 			fireEventChangeChildren();
 		}
+		else if (type == CloudServerEvent.EVENT_SERVER_DISCONNECTED || type == CloudServerEvent.EVENT_SERVER_DELETED) {
+			// Listings of the server are not valid once it is reconnected,
+			// and of no use once it is deleted
+			if (event.getServer() != null) {
+				DirectoryCache.getDefault().invalidate(event.getServer());
+			}
+		}
+	}
+
+	/**
+	 * Lists the given directory. When the directory is refreshed, its cached
+	 * listing is dropped first, so that it is listed remotely.
+	 */
+	@Override
+	public IRemoteFile[] list(IRemoteFile parent, String fileNameFilter, IRemoteFileContext context, int type,
+			IProgressMonitor monitor) throws SystemMessageException {
+		if (parent != null && parent.isStale() && getFileService() instanceof CloudFoundryFileService) {
+			((CloudFoundryFileService) getFileService()).invalidate(parent.getAbsolutePath());
+		}
+		return super.list(parent, fileNameFilter, context, type, monitor);
 	}
 
 	public void serverChanged(IServer server) {
@@ -20,19 +20,19 @@
  ********************************************************************************/
 package org.eclipse.cft.server.rse.internal;
 
-import java.io.BufferedOutputStream;
-import java.io.ByteArrayInputStream;
 import java.io.File;
-import java.io.FileOutputStream;
 import java.io.InputStream;
-import java.io.OutputStream;
 import java.util.ArrayList;
 import java.util.List;
 
 import org.cloudfoundry.client.lib.domain.CloudApplication;
 import org.eclipse.cft.server.core.internal.CloudFoundryServer;
+import org.eclipse.cft.server.core.internal.client.FileDownload;
+import org.eclipse.core.runtime.CoreException;
 import org.eclipse.core.runtime.IProgressMonitor;
+import org.eclipse.core.runtime.IStatus;
 import org.eclipse.rse.core.model.IHost;
+import org.eclipse.rse.services.clientserver.messages.SimpleSystemMessage;
 import org.eclipse.rse.services.clientserver.messages.SystemMessageException;
 import org.eclipse.rse.services.files.AbstractFileService;
 import org.eclipse.rse.services.files.IHostFile;
@@ -87,38 +87,37 @@ public class CloudFoundryFileService extends AbstractFileService implements IClo
 	@Override
 	public void download(String remoteParent, String remoteFile, File localFile, boolean isBinary, String hostEncoding,
 			IProgressMonitor monitor) throws SystemMessageException {
+		if (localFile.isDirectory()) {
+			return;
+		}
+		try {
+			downloadFile(remoteParent, remoteFile, localFile, false, monitor);
+		}
+		catch (Exception e) {
+			// Not resuming, so a partially written file is of no use and
+			// would otherwise be opened as if it were complete
+			if (localFile.exists() && !localFile.delete()) {
+				localFile.deleteOnExit();
+			}
+			String message = "An error occurred while opening file: " + remoteFile //$NON-NLS-1$
+					+ " in: " + remoteParent; //$NON-NLS-1$
+			CloudFoundryRsePlugin.logError(message, e);
+			throw new SystemMessageException(new SimpleSystemMessage(CloudFoundryRsePlugin.PLUGIN_ID,
+					IStatus.ERROR, message, e));
+		}
+	}
+
+	public FileDownload downloadFile(String remoteParent, String remoteFile, File localFile, boolean resume,
+			IProgressMonitor monitor) throws CoreException {
 		Object[] array = parseNestedFiles(remoteParent);
 		if (array != null) {
 			ApplicationResource app = (ApplicationResource) array[0];
 			String path = (String) array[1];
 			CloudFoundryServer server = app.getServer();
-			String appName = app.getCloudApplication().getName();
-			int instance = app.getInstanceId();
-			try {
-				String content = server.getBehaviour().getFile(app.getCloudApplication(), instance, path.concat(remoteFile).substring(1),
-						localFile.isDirectory(),monitor);
-				if (content != null) {
-					if (!localFile.exists()) {
-						localFile.getParentFile().mkdirs();
-					}
-					ByteArrayInputStream inStream = new ByteArrayInputStream(content.getBytes());
-					OutputStream outStream = new BufferedOutputStream(new FileOutputStream(localFile));
-					byte[] buffer = new byte[4096];
-					int bytesRead = -1;
-					while ((bytesRead = inStream.read(buffer)) != -1) {
-						outStream.write(buffer, 0, bytesRead);
-					}
-					outStream.flush();
-					inStream.close();
-					outStream.close();
-				}
-			}
-			catch (Exception e) {
-				CloudFoundryRsePlugin.logError("An error occurred while opening file: " + remoteFile //$NON-NLS-1$
-						+ " for application: " + appName, e); //$NON-NLS-1$
-			}
+			return server.getBehaviour().downloadFile(app.getCloudApplication(), app.getInstanceId(),
+					path.concat(remoteFile).substring(1), localFile, resume, monitor);
 		}
-
+		return null;
 	}
 
 	@Override
@@ -140,7 +139,8 @@ public class CloudFoundryFileService extends AbstractFileService implements IClo
 		if (array != null) {
 			app = (ApplicationResource) array[0];
 			String path = (String) array[1];
-			List<FileResource> files = app.getChildren(path, monitor);
+			// Served from the directory cache once the parent was listed
+			List<FileResource> files = app.fetchChildren(path, monitor);
 			if (files != null) {
 				for (FileResource file : files) {
 					if (name.equals(file.getName())) {
@@ -225,6 +225,40 @@ public class CloudFoundryFileService extends AbstractFileService implements IClo
 
 	}
 
+	/**
+	 * Drops the cached listings of the given remote directory, so that it is
+	 * listed remotely next time. Listings of all the instances of an
+	 * application, or of all the applications of an account, are dropped if
+	 * the path is an application instance or an account.
+	 * @param remotePath
+	 */
+	public void invalidate(String remotePath) {
+		if (remotePath == null) {
+			return;
+		}
+		DirectoryCache cache = DirectoryCache.getDefault();
+		AccountResource account = parseAccount(remotePath);
+		if (account != null) {
+			cache.invalidate(account.getServer());
+			return;
+		}
+		ApplicationResource app = parseApp(remotePath);
+		if (app != null) {
+			cache.invalidate(app.getServer(), app.getCloudApplication().getName());
+			return;
+		}
+		// Directories are listed with and without a trailing separator
+		String parent = remotePath.endsWith("/") ? remotePath.substring(0, remotePath.length() - 1) : remotePath; //$NON-NLS-1$
+		Object[] array = parseNestedFiles(parent.concat("/")); //$NON-NLS-1$
+		if (array != null) {
+			app = (ApplicationResource) array[0];
+			String path = (String) array[1];
+			String name = app.getCloudApplication().getName();
+			cache.invalidate(app.getServer(), name, app.getInstanceId(), path);
+			cache.invalidate(app.getServer(), name, app.getInstanceId(), path.substring(0, path.length() - 1));
+		}
+	}
+
 	private AccountResource parseAccount(String path) {
 		int index = path.lastIndexOf("@"); //$NON-NLS-1$
 		if (index >= 0 && (index + 1) <= path.length()) {
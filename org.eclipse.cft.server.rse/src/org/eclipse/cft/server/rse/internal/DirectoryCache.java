@@ -0,0 +1,151 @@
+/*******************************************************************************
+ * Copyright (c) 2017 Pivotal Software, Inc. and others
+ *
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * and Apache License v2.0 which accompanies this distribution.
+ *
+ * The Eclipse Public License is available at
+ *
+ * http://www.eclipse.org/legal/epl-v10.html
+ *
+ * and the Apache License v2.0 is available at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * You may elect to redistribute this code under either of these licenses.
+ *
+ *  Contributors:
+ *     Pivotal Software, Inc. - initial API and implementation
+ ********************************************************************************/
+package org.eclipse.cft.server.rse.internal;
+
+import java.util.Collections;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+import org.eclipse.cft.server.core.internal.CloudFoundryServer;
+
+/**
+ * Directory listings of application instances, shared by all the resources
+ * of the remote file system, so that resolving a file or expanding a
+ * directory that was listed recently does not list it again remotely.
+ * <p/>
+ * Listings expire after {@link #TTL}. At most {@link #MAX_DIRECTORIES}
+ * listings are kept, the least recently used being dropped first.
+ */
+public class DirectoryCache {
+
+	public static final long TTL = 30 * 1000;
+
+	public static final int MAX_DIRECTORIES = 256;
+
+	private static final DirectoryCache DEFAULT = new DirectoryCache(TTL, MAX_DIRECTORIES);
+
+	private final long ttl;
+
+	private final Map<String, Entry> entries;
+
+	public DirectoryCache(long ttl, final int maxDirectories) {
+		this.ttl = ttl;
+		this.entries = new LinkedHashMap<String, Entry>(16, 0.75f, true) {
+
+			private static final long serialVersionUID = 1L;
+
+			@Override
+			protected boolean removeEldestEntry(Map.Entry<String, Entry> eldest) {
+				return size() > maxDirectories;
+			}
+		};
+	}
+
+	public static DirectoryCache getDefault() {
+		return DEFAULT;
+	}
+
+	/**
+	 * 
+	 * @param server
+	 * @param appName
+	 * @param instance
+	 * @param path
+	 * @return listing of the given directory if it has not expired, or null
+	 */
+	public synchronized List<FileResource> get(CloudFoundryServer server, String appName, int instance,
+			String path) {
+		String key = getKey(server, appName, instance, path);
+		Entry entry = entries.get(key);
+		if (entry == null) {
+			return null;
+		}
+		if (System.currentTimeMillis() - entry.fetched >= ttl) {
+			entries.remove(key);
+			return null;
+		}
+		return entry.files;
+	}
+
+	public synchronized void put(CloudFoundryServer server, String appName, int instance, String path,
+			List<FileResource> files) {
+		entries.put(getKey(server, appName, instance, path),
+				new Entry(Collections.unmodifiableList(files), System.currentTimeMillis()));
+	}
+
+	/**
+	 * Drops the listing of the given directory, so that it is listed
+	 * remotely next time
+	 */
+	public synchronized void invalidate(CloudFoundryServer server, String appName, int instance, String path) {
+		entries.remove(getKey(server, appName, instance, path));
+	}
+
+	/**
+	 * Drops the listings of all the instances of the given application
+	 */
+	public synchronized void invalidate(CloudFoundryServer server, String appName) {
+		String prefix = getAppKey(server, appName);
+		for (Iterator<String> it = entries.keySet().iterator(); it.hasNext();) {
+			if (it.next().startsWith(prefix)) {
+				it.remove();
+			}
+		}
+	}
+
+	/**
+	 * Drops the listings of all the applications of the given server
+	 */
+	public synchronized void invalidate(CloudFoundryServer server) {
+		String prefix = server.getServerId() + '/';
+		for (Iterator<String> it = entries.keySet().iterator(); it.hasNext();) {
+			if (it.next().startsWith(prefix)) {
+				it.remove();
+			}
+		}
+	}
+
+	public synchronized void invalidateAll() {
+		entries.clear();
+	}
+
+	protected String getKey(CloudFoundryServer server, String appName, int instance, String path) {
+		return getAppKey(server, appName) + instance + ':' + path;
+	}
+
+	protected String getAppKey(CloudFoundryServer server, String appName) {
+		return server.getServerId() + '/' + appName + '#';
+	}
+
+	private static class Entry {
+
+		private final List<FileResource> files;
+
+		private final long fetched;
+
+		Entry(List<FileResource> files, long fetched) {
+			this.files = files;
+			this.fetched = fetched;
+		}
+	}
+}
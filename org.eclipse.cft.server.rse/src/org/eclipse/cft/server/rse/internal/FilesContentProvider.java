@@ -48,10 +48,23 @@ public class FilesContentProvider {
 		this.instance = instance;
 	}
 
+	/**
+	 * Lists the given directory of the application instance. Listings are
+	 * served from the {@link DirectoryCache} until they expire.
+	 * 
+	 * @param inputElement path of the directory
+	 * @param monitor
+	 * @return
+	 */
 	public List<FileResource> getElements(Object inputElement, IProgressMonitor monitor) {
 		List<FileResource> list = new ArrayList<FileResource>();
 		if (inputElement instanceof String) {
 			String parent = (String) inputElement;
+			DirectoryCache cache = DirectoryCache.getDefault();
+			List<FileResource> cached = cache.get(server, app.getName(), instance, parent);
+			if (cached != null) {
+				return cached;
+			}
 			try {
 				if (AppState.STARTED.equals(app.getState())) {
 					String path = parent.substring(1);
@@ -82,6 +95,7 @@ public class FilesContentProvider {
 								list.add(resource);
 							}
 						}
+						cache.put(server, app.getName(), instance, parent, list);
 					}
 				}
 			}
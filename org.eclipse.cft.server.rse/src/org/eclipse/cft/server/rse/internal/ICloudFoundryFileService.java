@@ -20,9 +20,31 @@
  ********************************************************************************/
 package org.eclipse.cft.server.rse.internal;
 
+import java.io.File;
+
+import org.eclipse.cft.server.core.internal.client.FileDownload;
+import org.eclipse.core.runtime.CoreException;
+import org.eclipse.core.runtime.IProgressMonitor;
+
 /**
  * @author Leo Dos Santos
  */
 public interface ICloudFoundryFileService {
 
+	/**
+	 * Streams a remote file of an application instance to a local file,
+	 * without holding its content in memory.
+	 * @param remoteParent
+	 * @param remoteFile
+	 * @param localFile
+	 * @param resume true to continue a previous download to the same local
+	 * file, false to replace it
+	 * @param monitor
+	 * @return the completed download, or null if the remote file does not
+	 * belong to an application instance
+	 * @throws CoreException if the download failed
+	 */
+	public FileDownload downloadFile(String remoteParent, String remoteFile, File localFile, boolean resume,
+			IProgressMonitor monitor) throws CoreException;
+
 }
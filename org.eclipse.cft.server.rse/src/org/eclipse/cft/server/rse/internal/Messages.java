@@ -30,6 +30,20 @@ public class Messages extends NLS {
 	public static String CloudFoundryFileService_DESCRIPTION_FILE_SERVICE_NAME;
 
 	public static String CloudFoundryFileService_DESCRIPTION_FILE_SERVICES;
+
+	public static String RemoteSearchView_INSTANCE;
+
+	public static String RemoteSearchView_INSTANCE_SEARCHING;
+
+	public static String RemoteSearchView_INSTANCE_FAILED;
+
+	public static String RemoteSearchView_DESCRIPTION;
+
+	public static String SearchRemoteFilesAction_TITLE;
+
+	public static String SearchRemoteFilesAction_PATTERN;
+
+	public static String SearchRemoteFilesAction_JOB;
 	static {
 		// initialize resource bundle
 		NLS.initializeMessages(BUNDLE_NAME, Messages.class);
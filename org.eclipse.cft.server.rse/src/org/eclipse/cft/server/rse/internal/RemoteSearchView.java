@@ -0,0 +1,291 @@
+/*******************************************************************************
+ * Copyright (c) 2017 Pivotal Software, Inc. and others
+ *
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * and Apache License v2.0 which accompanies this distribution.
+ *
+ * The Eclipse Public License is available at
+ *
+ * http://www.eclipse.org/legal/epl-v10.html
+ *
+ * and the Apache License v2.0 is available at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * You may elect to redistribute this code under either of these licenses.
+ *
+ *  Contributors:
+ *     Pivotal Software, Inc. - initial API and implementation
+ ********************************************************************************/
+package org.eclipse.cft.server.rse.internal;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import org.eclipse.cft.server.core.internal.client.RemoteFileSearch;
+import org.eclipse.cft.server.core.internal.client.RemoteFileSearch.Match;
+import org.eclipse.core.runtime.CoreException;
+import org.eclipse.core.runtime.IProgressMonitor;
+import org.eclipse.core.runtime.IStatus;
+import org.eclipse.core.runtime.OperationCanceledException;
+import org.eclipse.core.runtime.Status;
+import org.eclipse.core.runtime.jobs.Job;
+import org.eclipse.jface.viewers.ITreeContentProvider;
+import org.eclipse.jface.viewers.LabelProvider;
+import org.eclipse.jface.viewers.TreeViewer;
+import org.eclipse.jface.viewers.Viewer;
+import org.eclipse.osgi.util.NLS;
+import org.eclipse.swt.SWT;
+import org.eclipse.swt.widgets.Composite;
+import org.eclipse.swt.widgets.Display;
+import org.eclipse.ui.part.ViewPart;
+
+/**
+ * Shows the matches of a search of the files of all instances of an
+ * application, grouped by instance with the number of matches of each
+ * instance. Matches are shown as they are found.
+ */
+public class RemoteSearchView extends ViewPart {
+
+	public static final String ID = "org.eclipse.cft.server.rse.remoteSearchView"; //$NON-NLS-1$
+
+	/**
+	 * Minimum time between refreshes of the viewer while matches are found
+	 */
+	private static final long REFRESH_INTERVAL = 250;
+
+	private TreeViewer viewer;
+
+	private Display display;
+
+	private SearchResult result;
+
+	private Job job;
+
+	private boolean refreshPending;
+
+	@Override
+	public void createPartControl(Composite parent) {
+		display = parent.getDisplay();
+		viewer = new TreeViewer(parent, SWT.MULTI | SWT.H_SCROLL | SWT.V_SCROLL);
+		viewer.setContentProvider(new SearchContentProvider());
+		viewer.setLabelProvider(new SearchLabelProvider());
+	}
+
+	@Override
+	public void setFocus() {
+		viewer.getControl().setFocus();
+	}
+
+	@Override
+	public void dispose() {
+		if (job != null) {
+			job.cancel();
+		}
+		super.dispose();
+	}
+
+	/**
+	 * Cancels the current search, if any, and shows the results of the given
+	 * search as it runs
+	 * @param search
+	 */
+	public void search(final RemoteFileSearch search) {
+		if (job != null) {
+			job.cancel();
+		}
+		final SearchResult searchResult = new SearchResult(search);
+		result = searchResult;
+		viewer.setInput(searchResult);
+		updateDescription();
+
+		job = new Job(NLS.bind(Messages.SearchRemoteFilesAction_JOB, search.getApplication().getName())) {
+
+			@Override
+			protected IStatus run(IProgressMonitor monitor) {
+				try {
+					search.run(searchResult, monitor);
+				}
+				catch (OperationCanceledException e) {
+					return Status.CANCEL_STATUS;
+				}
+				catch (CoreException e) {
+					return e.getStatus();
+				}
+				finally {
+					scheduleRefresh(0);
+				}
+				return monitor.isCanceled() ? Status.CANCEL_STATUS : Status.OK_STATUS;
+			}
+		};
+		job.setUser(true);
+		job.schedule();
+	}
+
+	/**
+	 * Refreshes the viewer from the UI thread. Refreshes requested while one
+	 * is pending are merged.
+	 */
+	protected void scheduleRefresh(final long delay) {
+		synchronized (this) {
+			if (refreshPending) {
+				return;
+			}
+			refreshPending = true;
+		}
+		if (display.isDisposed()) {
+			return;
+		}
+		display.asyncExec(new Runnable() {
+			public void run() {
+				display.timerExec((int) delay, new Runnable() {
+					public void run() {
+						synchronized (RemoteSearchView.this) {
+							refreshPending = false;
+						}
+						if (!viewer.getControl().isDisposed()) {
+							viewer.refresh();
+							updateDescription();
+						}
+					}
+				});
+			}
+		});
+	}
+
+	protected void updateDescription() {
+		if (result == null) {
+			return;
+		}
+		int matches = 0;
+		int instancesWithMatches = 0;
+		for (InstanceResult instance : result.getInstances()) {
+			int instanceMatches = instance.getMatchCount();
+			matches += instanceMatches;
+			if (instanceMatches > 0) {
+				instancesWithMatches++;
+			}
+		}
+		setContentDescription(NLS.bind(Messages.RemoteSearchView_DESCRIPTION,
+				new Object[] { result.search.getPattern(), result.search.getApplication().getName(), matches,
+						instancesWithMatches, result.getInstances().size() }));
+	}
+
+	/**
+	 * Matches of a search, collected from the threads searching the
+	 * instances
+	 */
+	protected class SearchResult implements RemoteFileSearch.IListener {
+
+		private final RemoteFileSearch search;
+
+		private final List<InstanceResult> instances = new ArrayList<InstanceResult>();
+
+		public SearchResult(RemoteFileSearch search) {
+			this.search = search;
+			for (int i = 0; i < search.getApplication().getInstances(); i++) {
+				instances.add(new InstanceResult(i));
+			}
+		}
+
+		public List<InstanceResult> getInstances() {
+			return instances;
+		}
+
+		public void matchFound(Match match) {
+			instances.get(match.getInstance()).add(match);
+			scheduleRefresh(REFRESH_INTERVAL);
+		}
+
+		public void instanceSearched(int instance, int matches, CoreException error) {
+			instances.get(instance).setSearched(error);
+			scheduleRefresh(REFRESH_INTERVAL);
+		}
+	}
+
+	protected static class InstanceResult {
+
+		private final int instance;
+
+		private final List<Match> matches = new ArrayList<Match>();
+
+		private boolean searched;
+
+		private CoreException error;
+
+		public InstanceResult(int instance) {
+			this.instance = instance;
+		}
+
+		public synchronized void add(Match match) {
+			matches.add(match);
+		}
+
+		public synchronized void setSearched(CoreException error) {
+			this.searched = true;
+			this.error = error;
+		}
+
+		public synchronized Match[] getMatches() {
+			return matches.toArray(new Match[matches.size()]);
+		}
+
+		public synchronized int getMatchCount() {
+			return matches.size();
+		}
+
+		public synchronized String getLabel() {
+			if (!searched) {
+				return NLS.bind(Messages.RemoteSearchView_INSTANCE_SEARCHING, instance, matches.size());
+			}
+			if (error != null) {
+				return NLS.bind(Messages.RemoteSearchView_INSTANCE_FAILED,
+						new Object[] { instance, matches.size(), error.getMessage() });
+			}
+			return NLS.bind(Messages.RemoteSearchView_INSTANCE, instance, matches.size());
+		}
+	}
+
+	protected static class SearchContentProvider implements ITreeContentProvider {
+
+		public Object[] getElements(Object inputElement) {
+			if (inputElement instanceof SearchResult) {
+				return ((SearchResult) inputElement).getInstances().toArray();
+			}
+			return new Object[0];
+		}
+
+		public Object[] getChildren(Object parentElement) {
+			if (parentElement instanceof InstanceResult) {
+				return ((InstanceResult) parentElement).getMatches();
+			}
+			return new Object[0];
+		}
+
+		public Object getParent(Object element) {
+			return null;
+		}
+
+		public boolean hasChildren(Object element) {
+			return element instanceof InstanceResult && ((InstanceResult) element).getMatchCount() > 0;
+		}
+
+		public void dispose() {
+		}
+
+		public void inputChanged(Viewer viewer, Object oldInput, Object newInput) {
+		}
+	}
+
+	protected static class SearchLabelProvider extends LabelProvider {
+
+		@Override
+		public String getText(Object element) {
+			if (element instanceof InstanceResult) {
+				return ((InstanceResult) element).getLabel();
+			}
+			return super.getText(element);
+		}
+	}
+}
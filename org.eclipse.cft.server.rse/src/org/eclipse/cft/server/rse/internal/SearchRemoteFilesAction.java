@@ -0,0 +1,94 @@
+/*******************************************************************************
+ * Copyright (c) 2017 Pivotal Software, Inc. and others
+ *
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * and Apache License v2.0 which accompanies this distribution.
+ *
+ * The Eclipse Public License is available at
+ *
+ * http://www.eclipse.org/legal/epl-v10.html
+ *
+ * and the Apache License v2.0 is available at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * You may elect to redistribute this code under either of these licenses.
+ *
+ *  Contributors:
+ *     Pivotal Software, Inc. - initial API and implementation
+ ********************************************************************************/
+package org.eclipse.cft.server.rse.internal;
+
+import org.eclipse.cft.server.core.internal.client.RemoteFileSearch;
+import org.eclipse.jface.action.IAction;
+import org.eclipse.jface.dialogs.IInputValidator;
+import org.eclipse.jface.dialogs.InputDialog;
+import org.eclipse.jface.viewers.ISelection;
+import org.eclipse.jface.viewers.IStructuredSelection;
+import org.eclipse.jface.window.Window;
+import org.eclipse.osgi.util.NLS;
+import org.eclipse.rse.subsystems.files.core.servicesubsystem.AbstractRemoteFile;
+import org.eclipse.ui.IObjectActionDelegate;
+import org.eclipse.ui.IWorkbenchPart;
+import org.eclipse.ui.PartInitException;
+
+/**
+ * Searches the files of all the instances of the selected application, and
+ * shows the matches in the {@link RemoteSearchView}.
+ */
+public class SearchRemoteFilesAction implements IObjectActionDelegate {
+
+	/**
+	 * Directory searched in each instance, relative to its home directory,
+	 * which contains the application and its logs
+	 */
+	private static final String SEARCH_PATH = "."; //$NON-NLS-1$
+
+	private IWorkbenchPart part;
+
+	private ApplicationResource application;
+
+	public void setActivePart(IAction action, IWorkbenchPart targetPart) {
+		this.part = targetPart;
+	}
+
+	public void selectionChanged(IAction action, ISelection selection) {
+		application = null;
+		if (selection instanceof IStructuredSelection) {
+			Object element = ((IStructuredSelection) selection).getFirstElement();
+			if (element instanceof AbstractRemoteFile
+					&& ((AbstractRemoteFile) element).getHostFile() instanceof ApplicationResource) {
+				application = (ApplicationResource) ((AbstractRemoteFile) element).getHostFile();
+			}
+		}
+		action.setEnabled(application != null);
+	}
+
+	public void run(IAction action) {
+		if (application == null || part == null) {
+			return;
+		}
+		String appName = application.getCloudApplication().getName();
+		InputDialog dialog = new InputDialog(part.getSite().getShell(), Messages.SearchRemoteFilesAction_TITLE,
+				NLS.bind(Messages.SearchRemoteFilesAction_PATTERN, appName), null, new IInputValidator() {
+					public String isValid(String newText) {
+						// Any non-empty pattern is passed to the search
+						// command, which reports invalid ones
+						return newText.length() > 0 ? null : ""; //$NON-NLS-1$
+					}
+				});
+		if (dialog.open() != Window.OK) {
+			return;
+		}
+		RemoteFileSearch search = new RemoteFileSearch(application.getServer().getBehaviour(),
+				application.getCloudApplication(), SEARCH_PATH, dialog.getValue());
+		try {
+			RemoteSearchView view = (RemoteSearchView) part.getSite().getPage().showView(RemoteSearchView.ID);
+			view.search(search);
+		}
+		catch (PartInitException e) {
+			CloudFoundryRsePlugin.logError("Unable to open the remote search view", e); //$NON-NLS-1$
+		}
+	}
+}
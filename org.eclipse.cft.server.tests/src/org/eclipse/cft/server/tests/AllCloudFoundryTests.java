@@ -20,16 +20,32 @@
  ********************************************************************************/
 package org.eclipse.cft.server.tests;
 
+import org.eclipse.cft.server.tests.core.ApplicationLogBufferTest;
+import org.eclipse.cft.server.tests.core.ApplicationStartSignalTest;
 import org.eclipse.cft.server.tests.core.BehaviourOperationsTest;
+import org.eclipse.cft.server.tests.core.ClientRequestExecutorTest;
 import org.eclipse.cft.server.tests.core.CloudFoundryClientConnectionTest;
 import org.eclipse.cft.server.tests.core.CloudFoundryProxyTest;
 import org.eclipse.cft.server.tests.core.CloudFoundryServerBehaviourTest;
 import org.eclipse.cft.server.tests.core.CloudFoundryServerTest;
 import org.eclipse.cft.server.tests.core.CloudFoundryServicesTest;
+import org.eclipse.cft.server.tests.core.CloudMetricsTest;
 import org.eclipse.cft.server.tests.core.CloudUtilTest;
+import org.eclipse.cft.server.tests.core.ConcurrentPublishTest;
+import org.eclipse.cft.server.tests.core.DeployedResourceCacheTest;
 import org.eclipse.cft.server.tests.core.DeploymentURLTest;
+import org.eclipse.cft.server.tests.core.FileDownloadTest;
+import org.eclipse.cft.server.tests.core.HttpConnectionPoolTest;
+import org.eclipse.cft.server.tests.core.HttpTraceFileWriterTest;
+import org.eclipse.cft.server.tests.core.HttpTraceSinkTest;
+import org.eclipse.cft.server.tests.core.ModuleMappingStoreTest;
 import org.eclipse.cft.server.tests.core.ModuleRefreshTest;
+import org.eclipse.cft.server.tests.core.RecentLogCacheTest;
+import org.eclipse.cft.server.tests.core.RemoteFileSearchTest;
+import org.eclipse.cft.server.tests.core.ResourcePageReaderTest;
+import org.eclipse.cft.server.tests.core.RetryPolicyTest;
 import org.eclipse.cft.server.tests.core.ServerCredentialsStoreTest;
+import org.eclipse.cft.server.tests.core.ZipArchivePackagerTest;
 import org.eclipse.cft.server.tests.sts.util.ManagedTestSuite;
 
 import junit.framework.Test;
@@ -52,11 +68,27 @@ public class AllCloudFoundryTests {
 		suite.addTestSuite(BehaviourOperationsTest.class);
 		suite.addTestSuite(ModuleRefreshTest.class);
 		suite.addTestSuite(CloudFoundryServerBehaviourTest.class);
+		suite.addTestSuite(ConcurrentPublishTest.class);
 
 		suite.addTestSuite(CloudFoundryProxyTest.class);
 		suite.addTestSuite(ServerCredentialsStoreTest.class);
 		suite.addTestSuite(CloudFoundryServerTest.class);
 		suite.addTestSuite(CloudUtilTest.class);
+		suite.addTestSuite(DeployedResourceCacheTest.class);
+		suite.addTestSuite(ModuleMappingStoreTest.class);
+		suite.addTestSuite(ZipArchivePackagerTest.class);
+		suite.addTestSuite(HttpTraceSinkTest.class);
+		suite.addTestSuite(HttpTraceFileWriterTest.class);
+		suite.addTestSuite(ClientRequestExecutorTest.class);
+		suite.addTestSuite(RetryPolicyTest.class);
+		suite.addTestSuite(RecentLogCacheTest.class);
+		suite.addTestSuite(ApplicationLogBufferTest.class);
+		suite.addTestSuite(CloudMetricsTest.class);
+		suite.addTestSuite(ApplicationStartSignalTest.class);
+		suite.addTestSuite(HttpConnectionPoolTest.class);
+		suite.addTestSuite(ResourcePageReaderTest.class);
+		suite.addTestSuite(FileDownloadTest.class);
+		suite.addTestSuite(RemoteFileSearchTest.class);
 
 		suite.addTestSuite(DeploymentURLTest.class);
 		suite.addTestSuite(CloudFoundryServicesTest.class);
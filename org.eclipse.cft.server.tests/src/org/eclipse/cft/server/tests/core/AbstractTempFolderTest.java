@@ -0,0 +1,53 @@
+/*******************************************************************************
+ * Copyright (c) 2017 Pivotal Software, Inc.
+ *
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * and Apache License v2.0 which accompanies this distribution.
+ *
+ * The Eclipse Public License is available at
+ *
+ * http://www.eclipse.org/legal/epl-v10.html
+ *
+ * and the Apache License v2.0 is available at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * You may elect to redistribute this code under either of these licenses.
+ *
+ *  Contributors:
+ *     Pivotal Software, Inc. - initial API and implementation
+ ********************************************************************************/
+package org.eclipse.cft.server.tests.core;
+
+import java.io.File;
+
+import junit.framework.TestCase;
+
+/**
+ * Base class of tests of local stores, which provides each test with an
+ * empty folder that is deleted after the test.
+ */
+public abstract class AbstractTempFolderTest extends TestCase {
+
+	protected File location;
+
+	@Override
+	protected void setUp() throws Exception {
+		location = File.createTempFile("cft-" + getClass().getSimpleName(), "");
+		location.delete();
+		location.mkdirs();
+	}
+
+	@Override
+	protected void tearDown() throws Exception {
+		File[] files = location.listFiles();
+		if (files != null) {
+			for (File file : files) {
+				file.delete();
+			}
+		}
+		location.delete();
+	}
+
+}
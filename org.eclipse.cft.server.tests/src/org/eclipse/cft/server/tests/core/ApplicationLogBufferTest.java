@@ -0,0 +1,184 @@
+/*******************************************************************************
+ * Copyright (c) 2017 Pivotal Software, Inc.
+ *
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * and Apache License v2.0 which accompanies this distribution.
+ *
+ * The Eclipse Public License is available at
+ *
+ * http://www.eclipse.org/legal/epl-v10.html
+ *
+ * and the Apache License v2.0 is available at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * You may elect to redistribute this code under either of these licenses.
+ *
+ *  Contributors:
+ *     Pivotal Software, Inc. - initial API and implementation
+ ********************************************************************************/
+package org.eclipse.cft.server.tests.core;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+import junit.framework.TestCase;
+
+import org.eclipse.cft.server.core.internal.log.CloudLog;
+import org.eclipse.cft.server.core.internal.log.LogContentType;
+import org.eclipse.cft.server.ui.internal.console.ApplicationLogBuffer;
+
+public class ApplicationLogBufferTest extends TestCase {
+
+	private static final LogContentType OUT = LogContentType.APPLICATION_LOG_STD_OUT;
+
+	private static final LogContentType ERR = LogContentType.APPLICATION_LOG_STS_ERROR;
+
+	public void testCoalescesLogsOfSameType() {
+		RecordingSink sink = new RecordingSink();
+		TestLogBuffer buffer = new TestLogBuffer(8, sink);
+		assertTrue(buffer.offer(new CloudLog("a", OUT)));
+		assertTrue(buffer.offer(new CloudLog("b", OUT)));
+		assertTrue(buffer.offer(new CloudLog("c", ERR)));
+		assertTrue(buffer.offer(new CloudLog("d", OUT)));
+
+		assertEquals(4, buffer.drainNow());
+		assertEquals(Arrays.asList("OUT:ab", "ERR:c", "OUT:d"), sink.events);
+		assertEquals(0, buffer.getBufferedCount());
+	}
+
+	public void testWrapsAround() {
+		RecordingSink sink = new RecordingSink();
+		TestLogBuffer buffer = new TestLogBuffer(4, sink);
+		int next = 0;
+		for (int round = 0; round < 5; round++) {
+			StringBuilder expected = new StringBuilder();
+			for (int i = 0; i < 3; i++, next++) {
+				assertTrue(buffer.offer(new CloudLog(next + ",", OUT)));
+				expected.append(next).append(',');
+			}
+			assertEquals(3, buffer.drainNow());
+			assertEquals("OUT:" + expected, sink.events.get(round));
+		}
+		assertEquals(5, sink.events.size());
+	}
+
+	public void testCapacityRoundedUpToPowerOfTwo() {
+		TestLogBuffer buffer = new TestLogBuffer(3, new RecordingSink());
+		for (int i = 0; i < 4; i++) {
+			assertTrue(buffer.offer(new CloudLog("log", OUT)));
+		}
+		assertFalse(buffer.offer(new CloudLog("log", OUT)));
+		assertEquals(4, buffer.getBufferedCount());
+	}
+
+	public void testDropsNewLogsWhenFull() {
+		RecordingSink sink = new RecordingSink();
+		TestLogBuffer buffer = new TestLogBuffer(4, sink);
+		for (int i = 0; i < 6; i++) {
+			assertEquals(i < 4, buffer.offer(new CloudLog(Integer.toString(i), OUT)));
+		}
+
+		// Drops are reported before the logs that were kept
+		assertEquals(4, buffer.drainNow());
+		assertEquals(Arrays.asList("dropped:2", "OUT:0123"), sink.events);
+
+		// Already reported drops are not reported again
+		assertTrue(buffer.offer(new CloudLog("4", OUT)));
+		assertEquals(1, buffer.drainNow());
+		assertEquals(Arrays.asList("dropped:2", "OUT:0123", "OUT:4"), sink.events);
+
+		for (int i = 5; i < 10; i++) {
+			assertEquals(i < 9, buffer.offer(new CloudLog(Integer.toString(i), ERR)));
+		}
+		assertEquals(4, buffer.drainNow());
+		assertEquals(Arrays.asList("dropped:2", "OUT:0123", "OUT:4", "dropped:1", "ERR:5678"), sink.events);
+	}
+
+	public void testDropsAreReportedWithoutLogs() {
+		RecordingSink sink = new RecordingSink();
+		TestLogBuffer buffer = new TestLogBuffer(2, sink);
+		buffer.offer(new CloudLog("0", OUT));
+		buffer.offer(new CloudLog("1", OUT));
+		buffer.offer(new CloudLog("2", OUT));
+		assertEquals(2, buffer.drainNow());
+		assertEquals(0, buffer.drainNow());
+		assertEquals(Arrays.asList("dropped:1", "OUT:01"), sink.events);
+	}
+
+	public void testKeepsOrderAcrossBatches() {
+		RecordingSink sink = new RecordingSink();
+		TestLogBuffer buffer = new TestLogBuffer(4096, sink);
+		int count = 3000;
+		for (int i = 0; i < count; i++) {
+			assertTrue(buffer.offer(new CloudLog(i + ",", OUT)));
+		}
+
+		int first = buffer.drainNow();
+		assertTrue(first > 0 && first < count);
+		int second = buffer.drainNow();
+		assertEquals(count, first + second);
+		assertEquals(0, buffer.drainNow());
+
+		assertEquals(2, sink.events.size());
+		StringBuilder expected = new StringBuilder("OUT:");
+		for (int i = 0; i < first; i++) {
+			expected.append(i).append(',');
+		}
+		assertEquals(expected.toString(), sink.events.get(0));
+		assertTrue(sink.events.get(1).startsWith("OUT:" + first + ","));
+		assertTrue(sink.events.get(1).endsWith("," + (count - 1) + ","));
+	}
+
+	public void testCloseWritesBufferedLogs() {
+		RecordingSink sink = new RecordingSink();
+		TestLogBuffer buffer = new TestLogBuffer(4096, sink);
+		int count = 3000;
+		for (int i = 0; i < count; i++) {
+			buffer.offer(new CloudLog("x", i % 2 == 0 ? OUT : ERR));
+		}
+		buffer.close();
+
+		assertEquals(0, buffer.getBufferedCount());
+		assertEquals(count, sink.events.size());
+	}
+
+	public void testIgnoresLogsWithoutMessage() {
+		RecordingSink sink = new RecordingSink();
+		TestLogBuffer buffer = new TestLogBuffer(4, sink);
+		assertFalse(buffer.offer(null));
+		assertFalse(buffer.offer(new CloudLog(null, OUT)));
+		assertEquals(0, buffer.getBufferedCount());
+		assertEquals(0, buffer.drainNow());
+		assertTrue(sink.events.isEmpty());
+	}
+
+	/**
+	 * Drains on the test thread instead of the drain task
+	 */
+	protected static class TestLogBuffer extends ApplicationLogBuffer {
+
+		public TestLogBuffer(int capacity, LogSink sink) {
+			super(capacity, sink);
+		}
+
+		public int drainNow() {
+			return drain();
+		}
+	}
+
+	protected static class RecordingSink implements ApplicationLogBuffer.LogSink {
+
+		final List<String> events = new ArrayList<String>();
+
+		public void write(LogContentType type, String content) {
+			events.add((type == OUT ? "OUT:" : "ERR:") + content);
+		}
+
+		public void dropped(long count) {
+			events.add("dropped:" + count);
+		}
+	}
+}
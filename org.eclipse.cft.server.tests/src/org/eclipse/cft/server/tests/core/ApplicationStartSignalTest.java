@@ -0,0 +1,82 @@
+/*******************************************************************************
+ * Copyright (c) 2017 Pivotal Software, Inc.
+ *
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * and Apache License v2.0 which accompanies this distribution.
+ *
+ * The Eclipse Public License is available at
+ *
+ * http://www.eclipse.org/legal/epl-v10.html
+ *
+ * and the Apache License v2.0 is available at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * You may elect to redistribute this code under either of these licenses.
+ *
+ *  Contributors:
+ *     Pivotal Software, Inc. - initial API and implementation
+ ********************************************************************************/
+package org.eclipse.cft.server.tests.core;
+
+import org.eclipse.cft.server.core.internal.ApplicationStartSignal;
+import org.eclipse.cft.server.core.internal.log.CloudLog;
+import org.eclipse.cft.server.core.internal.log.LogContentType;
+
+import junit.framework.TestCase;
+
+public class ApplicationStartSignalTest extends TestCase {
+
+	private static CloudLog v1Log(String sourceName, String message) {
+		return new CloudLog("appId", message, null, LogContentType.APPLICATION_LOG_STD_OUT, sourceName, "0");
+	}
+
+	private static CloudLog v2Log(String sourceType, String message) {
+		return new CloudLog("appId", message, null, LogContentType.APPLICATION_LOG_STD_OUT, "0", sourceType);
+	}
+
+	public void testStaging() {
+		assertEquals(ApplicationStartSignal.STAGING_COMPLETE,
+				ApplicationStartSignal.getSignal(v1Log("STG", "Staging complete")));
+		assertEquals(ApplicationStartSignal.STAGING_FAILED,
+				ApplicationStartSignal.getSignal(v2Log("STG", "Failed to stage application: staging failed")));
+		assertNull(ApplicationStartSignal.getSignal(v1Log("STG", "Downloading app package...")));
+	}
+
+	public void testInstances() {
+		assertEquals(ApplicationStartSignal.INSTANCE_STARTING,
+				ApplicationStartSignal.getSignal(v2Log("CELL", "Creating container")));
+		assertEquals(ApplicationStartSignal.INSTANCE_HEALTHY,
+				ApplicationStartSignal.getSignal(v2Log("CELL", "Container became healthy")));
+		assertEquals(ApplicationStartSignal.INSTANCE_STARTING,
+				ApplicationStartSignal.getSignal(v1Log("DEA", "Starting app instance (index 0) with guid abc")));
+		assertEquals(ApplicationStartSignal.INSTANCE_OUTPUT,
+				ApplicationStartSignal.getSignal(v2Log("APP/PROC/WEB", "Started Application in 3.2 seconds")));
+		assertEquals(ApplicationStartSignal.INSTANCE_OUTPUT,
+				ApplicationStartSignal.getSignal(v1Log("App", "Listening on port 8080")));
+	}
+
+	public void testApi() {
+		assertEquals(ApplicationStartSignal.INSTANCE_CRASHED, ApplicationStartSignal.getSignal(v1Log("API",
+				"App instance exited with guid abc payload: {\"index\"=>0, \"reason\"=>\"CRASHED\"}")));
+		assertEquals(ApplicationStartSignal.APPLICATION_STOPPED, ApplicationStartSignal
+				.getSignal(v2Log("API", "Updated app with guid abc ({\"state\"=>\"STOPPED\"})")));
+		assertNull(ApplicationStartSignal
+				.getSignal(v2Log("API", "Updated app with guid abc ({\"state\"=>\"STARTED\"})")));
+	}
+
+	public void testStateChanges() {
+		assertTrue(ApplicationStartSignal.INSTANCE_HEALTHY.isStateChange());
+		assertTrue(ApplicationStartSignal.INSTANCE_CRASHED.isStateChange());
+		assertTrue(ApplicationStartSignal.APPLICATION_STOPPED.isStateChange());
+		assertFalse(ApplicationStartSignal.INSTANCE_OUTPUT.isStateChange());
+		assertFalse(ApplicationStartSignal.STAGING_COMPLETE.isStateChange());
+	}
+
+	public void testUnrelatedLogs() {
+		assertNull(ApplicationStartSignal.getSignal(null));
+		assertNull(ApplicationStartSignal.getSignal(v2Log("RTR", "GET / HTTP/1.1 200")));
+		assertNull(ApplicationStartSignal.getSignal(new CloudLog("local message", LogContentType.APPLICATION_LOG_UNKNOWN)));
+	}
+}
@@ -0,0 +1,136 @@
+/*******************************************************************************
+ * Copyright (c) 2017 Pivotal Software, Inc.
+ *
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * and Apache License v2.0 which accompanies this distribution.
+ *
+ * The Eclipse Public License is available at
+ *
+ * http://www.eclipse.org/legal/epl-v10.html
+ *
+ * and the Apache License v2.0 is available at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * You may elect to redistribute this code under either of these licenses.
+ *
+ *  Contributors:
+ *     Pivotal Software, Inc. - initial API and implementation
+ ********************************************************************************/
+package org.eclipse.cft.server.tests.core;
+
+import java.util.concurrent.Callable;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Future;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.TimeUnit;
+
+import org.eclipse.cft.server.core.internal.client.ClientRequestExecutor;
+
+import junit.framework.TestCase;
+
+public class ClientRequestExecutorTest extends TestCase {
+
+	private static final long TIMEOUT = 5000;
+
+	private ExecutorService executor;
+
+	@Override
+	protected void tearDown() throws Exception {
+		if (executor != null) {
+			executor.shutdownNow();
+		}
+	}
+
+	public void testCancelledTaskDoesNotInterruptNextTask() throws Exception {
+		executor = ClientRequestExecutor.newBoundedExecutor(1);
+		final CountDownLatch started = new CountDownLatch(1);
+		Future<?> cancelled = executor.submit(new Runnable() {
+			public void run() {
+				started.countDown();
+				try {
+					new CountDownLatch(1).await();
+				}
+				catch (InterruptedException e) {
+					// Restore the interrupt, as well-behaved tasks do
+					Thread.currentThread().interrupt();
+				}
+			}
+		});
+		// Queued until the first task completes, and run on the same thread
+		Future<Boolean> next = executor.submit(new Callable<Boolean>() {
+			public Boolean call() throws Exception {
+				return Thread.currentThread().isInterrupted();
+			}
+		});
+
+		assertTrue(started.await(TIMEOUT, TimeUnit.MILLISECONDS));
+		cancelled.cancel(true);
+
+		assertFalse(next.get(TIMEOUT, TimeUnit.MILLISECONDS));
+	}
+
+	public void testTasksBounded() throws Exception {
+		executor = ClientRequestExecutor.newBoundedExecutor(2);
+		final CountDownLatch release = new CountDownLatch(1);
+		final int[] running = new int[2];
+		Future<?>[] futures = new Future<?>[6];
+		for (int i = 0; i < futures.length; i++) {
+			futures[i] = executor.submit(new Runnable() {
+				public void run() {
+					synchronized (running) {
+						running[0]++;
+						running[1] = Math.max(running[1], running[0]);
+					}
+					try {
+						release.await(TIMEOUT, TimeUnit.MILLISECONDS);
+					}
+					catch (InterruptedException e) {
+						Thread.currentThread().interrupt();
+					}
+					synchronized (running) {
+						running[0]--;
+					}
+				}
+			});
+		}
+		release.countDown();
+		for (Future<?> future : futures) {
+			future.get(TIMEOUT, TimeUnit.MILLISECONDS);
+		}
+		synchronized (running) {
+			assertEquals(0, running[0]);
+			assertTrue(running[1] <= 2);
+		}
+	}
+
+	public void testShutdownRejectsOnlyOwnTasks() throws Exception {
+		executor = ClientRequestExecutor.newBoundedExecutor(1);
+		ExecutorService other = ClientRequestExecutor.newBoundedExecutor(1);
+		try {
+			executor.shutdown();
+			assertTrue(executor.isShutdown());
+			try {
+				executor.execute(new Runnable() {
+					public void run() {
+					}
+				});
+				fail("Task accepted after shutdown");
+			}
+			catch (RejectedExecutionException e) {
+				// Expected
+			}
+			assertTrue(other.submit(new Callable<Boolean>() {
+				public Boolean call() {
+					return true;
+				}
+			}).get(TIMEOUT, TimeUnit.MILLISECONDS));
+		}
+		finally {
+			other.shutdown();
+		}
+	}
+
+}
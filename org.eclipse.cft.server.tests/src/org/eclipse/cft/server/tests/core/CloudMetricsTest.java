@@ -0,0 +1,139 @@
+/*******************************************************************************
+ * Copyright (c) 2017 Pivotal Software, Inc.
+ *
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * and Apache License v2.0 which accompanies this distribution.
+ *
+ * The Eclipse Public License is available at
+ *
+ * http://www.eclipse.org/legal/epl-v10.html
+ *
+ * and the Apache License v2.0 is available at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * You may elect to redistribute this code under either of these licenses.
+ *
+ *  Contributors:
+ *     Pivotal Software, Inc. - initial API and implementation
+ ********************************************************************************/
+package org.eclipse.cft.server.tests.core;
+
+import java.io.File;
+import java.nio.file.Files;
+import java.util.List;
+
+import org.eclipse.cft.server.core.internal.metrics.CloudMetrics;
+import org.eclipse.cft.server.core.internal.metrics.LatencyHistogram;
+import org.eclipse.cft.server.core.internal.metrics.MetricsTimer;
+import org.eclipse.cft.server.core.internal.metrics.RequestMetrics;
+
+import junit.framework.TestCase;
+
+public class CloudMetricsTest extends TestCase {
+
+	public void testEmptyHistogram() {
+		LatencyHistogram histogram = new LatencyHistogram();
+		assertEquals(0, histogram.getCount());
+		assertEquals(0, histogram.getMean());
+		assertEquals(0, histogram.getPercentile(99));
+	}
+
+	public void testHistogramPercentiles() {
+		LatencyHistogram histogram = new LatencyHistogram();
+		for (int i = 0; i < 90; i++) {
+			histogram.record(8);
+		}
+		for (int i = 0; i < 10; i++) {
+			histogram.record(1500);
+		}
+		assertEquals(100, histogram.getCount());
+		assertEquals(1500, histogram.getMax());
+		assertEquals((90 * 8 + 10 * 1500) / 100, histogram.getMean());
+		assertEquals(10, histogram.getPercentile(50));
+		assertEquals(10, histogram.getPercentile(90));
+		// Bucket bound of 2000ms is capped by the largest value
+		assertEquals(1500, histogram.getPercentile(99));
+	}
+
+	public void testHistogramAboveLastBucket() {
+		LatencyHistogram histogram = new LatencyHistogram();
+		histogram.record(-5);
+		histogram.record(2 * 60 * 60 * 1000);
+		assertEquals(1, histogram.getPercentile(50));
+		assertEquals(2 * 60 * 60 * 1000, histogram.getPercentile(100));
+	}
+
+	public void testRequestsAndRetries() {
+		CloudMetrics metrics = new CloudMetrics();
+		metrics.recordRequest("Getting application", 20, false);
+		metrics.recordRetry("Getting application");
+		metrics.recordRequest("Getting application", 40, true);
+
+		List<RequestMetrics> all = metrics.getMetrics();
+		assertEquals(1, all.size());
+		RequestMetrics request = all.get(0);
+		assertEquals(RequestMetrics.Kind.REQUEST, request.getKind());
+		assertEquals(2, request.getCount());
+		assertEquals(1, request.getErrors());
+		assertEquals(1, request.getRetries());
+		assertEquals(30, request.getLatency().getMean());
+	}
+
+	public void testPhaseTimer() {
+		CloudMetrics metrics = new CloudMetrics();
+		MetricsTimer timer = metrics.startPhase("Push", CloudMetrics.PHASE_UPLOAD);
+		timer.recordBytes(1024);
+		timer.succeeded();
+		timer.stop();
+		// Stopping again does not record another run
+		timer.stop();
+
+		MetricsTimer failed = metrics.startOperation("Push");
+		failed.stop();
+
+		List<RequestMetrics> all = metrics.getMetrics();
+		assertEquals(2, all.size());
+		assertEquals(RequestMetrics.Kind.OPERATION, all.get(0).getKind());
+		assertEquals(1, all.get(0).getErrors());
+		assertEquals(RequestMetrics.Kind.PHASE, all.get(1).getKind());
+		assertEquals("Push / upload", all.get(1).getName());
+		assertEquals(1, all.get(1).getCount());
+		assertEquals(0, all.get(1).getErrors());
+		assertEquals(1024, all.get(1).getBytes());
+	}
+
+	public void testBoundedNumberOfMetrics() {
+		CloudMetrics metrics = new CloudMetrics();
+		for (int i = 0; i < CloudMetrics.MAX_METRICS + 10; i++) {
+			metrics.recordRequest("Request " + i, 1, false);
+		}
+		List<RequestMetrics> all = metrics.getMetrics();
+		assertEquals(CloudMetrics.MAX_METRICS + 1, all.size());
+		RequestMetrics other = null;
+		for (RequestMetrics metric : all) {
+			if (CloudMetrics.OTHER.equals(metric.getName())) {
+				other = metric;
+			}
+		}
+		assertNotNull(other);
+		assertEquals(10, other.getCount());
+	}
+
+	public void testExport() throws Exception {
+		CloudMetrics metrics = new CloudMetrics();
+		metrics.recordRequest("Starting \"app\"", 100, false);
+		File file = File.createTempFile("cloudMetrics", ".csv");
+		try {
+			metrics.export(file);
+			List<String> lines = Files.readAllLines(file.toPath());
+			assertEquals(2, lines.size());
+			assertEquals("kind,name,count,errors,retries,bytes,mean,p50,p90,p99,max", lines.get(0));
+			assertEquals("REQUEST,\"Starting \"\"app\"\"\",1,0,0,0,100,100,100,100,100", lines.get(1));
+		}
+		finally {
+			file.delete();
+		}
+	}
+}
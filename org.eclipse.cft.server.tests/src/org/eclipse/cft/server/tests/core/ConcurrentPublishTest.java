@@ -0,0 +1,102 @@
+/*******************************************************************************
+ * Copyright (c) 2017 Pivotal Software, Inc.
+ *
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * and Apache License v2.0 which accompanies this distribution.
+ *
+ * The Eclipse Public License is available at
+ *
+ * http://www.eclipse.org/legal/epl-v10.html
+ *
+ * and the Apache License v2.0 is available at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * You may elect to redistribute this code under either of these licenses.
+ *
+ *  Contributors:
+ *     Pivotal Software, Inc. - initial API and implementation
+ ********************************************************************************/
+package org.eclipse.cft.server.tests.core;
+
+import java.util.HashMap;
+import java.util.Map;
+
+import org.eclipse.cft.server.core.internal.CloudFoundryPlugin;
+import org.eclipse.cft.server.core.internal.CloudFoundryServer;
+import org.eclipse.cft.server.core.internal.client.CloudFoundryApplicationModule;
+import org.eclipse.cft.server.core.internal.client.DeploymentConfiguration;
+import org.eclipse.cft.server.tests.util.CloudFoundryTestUtil;
+import org.eclipse.cft.server.tests.util.TestCallback;
+import org.eclipse.core.resources.IProject;
+import org.eclipse.core.runtime.CoreException;
+import org.eclipse.core.runtime.IProgressMonitor;
+import org.eclipse.core.runtime.IStatus;
+import org.eclipse.core.runtime.NullProgressMonitor;
+import org.eclipse.wst.server.core.IModule;
+import org.eclipse.wst.server.core.IServer;
+
+/**
+ * Publishes several independent modules at the same time, through the WST
+ * publish API, and checks the publish result and the state of each module.
+ */
+public class ConcurrentPublishTest extends AbstractCloudFoundryTest {
+
+	private static final String SECOND_PROJECT_NAME = "dynamic-webapp";
+
+	public void testConcurrentWSTPublish() throws Exception {
+		IProject firstProject = createWebApplicationProject();
+		IProject secondProject = harness.createProject(SECOND_PROJECT_NAME);
+		harness.addModule(secondProject);
+
+		Map<String, String> appNames = new HashMap<String, String>();
+		appNames.put(firstProject.getName(), harness.getWebAppName("concurrentPublish1"));
+		appNames.put(secondProject.getName(), harness.getWebAppName("concurrentPublish2"));
+		CloudFoundryPlugin.setCallback(new ModuleAppNameCallback(appNames));
+
+		CloudFoundryPlugin.getDefault().setPublishParallelism(2);
+		try {
+			IStatus status = server.publish(IServer.PUBLISH_INCREMENTAL, new NullProgressMonitor());
+			assertTrue(status.toString(), status.getSeverity() != IStatus.ERROR);
+		}
+		finally {
+			CloudFoundryPlugin.getDefault()
+					.setPublishParallelism(CloudFoundryPlugin.DEFAULT_PUBLISH_PARALLELISM_PREFERENCE_VAL);
+		}
+
+		for (Map.Entry<String, String> entry : appNames.entrySet()) {
+			IModule module = getWstModule(entry.getKey());
+			CloudFoundryApplicationModule appModule = assertCloudFoundryModuleExists(module, entry.getValue());
+			assertEquals(entry.getValue(), appModule.getDeployedApplicationName());
+			assertNotNull("Expected " + entry.getValue() + " to be deployed", appModule.getApplication());
+
+			IModule[] modules = new IModule[] { module };
+			assertEquals(IServer.PUBLISH_STATE_NONE, server.getModulePublishState(modules));
+			assertEquals(IServer.STATE_STOPPED, server.getModuleState(modules));
+		}
+	}
+
+	/**
+	 * Deploys each module, without starting it, under the application name
+	 * given for its project
+	 */
+	protected static class ModuleAppNameCallback extends TestCallback {
+
+		private final Map<String, String> appNames;
+
+		public ModuleAppNameCallback(Map<String, String> appNames) {
+			super(null, CloudFoundryTestUtil.DEFAULT_TEST_APP_MEMORY, false, null, null, null);
+			this.appNames = appNames;
+		}
+
+		@Override
+		public DeploymentConfiguration prepareForDeployment(CloudFoundryServer server,
+				CloudFoundryApplicationModule module, IProgressMonitor monitor) throws CoreException {
+			String appName = appNames.get(module.getLocalModule().getName());
+			return new TestCallback(appName, CloudFoundryTestUtil.DEFAULT_TEST_APP_MEMORY, false, null, null, null)
+					.prepareForDeployment(server, module, monitor);
+		}
+	}
+
+}
@@ -0,0 +1,139 @@
+/*******************************************************************************
+ * Copyright (c) 2017 Pivotal Software, Inc.
+ *
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * and Apache License v2.0 which accompanies this distribution.
+ *
+ * The Eclipse Public License is available at
+ *
+ * http://www.eclipse.org/legal/epl-v10.html
+ *
+ * and the Apache License v2.0 is available at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * You may elect to redistribute this code under either of these licenses.
+ *
+ *  Contributors:
+ *     Pivotal Software, Inc. - initial API and implementation
+ ********************************************************************************/
+package org.eclipse.cft.server.tests.core;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.RandomAccessFile;
+import java.util.Arrays;
+
+import org.eclipse.cft.server.core.internal.DeployedResourceCache;
+import org.eclipse.cft.server.core.internal.DeployedResourceCache.CachedDeployedApplication;
+import org.eclipse.cft.server.core.internal.DeployedResourceCache.DeployedResourceEntry;
+
+public class DeployedResourceCacheTest extends AbstractTempFolderTest {
+
+	public void testInMemoryCache() {
+		DeployedResourceCache cache = new DeployedResourceCache();
+		CachedDeployedApplication app = new CachedDeployedApplication("app");
+		cache.add(app, new DeployedResourceEntry(new byte[] { 1, 2, 3 }, 10, "WEB-INF/web.xml"));
+
+		assertEquals(10, cache.getEntry(app, "WEB-INF/web.xml").getFileSize());
+		assertNull(cache.getEntry(app, "index.html"));
+		assertNull(cache.getEntry(new CachedDeployedApplication("otherApp"), "WEB-INF/web.xml"));
+	}
+
+	public void testPersistedAcrossInstances() {
+		DeployedResourceCache cache = new DeployedResourceCache(location);
+		CachedDeployedApplication app = new CachedDeployedApplication("my app/1");
+		cache.add(app, new DeployedResourceEntry(new byte[] { 1, 2, 3 }, 10, "WEB-INF/web.xml", 1000));
+		cache.add(app, new DeployedResourceEntry(new byte[] { 4, 5, 6 }, 20, "index.html", 2000));
+		cache.add(app, new DeployedResourceEntry(new byte[] { 7, 8, 9 }, 30, "index.html", 3000));
+		cache.dispose();
+
+		DeployedResourceCache restored = new DeployedResourceCache(location);
+		DeployedResourceEntry entry = restored.getEntry(app, "index.html");
+		assertNotNull(entry);
+		assertTrue(Arrays.equals(new byte[] { 7, 8, 9 }, entry.getSha1()));
+		assertEquals(30, entry.getFileSize());
+		assertEquals(3000, entry.getLastModified());
+
+		entry = restored.getEntry(app, "WEB-INF/web.xml");
+		assertNotNull(entry);
+		assertEquals(10, entry.getFileSize());
+		restored.dispose();
+	}
+
+	public void testCorruptIndexDiscarded() throws Exception {
+		DeployedResourceCache cache = new DeployedResourceCache(location);
+		CachedDeployedApplication app = new CachedDeployedApplication("app");
+		cache.add(app, new DeployedResourceEntry(new byte[] { 1 }, 1, "a.txt", 1));
+		cache.dispose();
+
+		File[] files = location.listFiles();
+		assertEquals(1, files.length);
+		FileOutputStream out = new FileOutputStream(files[0]);
+		out.write(new byte[] { 0, 1, 2 });
+		out.close();
+
+		DeployedResourceCache restored = new DeployedResourceCache(location);
+		assertNull(restored.getEntry(app, "a.txt"));
+		restored.dispose();
+	}
+
+	public void testIncompleteRecordIgnored() throws Exception {
+		DeployedResourceCache cache = new DeployedResourceCache(location);
+		CachedDeployedApplication app = new CachedDeployedApplication("server", "app");
+		cache.add(app, new DeployedResourceEntry(new byte[] { 1 }, 1, "a.txt", 1));
+		cache.add(app, new DeployedResourceEntry(new byte[] { 2 }, 2, "b.txt", 2));
+		cache.dispose();
+
+		// Simulate a crash while the last record was being written
+		File[] files = location.listFiles();
+		assertEquals(1, files.length);
+		RandomAccessFile raf = new RandomAccessFile(files[0], "rw");
+		raf.setLength(raf.length() - 2);
+		raf.close();
+
+		DeployedResourceCache restored = new DeployedResourceCache(location);
+		assertEquals(1, restored.getEntry(app, "a.txt").getFileSize());
+		assertNull(restored.getEntry(app, "b.txt"));
+		restored.add(app, new DeployedResourceEntry(new byte[] { 3 }, 3, "c.txt", 3));
+		restored.dispose();
+
+		DeployedResourceCache rewritten = new DeployedResourceCache(location);
+		assertEquals(1, rewritten.getEntry(app, "a.txt").getFileSize());
+		assertEquals(3, rewritten.getEntry(app, "c.txt").getFileSize());
+		rewritten.dispose();
+	}
+
+	public void testServersCachedSeparately() {
+		DeployedResourceCache cache = new DeployedResourceCache(location);
+		CachedDeployedApplication app = new CachedDeployedApplication("user@https://api.one.com", "app");
+		cache.add(app, new DeployedResourceEntry(new byte[] { 1 }, 1, "a.txt", 1));
+		cache.dispose();
+
+		DeployedResourceCache restored = new DeployedResourceCache(location);
+		assertEquals(1, restored.getEntry(app, "a.txt").getFileSize());
+		assertNull(restored.getEntry(new CachedDeployedApplication("user@https://api.two.com", "app"), "a.txt"));
+		restored.dispose();
+	}
+
+	public void testStaleEntry() throws Exception {
+		File file = File.createTempFile("cft-resource", ".txt");
+		try {
+			FileOutputStream out = new FileOutputStream(file);
+			out.write(new byte[] { 1, 2, 3 });
+			out.close();
+
+			DeployedResourceEntry entry = new DeployedResourceEntry(new byte[] { 1 }, 3, file.getName(),
+					file.lastModified());
+			assertFalse(entry.isStale(file));
+
+			assertTrue(new DeployedResourceEntry(new byte[] { 1 }, 4, file.getName(), file.lastModified())
+					.isStale(file));
+			assertTrue(new DeployedResourceEntry(new byte[] { 1 }, 3, file.getName()).isStale(file));
+		}
+		finally {
+			file.delete();
+		}
+	}
+}
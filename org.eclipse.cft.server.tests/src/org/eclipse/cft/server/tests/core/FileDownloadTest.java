@@ -0,0 +1,142 @@
+/*******************************************************************************
+ * Copyright (c) 2017 Pivotal Software, Inc.
+ *
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * and Apache License v2.0 which accompanies this distribution.
+ *
+ * The Eclipse Public License is available at
+ *
+ * http://www.eclipse.org/legal/epl-v10.html
+ *
+ * and the Apache License v2.0 is available at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * You may elect to redistribute this code under either of these licenses.
+ *
+ *  Contributors:
+ *     Pivotal Software, Inc. - initial API and implementation
+ ********************************************************************************/
+package org.eclipse.cft.server.tests.core;
+
+import java.io.ByteArrayInputStream;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.file.Files;
+import java.util.Arrays;
+
+import org.eclipse.cft.server.core.internal.client.FileDownload;
+import org.eclipse.core.runtime.NullProgressMonitor;
+import org.eclipse.core.runtime.OperationCanceledException;
+
+import junit.framework.TestCase;
+
+public class FileDownloadTest extends TestCase {
+
+	private File localFile;
+
+	@Override
+	protected void setUp() throws Exception {
+		localFile = File.createTempFile("download", ".bin"); //$NON-NLS-1$ //$NON-NLS-2$
+	}
+
+	@Override
+	protected void tearDown() throws Exception {
+		localFile.delete();
+	}
+
+	public void testBinaryContent() throws Exception {
+		byte[] content = content(3 * FileDownload.BUFFER_SIZE + 17);
+
+		FileDownload download = new FileDownload(localFile, false);
+		assertEquals(0, download.getOffset());
+		assertEquals(content.length,
+				download.transfer(new ByteArrayInputStream(content), content.length, new NullProgressMonitor()));
+		assertEquals(content.length, download.getBytesTransferred());
+		assertTrue(Arrays.equals(content, Files.readAllBytes(localFile.toPath())));
+	}
+
+	public void testReplace() throws Exception {
+		write(content(100));
+		byte[] content = content(10);
+
+		FileDownload download = new FileDownload(localFile, false);
+		assertEquals(0, download.getOffset());
+		download.transfer(new ByteArrayInputStream(content), -1, new NullProgressMonitor());
+		assertTrue(Arrays.equals(content, Files.readAllBytes(localFile.toPath())));
+	}
+
+	public void testResume() throws Exception {
+		byte[] content = content(1000);
+		write(Arrays.copyOf(content, 400));
+
+		FileDownload download = new FileDownload(localFile, true);
+		assertEquals(400, download.getOffset());
+		InputStream remaining = new ByteArrayInputStream(content, 400, 600);
+		assertEquals(600, download.transfer(remaining, content.length, new NullProgressMonitor()));
+		assertTrue(Arrays.equals(content, Files.readAllBytes(localFile.toPath())));
+	}
+
+	public void testResumeSkippingContent() throws Exception {
+		byte[] content = content(1000);
+		write(Arrays.copyOf(content, 400));
+
+		FileDownload download = new FileDownload(localFile, true);
+		InputStream in = new ByteArrayInputStream(content);
+		FileDownload.skip(in, download.getOffset());
+		download.transfer(in, content.length, new NullProgressMonitor());
+		assertTrue(Arrays.equals(content, Files.readAllBytes(localFile.toPath())));
+	}
+
+	public void testSkipPastEnd() throws Exception {
+		try {
+			FileDownload.skip(new ByteArrayInputStream(content(10)), 11);
+			fail("Expected IOException"); //$NON-NLS-1$
+		}
+		catch (IOException e) {
+			// expected
+		}
+	}
+
+	public void testCancelKeepsContent() throws Exception {
+		byte[] content = content(3 * FileDownload.BUFFER_SIZE);
+		NullProgressMonitor monitor = new NullProgressMonitor();
+		monitor.setCanceled(true);
+
+		FileDownload download = new FileDownload(localFile, false);
+		try {
+			download.transfer(new ByteArrayInputStream(content), content.length, monitor);
+			fail("Expected OperationCanceledException"); //$NON-NLS-1$
+		}
+		catch (OperationCanceledException e) {
+			// expected
+		}
+		// The content read before the cancellation can be resumed
+		long written = localFile.length();
+		assertTrue(written > 0 && written < content.length);
+		assertEquals(written, new FileDownload(localFile, true).getOffset());
+	}
+
+	private void write(byte[] content) throws IOException {
+		OutputStream out = new FileOutputStream(localFile);
+		try {
+			out.write(content);
+		}
+		finally {
+			out.close();
+		}
+	}
+
+	private static byte[] content(int length) {
+		byte[] content = new byte[length];
+		for (int i = 0; i < length; i++) {
+			// All byte values, including those that are not valid characters
+			content[i] = (byte) i;
+		}
+		return content;
+	}
+}
@@ -0,0 +1,57 @@
+/*******************************************************************************
+ * Copyright (c) 2017 Pivotal Software, Inc.
+ *
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * and Apache License v2.0 which accompanies this distribution.
+ *
+ * The Eclipse Public License is available at
+ *
+ * http://www.eclipse.org/legal/epl-v10.html
+ *
+ * and the Apache License v2.0 is available at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * You may elect to redistribute this code under either of these licenses.
+ *
+ *  Contributors:
+ *     Pivotal Software, Inc. - initial API and implementation
+ ********************************************************************************/
+package org.eclipse.cft.server.tests.core;
+
+import org.cloudfoundry.client.lib.HttpProxyConfiguration;
+import org.eclipse.cft.server.core.internal.client.HttpConnectionPool;
+
+import junit.framework.TestCase;
+
+public class HttpConnectionPoolTest extends TestCase {
+
+	private static final String URL = "https://api.pool.test.example.com"; //$NON-NLS-1$
+
+	public void testPoolSharedBySameSettings() {
+		HttpConnectionPool pool = HttpConnectionPool.forServer(URL, null, false);
+		assertSame(pool, HttpConnectionPool.forServer(URL, null, false));
+		assertTrue(HttpConnectionPool.getAllStats().size() > 0);
+	}
+
+	public void testPoolPerSettings() {
+		HttpConnectionPool pool = HttpConnectionPool.forServer(URL, null, false);
+		assertNotSame(pool, HttpConnectionPool.forServer(URL + "/other", null, false)); //$NON-NLS-1$
+		assertNotSame(pool, HttpConnectionPool.forServer(URL, null, true));
+		assertNotSame(pool,
+				HttpConnectionPool.forServer(URL, new HttpProxyConfiguration("proxy.example.com", 8080), false)); //$NON-NLS-1$
+	}
+
+	public void testStats() {
+		HttpConnectionPool pool = HttpConnectionPool.forServer(URL + "/stats", null, false); //$NON-NLS-1$
+		pool.setMaxConnectionsPerRoute(4);
+		HttpConnectionPool.Stats stats = pool.getStats();
+		assertEquals(URL + "/stats", stats.getServerUrl()); //$NON-NLS-1$
+		assertEquals(0, stats.getRequests());
+		assertEquals(0, stats.getConnectionsOpened());
+		assertEquals(0, stats.getLeased());
+		assertEquals(0, stats.getPending());
+		assertEquals(4, stats.getMaxPerRoute());
+	}
+}
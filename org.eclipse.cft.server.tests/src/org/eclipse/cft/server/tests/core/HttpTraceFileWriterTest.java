@@ -0,0 +1,159 @@
+/*******************************************************************************
+ * Copyright (c) 2017 Pivotal Software, Inc.
+ *
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * and Apache License v2.0 which accompanies this distribution.
+ *
+ * The Eclipse Public License is available at
+ *
+ * http://www.eclipse.org/legal/epl-v10.html
+ *
+ * and the Apache License v2.0 is available at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * You may elect to redistribute this code under either of these licenses.
+ *
+ *  Contributors:
+ *     Pivotal Software, Inc. - initial API and implementation
+ ********************************************************************************/
+package org.eclipse.cft.server.tests.core;
+
+import java.io.BufferedReader;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.RandomAccessFile;
+import java.net.URI;
+import java.util.ArrayList;
+import java.util.List;
+
+import org.cloudfoundry.client.lib.RestLogEntry;
+import org.eclipse.cft.server.core.internal.log.HttpTraceFileWriter;
+import org.eclipse.cft.server.core.internal.log.HttpTraceSink;
+import org.springframework.http.HttpMethod;
+import org.springframework.http.HttpStatus;
+
+public class HttpTraceFileWriterTest extends AbstractTempFolderTest {
+
+	private HttpTraceSink sink;
+
+	private HttpTraceFileWriter writer;
+
+	private File file;
+
+	@Override
+	protected void setUp() throws Exception {
+		super.setUp();
+		file = new File(location, "http-trace.log");
+		writer = new HttpTraceFileWriter(file);
+		sink = new HttpTraceSink(16);
+		sink.addListener(writer);
+	}
+
+	@Override
+	protected void tearDown() throws Exception {
+		sink.dispose();
+		writer.close();
+		super.tearDown();
+	}
+
+	public void testOneLinePerEvent() throws Exception {
+		sink.publish(new RestLogEntry(HttpMethod.GET, new URI("https://api.example.com/v2/apps"), "OK",
+				HttpStatus.OK, "512 bytes"), 42);
+		sink.publish(new RestLogEntry(HttpMethod.POST, new URI("https://api.example.com/v2/apps"), "ERROR",
+				null, "Connection\trefused\nby host"), 7);
+		HttpTraceSinkTest.waitForDrain(sink);
+		writer.close();
+
+		List<String> lines = readLines(file);
+		assertEquals(2, lines.size());
+
+		String line = lines.get(0);
+		assertTrue(line, line.startsWith("time="));
+		assertTrue(line, line.contains("\tthread=" + Thread.currentThread().getName() + '\t'));
+		assertTrue(line, line.contains("\tmethod=GET\turi=https://api.example.com/v2/apps\tstatus=OK\t"));
+		assertTrue(line, line.contains("\thttpStatus=200\tbytes=512\telapsedMs=42"));
+		// Message only written if the response size is unknown
+		assertFalse(line, line.contains("message="));
+
+		line = lines.get(1);
+		assertTrue(line, line.contains("\tmethod=POST\t"));
+		assertTrue(line, line.contains("\tstatus=ERROR\thttpStatus=-1\tbytes=-1\telapsedMs=7"));
+		assertTrue(line, line.endsWith("\tmessage=Connection refused by host"));
+	}
+
+	public void testAppendedToExistingFile() throws Exception {
+		write(file, "existing\n");
+		sink.publish(new RestLogEntry(HttpMethod.GET, new URI("https://api.example.com/v2/info"), "OK",
+				HttpStatus.OK, "10 bytes"), 1);
+		HttpTraceSinkTest.waitForDrain(sink);
+		writer.close();
+
+		List<String> lines = readLines(file);
+		assertEquals(2, lines.size());
+		assertEquals("existing", lines.get(0));
+		assertFalse(getRotatedFile(1).exists());
+	}
+
+	public void testFullFileRotated() throws Exception {
+		RandomAccessFile full = new RandomAccessFile(file, "rw");
+		try {
+			full.setLength(HttpTraceFileWriter.MAX_FILE_SIZE);
+		}
+		finally {
+			full.close();
+		}
+		for (int i = 1; i <= HttpTraceFileWriter.MAX_ROTATED_FILES; i++) {
+			write(getRotatedFile(i), "rotated " + i + '\n');
+		}
+
+		sink.publish(new RestLogEntry(HttpMethod.GET, new URI("https://api.example.com/v2/info"), "OK",
+				HttpStatus.OK, "10 bytes"), 1);
+		HttpTraceSinkTest.waitForDrain(sink);
+		writer.close();
+
+		assertEquals(1, readLines(file).size());
+		assertEquals(HttpTraceFileWriter.MAX_FILE_SIZE, getRotatedFile(1).length());
+		// Each rotated file moved down, and the oldest deleted
+		for (int i = 2; i <= HttpTraceFileWriter.MAX_ROTATED_FILES; i++) {
+			List<String> lines = readLines(getRotatedFile(i));
+			assertEquals(1, lines.size());
+			assertEquals("rotated " + (i - 1), lines.get(0));
+		}
+		assertFalse(getRotatedFile(HttpTraceFileWriter.MAX_ROTATED_FILES + 1).exists());
+	}
+
+	protected File getRotatedFile(int index) {
+		return new File(location, file.getName() + '.' + index);
+	}
+
+	protected static void write(File file, String content) throws IOException {
+		FileOutputStream out = new FileOutputStream(file);
+		try {
+			out.write(content.getBytes("UTF-8"));
+		}
+		finally {
+			out.close();
+		}
+	}
+
+	protected static List<String> readLines(File file) throws IOException {
+		List<String> lines = new ArrayList<String>();
+		BufferedReader reader = new BufferedReader(new InputStreamReader(new FileInputStream(file), "UTF-8"));
+		try {
+			String line;
+			while ((line = reader.readLine()) != null) {
+				lines.add(line);
+			}
+		}
+		finally {
+			reader.close();
+		}
+		return lines;
+	}
+
+}
@@ -0,0 +1,210 @@
+/*******************************************************************************
+ * Copyright (c) 2017 Pivotal Software, Inc.
+ *
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * and Apache License v2.0 which accompanies this distribution.
+ *
+ * The Eclipse Public License is available at
+ *
+ * http://www.eclipse.org/legal/epl-v10.html
+ *
+ * and the Apache License v2.0 is available at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * You may elect to redistribute this code under either of these licenses.
+ *
+ *  Contributors:
+ *     Pivotal Software, Inc. - initial API and implementation
+ ********************************************************************************/
+package org.eclipse.cft.server.tests.core;
+
+import java.net.URI;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+import org.cloudfoundry.client.lib.RestLogEntry;
+import org.eclipse.cft.server.core.internal.log.HttpTraceEvent;
+import org.eclipse.cft.server.core.internal.log.HttpTraceSink;
+import org.springframework.http.HttpMethod;
+import org.springframework.http.HttpStatus;
+
+import junit.framework.TestCase;
+
+public class HttpTraceSinkTest extends TestCase {
+
+	private static final long DRAIN_TIMEOUT = 5000;
+
+	private HttpTraceSink sink;
+
+	@Override
+	protected void tearDown() throws Exception {
+		if (sink != null) {
+			sink.dispose();
+		}
+	}
+
+	public void testEventsPassedInOrder() throws Exception {
+		sink = new HttpTraceSink(16);
+		RecordingListener listener = new RecordingListener();
+		sink.addListener(listener);
+
+		for (int i = 0; i < 10; i++) {
+			assertTrue(sink.publish(new RestLogEntry(HttpMethod.GET, new URI("https://api.example.com/v2/apps/" + i),
+					"OK", HttpStatus.OK, "10 bytes"), i));
+		}
+		waitForDrain(sink);
+
+		List<String> traced = listener.getTraced();
+		assertEquals(10, traced.size());
+		for (int i = 0; i < 10; i++) {
+			assertEquals("GET https://api.example.com/v2/apps/" + i + " OK 200 10 " + i, traced.get(i));
+		}
+		assertTrue(listener.getDrainedCount() > 0);
+		assertEquals(0, sink.getDroppedCount());
+	}
+
+	public void testEventFields() throws Exception {
+		sink = new HttpTraceSink(16);
+		final List<String> errors = new ArrayList<String>();
+		final String threadName = Thread.currentThread().getName();
+		sink.addListener(new RecordingListener() {
+
+			@Override
+			public void traced(HttpTraceEvent event) {
+				super.traced(event);
+				if (event.isError()) {
+					if (event.getHttpStatus() != HttpTraceEvent.UNKNOWN || event.getHttpStatusName() != null
+							|| event.getResponseBytes() != HttpTraceEvent.UNKNOWN) {
+						errors.add("Unexpected fields in error event");
+					}
+					if (!"Connection refused".equals(event.getMessage())) {
+						errors.add("Unexpected message " + event.getMessage());
+					}
+				}
+				else {
+					if (!"OK".equals(event.getHttpStatusName()) || event.getResponseBytes() != 512) {
+						errors.add("Unexpected fields in OK event");
+					}
+				}
+				if (!threadName.equals(event.getThreadName()) || event.getTimestamp() <= 0) {
+					errors.add("Event not traced with the thread and time of the call");
+				}
+				if (event.getElapsedTime() != (event.isError() ? HttpTraceEvent.UNKNOWN : 42)) {
+					errors.add("Unexpected elapsed time " + event.getElapsedTime());
+				}
+			}
+		});
+
+		sink.publish(new RestLogEntry(HttpMethod.PUT, new URI("https://api.example.com/v2/apps"), "OK",
+				HttpStatus.OK, "512 bytes"), 42);
+		sink.publish(new RestLogEntry(HttpMethod.GET, new URI("https://api.example.com/v2/info"), "ERROR", null,
+				"Connection refused"), HttpTraceEvent.UNKNOWN);
+		waitForDrain(sink);
+
+		assertTrue(errors.toString(), errors.isEmpty());
+	}
+
+	public void testFullBufferDropsEvents() throws Exception {
+		// Rounded up to 4 events
+		sink = new HttpTraceSink(3);
+		final CountDownLatch started = new CountDownLatch(1);
+		final CountDownLatch release = new CountDownLatch(1);
+		RecordingListener listener = new RecordingListener() {
+
+			@Override
+			public void traced(HttpTraceEvent event) {
+				super.traced(event);
+				started.countDown();
+				try {
+					release.await(DRAIN_TIMEOUT, TimeUnit.MILLISECONDS);
+				}
+				catch (InterruptedException e) {
+					Thread.currentThread().interrupt();
+				}
+			}
+		};
+		sink.addListener(listener);
+
+		// The listener blocks on the first event, so no event is released
+		// until the latch is
+		int published = 0;
+		for (int i = 0; i < 6; i++) {
+			if (sink.publish(new RestLogEntry(HttpMethod.GET, new URI("https://api.example.com/" + i), "OK",
+					HttpStatus.OK, "0 bytes"), 1)) {
+				published++;
+			}
+		}
+		assertEquals(4, published);
+		assertEquals(2, sink.getDroppedCount());
+
+		assertTrue(started.await(DRAIN_TIMEOUT, TimeUnit.MILLISECONDS));
+		release.countDown();
+		waitForDrain(sink);
+		assertEquals(4, listener.getTraced().size());
+
+		// Space is available again
+		assertTrue(sink.publish(new RestLogEntry(HttpMethod.GET, new URI("https://api.example.com/6"), "OK",
+				HttpStatus.OK, "0 bytes"), 1));
+		waitForDrain(sink);
+		assertEquals(5, listener.getTraced().size());
+	}
+
+	public void testRemovedListenerNotNotified() throws Exception {
+		sink = new HttpTraceSink(16);
+		RecordingListener listener = new RecordingListener();
+		sink.addListener(listener);
+		// Added only once
+		sink.addListener(listener);
+
+		sink.publish(new RestLogEntry(HttpMethod.GET, new URI("https://api.example.com/1"), "OK", HttpStatus.OK,
+				"0 bytes"), 1);
+		waitForDrain(sink);
+		assertEquals(1, listener.getTraced().size());
+
+		sink.removeListener(listener);
+		sink.publish(new RestLogEntry(HttpMethod.GET, new URI("https://api.example.com/2"), "OK", HttpStatus.OK,
+				"0 bytes"), 1);
+		waitForDrain(sink);
+		assertEquals(1, listener.getTraced().size());
+	}
+
+	protected static void waitForDrain(HttpTraceSink sink) throws InterruptedException {
+		long end = System.currentTimeMillis() + DRAIN_TIMEOUT;
+		while (sink.getPendingCount() > 0) {
+			assertTrue("Events not drained", System.currentTimeMillis() < end);
+			Thread.sleep(10);
+		}
+	}
+
+	/**
+	 * Records a copy of each event, as events are reused by the sink
+	 */
+	protected static class RecordingListener implements HttpTraceSink.Listener {
+
+		private final List<String> traced = new ArrayList<String>();
+
+		private int drainedCount;
+
+		public synchronized void traced(HttpTraceEvent event) {
+			traced.add(event.getMethod() + ' ' + event.getUri() + ' ' + event.getStatus() + ' '
+					+ event.getHttpStatus() + ' ' + event.getResponseBytes() + ' ' + event.getElapsedTime());
+		}
+
+		public synchronized void drained() {
+			drainedCount++;
+		}
+
+		public synchronized List<String> getTraced() {
+			return new ArrayList<String>(traced);
+		}
+
+		public synchronized int getDrainedCount() {
+			return drainedCount;
+		}
+	}
+
+}
@@ -0,0 +1,104 @@
+/*******************************************************************************
+ * Copyright (c) 2017 Pivotal Software, Inc.
+ *
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * and Apache License v2.0 which accompanies this distribution.
+ *
+ * The Eclipse Public License is available at
+ *
+ * http://www.eclipse.org/legal/epl-v10.html
+ *
+ * and the Apache License v2.0 is available at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * You may elect to redistribute this code under either of these licenses.
+ *
+ *  Contributors:
+ *     Pivotal Software, Inc. - initial API and implementation
+ ********************************************************************************/
+package org.eclipse.cft.server.tests.core;
+
+import java.io.File;
+import java.io.RandomAccessFile;
+import java.util.HashMap;
+import java.util.Map;
+
+import org.eclipse.cft.server.core.internal.ModuleMappingStore;
+
+public class ModuleMappingStoreTest extends AbstractTempFolderTest {
+
+	private static final String SERVER_ID = "user_org_space@https://api.example.com";
+
+	public void testNoMapping() {
+		ModuleMappingStore store = new ModuleMappingStore(location);
+		assertNull(store.load(SERVER_ID));
+		store.dispose();
+	}
+
+	public void testPersistedAcrossInstances() {
+		ModuleMappingStore store = new ModuleMappingStore(location);
+		store.put(SERVER_ID, "grails.app:project1", "app1");
+		store.put(SERVER_ID, "jst.web:project2", "app,2");
+		store.put(SERVER_ID, "jst.web:project3", "app3");
+		store.remove(SERVER_ID, "jst.web:project3");
+		store.dispose();
+
+		ModuleMappingStore restored = new ModuleMappingStore(location);
+		Map<String, String> mapping = restored.load(SERVER_ID);
+		assertEquals(2, mapping.size());
+		assertEquals("app1", mapping.get("grails.app:project1"));
+		assertEquals("app,2", mapping.get("jst.web:project2"));
+		restored.dispose();
+	}
+
+	public void testReplaceAndRename() {
+		ModuleMappingStore store = new ModuleMappingStore(location);
+		Map<String, String> imported = new HashMap<String, String>();
+		imported.put("jst.web:project1", "app1");
+		store.replace(SERVER_ID, imported);
+		store.rename(SERVER_ID, "other@https://api.example.com");
+		store.dispose();
+
+		ModuleMappingStore restored = new ModuleMappingStore(location);
+		assertNull(restored.load(SERVER_ID));
+		assertEquals("app1", restored.load("other@https://api.example.com").get("jst.web:project1"));
+		restored.delete("other@https://api.example.com");
+		assertNull(restored.load("other@https://api.example.com"));
+		restored.dispose();
+	}
+
+	public void testImportWrittenRightAway() {
+		ModuleMappingStore store = new ModuleMappingStore(location);
+		Map<String, String> imported = new HashMap<String, String>();
+		imported.put("jst.web:project1", "app1");
+		assertTrue(store.importMapping(SERVER_ID, imported));
+
+		// Not disposed, so only written if the import was not deferred
+		ModuleMappingStore restored = new ModuleMappingStore(location);
+		assertEquals("app1", restored.load(SERVER_ID).get("jst.web:project1"));
+		restored.dispose();
+		store.dispose();
+	}
+
+	public void testIncompleteRecordIgnored() throws Exception {
+		ModuleMappingStore store = new ModuleMappingStore(location);
+		store.put(SERVER_ID, "jst.web:project1", "app1");
+		store.put(SERVER_ID, "jst.web:project2", "app2");
+		store.dispose();
+
+		// Simulate a crash while the last record was being written
+		File[] files = location.listFiles();
+		assertEquals(1, files.length);
+		RandomAccessFile raf = new RandomAccessFile(files[0], "rw");
+		raf.setLength(raf.length() - 2);
+		raf.close();
+
+		ModuleMappingStore restored = new ModuleMappingStore(location);
+		Map<String, String> mapping = restored.load(SERVER_ID);
+		assertEquals(1, mapping.size());
+		assertTrue(mapping.containsKey("jst.web:project1") || mapping.containsKey("jst.web:project2"));
+		restored.dispose();
+	}
+}
@@ -0,0 +1,94 @@
+/*******************************************************************************
+ * Copyright (c) 2017 Pivotal Software, Inc.
+ *
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * and Apache License v2.0 which accompanies this distribution.
+ *
+ * The Eclipse Public License is available at
+ *
+ * http://www.eclipse.org/legal/epl-v10.html
+ *
+ * and the Apache License v2.0 is available at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * You may elect to redistribute this code under either of these licenses.
+ *
+ *  Contributors:
+ *     Pivotal Software, Inc. - initial API and implementation
+ ********************************************************************************/
+package org.eclipse.cft.server.tests.core;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Date;
+import java.util.List;
+
+import org.eclipse.cft.server.core.internal.log.CloudLog;
+import org.eclipse.cft.server.core.internal.log.LogContentType;
+import org.eclipse.cft.server.core.internal.log.RecentLogCache;
+
+public class RecentLogCacheTest extends AbstractTempFolderTest {
+
+	private static final String SERVER_ID = "user_org_space@https://api.example.com";
+
+	private static final String APP_NAME = "app";
+
+	public void testNoLogs() {
+		RecentLogCache cache = new RecentLogCache(location);
+		assertTrue(cache.getLogs(SERVER_ID, APP_NAME).isEmpty());
+	}
+
+	public void testMergeOnlyAddsNewerLogs() {
+		RecentLogCache cache = new RecentLogCache(location);
+		List<CloudLog> added = cache.merge(SERVER_ID, APP_NAME, Arrays.asList(log(2, "two"), log(1, "one")));
+		assertEquals(2, added.size());
+		assertEquals("one", added.get(0).getMessage());
+
+		added = cache.merge(SERVER_ID, APP_NAME, Arrays.asList(log(1, "one"), log(2, "two"), log(2, "two bis"),
+				log(3, "three")));
+		assertEquals(2, added.size());
+		assertEquals("two bis", added.get(0).getMessage());
+		assertEquals("three", added.get(1).getMessage());
+		assertEquals(4, cache.getLogs(SERVER_ID, APP_NAME).size());
+	}
+
+	public void testLogsArePersisted() {
+		RecentLogCache cache = new RecentLogCache(location);
+		cache.merge(SERVER_ID, APP_NAME, Arrays.asList(log(1, "one"), log(2, "two")));
+		cache.merge(SERVER_ID, APP_NAME, Arrays.asList(log(3, "three")));
+
+		List<CloudLog> logs = new RecentLogCache(location).getLogs(SERVER_ID, APP_NAME);
+		assertEquals(3, logs.size());
+		assertEquals("three", logs.get(2).getMessage());
+		assertEquals(3, logs.get(2).getTimestamp().getTime());
+		assertEquals(LogContentType.APPLICATION_LOG_STD_OUT, logs.get(2).getLogType());
+	}
+
+	public void testOldestLogsAreDiscarded() {
+		RecentLogCache cache = new RecentLogCache(location);
+		List<CloudLog> logs = new ArrayList<CloudLog>();
+		for (int i = 0; i < RecentLogCache.MAX_LOGS_PER_APPLICATION + 10; i++) {
+			logs.add(log(i, "log " + i));
+		}
+		cache.merge(SERVER_ID, APP_NAME, logs);
+
+		List<CloudLog> cached = new RecentLogCache(location).getLogs(SERVER_ID, APP_NAME);
+		assertEquals(RecentLogCache.MAX_LOGS_PER_APPLICATION, cached.size());
+		assertEquals("log 10", cached.get(0).getMessage());
+	}
+
+	public void testDelete() {
+		RecentLogCache cache = new RecentLogCache(location);
+		cache.merge(SERVER_ID, APP_NAME, Arrays.asList(log(1, "one")));
+		cache.delete(SERVER_ID, APP_NAME);
+		assertTrue(cache.getLogs(SERVER_ID, APP_NAME).isEmpty());
+		assertTrue(new RecentLogCache(location).getLogs(SERVER_ID, APP_NAME).isEmpty());
+	}
+
+	private static CloudLog log(long timestamp, String message) {
+		return new CloudLog("appId", message, new Date(timestamp), LogContentType.APPLICATION_LOG_STD_OUT, "APP",
+				"0");
+	}
+}
@@ -0,0 +1,60 @@
+/*******************************************************************************
+ * Copyright (c) 2017 Pivotal Software, Inc.
+ *
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * and Apache License v2.0 which accompanies this distribution.
+ *
+ * The Eclipse Public License is available at
+ *
+ * http://www.eclipse.org/legal/epl-v10.html
+ *
+ * and the Apache License v2.0 is available at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * You may elect to redistribute this code under either of these licenses.
+ *
+ *  Contributors:
+ *     Pivotal Software, Inc. - initial API and implementation
+ ********************************************************************************/
+package org.eclipse.cft.server.tests.core;
+
+import org.eclipse.cft.server.core.internal.client.RemoteFileSearch;
+import org.eclipse.cft.server.core.internal.client.RemoteFileSearch.Match;
+
+import junit.framework.TestCase;
+
+public class RemoteFileSearchTest extends TestCase {
+
+	public void testParseMatch() {
+		Match match = RemoteFileSearch.parseMatch(3, "./app/application.yml:12:  url: jdbc:mysql://db:3306"); //$NON-NLS-1$
+		assertEquals(3, match.getInstance());
+		assertEquals("./app/application.yml", match.getFile()); //$NON-NLS-1$
+		assertEquals(12, match.getLine());
+		// Separators in the matching line are kept
+		assertEquals("  url: jdbc:mysql://db:3306", match.getText()); //$NON-NLS-1$
+	}
+
+	public void testParseFileNameWithSeparator() {
+		// grep -Z ends the file name with a NUL
+		Match match = RemoteFileSearch.parseMatch(1, "./logs/2017-01-01T10:00.log" + '\0' + "42:ERROR: failed"); //$NON-NLS-1$ //$NON-NLS-2$
+		assertEquals("./logs/2017-01-01T10:00.log", match.getFile()); //$NON-NLS-1$
+		assertEquals(42, match.getLine());
+		assertEquals("ERROR: failed", match.getText()); //$NON-NLS-1$
+	}
+
+	public void testParseEmptyLine() {
+		Match match = RemoteFileSearch.parseMatch(0, "logs/app.log:1:"); //$NON-NLS-1$
+		assertEquals("logs/app.log", match.getFile()); //$NON-NLS-1$
+		assertEquals(1, match.getLine());
+		assertEquals("", match.getText()); //$NON-NLS-1$
+	}
+
+	public void testParseNotAMatch() {
+		assertNull(RemoteFileSearch.parseMatch(0, "")); //$NON-NLS-1$
+		assertNull(RemoteFileSearch.parseMatch(0, "grep: ./tmp: Permission denied")); //$NON-NLS-1$
+		assertNull(RemoteFileSearch.parseMatch(0, ":1:text")); //$NON-NLS-1$
+		assertNull(RemoteFileSearch.parseMatch(0, "file-without-line-number")); //$NON-NLS-1$
+	}
+}
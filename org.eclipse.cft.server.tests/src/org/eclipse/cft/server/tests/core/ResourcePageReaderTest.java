@@ -0,0 +1,110 @@
+/*******************************************************************************
+ * Copyright (c) 2017 Pivotal Software, Inc.
+ *
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * and Apache License v2.0 which accompanies this distribution.
+ *
+ * The Eclipse Public License is available at
+ *
+ * http://www.eclipse.org/legal/epl-v10.html
+ *
+ * and the Apache License v2.0 is available at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * You may elect to redistribute this code under either of these licenses.
+ *
+ *  Contributors:
+ *     Pivotal Software, Inc. - initial API and implementation
+ ********************************************************************************/
+package org.eclipse.cft.server.tests.core;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+
+import org.eclipse.cft.server.core.internal.client.ResourcePageReader;
+import org.eclipse.cft.server.core.internal.client.ResourcePageReader.Resource;
+import org.eclipse.cft.server.core.internal.client.ResourcePageReader.ResourcePage;
+
+import junit.framework.TestCase;
+
+public class ResourcePageReaderTest extends TestCase {
+
+	private static final String APP_GUID = "5b2a2b42-1c3e-4a7d-9f3c-6d9e0b5e2a11"; //$NON-NLS-1$
+
+	private static final String PAGE = "{\"total_results\":201,\"total_pages\":3,\"prev_url\":null," //$NON-NLS-1$
+			+ "\"next_url\":\"/v2/spaces/s/apps?page=2&results-per-page=100\",\"resources\":[" //$NON-NLS-1$
+			+ "{\"metadata\":{\"guid\":\"" + APP_GUID + "\",\"url\":\"/v2/apps/" + APP_GUID + "\"," //$NON-NLS-1$ //$NON-NLS-2$ //$NON-NLS-3$
+			+ "\"created_at\":\"2017-03-01T10:00:00Z\",\"updated_at\":null}," //$NON-NLS-1$
+			+ "\"entity\":{\"name\":\"app1\",\"memory\":512,\"instances\":2,\"state\":\"STARTED\"," //$NON-NLS-1$
+			+ "\"cpu\":0.5,\"diego\":true,\"command\":null,\"ports\":[8080,8081]," //$NON-NLS-1$
+			+ "\"environment_json\":{\"A\":\"1\",\"B\":2,\"NESTED\":{\"C\":3}}," //$NON-NLS-1$
+			+ "\"docker_credentials_json\":{\"redacted_message\":\"[PRIVATE DATA HIDDEN]\"}," //$NON-NLS-1$
+			+ "\"stack_guid\":\"stack1\"}}," //$NON-NLS-1$
+			+ "{\"metadata\":{\"guid\":\"other\"},\"entity\":{\"name\":\"app2\"}}]}"; //$NON-NLS-1$
+
+	public void testPage() throws Exception {
+		ResourcePage page = read(new ResourcePageReader(null), PAGE);
+		assertEquals(3, page.getTotalPages());
+		assertEquals(201, page.getTotalResults());
+		assertEquals("/v2/spaces/s/apps?page=2&results-per-page=100", page.getNextUrl()); //$NON-NLS-1$
+		assertEquals(2, page.getResources().size());
+	}
+
+	public void testScalarAttributes() throws Exception {
+		List<Resource> resources = read(new ResourcePageReader(null), PAGE).getResources();
+		Resource app = resources.get(0);
+		assertEquals(APP_GUID, app.getMetadata("guid", String.class)); //$NON-NLS-1$
+		assertEquals("2017-03-01T10:00:00Z", app.getMetadata("created_at", String.class)); //$NON-NLS-1$ //$NON-NLS-2$
+		assertNull(app.getMetadata("updated_at", String.class)); //$NON-NLS-1$
+		assertEquals("app1", app.getEntity("name", String.class)); //$NON-NLS-1$ //$NON-NLS-2$
+		assertEquals(Integer.valueOf(512), app.getEntity("memory", Integer.class)); //$NON-NLS-1$
+		assertEquals(Long.valueOf(2), app.getEntity("instances", Long.class)); //$NON-NLS-1$
+		assertEquals(Boolean.TRUE, app.getEntity("diego", Boolean.class)); //$NON-NLS-1$
+		assertEquals("0.5", app.getEntity("cpu", String.class)); //$NON-NLS-1$ //$NON-NLS-2$
+		assertNull(app.getEntity("command", String.class)); //$NON-NLS-1$
+		assertEquals("stack1", app.getEntity("stack_guid", String.class)); //$NON-NLS-1$ //$NON-NLS-2$
+
+		// Nested values are skipped unless asked for
+		assertNull(app.getEntity("ports", Object.class)); //$NON-NLS-1$
+		assertNull(app.getEntityObject("environment_json")); //$NON-NLS-1$
+
+		assertEquals("app2", resources.get(1).getEntity("name", String.class)); //$NON-NLS-1$ //$NON-NLS-2$
+	}
+
+	public void testEntityObjects() throws Exception {
+		ResourcePageReader reader = new ResourcePageReader(Collections.singleton("environment_json")); //$NON-NLS-1$
+		Resource app = read(reader, PAGE).getResources().get(0);
+		Map<String, Object> env = app.getEntityObject("environment_json"); //$NON-NLS-1$
+		assertEquals(2, env.size());
+		assertEquals("1", env.get("A")); //$NON-NLS-1$ //$NON-NLS-2$
+		assertEquals(2, ((Number) env.get("B")).intValue()); //$NON-NLS-1$
+		assertNull(app.getEntityObject("docker_credentials_json")); //$NON-NLS-1$
+	}
+
+	public void testSinglePage() throws Exception {
+		ResourcePage page = read(new ResourcePageReader(null),
+				"{\"total_results\":0,\"total_pages\":1,\"next_url\":null,\"resources\":[]}"); //$NON-NLS-1$
+		assertEquals(1, page.getTotalPages());
+		assertNull(page.getNextUrl());
+		assertTrue(page.getResources().isEmpty());
+	}
+
+	public void testInvalidPage() throws Exception {
+		try {
+			read(new ResourcePageReader(null), "[]"); //$NON-NLS-1$
+			fail();
+		}
+		catch (IOException e) {
+			// expected
+		}
+	}
+
+	private static ResourcePage read(ResourcePageReader reader, String json) throws IOException {
+		return reader.read(new ByteArrayInputStream(json.getBytes("UTF-8"))); //$NON-NLS-1$
+	}
+}
@@ -0,0 +1,120 @@
+/*******************************************************************************
+ * Copyright (c) 2017 Pivotal Software, Inc.
+ *
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * and Apache License v2.0 which accompanies this distribution.
+ *
+ * The Eclipse Public License is available at
+ *
+ * http://www.eclipse.org/legal/epl-v10.html
+ *
+ * and the Apache License v2.0 is available at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * You may elect to redistribute this code under either of these licenses.
+ *
+ *  Contributors:
+ *     Pivotal Software, Inc. - initial API and implementation
+ ********************************************************************************/
+package org.eclipse.cft.server.tests.core;
+
+import java.net.ConnectException;
+
+import org.eclipse.cft.server.core.internal.client.Backoff;
+import org.eclipse.cft.server.core.internal.client.CircuitBreaker;
+import org.eclipse.cft.server.core.internal.client.RetryContext;
+import org.eclipse.cft.server.core.internal.client.RetryPolicy;
+import org.eclipse.cft.server.core.internal.client.RetryPolicy.ErrorMatcher;
+import org.eclipse.core.runtime.CoreException;
+import org.eclipse.core.runtime.IStatus;
+import org.eclipse.core.runtime.Status;
+
+import junit.framework.TestCase;
+
+public class RetryPolicyTest extends TestCase {
+
+	private static final ErrorMatcher ILLEGAL_STATE = new ErrorMatcher() {
+		public boolean matches(Throwable error) {
+			return error instanceof IllegalStateException;
+		}
+	};
+
+	public void testFixedBackoff() {
+		Backoff backoff = Backoff.fixed(100, 2);
+		assertEquals(100, backoff.getDelay(1));
+		assertEquals(100, backoff.getDelay(2));
+		assertEquals(-1, backoff.getDelay(3));
+	}
+
+	public void testExponentialBackoffIsBounded() {
+		Backoff backoff = new Backoff(100, 1000, 2, 0, Backoff.UNLIMITED);
+		assertEquals(100, backoff.getDelay(1));
+		assertEquals(200, backoff.getDelay(2));
+		assertEquals(400, backoff.getDelay(3));
+		assertEquals(800, backoff.getDelay(4));
+		assertEquals(1000, backoff.getDelay(5));
+		assertEquals(1000, backoff.getDelay(50));
+	}
+
+	public void testJitter() {
+		Backoff backoff = new Backoff(1000, 1000, 1, 0.2, Backoff.UNLIMITED);
+		for (int i = 0; i < 100; i++) {
+			long delay = backoff.getDelay(1);
+			assertTrue(delay >= 800 && delay <= 1200);
+		}
+	}
+
+	public void testPolicyMatchesErrors() {
+		RetryPolicy policy = new RetryPolicy().retryOn(ILLEGAL_STATE, Backoff.fixed(10, 2));
+		RetryContext context = new RetryContext();
+
+		assertEquals(-1, policy.getRetryDelay(new IllegalArgumentException(), context));
+		assertEquals(0, context.getRetries());
+
+		assertEquals(10, policy.getRetryDelay(new IllegalStateException(), context));
+		assertEquals(10, policy.getRetryDelay(new IllegalStateException(), context));
+		assertEquals(-1, policy.getRetryDelay(new IllegalStateException(), context));
+		assertEquals(3, context.getRetries(ILLEGAL_STATE));
+	}
+
+	public void testCircuitBreaker() throws Exception {
+		CircuitBreaker breaker = new CircuitBreaker(2, 200);
+		assertTrue(breaker.allowRetry());
+
+		breaker.recordFailure();
+		assertTrue(breaker.allowRetry());
+		breaker.recordFailure();
+		assertTrue(breaker.isOpen());
+
+		Thread.sleep(300);
+		assertTrue(breaker.allowRetry());
+
+		breaker.recordFailure();
+		assertTrue(breaker.isOpen());
+		breaker.recordSuccess();
+		assertFalse(breaker.isOpen());
+	}
+
+	public void testCircuitBreakerCountsOnlyTransportFailures() {
+		CircuitBreaker breaker = new CircuitBreaker(2, 30 * 1000);
+		Exception refused = new CoreException(new Status(IStatus.ERROR, "test", "refused", new ConnectException())); //$NON-NLS-1$ //$NON-NLS-2$
+		assertTrue(CircuitBreaker.isTransportFailure(refused));
+		assertFalse(CircuitBreaker.isTransportFailure(new IllegalStateException()));
+
+		// Expected errors of a target that responds never open the breaker
+		for (int i = 0; i < 10; i++) {
+			breaker.recordAttempt(new IllegalStateException());
+		}
+		assertFalse(breaker.isOpen());
+
+		breaker.recordAttempt(refused);
+		breaker.recordAttempt(new IllegalStateException());
+		breaker.recordAttempt(refused);
+		assertFalse(breaker.isOpen());
+
+		breaker.recordAttempt(refused);
+		assertTrue(breaker.isOpen());
+	}
+}
@@ -0,0 +1,214 @@
+/*******************************************************************************
+ * Copyright (c) 2017 Pivotal Software, Inc.
+ *
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * and Apache License v2.0 which accompanies this distribution.
+ *
+ * The Eclipse Public License is available at
+ *
+ * http://www.eclipse.org/legal/epl-v10.html
+ *
+ * and the Apache License v2.0 is available at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * You may elect to redistribute this code under either of these licenses.
+ *
+ *  Contributors:
+ *     Pivotal Software, Inc. - initial API and implementation
+ ********************************************************************************/
+package org.eclipse.cft.server.tests.core;
+
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.InputStream;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Enumeration;
+import java.util.List;
+import java.util.Random;
+import java.util.zip.Deflater;
+import java.util.zip.ZipEntry;
+import java.util.zip.ZipFile;
+
+import org.eclipse.cft.server.core.internal.ZipArchivePackager;
+import org.eclipse.cft.server.core.internal.ZipArchivePackager.ZipTask;
+import org.eclipse.core.runtime.IPath;
+import org.eclipse.core.runtime.IStatus;
+import org.eclipse.core.runtime.Path;
+import org.eclipse.wst.server.core.model.IModuleResource;
+import org.eclipse.wst.server.core.util.ModuleFile;
+import org.eclipse.wst.server.core.util.ModuleFolder;
+
+public class ZipArchivePackagerTest extends AbstractTempFolderTest {
+
+	private static final int JAR_SIZE = 200 * 1024;
+
+	public void testSameContentAsCompressedArchive() throws Exception {
+		List<IModuleResource> resources = createWebResources();
+
+		File archive = new File(location, "app.war");
+		assertOK(new ZipArchivePackager(Deflater.DEFAULT_COMPRESSION).publishZip(resources, archive, null));
+		File expected = new File(location, "expected.war");
+		assertOK(new CompressingPackager().publishZip(resources, expected, null));
+
+		assertSameEntries(expected, archive);
+
+		ZipFile zip = new ZipFile(archive);
+		try {
+			ZipEntry jar = zip.getEntry("WEB-INF/lib/lib.jar");
+			assertEquals(ZipEntry.STORED, jar.getMethod());
+			assertEquals(JAR_SIZE, jar.getCompressedSize());
+			assertEquals(ZipEntry.DEFLATED, zip.getEntry("WEB-INF/web.xml").getMethod());
+			assertEquals(ZipEntry.DEFLATED, zip.getEntry("other.jar").getMethod());
+		}
+		finally {
+			zip.close();
+		}
+	}
+
+	public void testLargeJarNotStored() throws Exception {
+		List<IModuleResource> resources = createWebResources();
+
+		File archive = new File(location, "app.war");
+		ZipArchivePackager packager = new ZipArchivePackager(Deflater.DEFAULT_COMPRESSION) {
+			@Override
+			protected int getMaxStoredSize() {
+				return JAR_SIZE / 3;
+			}
+		};
+		assertOK(packager.publishZip(resources, archive, null));
+		File expected = new File(location, "expected.war");
+		assertOK(new CompressingPackager().publishZip(resources, expected, null));
+
+		assertSameEntries(expected, archive);
+
+		ZipFile zip = new ZipFile(archive);
+		try {
+			ZipEntry jar = zip.getEntry("WEB-INF/lib/lib.jar");
+			assertEquals(ZipEntry.DEFLATED, jar.getMethod());
+			// Written without compression, apart from the deflate framing
+			assertTrue(jar.getCompressedSize() >= JAR_SIZE);
+		}
+		finally {
+			zip.close();
+		}
+	}
+
+	public void testParallelArchives() throws Exception {
+		List<IModuleResource> resources = createWebResources();
+		ZipArchivePackager packager = new ZipArchivePackager(Deflater.DEFAULT_COMPRESSION);
+
+		List<File> archives = new ArrayList<File>();
+		List<ZipTask> tasks = new ArrayList<ZipTask>();
+		for (int i = 0; i < 6; i++) {
+			File archive = new File(location, "app" + i + ".war");
+			archives.add(archive);
+			tasks.add(new ZipTask(resources, archive, null));
+		}
+		List<IStatus> result = packager.publishZips(tasks);
+		assertTrue(result.toString(), result.isEmpty());
+
+		File expected = new File(location, "expected.war");
+		assertOK(new CompressingPackager().publishZip(resources, expected, null));
+		for (File archive : archives) {
+			assertSameEntries(expected, archive);
+		}
+	}
+
+	protected List<IModuleResource> createWebResources() throws Exception {
+		Random random = new Random(0);
+		byte[] jarContent = new byte[JAR_SIZE];
+		random.nextBytes(jarContent);
+		byte[] text = new byte[JAR_SIZE];
+		Arrays.fill(text, (byte) 'a');
+
+		ModuleFolder webInf = new ModuleFolder(null, "WEB-INF", Path.EMPTY);
+		ModuleFolder lib = new ModuleFolder(null, "lib", new Path("WEB-INF"));
+		lib.setMembers(new IModuleResource[] {
+				createFile("lib.jar", new Path("WEB-INF/lib"), jarContent) });
+		webInf.setMembers(new IModuleResource[] { lib,
+				createFile("web.xml", new Path("WEB-INF"), "<web-app/>".getBytes("UTF-8")) });
+
+		List<IModuleResource> resources = new ArrayList<IModuleResource>();
+		resources.add(webInf);
+		resources.add(createFile("index.html", Path.EMPTY, text));
+		resources.add(createFile("other.jar", Path.EMPTY, jarContent));
+		return resources;
+	}
+
+	protected IModuleResource createFile(String name, IPath path, byte[] content) throws Exception {
+		File file = new File(location, "source-" + name);
+		FileOutputStream out = new FileOutputStream(file);
+		try {
+			out.write(content);
+		}
+		finally {
+			out.close();
+		}
+		return new ModuleFile(file, name, path);
+	}
+
+	protected void assertOK(IStatus[] status) {
+		assertEquals(Arrays.toString(status), 0, status.length);
+	}
+
+	protected void assertSameEntries(File expected, File actual) throws Exception {
+		ZipFile expectedZip = new ZipFile(expected);
+		ZipFile actualZip = new ZipFile(actual);
+		try {
+			Enumeration<? extends ZipEntry> expectedEntries = expectedZip.entries();
+			Enumeration<? extends ZipEntry> actualEntries = actualZip.entries();
+			while (expectedEntries.hasMoreElements()) {
+				assertTrue(actualEntries.hasMoreElements());
+				ZipEntry expectedEntry = expectedEntries.nextElement();
+				ZipEntry actualEntry = actualEntries.nextElement();
+				assertEquals(expectedEntry.getName(), actualEntry.getName());
+				assertEquals(expectedEntry.getSize(), actualEntry.getSize());
+				assertEquals(expectedEntry.getCrc(), actualEntry.getCrc());
+				assertTrue(expectedEntry.getName(), Arrays.equals(read(expectedZip, expectedEntry),
+						read(actualZip, actualEntry)));
+			}
+			assertFalse(actualEntries.hasMoreElements());
+		}
+		finally {
+			expectedZip.close();
+			actualZip.close();
+		}
+	}
+
+	protected byte[] read(ZipFile zip, ZipEntry entry) throws Exception {
+		ByteArrayOutputStream content = new ByteArrayOutputStream();
+		InputStream in = zip.getInputStream(entry);
+		try {
+			byte[] buf = new byte[8192];
+			int n = 0;
+			while ((n = in.read(buf)) > -1) {
+				content.write(buf, 0, n);
+			}
+		}
+		finally {
+			in.close();
+		}
+		return content.toByteArray();
+	}
+
+	/**
+	 * Builds archives the way they were built before jars were stored, with
+	 * all entries compressed
+	 */
+	protected static class CompressingPackager extends ZipArchivePackager {
+
+		public CompressingPackager() {
+			super(Deflater.DEFAULT_COMPRESSION);
+		}
+
+		@Override
+		protected boolean isStored(String entryPath) {
+			return false;
+		}
+	}
+
+}
@@ -20,6 +20,7 @@
  ********************************************************************************/
 package org.eclipse.cft.server.ui.internal;
 
+import org.eclipse.cft.server.core.internal.CloudFoundryPlugin;
 import org.eclipse.jface.layout.GridDataFactory;
 import org.eclipse.jface.layout.GridLayoutFactory;
 import org.eclipse.jface.preference.PreferencePage;
@@ -27,11 +28,16 @@ import org.eclipse.swt.SWT;
 import org.eclipse.swt.widgets.Composite;
 import org.eclipse.swt.widgets.Control;
 import org.eclipse.swt.widgets.Label;
+import org.eclipse.swt.widgets.Spinner;
 import org.eclipse.ui.IWorkbench;
 import org.eclipse.ui.IWorkbenchPreferencePage;
 
 public class CloudFoundryPreferencePage extends PreferencePage implements IWorkbenchPreferencePage {
 
+	private static final int MAX_PUBLISH_PARALLELISM = 8;
+
+	private Spinner publishParallelism;
+
 	public void init(IWorkbench workbench) {
 		//
 	}
@@ -46,7 +52,36 @@ public class CloudFoundryPreferencePage extends PreferencePage implements IWorkb
 		GridDataFactory.fillDefaults().grab(false, false).applyTo(serviceLabel);
 		serviceLabel.setText(Messages.CloudFoundryPreferencePage_TEXT_SELECT_CF_FEATURE);
 
+		Composite publishArea = new Composite(mainArea, SWT.NONE);
+		GridLayoutFactory.fillDefaults().numColumns(2).applyTo(publishArea);
+		GridDataFactory.fillDefaults().grab(true, false).indent(0, 10).applyTo(publishArea);
+
+		Label parallelismLabel = new Label(publishArea, SWT.NONE);
+		GridDataFactory.fillDefaults().align(SWT.BEGINNING, SWT.CENTER).applyTo(parallelismLabel);
+		parallelismLabel.setText(Messages.CloudFoundryPreferencePage_LABEL_PUBLISH_PARALLELISM);
+		parallelismLabel.setToolTipText(Messages.CloudFoundryPreferencePage_TOOLTIP_PUBLISH_PARALLELISM);
+
+		publishParallelism = new Spinner(publishArea, SWT.BORDER);
+		publishParallelism.setMinimum(1);
+		publishParallelism.setMaximum(MAX_PUBLISH_PARALLELISM);
+		publishParallelism.setToolTipText(Messages.CloudFoundryPreferencePage_TOOLTIP_PUBLISH_PARALLELISM);
+		publishParallelism.setSelection(CloudFoundryPlugin.getDefault().getPublishParallelism());
+
 		return mainArea;
 	}
 
+	@Override
+	protected void performDefaults() {
+		publishParallelism.setSelection(CloudFoundryPlugin.DEFAULT_PUBLISH_PARALLELISM_PREFERENCE_VAL);
+		super.performDefaults();
+	}
+
+	@Override
+	public boolean performOk() {
+		if (publishParallelism.getSelection() != CloudFoundryPlugin.getDefault().getPublishParallelism()) {
+			CloudFoundryPlugin.getDefault().setPublishParallelism(publishParallelism.getSelection());
+		}
+		return super.performOk();
+	}
+
 }
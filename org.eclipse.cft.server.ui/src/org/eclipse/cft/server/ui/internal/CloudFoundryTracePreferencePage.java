@@ -41,6 +41,8 @@ public class CloudFoundryTracePreferencePage extends PreferencePage implements I
 
 	private boolean isTracingEnabled;
 
+	private boolean isFileTracingEnabled;
+
 	public CloudFoundryTracePreferencePage() {
 		setPreferenceStore(CloudFoundryServerUiPlugin.getDefault().getPreferenceStore());
 	}
@@ -74,17 +76,37 @@ public class CloudFoundryTracePreferencePage extends PreferencePage implements I
 
 		});
 
+		final Button traceToFile = new Button(topComposite, SWT.CHECK);
+		GridDataFactory.fillDefaults().grab(false, false);
+		traceToFile.setText(Messages.LABEL_TRACE_TO_FILE);
+		traceToFile.setToolTipText(Messages.TOOLTIP_TRACE_TO_FILE);
+
+		isFileTracingEnabled = HttpTracer.getCurrent().isFileTracingEnabled();
+
+		traceToFile.setSelection(isFileTracingEnabled);
+
+		traceToFile.addSelectionListener(new SelectionAdapter() {
+
+			@Override
+			public void widgetSelected(SelectionEvent e) {
+				isFileTracingEnabled = traceToFile.getSelection();
+			}
+
+		});
+
 		return topComposite;
 	}
 
 	@Override
 	protected void performApply() {
+		HttpTracer.getCurrent().enableFileTracing(isFileTracingEnabled);
 		HttpTracer.getCurrent().enableTracing(isTracingEnabled);
 		super.performApply();
 	}
 
 	@Override
 	public boolean performOk() {
+		HttpTracer.getCurrent().enableFileTracing(isFileTracingEnabled);
 		HttpTracer.getCurrent().enableTracing(isTracingEnabled);
 		return super.performOk();
 	}
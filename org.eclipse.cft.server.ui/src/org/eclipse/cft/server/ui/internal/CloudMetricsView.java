@@ -0,0 +1,226 @@
+/*******************************************************************************
+ * Copyright (c) 2017 Pivotal Software, Inc. and others
+ *
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * and Apache License v2.0 which accompanies this distribution.
+ *
+ * The Eclipse Public License is available at
+ *
+ * http://www.eclipse.org/legal/epl-v10.html
+ *
+ * and the Apache License v2.0 is available at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * You may elect to redistribute this code under either of these licenses.
+ *
+ *  Contributors:
+ *     Pivotal Software, Inc. - initial API and implementation
+ ********************************************************************************/
+package org.eclipse.cft.server.ui.internal;
+
+import java.io.File;
+import java.util.List;
+
+import org.eclipse.cft.server.core.internal.CloudFoundryPlugin;
+import org.eclipse.cft.server.core.internal.client.HttpConnectionPool;
+import org.eclipse.cft.server.core.internal.metrics.CloudMetrics;
+import org.eclipse.cft.server.core.internal.metrics.LatencyHistogram;
+import org.eclipse.cft.server.core.internal.metrics.RequestMetrics;
+import org.eclipse.core.runtime.CoreException;
+import org.eclipse.jface.action.Action;
+import org.eclipse.jface.action.IToolBarManager;
+import org.eclipse.jface.dialogs.ErrorDialog;
+import org.eclipse.jface.viewers.ArrayContentProvider;
+import org.eclipse.jface.viewers.ITableLabelProvider;
+import org.eclipse.jface.viewers.LabelProvider;
+import org.eclipse.jface.viewers.TableViewer;
+import org.eclipse.osgi.util.NLS;
+import org.eclipse.swt.SWT;
+import org.eclipse.swt.graphics.Image;
+import org.eclipse.swt.widgets.Composite;
+import org.eclipse.swt.widgets.FileDialog;
+import org.eclipse.swt.widgets.Table;
+import org.eclipse.swt.widgets.TableColumn;
+import org.eclipse.ui.ISharedImages;
+import org.eclipse.ui.PlatformUI;
+import org.eclipse.ui.part.ViewPart;
+
+/**
+ * Shows the latency, retries, errors and bytes uploaded recorded in
+ * {@link CloudMetrics} for client requests, operations and operation phases,
+ * and the usage of the HTTP connection pools of the servers. The view
+ * refreshes itself periodically while it is open.
+ */
+public class CloudMetricsView extends ViewPart {
+
+	public static final String ID = "org.eclipse.cft.server.ui.CloudMetricsView"; //$NON-NLS-1$
+
+	private static final int REFRESH_INTERVAL = 2000;
+
+	private TableViewer viewer;
+
+	private final Runnable refreshRunnable = new Runnable() {
+		public void run() {
+			if (viewer != null && !viewer.getTable().isDisposed()) {
+				refresh();
+				viewer.getTable().getDisplay().timerExec(REFRESH_INTERVAL, this);
+			}
+		}
+	};
+
+	@Override
+	public void createPartControl(Composite parent) {
+		viewer = new TableViewer(parent, SWT.FULL_SELECTION | SWT.MULTI | SWT.H_SCROLL | SWT.V_SCROLL);
+		Table table = viewer.getTable();
+		table.setHeaderVisible(true);
+		table.setLinesVisible(true);
+
+		String[] columns = { Messages.CloudMetricsView_COLUMN_KIND, Messages.CloudMetricsView_COLUMN_NAME,
+				Messages.CloudMetricsView_COLUMN_COUNT, Messages.CloudMetricsView_COLUMN_ERRORS,
+				Messages.CloudMetricsView_COLUMN_RETRIES, Messages.CloudMetricsView_COLUMN_BYTES,
+				Messages.CloudMetricsView_COLUMN_MEAN, Messages.CloudMetricsView_COLUMN_P50,
+				Messages.CloudMetricsView_COLUMN_P90, Messages.CloudMetricsView_COLUMN_P99,
+				Messages.CloudMetricsView_COLUMN_MAX };
+		for (int i = 0; i < columns.length; i++) {
+			TableColumn column = new TableColumn(table, i < 2 ? SWT.LEFT : SWT.RIGHT);
+			column.setText(columns[i]);
+			column.setWidth(i == 1 ? 300 : 80);
+		}
+
+		viewer.setContentProvider(ArrayContentProvider.getInstance());
+		viewer.setLabelProvider(new MetricsLabelProvider());
+
+		IToolBarManager toolBar = getViewSite().getActionBars().getToolBarManager();
+		toolBar.add(new RefreshAction());
+		toolBar.add(new ResetAction());
+		toolBar.add(new ExportAction());
+
+		refreshRunnable.run();
+	}
+
+	protected void refresh() {
+		List<RequestMetrics> metrics = CloudMetrics.getDefault().getMetrics();
+		viewer.setInput(metrics);
+		setContentDescription(getConnectionPoolsDescription());
+	}
+
+	protected String getConnectionPoolsDescription() {
+		List<HttpConnectionPool.Stats> pools = HttpConnectionPool.getAllStats();
+		if (pools.isEmpty()) {
+			return ""; //$NON-NLS-1$
+		}
+		StringBuilder description = new StringBuilder();
+		for (HttpConnectionPool.Stats stats : pools) {
+			if (description.length() > 0) {
+				description.append("; "); //$NON-NLS-1$
+			}
+			String server = stats.getServerUrl() != null ? stats.getServerUrl() : CloudMetrics.OTHER;
+			description.append(NLS.bind(Messages.CloudMetricsView_CONNECTION_POOL,
+					new Object[] { server, stats.getRequests(), stats.getConnectionsOpened(), stats.getLeased(),
+							stats.getAvailable() }));
+		}
+		return NLS.bind(Messages.CloudMetricsView_CONNECTION_POOLS, description.toString());
+	}
+
+	@Override
+	public void setFocus() {
+		if (viewer != null) {
+			viewer.getTable().setFocus();
+		}
+	}
+
+	static class MetricsLabelProvider extends LabelProvider implements ITableLabelProvider {
+
+		public Image getColumnImage(Object element, int columnIndex) {
+			return null;
+		}
+
+		public String getColumnText(Object element, int columnIndex) {
+			if (!(element instanceof RequestMetrics)) {
+				return null;
+			}
+			RequestMetrics metrics = (RequestMetrics) element;
+			LatencyHistogram latency = metrics.getLatency();
+			switch (columnIndex) {
+			case 0:
+				return metrics.getKind().name().toLowerCase();
+			case 1:
+				return metrics.getName();
+			case 2:
+				return Long.toString(metrics.getCount());
+			case 3:
+				return Long.toString(metrics.getErrors());
+			case 4:
+				return Long.toString(metrics.getRetries());
+			case 5:
+				return Long.toString(metrics.getBytes());
+			case 6:
+				return Long.toString(latency.getMean());
+			case 7:
+				return Long.toString(latency.getPercentile(50));
+			case 8:
+				return Long.toString(latency.getPercentile(90));
+			case 9:
+				return Long.toString(latency.getPercentile(99));
+			case 10:
+				return Long.toString(latency.getMax());
+			}
+			return null;
+		}
+	}
+
+	class RefreshAction extends Action {
+
+		RefreshAction() {
+			super(Messages.CloudMetricsView_ACTION_REFRESH, CloudFoundryImages.REFRESH);
+		}
+
+		@Override
+		public void run() {
+			refresh();
+		}
+	}
+
+	class ResetAction extends Action {
+
+		ResetAction() {
+			super(Messages.CloudMetricsView_ACTION_RESET, CloudFoundryImages.REMOVE);
+		}
+
+		@Override
+		public void run() {
+			CloudMetrics.getDefault().reset();
+			refresh();
+		}
+	}
+
+	class ExportAction extends Action {
+
+		ExportAction() {
+			super(Messages.CloudMetricsView_ACTION_EXPORT, PlatformUI.getWorkbench().getSharedImages()
+					.getImageDescriptor(ISharedImages.IMG_ETOOL_SAVEAS_EDIT));
+		}
+
+		@Override
+		public void run() {
+			FileDialog dialog = new FileDialog(getSite().getShell(), SWT.SAVE);
+			dialog.setFilterExtensions(new String[] { "*.csv" }); //$NON-NLS-1$
+			dialog.setFileName("cloud-metrics.csv"); //$NON-NLS-1$
+			dialog.setOverwrite(true);
+			String path = dialog.open();
+			if (path == null) {
+				return;
+			}
+			try {
+				CloudMetrics.getDefault().export(new File(path));
+			}
+			catch (CoreException e) {
+				CloudFoundryPlugin.logError(e);
+				ErrorDialog.openError(getSite().getShell(), Messages.CloudMetricsView_ACTION_EXPORT,
+						NLS.bind(Messages.CloudMetricsView_ERROR_EXPORT, path), e.getStatus());
+			}
+		}
+	}
+}
@@ -276,6 +276,40 @@ public class Messages extends NLS {
 
 	public static String CloudFoundryUiCallback_STARTING_CONSOLE;
 
+	public static String CloudMetricsView_COLUMN_KIND;
+
+	public static String CloudMetricsView_COLUMN_NAME;
+
+	public static String CloudMetricsView_COLUMN_COUNT;
+
+	public static String CloudMetricsView_COLUMN_ERRORS;
+
+	public static String CloudMetricsView_COLUMN_RETRIES;
+
+	public static String CloudMetricsView_COLUMN_BYTES;
+
+	public static String CloudMetricsView_COLUMN_MEAN;
+
+	public static String CloudMetricsView_COLUMN_P50;
+
+	public static String CloudMetricsView_COLUMN_P90;
+
+	public static String CloudMetricsView_COLUMN_P99;
+
+	public static String CloudMetricsView_COLUMN_MAX;
+
+	public static String CloudMetricsView_ACTION_REFRESH;
+
+	public static String CloudMetricsView_ACTION_RESET;
+
+	public static String CloudMetricsView_ACTION_EXPORT;
+
+	public static String CloudMetricsView_ERROR_EXPORT;
+
+	public static String CloudMetricsView_CONNECTION_POOLS;
+
+	public static String CloudMetricsView_CONNECTION_POOL;
+
 	public static String EditorAction_CLOUD_OPERATION;
 
 	public static String ERROR_VALID_SERVER_NAME;
@@ -292,6 +326,8 @@ public class Messages extends NLS {
 
 	public static String ERROR_APPLICATION_LOG;
 
+	public static String WARNING_APPLICATION_LOGS_DROPPED;
+
 	public static String ERROR_INVALID_MEMORY;
 
 	public static String ERROR_FAILED_INITIALISE_APPLICATION_LOG_STREAM;
@@ -304,6 +340,8 @@ public class Messages extends NLS {
 
 	public static String LABEL_ENABLE_TRACING;
 
+	public static String LABEL_TRACE_TO_FILE;
+
 	public static String LaunchTunnelCommandAction_JOB_LAUNCH;
 
 	public static String LaunchTunnelCommandAction_JOB_PROMPT;
@@ -324,6 +362,8 @@ public class Messages extends NLS {
 
 	public static String TOOLTIP_ENABLE_TRACING;
 
+	public static String TOOLTIP_TRACE_TO_FILE;
+
 	public static String TunnelActionProvider_TEXT_DISABLE;
 
 	public static String TunnelActionProvider_TEXT_DISCONN_TUNNEL;
@@ -664,6 +704,10 @@ public class Messages extends NLS {
 
 	public static String CloudFoundryPreferencePage_TEXT_SELECT_CF_FEATURE;
 
+	public static String CloudFoundryPreferencePage_LABEL_PUBLISH_PARALLELISM;
+
+	public static String CloudFoundryPreferencePage_TOOLTIP_PUBLISH_PARALLELISM;
+
 	public static String CloudFoundryServerStatusSection_ERROR_SERV_EDITOR;
 
 	public static String CloudFoundryServerStatusSection_TEXT_CONN_BUTTON;
@@ -0,0 +1,265 @@
+/*******************************************************************************
+ * Copyright (c) 2017 Pivotal Software, Inc. and others
+ *
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * and Apache License v2.0 which accompanies this distribution.
+ *
+ * The Eclipse Public License is available at
+ *
+ * http://www.eclipse.org/legal/epl-v10.html
+ *
+ * and the Apache License v2.0 is available at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * You may elect to redistribute this code under either of these licenses.
+ *
+ *  Contributors:
+ *     Pivotal Software, Inc. - initial API and implementation
+ ********************************************************************************/
+package org.eclipse.cft.server.ui.internal.console;
+
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+
+import org.eclipse.cft.server.core.internal.CloudFoundryPlugin;
+import org.eclipse.cft.server.core.internal.client.ClientRequestExecutor;
+import org.eclipse.cft.server.core.internal.log.CloudLog;
+import org.eclipse.cft.server.core.internal.log.LogContentType;
+import org.eclipse.core.runtime.CoreException;
+
+/**
+ * Bounded buffer between an application log subscription and the console.
+ * Logs are added without locking by the thread that receives them, and are
+ * written to the console in batches by a drain task on the shared background
+ * threads, so that a chatty application cannot stall the log subscription.
+ * <p/>
+ * Consecutive logs of the same content type are written to the console as a
+ * single write. If the buffer is full, new logs are dropped, and the number of
+ * dropped logs is reported in the console on the next drain.
+ */
+public class ApplicationLogBuffer {
+
+	public static final int DEFAULT_CAPACITY = 8192;
+
+	/**
+	 * Maximum number of logs written to the console in one drain, so that
+	 * other consoles sharing the drain executor are not starved.
+	 */
+	private static final int MAX_BATCH = 2048;
+
+	private static final long DRAIN_INTERVAL = 100;
+
+	/**
+	 * Shared by all buffers, so that consoles are written one at a time
+	 */
+	private static final ExecutorService drainExecutor = ClientRequestExecutor.newBoundedExecutor(1);
+
+	/**
+	 * Receives batches of logs drained from the buffer
+	 */
+	public interface LogSink {
+
+		public void write(LogContentType type, String content) throws CoreException;
+
+		/**
+		 * Reports logs that were dropped since the last drain
+		 */
+		public void dropped(long count) throws CoreException;
+	}
+
+	private final AtomicReferenceArray<CloudLog> slots;
+
+	private final int mask;
+
+	/**
+	 * Next sequence to be claimed by a producer
+	 */
+	private final AtomicLong tail = new AtomicLong();
+
+	/**
+	 * Next sequence to be drained. Only written while holding the drain lock.
+	 */
+	private volatile long head;
+
+	/**
+	 * Held while draining, so that the drain task and the final drain on close
+	 * do not drain the same logs
+	 */
+	private final Object drainLock = new Object();
+
+	private final LogSink sink;
+
+	private final AtomicLong droppedCount = new AtomicLong();
+
+	private volatile long reportedDropCount;
+
+	private final AtomicBoolean drainPending = new AtomicBoolean();
+
+	private ScheduledFuture<?> drainTask;
+
+	/**
+	 *
+	 * @param capacity maximum number of buffered logs. Rounded up to a power
+	 * of two.
+	 * @param sink
+	 */
+	public ApplicationLogBuffer(int capacity, LogSink sink) {
+		int size = Integer.highestOneBit(Math.max(2, capacity) - 1) << 1;
+		this.slots = new AtomicReferenceArray<CloudLog>(size);
+		this.mask = size - 1;
+		this.sink = sink;
+	}
+
+	public synchronized void start() {
+		if (drainTask == null) {
+			drainTask = ClientRequestExecutor.getScheduler().scheduleWithFixedDelay(new Runnable() {
+				public void run() {
+					if (getBufferedCount() > 0 || droppedCount.get() > reportedDropCount) {
+						scheduleDrain();
+					}
+				}
+			}, DRAIN_INTERVAL, DRAIN_INTERVAL, TimeUnit.MILLISECONDS);
+		}
+	}
+
+	/**
+	 * Drains the buffer on the drain executor, unless a drain of this buffer
+	 * is already pending
+	 */
+	protected void scheduleDrain() {
+		if (!drainPending.compareAndSet(false, true)) {
+			return;
+		}
+		try {
+			drainExecutor.execute(new Runnable() {
+				public void run() {
+					drainPending.set(false);
+					drain();
+				}
+			});
+		}
+		catch (RejectedExecutionException e) {
+			// Plugin stopping
+			drainPending.set(false);
+		}
+	}
+
+	/**
+	 * Stops draining, and writes the logs that were added before closing to
+	 * the sink. Must not be called while holding a lock that the sink
+	 * acquires, as the drain task may be writing to the sink.
+	 */
+	public void close() {
+		synchronized (this) {
+			if (drainTask != null) {
+				drainTask.cancel(false);
+				drainTask = null;
+			}
+		}
+		long end = tail.get();
+		while (head < end && drain() > 0) {
+			// Drain in batches until the logs added before closing are
+			// written
+		}
+	}
+
+	/**
+	 * Adds a log to the buffer without blocking.
+	 * @param log
+	 * @return true if the log was added, false if it was dropped
+	 */
+	public boolean offer(CloudLog log) {
+		if (log == null || log.getMessage() == null) {
+			return false;
+		}
+
+		while (true) {
+			long sequence = tail.get();
+			if (sequence - head >= slots.length()) {
+				droppedCount.incrementAndGet();
+				return false;
+			}
+			if (tail.compareAndSet(sequence, sequence + 1)) {
+				// The slot is published once set. The drain task stops at
+				// the first claimed slot that is not yet published.
+				slots.lazySet((int) sequence & mask, log);
+				return true;
+			}
+		}
+	}
+
+	/**
+	 * Writes at most one batch of buffered logs to the sink, coalescing
+	 * consecutive logs of the same type.
+	 * @return number of logs written
+	 */
+	protected int drain() {
+		synchronized (drainLock) {
+			return drainBatch();
+		}
+	}
+
+	private int drainBatch() {
+		int written = 0;
+		try {
+			long dropped = droppedCount.get();
+			if (dropped > reportedDropCount) {
+				sink.dropped(dropped - reportedDropCount);
+				reportedDropCount = dropped;
+			}
+
+			StringBuilder content = new StringBuilder();
+			LogContentType type = null;
+			long sequence = head;
+
+			while (written < MAX_BATCH) {
+				int index = (int) sequence & mask;
+				CloudLog log = slots.get(index);
+				if (log == null) {
+					break;
+				}
+				slots.lazySet(index, null);
+				sequence++;
+				// Release the slot right away so that producers can reuse it
+				// while the batch is written
+				head = sequence;
+				written++;
+
+				if (type != null && !type.equals(log.getLogType())) {
+					sink.write(type, content.toString());
+					content.setLength(0);
+				}
+				type = log.getLogType();
+				content.append(log.getMessage());
+			}
+
+			if (type != null) {
+				sink.write(type, content.toString());
+			}
+		}
+		catch (CoreException e) {
+			CloudFoundryPlugin.logError(e);
+		}
+		catch (RuntimeException e) {
+			// Do not let a failed write cancel further drains
+			CloudFoundryPlugin.logError(e);
+		}
+		return written;
+	}
+
+	/**
+	 *
+	 * @return number of logs currently waiting to be written
+	 */
+	public int getBufferedCount() {
+		return (int) (tail.get() - head);
+	}
+
+}
@@ -36,6 +36,7 @@ import org.eclipse.cft.server.core.internal.client.CloudFoundryApplicationModule
 import org.eclipse.cft.server.core.internal.client.CloudFoundryServerBehaviour;
 import org.eclipse.cft.server.core.internal.log.CloudLog;
 import org.eclipse.cft.server.core.internal.log.LogContentType;
+import org.eclipse.cft.server.core.internal.log.RecentLogCache;
 import org.eclipse.cft.server.core.internal.spaces.CloudFoundrySpace;
 import org.eclipse.core.runtime.CoreException;
 import org.eclipse.core.runtime.IProgressMonitor;
@@ -54,6 +55,14 @@ import org.eclipse.wst.server.core.IServer;
  */
 public class ApplicationLogConsoleManager extends CloudConsoleManager {
 
+	/**
+	 * Number of characters kept in an application console once the high
+	 * water mark is exceeded
+	 */
+	private static final int CONSOLE_LOW_WATER_MARK = 800000;
+
+	private static final int CONSOLE_HIGH_WATER_MARK = 1000000;
+
 	private IConsoleManager consoleManager;
 
 	Map<String, ApplicationLogConsole> consoleByUri;
@@ -214,14 +223,22 @@ public class ApplicationLogConsoleManager extends CloudConsoleManager {
 		if (console instanceof ApplicationLogConsole) {
 			ApplicationLogConsole logConsole = (ApplicationLogConsole) console;
 			CloudFoundryServerBehaviour behaviour = server.getBehaviour();
-			List<CloudLog> logs;
+			String appName = appModule.getDeployedApplicationName();
 			try {
-				logs = behaviour.getRecentAppLogs(appModule.getDeployedApplicationName(), monitor);
+				// Show the history from earlier sessions right away, and then
+				// only the logs that are newer than the history
+				List<CloudLog> cachedLogs = behaviour.getCachedAppLogs(appName);
+				if (!cachedLogs.isEmpty()) {
+					logConsole.writeApplicationLogs(cachedLogs);
+				}
+
+				List<CloudLog> logs = RecentLogCache.getNewerLogs(behaviour.getRecentAppLogs(appName, monitor),
+						cachedLogs);
 
 				if (!logs.isEmpty()) {
 					logConsole.writeApplicationLogs(logs);
 				}
-				else {
+				else if (cachedLogs.isEmpty()) {
 
 					doWriteToStdConsole(Messages.ApplicationLogConsoleManager_NO_RECENT_LOGS + '\n', logConsole,
 							StandardLogContentType.STD_OUT);
@@ -275,6 +292,9 @@ public class ApplicationLogConsoleManager extends CloudConsoleManager {
 					ApplicationLogConsole.CONSOLE_TYPE, null, true);
 			appConsole.setAttribute(ApplicationLogConsole.ATTRIBUTE_SERVER, server);
 			appConsole.setAttribute(ApplicationLogConsole.ATTRIBUTE_APP, appModule);
+			// Cap the memory used by consoles of chatty applications. Older
+			// content is discarded once the high water mark is reached.
+			appConsole.setWaterMarks(CONSOLE_LOW_WATER_MARK, CONSOLE_HIGH_WATER_MARK);
 			// appConsole.setAttribute(ApplicationLogConsole.ATTRIBUTE_INSTANCE,
 			// instanceIndex);
 			ConsolePlugin.getDefault().getConsoleManager().addConsoles(new IConsole[] { appConsole });
@@ -58,12 +58,18 @@ import org.eclipse.ui.console.IOConsoleOutputStream;
  * Closing the manager closes all active streams, as well as cancels any further
  * loggregator callbacks.
  * 
+ * <p/>
+ * Streamed logs are not written to the console by the thread that receives
+ * them, but go through an {@link ApplicationLogBuffer} that writes them to the
+ * console in batches.
  *
  */
 public class ApplicationLogConsoleStream extends ConsoleStream {
 
 	private CFStreamingLogToken streamingToken;
 
+	private volatile ApplicationLogBuffer logBuffer;
+
 	private Map<LogContentType, ConsoleStream> logStreams = new HashMap<LogContentType, ConsoleStream>();
 
 	private ConsoleConfig consoleDescriptor;
@@ -72,7 +78,22 @@ public class ApplicationLogConsoleStream extends ConsoleStream {
 
 	}
 
-	public synchronized void close() {
+	public void close() {
+		ApplicationLogBuffer buffer;
+		synchronized (this) {
+			buffer = logBuffer;
+			logBuffer = null;
+		}
+		if (buffer != null) {
+			// Write the logs still buffered before closing the streams. Not
+			// done while holding the lock of this stream, as the buffer may
+			// be draining into it.
+			buffer.close();
+		}
+		closeStreams();
+	}
+
+	protected synchronized void closeStreams() {
 		if (logStreams != null) {
 			for (Entry<LogContentType, ConsoleStream> entry : logStreams.entrySet()) {
 				entry.getValue().close();
@@ -96,9 +117,22 @@ public class ApplicationLogConsoleStream extends ConsoleStream {
 
 			CloudFoundryServerBehaviour behaviour = consoleDescriptor.getCloudServer().getBehaviour();
 
-			streamingToken = behaviour.startAppLogStreaming(
-					consoleDescriptor.getCloudApplicationModule().getDeployedApplicationName(),
-					new ApplicationLogConsoleListener(), new NullProgressMonitor());
+			ApplicationLogBuffer buffer = new ApplicationLogBuffer(ApplicationLogBuffer.DEFAULT_CAPACITY,
+					new ConsoleLogSink());
+			buffer.start();
+			logBuffer = buffer;
+
+			try {
+				streamingToken = behaviour.startAppLogStreaming(
+						consoleDescriptor.getCloudApplicationModule().getDeployedApplicationName(),
+						new ApplicationLogConsoleListener(), new NullProgressMonitor());
+			}
+			finally {
+				if (streamingToken == null) {
+					buffer.close();
+					logBuffer = null;
+				}
+			}
 
 		}
 	}
@@ -168,13 +202,11 @@ public class ApplicationLogConsoleStream extends ConsoleStream {
 	public class ApplicationLogConsoleListener implements CFApplicationLogListener {
 
 		public void onMessage(CloudLog appLog) {
-			if (isActive()) {
-				try {
-					write(appLog);
-				}
-				catch (CoreException e) {
-					onError(e);
-				}
+			// Avoid locking the stream, as the console may be busy writing an
+			// earlier batch
+			ApplicationLogBuffer buffer = logBuffer;
+			if (buffer != null) {
+				buffer.offer(appLog);
 			}
 		}
 
@@ -196,6 +228,38 @@ public class ApplicationLogConsoleStream extends ConsoleStream {
 		}
 	}
 
+	/**
+	 * Writes batches of logs drained from the log buffer to the console
+	 */
+	protected class ConsoleLogSink implements ApplicationLogBuffer.LogSink {
+
+		public void write(LogContentType type, String content) throws CoreException {
+			writeContent(type, content);
+		}
+
+		public void dropped(long count) throws CoreException {
+			writeContent(APPLICATION_LOG_STS_ERROR,
+					NLS.bind(Messages.WARNING_APPLICATION_LOGS_DROPPED, count) + '\n');
+		}
+	}
+
+	protected synchronized void writeContent(LogContentType type, String content) throws CoreException {
+		if (!isActive()) {
+			// Stream closed while the batch was being drained
+			return;
+		}
+		IOConsoleOutputStream activeOutStream = getOutputStream(type);
+
+		if (activeOutStream != null) {
+			try {
+				activeOutStream.write(content);
+			}
+			catch (IOException e) {
+				throw CloudErrorUtil.toCoreException(e);
+			}
+		}
+	}
+
 	/**
 	 * Writes a CF application log to the console. The content type of the
 	 * application log is resolved first and a corresponding stream is fetched